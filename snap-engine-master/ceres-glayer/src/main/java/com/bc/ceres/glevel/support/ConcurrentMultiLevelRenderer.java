@@ -37,6 +37,7 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
@@ -55,22 +56,57 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A multi-level renderer which computes the tiles of the current level asynchronously using the JAI tile scheduler.
+ * <p>
+ * Missing tiles are scheduled in the order of their distance to the centre of the view. If tiles are missing, the
+ * tiles of a coarser preview level are scheduled before, so that a coarse image is displayed quickly. Requests for
+ * tiles which are not visible anymore are cancelled, and while panning, the tiles ahead of the view are prefetched.
+ */
 public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
 
     private final static boolean DEBUG = Boolean.getBoolean("snap.renderer.debug");
-
-    private final Map<TileIndex, TileRequest> scheduledTileRequests;
+    /**
+     * The number of levels between the current level and the coarser level used for a preview of missing tiles.
+     */
+    private final static int PREVIEW_LEVEL_OFFSET = Integer.getInteger("snap.renderer.previewLevelOffset", 2);
+    private final static boolean PREFETCH = Boolean.parseBoolean(System.getProperty("snap.renderer.prefetch", "true"));
+
+    private final TileScheduler tileScheduler;
+    private final Map<TileIndex, ScheduledTile> scheduledTileRequests;
     private final TileImageCache localTileCache;
     private final DescendingLevelsComparator descendingLevelsComparator = new DescendingLevelsComparator();
 
+    private final AtomicLong renderCount = new AtomicLong();
+    private final AtomicLong renderTime = new AtomicLong();
+    private final AtomicLong scheduledTileCount = new AtomicLong();
+    private final AtomicLong computedTileCount = new AtomicLong();
+    private final AtomicLong cancelledTileCount = new AtomicLong();
+    private final AtomicLong prefetchedTileCount = new AtomicLong();
+    private final AtomicLong tileLatency = new AtomicLong();
+
+    // Accessed from EDT only.
+    private Point2D lastViewCenter;
+    private int lastViewLevel = -1;
+
     public ConcurrentMultiLevelRenderer() {
-        scheduledTileRequests = Collections.synchronizedMap(new HashMap<TileIndex, TileRequest>(37));
+        this(null);
+    }
+
+    /**
+     * @param tileScheduler The tile scheduler, or {@code null} for the one of the default JAI instance.
+     */
+    ConcurrentMultiLevelRenderer(TileScheduler tileScheduler) {
+        this.tileScheduler = tileScheduler;
+        scheduledTileRequests = new ConcurrentHashMap<>(37);
         localTileCache = new TileImageCache();
 
         if (DEBUG) {
             final TileCache tileCache = JAI.getDefaultInstance().getTileCache();
-            final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
+            final TileScheduler tileScheduler = getTileScheduler();
             System.out.println("jai.tileScheduler.priority = " + tileScheduler.getPriority());
             System.out.println("jai.tileScheduler.parallelism = " + tileScheduler.getParallelism());
             System.out.println("jai.tileScheduler.prefetchPriority = " + tileScheduler.getPrefetchPriority());
@@ -90,8 +126,10 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
     public void renderImage(Rendering rendering, MultiLevelSource multiLevelSource, int currentLevel) {
         final long t0 = System.nanoTime();
         renderImpl((InteractiveRendering) rendering, multiLevelSource, currentLevel);
+        final long t1 = System.nanoTime();
+        renderCount.incrementAndGet();
+        renderTime.addAndGet(t1 - t0);
         if (DEBUG) {
-            final long t1 = System.nanoTime();
             double time = (t1 - t0) / (1000.0 * 1000.0);
             System.out.printf("ConcurrentMultiLevelRenderer: render: time=%f ms, clip=%s\n", time, rendering.getGraphics().getClip());
         }
@@ -120,6 +158,26 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
             return; // nothing to render
         }
 
+        // Create set of visible tile indexes and of the tile indexes of the preview level
+        final Rectangle visibleImageRegion = getImageRegion(viewport, multiLevelSource, currentLevel, viewBounds);
+        final Set<TileIndex> visibleTileIndexSet = getTileIndexes(planarImage, multiLevelSource.getImageShape(currentLevel), currentLevel, visibleImageRegion);
+        final int previewLevel = Math.min(currentLevel + PREVIEW_LEVEL_OFFSET, multiLevelSource.getModel().getLevelCount() - 1);
+        PlanarImage previewImage = null;
+        Set<TileIndex> previewTileIndexSet = Collections.emptySet();
+        if (previewLevel > currentLevel) {
+            previewImage = (PlanarImage) multiLevelSource.getImage(previewLevel);
+            final Rectangle previewImageRegion = getImageRegion(viewport, multiLevelSource, previewLevel, clipBounds != null ? clipBounds : viewBounds);
+            previewTileIndexSet = getTileIndexes(previewImage, multiLevelSource.getImageShape(previewLevel), previewLevel, previewImageRegion);
+        }
+
+        // Cancel any pending tile requests that are neither in the visible region nor for the preview,
+        // before new tiles are scheduled
+        if (!visibleTileIndexSet.isEmpty()) {
+            final Set<TileIndex> requestedTileIndexSet = new HashSet<>(visibleTileIndexSet);
+            requestedTileIndexSet.addAll(previewTileIndexSet);
+            cancelTileRequests(requestedTileIndexSet);
+        }
+
         // Create lists of available and missing tile indexes
         final List<TileIndex> availableTileIndexList = new ArrayList<>(requiredTileIndexes.size());
         final List<TileIndex> missingTileIndexList = new ArrayList<>(requiredTileIndexes.size());
@@ -135,21 +193,21 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
             }
         }
 
-        // Schedule missing tiles, if any
-        if (!notScheduledTileIndexList.isEmpty()) {
-            final TileScheduler tileScheduler = JAI.getDefaultInstance().getTileScheduler();
-            final TileComputationHandler tileComputationHandler = new TileComputationHandler(rendering,
-                                                                                             multiLevelSource,
-                                                                                             currentLevel);
-            final TileRequest tileRequest = tileScheduler.scheduleTiles(planarImage,
-                                                                        getPoints(notScheduledTileIndexList),
-                                                                        new TileComputationListener[]{
-                                                                                tileComputationHandler
-                                                                        }
-            );
-            for (TileIndex tileIndex : notScheduledTileIndexList) {
-                scheduledTileRequests.put(tileIndex, tileRequest);
+        // Schedule missing tiles, if any, the tiles of the coarse preview first
+        final Point2D viewCenter = viewport.getViewToModelTransform().transform(
+                new Point2D.Double(viewBounds.getCenterX(), viewBounds.getCenterY()), null);
+        if (!missingTileIndexList.isEmpty() && previewImage != null) {
+            final List<TileIndex> notScheduledPreviewTileIndexList = new ArrayList<>(previewTileIndexSet.size());
+            for (TileIndex previewTileIndex : previewTileIndexSet) {
+                if (!localTileCache.contains(previewTileIndex) && !scheduledTileRequests.containsKey(previewTileIndex)) {
+                    notScheduledPreviewTileIndexList.add(previewTileIndex);
+                }
             }
+            scheduleTiles(rendering, multiLevelSource, previewLevel, previewImage, notScheduledPreviewTileIndexList, viewCenter);
+        }
+        scheduleTiles(rendering, multiLevelSource, currentLevel, planarImage, notScheduledTileIndexList, viewCenter);
+        if (PREFETCH) {
+            prefetchTiles(viewport, multiLevelSource, currentLevel, planarImage, visibleTileIndexSet, viewCenter);
         }
 
         // Draw missing tiles from other levels (if any)
@@ -170,19 +228,142 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
             drawTileFrames(graphics, viewport, planarImage, availableTileIndexList, i2m, Color.BLUE);
         }
 
-        // Cancel any pending tile requests that are not in the visible region
-        final Rectangle visibleImageRegion = getImageRegion(viewport, multiLevelSource, currentLevel, viewBounds);
-        final Set<TileIndex> visibleTileIndexSet = getTileIndexes(planarImage, multiLevelSource.getImageShape(currentLevel), currentLevel, visibleImageRegion);
-        if (!visibleTileIndexSet.isEmpty()) {
-            cancelTileRequests(visibleTileIndexSet);
-        }
-
         localTileCache.adjustTrimSize(planarImage, visibleTileIndexSet.size());
 
         // Remove any tile images that are older than the retention period.
         localTileCache.trim(currentLevel, visibleTileIndexSet);
     }
 
+    /**
+     * @return The number of rendered frames.
+     */
+    public long getRenderCount() {
+        return renderCount.get();
+    }
+
+    /**
+     * @return The mean time in milliseconds needed to render a frame, without waiting for missing tiles.
+     */
+    public double getMeanRenderTime() {
+        final long count = renderCount.get();
+        return count > 0 ? renderTime.get() / (1.0e6 * count) : 0.0;
+    }
+
+    /**
+     * @return The number of tiles scheduled for computation.
+     */
+    public long getScheduledTileCount() {
+        return scheduledTileCount.get();
+    }
+
+    /**
+     * @return The number of scheduled tiles which have been computed.
+     */
+    public long getComputedTileCount() {
+        return computedTileCount.get();
+    }
+
+    /**
+     * @return The number of scheduled tiles which have been cancelled, because they were not visible anymore.
+     */
+    public long getCancelledTileCount() {
+        return cancelledTileCount.get();
+    }
+
+    /**
+     * @return The number of tiles prefetched in the pan direction.
+     */
+    public long getPrefetchedTileCount() {
+        return prefetchedTileCount.get();
+    }
+
+    /**
+     * @return The mean time in milliseconds between scheduling and the completed computation of a tile.
+     */
+    public double getMeanTileLatency() {
+        final long count = computedTileCount.get();
+        return count > 0 ? tileLatency.get() / (1.0e6 * count) : 0.0;
+    }
+
+    private TileScheduler getTileScheduler() {
+        return tileScheduler != null ? tileScheduler : JAI.getDefaultInstance().getTileScheduler();
+    }
+
+    void scheduleTiles(InteractiveRendering rendering,
+                       MultiLevelSource multiLevelSource,
+                       int level,
+                       PlanarImage planarImage,
+                       List<TileIndex> tileIndexList,
+                       Point2D viewCenter) {
+        if (tileIndexList.isEmpty()) {
+            return;
+        }
+        // tiles near the centre of the view first
+        final Point2D center = multiLevelSource.getModel().getModelToImageTransform(level).transform(viewCenter, null);
+        tileIndexList.sort(Comparator.comparingDouble(tileIndex -> {
+            final Rectangle tileRect = planarImage.getTileRect(tileIndex.tileX, tileIndex.tileY);
+            return center.distanceSq(tileRect.getCenterX(), tileRect.getCenterY());
+        }));
+        final TileComputationHandler tileComputationHandler = new TileComputationHandler(rendering,
+                                                                                         multiLevelSource,
+                                                                                         level);
+        final TileRequest tileRequest = getTileScheduler().scheduleTiles(planarImage,
+                                                                         getPoints(tileIndexList),
+                                                                         new TileComputationListener[]{
+                                                                                 tileComputationHandler
+                                                                         }
+        );
+        final long scheduleTime = System.nanoTime();
+        for (TileIndex tileIndex : tileIndexList) {
+            scheduledTileRequests.put(tileIndex, new ScheduledTile(tileRequest, scheduleTime));
+        }
+        scheduledTileCount.addAndGet(tileIndexList.size());
+    }
+
+    // Called from EDT.
+    // Prefetches the tiles which become visible if the view is panned further in the direction of the last pan.
+    private void prefetchTiles(Viewport viewport,
+                               MultiLevelSource multiLevelSource,
+                               int level,
+                               PlanarImage planarImage,
+                               Set<TileIndex> visibleTileIndexSet,
+                               Point2D viewCenter) {
+        final Point2D lastCenter = lastViewCenter;
+        final int lastLevel = lastViewLevel;
+        lastViewCenter = viewCenter;
+        lastViewLevel = level;
+        if (lastCenter == null || lastLevel != level) {
+            return;
+        }
+        final AffineTransform m2v = viewport.getModelToViewTransform();
+        final Point2D lastCenterInView = m2v.transform(lastCenter, null);
+        final Point2D centerInView = m2v.transform(viewCenter, null);
+        final double dx = centerInView.getX() - lastCenterInView.getX();
+        final double dy = centerInView.getY() - lastCenterInView.getY();
+        if (dx == 0.0 && dy == 0.0) {
+            return;
+        }
+        final Rectangle viewBounds = viewport.getViewBounds();
+        final Rectangle2D aheadBounds = new Rectangle2D.Double(viewBounds.x + Math.signum(dx) * viewBounds.width / 2.0,
+                                                               viewBounds.y + Math.signum(dy) * viewBounds.height / 2.0,
+                                                               viewBounds.width, viewBounds.height);
+        final Rectangle aheadImageRegion = getImageRegion(viewport, multiLevelSource, level, aheadBounds);
+        final Set<TileIndex> aheadTileIndexSet = getTileIndexes(planarImage, multiLevelSource.getImageShape(level), level, aheadImageRegion);
+        final List<TileIndex> prefetchTileIndexList = new ArrayList<>(aheadTileIndexSet.size());
+        for (TileIndex tileIndex : aheadTileIndexSet) {
+            if (!visibleTileIndexSet.contains(tileIndex)
+                && !localTileCache.contains(tileIndex)
+                && !scheduledTileRequests.containsKey(tileIndex)) {
+                prefetchTileIndexList.add(tileIndex);
+            }
+        }
+        if (!prefetchTileIndexList.isEmpty()) {
+            // prefetched tiles are computed into the JAI tile cache by the prefetch threads with lower priority
+            getTileScheduler().prefetchTiles(planarImage, getPoints(prefetchTileIndexList));
+            prefetchedTileCount.addAndGet(prefetchTileIndexList.size());
+        }
+    }
+
     private void drawTentativeTileImages(Graphics2D g,
                                          Viewport vp,
                                          MultiLevelSource multiLevelSource,
@@ -318,36 +499,28 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
     }
 
     // Called from EDT.
-    // Cancels any tiles that are in the scheduled list and not in the visibleTileIndexSet list.
-    private void cancelTileRequests(Set<TileIndex> visibleTileIndexSet) {
-        final Map<TileIndex, TileRequest> scheduledTileRequestsCopy;
-        synchronized (scheduledTileRequests) {
-            scheduledTileRequestsCopy = new HashMap<>(scheduledTileRequests);
-        }
+    // Cancels any tiles that are in the scheduled list and not in the requestedTileIndexSet list.
+    void cancelTileRequests(Set<TileIndex> requestedTileIndexSet) {
         // scan through the scheduled tiles list cancelling any that are no longer in view
-        for (Map.Entry<TileIndex, TileRequest> scheduledTileEntry : scheduledTileRequestsCopy.entrySet()) {
+        for (Map.Entry<TileIndex, ScheduledTile> scheduledTileEntry : scheduledTileRequests.entrySet()) {
             TileIndex scheduledTileIndex = scheduledTileEntry.getKey();
-            if (!visibleTileIndexSet.contains(scheduledTileIndex)) {
-                TileRequest request = scheduledTileEntry.getValue();
+            if (!requestedTileIndexSet.contains(scheduledTileIndex)) {
+                ScheduledTile scheduledTile = scheduledTileEntry.getValue();
                 // if tile not already removed (concurrently)
-                if (request != null) {
-                    scheduledTileRequests.remove(scheduledTileIndex);
-                    request.cancelTiles(new Point[]{new Point(scheduledTileIndex.tileX, scheduledTileIndex.tileY)});
+                if (scheduledTileRequests.remove(scheduledTileIndex, scheduledTile)) {
+                    scheduledTile.request.cancelTiles(new Point[]{new Point(scheduledTileIndex.tileX, scheduledTileIndex.tileY)});
+                    cancelledTileCount.incrementAndGet();
                 }
             }
         }
     }
 
     private void cancelTileRequests(int currentLevel) {
-        final Map<TileIndex, TileRequest> scheduledTileRequestsCopy;
-        synchronized (scheduledTileRequests) {
-            scheduledTileRequestsCopy = new HashMap<>(scheduledTileRequests);
-        }
-        for (Map.Entry<TileIndex, TileRequest> entry : scheduledTileRequestsCopy.entrySet()) {
+        for (Map.Entry<TileIndex, ScheduledTile> entry : scheduledTileRequests.entrySet()) {
             TileIndex tileIndex = entry.getKey();
-            if (tileIndex.level != currentLevel) {
-                scheduledTileRequests.remove(tileIndex);
-                entry.getValue().cancelTiles(null);
+            if (tileIndex.level != currentLevel && scheduledTileRequests.remove(tileIndex, entry.getValue())) {
+                entry.getValue().request.cancelTiles(null);
+                cancelledTileCount.incrementAndGet();
             }
         }
     }
@@ -470,10 +643,15 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
                                                         tileIndex,
                                                         tile,
                                                         multiLevelSource.getModel().getImageToModelTransform(level));
+            final ScheduledTile scheduledTile;
             synchronized (ConcurrentMultiLevelRenderer.this) {
-                scheduledTileRequests.remove(tileIndex);
+                scheduledTile = scheduledTileRequests.remove(tileIndex);
                 localTileCache.add(tileImage);
             }
+            if (scheduledTile != null) {
+                computedTileCount.incrementAndGet();
+                tileLatency.addAndGet(System.nanoTime() - scheduledTile.scheduleTime);
+            }
 
 // Uncomment for debugging
 //            if (DEBUG) {
@@ -655,6 +833,19 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
         }
     }
 
+    private final static class ScheduledTile {
+        private final TileRequest request;
+        /**
+         * schedule time stamp in nanoseconds
+         */
+        private final long scheduleTime;
+
+        private ScheduledTile(TileRequest request, long scheduleTime) {
+            this.request = request;
+            this.scheduleTime = scheduleTime;
+        }
+    }
+
     private final static class TileImage {
         private final RenderedImage image;
         private final TileIndex tileIndex;
@@ -718,12 +909,12 @@ public class ConcurrentMultiLevelRenderer implements MultiLevelRenderer {
 
     }
 
-    private final static class TileIndex {
+    final static class TileIndex {
         private final int tileX;
         private final int tileY;
         private final int level;
 
-        private TileIndex(int tileX, int tileY, int level) {
+        TileIndex(int tileX, int tileY, int level) {
             this.tileX = tileX;
             this.tileY = tileY;
             this.level = level;
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.glevel.support;
+
+import com.bc.ceres.glevel.MultiLevelSource;
+import com.bc.ceres.grender.InteractiveRendering;
+import com.bc.ceres.grender.support.BufferedImageRendering;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.media.jai.TileRequest;
+import javax.media.jai.TileScheduler;
+import javax.media.jai.TiledImage;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentMultiLevelRendererTest {
+
+    private static final int TILE_SIZE = 64;
+    private static final int NUM_TILES = 4;
+
+    private TiledImage image;
+    private MultiLevelSource multiLevelSource;
+    private InteractiveRendering rendering;
+    private List<Point> scheduledTiles;
+    private List<Point> cancelledTiles;
+    private ConcurrentMultiLevelRenderer renderer;
+
+    @Before
+    public void setUp() throws Exception {
+        final int size = NUM_TILES * TILE_SIZE;
+        image = new TiledImage(0, 0, size, size, 0, 0,
+                               new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, TILE_SIZE, TILE_SIZE, 1, TILE_SIZE, new int[]{0}),
+                               null);
+        multiLevelSource = new DefaultMultiLevelSource(image, 1);
+        rendering = new TestRendering(size, size);
+        scheduledTiles = new ArrayList<>();
+        cancelledTiles = new ArrayList<>();
+        renderer = new ConcurrentMultiLevelRenderer(createTileScheduler());
+    }
+
+    @Test
+    public void testTilesNearViewCenterAreScheduledFirst() throws Exception {
+        final Point2D viewCenter = new Point2D.Double(3.5 * TILE_SIZE, 0.5 * TILE_SIZE);
+        renderer.scheduleTiles(rendering, multiLevelSource, 0, image, getAllTileIndexes(), viewCenter);
+
+        assertEquals(NUM_TILES * NUM_TILES, scheduledTiles.size());
+        assertEquals(NUM_TILES * NUM_TILES, renderer.getScheduledTileCount());
+        assertEquals(new Point(3, 0), scheduledTiles.get(0));
+        double lastDistance = 0.0;
+        for (Point tile : scheduledTiles) {
+            final Rectangle tileRect = image.getTileRect(tile.x, tile.y);
+            final double distance = viewCenter.distance(tileRect.getCenterX(), tileRect.getCenterY());
+            assertTrue(tile.toString(), distance >= lastDistance);
+            lastDistance = distance;
+        }
+        assertEquals(new Point(0, 3), scheduledTiles.get(scheduledTiles.size() - 1));
+    }
+
+    @Test
+    public void testTilesWhichAreNotRequestedAreCancelled() throws Exception {
+        renderer.scheduleTiles(rendering, multiLevelSource, 0, image, getAllTileIndexes(), new Point2D.Double());
+
+        final Set<ConcurrentMultiLevelRenderer.TileIndex> requestedTileIndexes = new HashSet<>();
+        requestedTileIndexes.add(new ConcurrentMultiLevelRenderer.TileIndex(0, 0, 0));
+        requestedTileIndexes.add(new ConcurrentMultiLevelRenderer.TileIndex(1, 0, 0));
+        renderer.cancelTileRequests(requestedTileIndexes);
+
+        assertEquals(NUM_TILES * NUM_TILES - 2, cancelledTiles.size());
+        assertEquals(NUM_TILES * NUM_TILES - 2, renderer.getCancelledTileCount());
+        assertFalse(cancelledTiles.contains(new Point(0, 0)));
+        assertFalse(cancelledTiles.contains(new Point(1, 0)));
+
+        // tiles are cancelled only once
+        renderer.cancelTileRequests(requestedTileIndexes);
+        assertEquals(NUM_TILES * NUM_TILES - 2, renderer.getCancelledTileCount());
+
+        // reset cancels the remaining tiles
+        renderer.reset();
+        assertEquals(NUM_TILES * NUM_TILES, renderer.getCancelledTileCount());
+    }
+
+    private static List<ConcurrentMultiLevelRenderer.TileIndex> getAllTileIndexes() {
+        final List<ConcurrentMultiLevelRenderer.TileIndex> tileIndexes = new ArrayList<>();
+        for (int tileY = 0; tileY < NUM_TILES; tileY++) {
+            for (int tileX = 0; tileX < NUM_TILES; tileX++) {
+                tileIndexes.add(new ConcurrentMultiLevelRenderer.TileIndex(tileX, tileY, 0));
+            }
+        }
+        return tileIndexes;
+    }
+
+    private TileScheduler createTileScheduler() {
+        final TileRequest tileRequest = (TileRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[]{TileRequest.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("cancelTiles") && args[0] != null) {
+                        cancelledTiles.addAll(Arrays.asList((Point[]) args[0]));
+                    }
+                    return null;
+                });
+        return (TileScheduler) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[]{TileScheduler.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("scheduleTiles") && args.length == 3) {
+                        scheduledTiles.addAll(Arrays.asList((Point[]) args[1]));
+                        return tileRequest;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static class TestRendering extends BufferedImageRendering implements InteractiveRendering {
+
+        private TestRendering(int width, int height) {
+            super(width, height);
+        }
+
+        @Override
+        public void invalidateRegion(Rectangle region) {
+        }
+
+        @Override
+        public void invokeLater(Runnable task) {
+        }
+    }
+}
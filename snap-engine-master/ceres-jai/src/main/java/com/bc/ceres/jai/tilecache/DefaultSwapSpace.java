@@ -28,6 +28,7 @@ import java.util.logging.Logger;
 /**
  * The default implementation of the {@link SwapSpace} interface.
  * It creates a file for each swapped tile in the given swap directory.
+ * If a {@link TileCompression} is given, the tile data is encoded by the codec it selects for each tile.
  *
  * @author Norman Fomferra
  */
@@ -35,15 +36,45 @@ public class DefaultSwapSpace implements SwapSpace {
     private final File swapDir;
     private final Logger logger;
     private final Map<Object, SwappedTile> swappedTiles;
+    private final TileCompression compression;
+    private final SwapStatistics statistics;
 
     public DefaultSwapSpace(File swapDir) {
         this(swapDir, Logger.getLogger(System.getProperty("ceres.context", "ceres")));
     }
 
     public DefaultSwapSpace(File swapDir, Logger logger) {
+        this(swapDir, logger, null);
+    }
+
+    /**
+     * @param swapDir     The directory the tiles are swapped to.
+     * @param logger      The logger.
+     * @param compression The compression used to encode the swapped tiles, may be {@code null}.
+     * @since Ceres 0.14
+     */
+    public DefaultSwapSpace(File swapDir, Logger logger, TileCompression compression) {
         this.swapDir = swapDir;
         this.logger = logger;
         this.swappedTiles = new HashMap<Object, SwappedTile>(1009); // prime number
+        this.compression = compression;
+        this.statistics = new SwapStatistics();
+    }
+
+    /**
+     * @return The compression used to encode the swapped tiles, may be {@code null}.
+     * @since Ceres 0.14
+     */
+    public TileCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return The statistics of the stored and restored tiles.
+     * @since Ceres 0.14
+     */
+    public SwapStatistics getStatistics() {
+        return statistics;
     }
 
     @Override
@@ -60,11 +91,12 @@ public class DefaultSwapSpace implements SwapSpace {
             try {
                 st = new SwappedTile(mt, swapDir);
                 if (!st.isAvailable()) {
-                    final long t1 = System.currentTimeMillis();
-                    st.storeTile(mt.getTile());
-                    final long t2 = System.currentTimeMillis();
+                    final long t1 = System.nanoTime();
+                    final long storedSize = st.storeTile(mt.getTile(), compression);
+                    final long t2 = System.nanoTime();
                     st.getFile().deleteOnExit();
-                    logger.log(Level.FINEST, "Tile stored: " + st.getFile() + " (" + (t2 - t1) + " ms)");
+                    statistics.recordStore(st.getCodecName(), mt.getTileSize(), storedSize, t2 - t1);
+                    logger.log(Level.FINEST, "Tile stored: " + st.getFile() + " (" + (t2 - t1) / 1000000 + " ms, " + st.getCodecName() + ")");
                 }
                 swappedTiles.put(mt.getKey(), st);
                 return true;
@@ -83,10 +115,11 @@ public class DefaultSwapSpace implements SwapSpace {
             return null;
         }
         try {
-            final long t1 = System.currentTimeMillis();
-            final Raster tile = st.restoreTile();
-            final long t2 = System.currentTimeMillis();
-            logger.log(Level.FINEST, "Tile restored: " + st.getFile()  + " (" + (t2 - t1) + " ms)");
+            final long t1 = System.nanoTime();
+            final Raster tile = st.restoreTile(compression);
+            final long t2 = System.nanoTime();
+            statistics.recordRestore(t2 - t1);
+            logger.log(Level.FINEST, "Tile restored: " + st.getFile()  + " (" + (t2 - t1) / 1000000 + " ms)");
             return new MemoryTile(owner, tileX, tileY, tile, st.getTileCacheMetric());
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Tile NOT restored: " + st.getFile());
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.io.IOException;
+
+/**
+ * A fast LZ77-style codec, similar to the LZ4 block format. It is well suited for tiles
+ * with many repeated values, e.g. fill values or masks.
+ * <p>
+ * The encoded data is a sequence of blocks, each consisting of a token byte, the literal bytes and a
+ * back reference (offset and length) to a previous occurrence of the following bytes.
+ * The upper 4 bits of the token store the number of literals, the lower 4 bits the match length minus 4.
+ * The value 15 indicates that the number is continued by further bytes, which are summed up until a byte
+ * less than 255 is reached. The last block only consists of literals.
+ *
+ * @since Ceres 0.14
+ */
+public final class LzTileCodec implements TileCodec {
+
+    public static final int ID = 1;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 13;
+    // the last bytes are always encoded as literals
+    private static final int LAST_LITERALS = 5;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "lz";
+    }
+
+    @Override
+    public boolean canEncode(int dataType) {
+        return true;
+    }
+
+    @Override
+    public int encode(byte[] src, int srcLen, int elemSize, byte[] dst) {
+        final int[] hashTable = new int[1 << HASH_BITS];
+        final int matchLimit = srcLen - LAST_LITERALS;
+        int anchor = 0;
+        int sp = 0;
+        int dp = 0;
+        int misses = 0;
+        while (sp < matchLimit - MIN_MATCH) {
+            final int sequence = readInt(src, sp);
+            final int hash = hash(sequence);
+            final int ref = hashTable[hash] - 1;
+            hashTable[hash] = sp + 1;
+            if (ref < 0 || sp - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                // skip faster through incompressible data
+                sp += 1 + (misses++ >> 6);
+                continue;
+            }
+            misses = 0;
+            int matchLen = MIN_MATCH;
+            while (sp + matchLen < matchLimit && src[ref + matchLen] == src[sp + matchLen]) {
+                matchLen++;
+            }
+            dp = writeBlock(src, anchor, sp - anchor, sp - ref, matchLen, dst, dp);
+            if (dp < 0) {
+                return -1;
+            }
+            sp += matchLen;
+            anchor = sp;
+        }
+        return writeBlock(src, anchor, srcLen - anchor, 0, 0, dst, dp);
+    }
+
+    @Override
+    public void decode(byte[] src, int srcLen, int elemSize, byte[] dst, int dstLen) throws IOException {
+        int sp = 0;
+        int dp = 0;
+        try {
+            while (sp < srcLen) {
+                final int token = src[sp++] & 0xFF;
+                int literalLen = token >>> 4;
+                if (literalLen == 15) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xFF;
+                        literalLen += b;
+                    } while (b == 255);
+                }
+                if (dp + literalLen > dstLen) {
+                    throw new IOException("Corrupt data: too many literals");
+                }
+                System.arraycopy(src, sp, dst, dp, literalLen);
+                sp += literalLen;
+                dp += literalLen;
+                if (sp >= srcLen) {
+                    break;
+                }
+                final int offset = (src[sp] & 0xFF) | (src[sp + 1] & 0xFF) << 8;
+                sp += 2;
+                int matchLen = token & 0x0F;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                int ref = dp - offset;
+                if (offset == 0 || ref < 0 || dp + matchLen > dstLen) {
+                    throw new IOException("Corrupt data: illegal match");
+                }
+                // byte-wise, because source and destination may overlap
+                for (int i = 0; i < matchLen; i++) {
+                    dst[dp++] = dst[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt data: unexpected end of data", e);
+        }
+        if (dp != dstLen) {
+            throw new IOException("Corrupt data: " + dp + " bytes decoded, " + dstLen + " expected");
+        }
+    }
+
+    private static int writeBlock(byte[] src, int literalOff, int literalLen, int offset, int matchLen, byte[] dst, int dp) {
+        final int matchCode = matchLen > 0 ? matchLen - MIN_MATCH : 0;
+        // token + worst case length bytes + literals + offset
+        if (dp + 1 + literalLen / 255 + 1 + literalLen + 2 + matchCode / 255 + 1 > dst.length) {
+            return -1;
+        }
+        final int tokenPos = dp++;
+        int token;
+        if (literalLen >= 15) {
+            token = 15 << 4;
+            dp = writeLength(literalLen - 15, dst, dp);
+        } else {
+            token = literalLen << 4;
+        }
+        System.arraycopy(src, literalOff, dst, dp, literalLen);
+        dp += literalLen;
+        if (matchLen > 0) {
+            dst[dp++] = (byte) offset;
+            dst[dp++] = (byte) (offset >>> 8);
+            if (matchCode >= 15) {
+                token |= 15;
+                dp = writeLength(matchCode - 15, dst, dp);
+            } else {
+                token |= matchCode;
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return dp;
+    }
+
+    private static int writeLength(int length, byte[] dst, int dp) {
+        while (length >= 255) {
+            dst[dp++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dp++] = (byte) length;
+        return dp;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) << 24 | (b[i + 1] & 0xFF) << 16 | (b[i + 2] & 0xFF) << 8 | (b[i + 3] & 0xFF);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A codec for multi-byte samples which groups the n-th bytes of all samples together ("shuffle")
+ * before compressing them with the deflate algorithm. Optionally, each sample is XOR-ed with its
+ * predecessor before, so that the equal sign, exponent and leading mantissa bits of neighbouring
+ * floating point values become zero bytes. This works well for smooth geophysical fields.
+ *
+ * @since Ceres 0.14
+ */
+public final class ShuffleDeflateTileCodec implements TileCodec {
+
+    public static final int ID_SHUFFLE = 2;
+    public static final int ID_XOR_SHUFFLE = 3;
+
+    private final boolean xor;
+
+    /**
+     * @param xor If {@code true}, each sample is XOR-ed with its predecessor before shuffling.
+     */
+    public ShuffleDeflateTileCodec(boolean xor) {
+        this.xor = xor;
+    }
+
+    @Override
+    public int getId() {
+        return xor ? ID_XOR_SHUFFLE : ID_SHUFFLE;
+    }
+
+    @Override
+    public String getName() {
+        return xor ? "xor-shuffle-deflate" : "shuffle-deflate";
+    }
+
+    @Override
+    public boolean canEncode(int dataType) {
+        if (xor) {
+            return dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE;
+        }
+        return dataType != DataBuffer.TYPE_BYTE;
+    }
+
+    @Override
+    public int encode(byte[] src, int srcLen, int elemSize, byte[] dst) {
+        final byte[] shuffled = new byte[srcLen];
+        shuffle(src, srcLen, elemSize, xor, shuffled);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(shuffled, 0, srcLen);
+            deflater.finish();
+            int len = 0;
+            while (!deflater.finished() && len < dst.length) {
+                len += deflater.deflate(dst, len, dst.length - len);
+            }
+            return deflater.finished() ? len : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void decode(byte[] src, int srcLen, int elemSize, byte[] dst, int dstLen) throws IOException {
+        // one extra byte, so that the end of the data is detected if the output is complete
+        final byte[] shuffled = new byte[dstLen + 1];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src, 0, srcLen);
+            int len = 0;
+            while (!inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary() && len < shuffled.length) {
+                len += inflater.inflate(shuffled, len, shuffled.length - len);
+            }
+            if (len != dstLen || !inflater.finished()) {
+                throw new IOException("Corrupt data: " + len + " bytes decoded, " + dstLen + " expected");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt data", e);
+        } finally {
+            inflater.end();
+        }
+        unshuffle(shuffled, dstLen, elemSize, xor, dst);
+    }
+
+    static void shuffle(byte[] src, int len, int elemSize, boolean xor, byte[] dst) {
+        final int numElems = len / elemSize;
+        for (int b = 0; b < elemSize; b++) {
+            final int dstOff = b * numElems;
+            if (xor) {
+                if (numElems > 0) {
+                    dst[dstOff] = src[b];
+                }
+                for (int i = 1, sp = elemSize + b; i < numElems; i++, sp += elemSize) {
+                    dst[dstOff + i] = (byte) (src[sp] ^ src[sp - elemSize]);
+                }
+            } else {
+                for (int i = 0, sp = b; i < numElems; i++, sp += elemSize) {
+                    dst[dstOff + i] = src[sp];
+                }
+            }
+        }
+        // remaining bytes, if len is not a multiple of elemSize
+        System.arraycopy(src, numElems * elemSize, dst, numElems * elemSize, len - numElems * elemSize);
+    }
+
+    static void unshuffle(byte[] src, int len, int elemSize, boolean xor, byte[] dst) {
+        final int numElems = len / elemSize;
+        for (int b = 0; b < elemSize; b++) {
+            final int srcOff = b * numElems;
+            if (xor) {
+                if (numElems > 0) {
+                    dst[b] = src[srcOff];
+                }
+                for (int i = 1, dp = elemSize + b; i < numElems; i++, dp += elemSize) {
+                    dst[dp] = (byte) (src[srcOff + i] ^ dst[dp - elemSize]);
+                }
+            } else {
+                for (int i = 0, dp = b; i < numElems; i++, dp += elemSize) {
+                    dst[dp] = src[srcOff + i];
+                }
+            }
+        }
+        System.arraycopy(src, numElems * elemSize, dst, numElems * elemSize, len - numElems * elemSize);
+    }
+}
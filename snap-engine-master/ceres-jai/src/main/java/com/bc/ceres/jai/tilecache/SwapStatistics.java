@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the tiles stored in and restored from a {@link DefaultSwapSpace}.
+ *
+ * @since Ceres 0.14
+ */
+public final class SwapStatistics {
+
+    /**
+     * The codec name used for unencoded tiles.
+     */
+    public static final String RAW = "raw";
+
+    private final AtomicLong storedTileCount = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong storeTime = new AtomicLong();
+    private final AtomicLong restoredTileCount = new AtomicLong();
+    private final AtomicLong restoreTime = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> codecCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+    void recordStore(String codecName, long rawSize, long storedSize, long nanos) {
+        storedTileCount.incrementAndGet();
+        rawBytes.addAndGet(rawSize);
+        storedBytes.addAndGet(storedSize);
+        storeTime.addAndGet(nanos);
+        AtomicLong count = codecCounts.get(codecName);
+        if (count == null) {
+            final AtomicLong newCount = new AtomicLong();
+            count = codecCounts.putIfAbsent(codecName, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    void recordRestore(long nanos) {
+        restoredTileCount.incrementAndGet();
+        restoreTime.addAndGet(nanos);
+    }
+
+    public long getStoredTileCount() {
+        return storedTileCount.get();
+    }
+
+    /**
+     * @return The number of bytes of the stored tiles before encoding.
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * @return The number of bytes written for the stored tiles, including file headers.
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * @return The ratio of raw to stored bytes, or 1 if no tiles have been stored.
+     */
+    public double getCompressionRatio() {
+        final long stored = storedBytes.get();
+        return stored > 0 ? (double) rawBytes.get() / stored : 1.0;
+    }
+
+    /**
+     * @return The mean time needed to store a tile in milliseconds.
+     */
+    public double getMeanStoreTime() {
+        final long count = storedTileCount.get();
+        return count > 0 ? storeTime.get() / 1.0e6 / count : 0.0;
+    }
+
+    public long getRestoredTileCount() {
+        return restoredTileCount.get();
+    }
+
+    /**
+     * @return The mean time needed to restore a tile (swap-in latency) in milliseconds.
+     */
+    public double getMeanRestoreTime() {
+        final long count = restoredTileCount.get();
+        return count > 0 ? restoreTime.get() / 1.0e6 / count : 0.0;
+    }
+
+    /**
+     * @return The number of stored tiles per codec name, unencoded tiles are counted as {@link #RAW}.
+     */
+    public Map<String, Long> getCodecCounts() {
+        final Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : codecCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d tiles stored (%s), compression ratio %.2f, mean store time %.2f ms, " +
+                             "%d tiles restored, mean restore time %.2f ms",
+                             getStoredTileCount(), getCodecCounts(), getCompressionRatio(), getMeanStoreTime(),
+                             getRestoredTileCount(), getMeanRestoreTime());
+    }
+}
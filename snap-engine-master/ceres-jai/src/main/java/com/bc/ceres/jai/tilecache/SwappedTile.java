@@ -27,12 +27,15 @@ import java.awt.image.DataBufferDouble;
 import java.awt.image.DataBufferFloat;
 import java.awt.image.DataBufferInt;
 import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 
 
 final class SwappedTile {
@@ -42,6 +45,7 @@ final class SwappedTile {
     private final boolean writable;
     private final Point location;
     private final Object tileCacheMetric;
+    private String codecName;
 
     SwappedTile(MemoryTile mt, File cacheDir) {
         this.file = new File(cacheDir, mt.getKeyAsString());
@@ -81,10 +85,21 @@ final class SwappedTile {
     }
 
     public Raster restoreTile() throws IOException {
+        return restoreTile(null);
+    }
+
+    /**
+     * Restores the tile.
+     *
+     * @param compression The compression used to store the tile, may be {@code null} if the tile has been stored unencoded.
+     * @return The restored tile.
+     * @throws IOException If an I/O error occurs or the tile cannot be decoded.
+     */
+    public Raster restoreTile(TileCompression compression) throws IOException {
         final ImageInputStream stream = new FileImageInputStream(file);
         final DataBuffer dataBuffer;
         try {
-            dataBuffer = readTileData(stream, sampleModel);
+            dataBuffer = readTileData(stream, compression);
         } finally {
             stream.close();
         }
@@ -98,95 +113,158 @@ final class SwappedTile {
     }
 
     public void storeTile(Raster tile) throws IOException {
+        storeTile(tile, null);
+    }
+
+    /**
+     * Stores the tile.
+     *
+     * @param tile        The tile.
+     * @param compression The compression used to select a codec for the tile data, may be {@code null}.
+     * @return The number of bytes written.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long storeTile(Raster tile, TileCompression compression) throws IOException {
         final ImageOutputStream stream = new FileImageOutputStream(file);
         try {
-            writeTileData(stream, tile.getDataBuffer());
+            writeTileData(stream, tile.getDataBuffer(), compression);
+            return stream.length();
         } finally {
             stream.close();
         }
     }
 
-    private static DataBuffer readTileData(ImageInputStream stream, SampleModel sampleModel) throws IOException {
-        final int dataType = sampleModel.getDataType();
+    /**
+     * @return The name of the codec used by the last call to {@link #storeTile(Raster, TileCompression)},
+     *         or {@link SwapStatistics#RAW} if the tile has been stored unencoded.
+     */
+    public String getCodecName() {
+        return codecName;
+    }
+
+    private static DataBuffer readTileData(ImageInputStream stream, TileCompression compression) throws IOException {
+        final int dataType = stream.readInt();
+        final int numBanks = stream.readInt();
         final int arrayLength = stream.readInt();
         final int bufferSize = stream.readInt();
-        final int bufferOffset = stream.readInt();
+        final int[] bufferOffsets = new int[numBanks];
+        stream.readFully(bufferOffsets, 0, numBanks);
+        final int codecId = stream.readByte();
+        final int dataLength = stream.readInt();
+        final int elemSize = DataBuffer.getDataTypeSize(dataType) / 8;
+        final int rawLength = numBanks * arrayLength * elemSize;
+        final byte[] raw = new byte[rawLength];
+        if (codecId == 0) {
+            stream.readFully(raw, 0, rawLength);
+        } else {
+            final TileCodec codec = compression != null ? compression.getCodec(codecId) : null;
+            if (codec == null) {
+                throw new IOException("Unknown tile codec: " + codecId);
+            }
+            final byte[] data = new byte[dataLength];
+            stream.readFully(data, 0, dataLength);
+            codec.decode(data, dataLength, elemSize, raw, rawLength);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(raw);
         if (dataType == DataBuffer.TYPE_BYTE) {
-            byte[] data = new byte[arrayLength];
-            stream.readFully(data, 0, arrayLength);
-            return new DataBufferByte(data, bufferSize, bufferOffset);
+            final byte[][] data = new byte[numBanks][arrayLength];
+            for (byte[] bank : data) {
+                buffer.get(bank);
+            }
+            return new DataBufferByte(data, bufferSize, bufferOffsets);
         } else if (dataType == DataBuffer.TYPE_SHORT || dataType == DataBuffer.TYPE_USHORT) {
-            short[] data = new short[arrayLength];
-            stream.readFully(data, 0, arrayLength);
-            return new DataBufferShort(data, bufferSize, bufferOffset);
+            final short[][] data = new short[numBanks][arrayLength];
+            for (short[] bank : data) {
+                buffer.asShortBuffer().get(bank);
+                buffer.position(buffer.position() + 2 * arrayLength);
+            }
+            if (dataType == DataBuffer.TYPE_USHORT) {
+                return new DataBufferUShort(data, bufferSize, bufferOffsets);
+            }
+            return new DataBufferShort(data, bufferSize, bufferOffsets);
         } else if (dataType == DataBuffer.TYPE_INT) {
-            int[] data = new int[arrayLength];
-            stream.readFully(data, 0, arrayLength);
-            return new DataBufferInt(data, bufferSize, bufferOffset);
+            final int[][] data = new int[numBanks][arrayLength];
+            for (int[] bank : data) {
+                buffer.asIntBuffer().get(bank);
+                buffer.position(buffer.position() + 4 * arrayLength);
+            }
+            return new DataBufferInt(data, bufferSize, bufferOffsets);
         } else if (dataType == DataBuffer.TYPE_FLOAT) {
-            float[] data = new float[arrayLength];
-            stream.readFully(data, 0, arrayLength);
-            return new DataBufferFloat(data, bufferSize, bufferOffset);
+            final float[][] data = new float[numBanks][arrayLength];
+            for (float[] bank : data) {
+                buffer.asFloatBuffer().get(bank);
+                buffer.position(buffer.position() + 4 * arrayLength);
+            }
+            return new DataBufferFloat(data, bufferSize, bufferOffsets);
         } else if (dataType == DataBuffer.TYPE_DOUBLE) {
-            double[] data = new double[arrayLength];
-            stream.readFully(data, 0, arrayLength);
-            return new DataBufferDouble(data, bufferSize, bufferOffset);
+            final double[][] data = new double[numBanks][arrayLength];
+            for (double[] bank : data) {
+                buffer.asDoubleBuffer().get(bank);
+                buffer.position(buffer.position() + 8 * arrayLength);
+            }
+            return new DataBufferDouble(data, bufferSize, bufferOffsets);
         } else {
             throw new IllegalStateException();
         }
     }
 
-    private static void writeTileData(ImageOutputStream stream, DataBuffer dataBuffer) throws IOException {
-        final Object data;
+    private void writeTileData(ImageOutputStream stream, DataBuffer dataBuffer, TileCompression compression) throws IOException {
+        final int numBanks = dataBuffer.getNumBanks();
+        final Object[] data = new Object[numBanks];
         try {
-            final Method method = dataBuffer.getClass().getMethod("getData");
-            data = method.invoke(dataBuffer);
+            final Method method = dataBuffer.getClass().getMethod("getData", int.class);
+            for (int bank = 0; bank < numBanks; bank++) {
+                data[bank] = method.invoke(dataBuffer, bank);
+            }
         } catch (Exception e) {
             throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass(), e);
         }
-        if (data instanceof byte[]) {
-            final byte[] array = (byte[]) data;
-            stream.writeInt(array.length);
-            stream.writeInt(dataBuffer.getSize());
-            stream.writeInt(dataBuffer.getOffset());
-            stream.write(array,
-                         dataBuffer.getOffset(),
-                         dataBuffer.getSize());
-        } else if (data instanceof short[]) {
-            final short[] array = (short[]) data;
-            stream.writeInt(array.length);
-            stream.writeInt(dataBuffer.getSize());
-            stream.writeInt(dataBuffer.getOffset());
-            stream.writeShorts(array,
-                               dataBuffer.getOffset(),
-                               dataBuffer.getSize());
-        } else if (data instanceof int[]) {
-            final int[] array = (int[]) data;
-            stream.writeInt(array.length);
-            stream.writeInt(dataBuffer.getSize());
-            stream.writeInt(dataBuffer.getOffset());
-            stream.writeInts(array,
-                             dataBuffer.getOffset(),
-                             dataBuffer.getSize());
-        } else if (data instanceof float[]) {
-            final float[] array = (float[]) data;
-            stream.writeInt(array.length);
-            stream.writeInt(dataBuffer.getSize());
-            stream.writeInt(dataBuffer.getOffset());
-            stream.writeFloats(array,
-                               dataBuffer.getOffset(),
-                               dataBuffer.getSize());
-        } else if (data instanceof double[]) {
-            final double[] array = (double[]) data;
-            stream.writeInt(array.length);
-            stream.writeInt(dataBuffer.getSize());
-            stream.writeInt(dataBuffer.getOffset());
-            stream.writeDoubles(array,
-                                dataBuffer.getOffset(),
-                                dataBuffer.getSize());
-        } else {
-            throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass());
+        final int dataType = dataBuffer.getDataType();
+        final int elemSize = DataBuffer.getDataTypeSize(dataType) / 8;
+        final int arrayLength = Array.getLength(data[0]);
+        final byte[] raw = new byte[numBanks * arrayLength * elemSize];
+        final ByteBuffer buffer = ByteBuffer.wrap(raw);
+        for (Object bank : data) {
+            if (bank instanceof byte[]) {
+                buffer.put((byte[]) bank);
+            } else if (bank instanceof short[]) {
+                buffer.asShortBuffer().put((short[]) bank);
+            } else if (bank instanceof int[]) {
+                buffer.asIntBuffer().put((int[]) bank);
+            } else if (bank instanceof float[]) {
+                buffer.asFloatBuffer().put((float[]) bank);
+            } else if (bank instanceof double[]) {
+                buffer.asDoubleBuffer().put((double[]) bank);
+            } else {
+                throw new IllegalArgumentException("illegal dataBuffer: " + dataBuffer.getClass());
+            }
+            if (!(bank instanceof byte[])) {
+                buffer.position(buffer.position() + arrayLength * elemSize);
+            }
         }
+
+        TileCodec codec = compression != null ? compression.selectCodec(raw, raw.length, dataType, elemSize) : null;
+        byte[] encoded = raw;
+        int encodedLength = raw.length;
+        if (codec != null) {
+            encoded = new byte[raw.length];
+            encodedLength = codec.encode(raw, raw.length, elemSize, encoded);
+            if (encodedLength < 0) {
+                codec = null;
+                encoded = raw;
+                encodedLength = raw.length;
+            }
+        }
+        codecName = codec != null ? codec.getName() : SwapStatistics.RAW;
+
+        stream.writeInt(dataType);
+        stream.writeInt(numBanks);
+        stream.writeInt(arrayLength);
+        stream.writeInt(dataBuffer.getSize());
+        stream.writeInts(dataBuffer.getOffsets(), 0, numBanks);
+        stream.writeByte(codec != null ? codec.getId() : 0);
+        stream.writeInt(encodedLength);
+        stream.write(encoded, 0, encodedLength);
     }
 
 }
\ No newline at end of file
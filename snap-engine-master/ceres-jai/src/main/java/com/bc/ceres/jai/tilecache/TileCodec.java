@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the data of tiles which are swapped to disk.
+ * <p>
+ * The data is given as a byte array containing the samples of a tile in big-endian byte order.
+ * Implementations must be thread-safe.
+ *
+ * @see TileCompression
+ * @since Ceres 0.14
+ */
+public interface TileCodec {
+
+    /**
+     * @return A unique identifier in the range 1 to 127, which is stored with the encoded data.
+     *         The identifier 0 is reserved for unencoded data.
+     */
+    int getId();
+
+    /**
+     * @return The name of the codec.
+     */
+    String getName();
+
+    /**
+     * @param dataType The data type of the tile, one of the {@code DataBuffer.TYPE_<X>} constants.
+     * @return {@code true} if this codec is suitable for tiles of the given data type.
+     */
+    boolean canEncode(int dataType);
+
+    /**
+     * Encodes the given data.
+     *
+     * @param src      The data to be encoded.
+     * @param srcLen   The number of bytes to be encoded.
+     * @param elemSize The size of a data element in bytes.
+     * @param dst      The buffer receiving the encoded data.
+     * @return The number of bytes written into {@code dst}, or {@code -1} if the encoded data does not fit into {@code dst}.
+     */
+    int encode(byte[] src, int srcLen, int elemSize, byte[] dst);
+
+    /**
+     * Decodes the given data.
+     *
+     * @param src      The encoded data.
+     * @param srcLen   The number of encoded bytes.
+     * @param elemSize The size of a data element in bytes.
+     * @param dst      The buffer receiving the decoded data.
+     * @param dstLen   The number of bytes to be decoded.
+     * @throws IOException If the encoded data is corrupt.
+     */
+    void decode(byte[] src, int srcLen, int elemSize, byte[] dst, int dstLen) throws IOException;
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+/**
+ * Selects a {@link TileCodec} for each tile swapped by a {@link DefaultSwapSpace}.
+ * <p>
+ * For each tile, all codecs which can encode the tile's data type are applied to a sample of the tile data
+ * and the one yielding the smallest result is chosen. If no codec is expected to reduce the size sufficiently,
+ * the tile is stored unencoded.
+ *
+ * @since Ceres 0.14
+ */
+public class TileCompression {
+
+    /**
+     * The number of bytes used to select a codec.
+     */
+    public static final int SAMPLE_SIZE = 16 * 1024;
+    /**
+     * The maximum ratio of encoded to raw sample size for which a codec is used.
+     */
+    public static final double MAX_RATIO = 0.9;
+
+    private final TileCodec[] codecs;
+
+    /**
+     * @param codecs The codecs to choose from.
+     */
+    public TileCompression(TileCodec... codecs) {
+        this.codecs = codecs.clone();
+        for (TileCodec codec : codecs) {
+            if (codec.getId() < 1 || codec.getId() > 127) {
+                throw new IllegalArgumentException("Illegal codec ID " + codec.getId() + " of codec " + codec.getName());
+            }
+        }
+    }
+
+    /**
+     * @return A compression which chooses between a {@link LzTileCodec} and {@link ShuffleDeflateTileCodec}s
+     *         with and without XOR-ing.
+     */
+    public static TileCompression createDefault() {
+        return new TileCompression(new LzTileCodec(),
+                                   new ShuffleDeflateTileCodec(false),
+                                   new ShuffleDeflateTileCodec(true));
+    }
+
+    public TileCodec[] getCodecs() {
+        return codecs.clone();
+    }
+
+    /**
+     * @param id The codec identifier.
+     * @return The codec with the given identifier, or {@code null} if there is none.
+     */
+    public TileCodec getCodec(int id) {
+        for (TileCodec codec : codecs) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects the codec for the given tile data.
+     *
+     * @param data     The tile data.
+     * @param len      The number of bytes.
+     * @param dataType The data type of the tile, one of the {@code DataBuffer.TYPE_<X>} constants.
+     * @param elemSize The size of a data element in bytes.
+     * @return The codec, or {@code null} if the data should not be encoded.
+     */
+    public TileCodec selectCodec(byte[] data, int len, int dataType, int elemSize) {
+        final int sampleLen = Math.min(len, SAMPLE_SIZE) / elemSize * elemSize;
+        if (sampleLen == 0) {
+            return null;
+        }
+        // take the sample from the tile center, tile borders are often filled
+        final int sampleOff = (len - sampleLen) / 2 / elemSize * elemSize;
+        final byte[] sample = new byte[sampleLen];
+        System.arraycopy(data, sampleOff, sample, 0, sampleLen);
+        final byte[] encoded = new byte[(int) (sampleLen * MAX_RATIO)];
+        TileCodec bestCodec = null;
+        int bestLen = encoded.length;
+        for (TileCodec codec : codecs) {
+            if (codec.canEncode(dataType)) {
+                final int encodedLen = codec.encode(sample, sampleLen, elemSize, encoded);
+                if (encodedLen >= 0 && encodedLen < bestLen) {
+                    bestCodec = codec;
+                    bestLen = encodedLen;
+                }
+            }
+        }
+        return bestCodec;
+    }
+}
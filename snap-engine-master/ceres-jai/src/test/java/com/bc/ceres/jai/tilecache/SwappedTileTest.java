@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SwappedTileTest {
+
+    private File swapDir;
+
+    @Before
+    public void setUp() throws Exception {
+        swapDir = Files.createTempDirectory("SwappedTileTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = swapDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        swapDir.delete();
+    }
+
+    @Test
+    public void testStoreAndRestoreUncompressed() throws Exception {
+        assertStoreAndRestore(DataBuffer.TYPE_FLOAT, 2, null, SwapStatistics.RAW);
+        assertStoreAndRestore(DataBuffer.TYPE_USHORT, 1, null, SwapStatistics.RAW);
+    }
+
+    @Test
+    public void testStoreAndRestoreCompressed() throws Exception {
+        TileCompression compression = TileCompression.createDefault();
+        assertStoreAndRestore(DataBuffer.TYPE_BYTE, 1, compression, "lz");
+        assertStoreAndRestore(DataBuffer.TYPE_USHORT, 1, compression, null);
+        assertStoreAndRestore(DataBuffer.TYPE_INT, 3, compression, null);
+        assertStoreAndRestore(DataBuffer.TYPE_FLOAT, 2, compression, null);
+        assertStoreAndRestore(DataBuffer.TYPE_DOUBLE, 1, compression, null);
+    }
+
+    private void assertStoreAndRestore(int dataType, int numBands, TileCompression compression, String expectedCodec) throws Exception {
+        WritableRaster tile = Raster.createWritableRaster(new BandedSampleModel(dataType, 64, 32, numBands), new Point(128, 64));
+        for (int b = 0; b < numBands; b++) {
+            for (int y = 64; y < 96; y++) {
+                for (int x = 128; x < 192; x++) {
+                    // fill value in the upper left part, smooth field otherwise
+                    tile.setSample(x, y, b, x < 150 && y < 80 ? 255 : (x + y + b) / 3);
+                }
+            }
+        }
+        RenderedImage owner = new BufferedImage(256, 128, BufferedImage.TYPE_BYTE_GRAY);
+        MemoryTile memoryTile = new MemoryTile(owner, 2, 2, tile, null);
+        SwappedTile swappedTile = new SwappedTile(memoryTile, swapDir);
+
+        long storedSize = swappedTile.storeTile(tile, compression);
+        assertEquals(swappedTile.getFile().length(), storedSize);
+        if (expectedCodec != null) {
+            assertEquals(expectedCodec, swappedTile.getCodecName());
+        }
+        if (compression != null) {
+            assertFalse(SwapStatistics.RAW.equals(swappedTile.getCodecName()));
+            assertTrue(storedSize < memoryTile.getTileSize() / 2);
+        }
+
+        Raster restored = swappedTile.restoreTile(compression);
+        assertTrue(restored instanceof WritableRaster);
+        assertEquals(tile.getBounds(), restored.getBounds());
+        assertEquals(dataType, restored.getDataBuffer().getDataType());
+        for (int b = 0; b < numBands; b++) {
+            for (int y = 64; y < 96; y++) {
+                for (int x = 128; x < 192; x++) {
+                    assertEquals(tile.getSampleDouble(x, y, b), restored.getSampleDouble(x, y, b), 0.0);
+                }
+            }
+        }
+        assertTrue(swappedTile.delete());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package com.bc.ceres.jai.tilecache;
+
+import org.junit.Test;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TileCodecTest {
+
+    private static final int N = 256 * 256;
+
+    @Test
+    public void testLzCodec() throws Exception {
+        TileCodec codec = new LzTileCodec();
+        assertRoundTrip(codec, createFillData(), 1, 0.05);
+        assertRoundTrip(codec, createMaskData(), 1, 0.2);
+        assertRoundTrip(codec, createRandomData(), 1, -1);
+        assertRoundTrip(codec, new byte[0], 1, -1);
+        assertRoundTrip(codec, new byte[]{1, 2, 3}, 1, -1);
+        assertRoundTrip(codec, new byte[300], 1, 0.1);
+    }
+
+    @Test
+    public void testShuffleDeflateCodec() throws Exception {
+        TileCodec codec = new ShuffleDeflateTileCodec(false);
+        assertTrue(codec.canEncode(DataBuffer.TYPE_SHORT));
+        assertFalse(codec.canEncode(DataBuffer.TYPE_BYTE));
+        assertRoundTrip(codec, createFillData(), 4, 0.05);
+        assertRoundTrip(codec, createSmoothFloatData(), 4, 0.8);
+        assertRoundTrip(codec, createRandomData(), 4, -1);
+        assertRoundTrip(codec, new byte[]{1, 2, 3, 4, 5, 6}, 4, -1);
+    }
+
+    @Test
+    public void testXorShuffleDeflateCodec() throws Exception {
+        TileCodec codec = new ShuffleDeflateTileCodec(true);
+        assertTrue(codec.canEncode(DataBuffer.TYPE_FLOAT));
+        assertFalse(codec.canEncode(DataBuffer.TYPE_INT));
+        assertRoundTrip(codec, createFillData(), 4, 0.05);
+        assertRoundTrip(codec, createSmoothFloatData(), 4, 0.8);
+        assertRoundTrip(codec, createRandomData(), 8, -1);
+    }
+
+    @Test
+    public void testCorruptDataIsDetected() throws Exception {
+        for (TileCodec codec : TileCompression.createDefault().getCodecs()) {
+            byte[] data = createSmoothFloatData();
+            byte[] encoded = new byte[data.length];
+            int len = codec.encode(data, data.length, 4, encoded);
+            try {
+                codec.decode(encoded, len / 2, 4, new byte[data.length], data.length);
+                fail(codec.getName() + ": IOException expected");
+            } catch (IOException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void testSelectCodec() throws Exception {
+        TileCompression compression = TileCompression.createDefault();
+        assertEquals("lz", compression.selectCodec(createMaskData(), N, DataBuffer.TYPE_BYTE, 1).getName());
+        assertNull(compression.selectCodec(createRandomData(), N * 4, DataBuffer.TYPE_FLOAT, 4));
+        assertNotNull(compression.selectCodec(createSmoothFloatData(), N * 4, DataBuffer.TYPE_FLOAT, 4));
+        assertNull(compression.getCodec(0));
+        assertEquals(ShuffleDeflateTileCodec.ID_XOR_SHUFFLE, compression.getCodec(ShuffleDeflateTileCodec.ID_XOR_SHUFFLE).getId());
+    }
+
+    private static void assertRoundTrip(TileCodec codec, byte[] data, int elemSize, double expectedMaxRatio) throws IOException {
+        byte[] encoded = new byte[data.length];
+        int len = codec.encode(data, data.length, elemSize, encoded);
+        if (expectedMaxRatio < 0) {
+            if (len < 0) {
+                return;
+            }
+        } else {
+            assertTrue(codec.getName() + ": ratio " + (double) len / data.length,
+                       len >= 0 && len <= expectedMaxRatio * data.length);
+        }
+        byte[] decoded = new byte[data.length];
+        codec.decode(encoded, len, elemSize, decoded, data.length);
+        assertTrue(codec.getName(), Arrays.equals(data, decoded));
+    }
+
+    private static byte[] createFillData() {
+        ByteBuffer buffer = ByteBuffer.allocate(N * 4);
+        for (int i = 0; i < N; i++) {
+            buffer.putFloat(i % 256 < 200 ? -999.0f : 0.5f);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] createMaskData() {
+        byte[] data = new byte[N];
+        for (int i = 0; i < N; i++) {
+            int x = i % 256;
+            int y = i / 256;
+            data[i] = (byte) ((x - 128) * (x - 128) + (y - 128) * (y - 128) < 80 * 80 ? 1 : x % 32 == 0 ? 4 : 0);
+        }
+        return data;
+    }
+
+    private static byte[] createSmoothFloatData() {
+        ByteBuffer buffer = ByteBuffer.allocate(N * 4);
+        for (int i = 0; i < N; i++) {
+            int x = i % 256;
+            int y = i / 256;
+            buffer.putFloat((float) (280.0 + 0.05 * x + 0.02 * y));
+        }
+        return buffer.array();
+    }
+
+    private static byte[] createRandomData() {
+        byte[] data = new byte[N * 4];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
@@ -7,6 +7,7 @@ import com.bc.ceres.glevel.MultiLevelImage;
 import com.bc.ceres.glevel.MultiLevelModel;
 import com.bc.ceres.glevel.support.AbstractMultiLevelSource;
 import com.bc.ceres.glevel.support.DefaultMultiLevelImage;
+import com.bc.ceres.glevel.support.DefaultMultiLevelModel;
 import com.sun.media.imageio.plugins.tiff.BaselineTIFFTagSet;
 import com.sun.media.imageio.plugins.tiff.TIFFTag;
 import it.geosolutions.imageio.plugins.tiff.GeoTIFFTagSet;
@@ -100,6 +101,7 @@ class BigGeoTiffProductReader extends AbstractProductReader {
     private TIFFImageReader imageReader;
     private Map<Band, Integer> bandMap;
     private boolean isGlobalShifted180;
+    private Map<Dimension, Integer> overviewIndexes;
 
     protected BigGeoTiffProductReader(ProductReaderPlugIn readerPlugIn) {
         super(readerPlugIn);
@@ -280,6 +282,7 @@ class BigGeoTiffProductReader extends AbstractProductReader {
         final int height = imageReader.getHeight(FIRST_IMAGE);
         product = new Product(productName, productType, width, height, this);
         setPreferredTiling(product);
+        setNumResolutions(product);
         addBandsToProduct(tiffFileInfo, product);
         return product;
     }
@@ -683,6 +686,7 @@ class BigGeoTiffProductReader extends AbstractProductReader {
             final Product product = DimapProductHelpers.createProduct(document);
             removeGeoCodingAndTiePointGrids(product);
             setPreferredTiling(product);
+            setNumResolutions(product);
             initBandsMap(product);
             return product;
         } catch (ParserConfigurationException | SAXException ignore) {
@@ -742,6 +746,19 @@ class BigGeoTiffProductReader extends AbstractProductReader {
         product.setPreferredTileSize(dimension);
     }
 
+    /*
+     * If the file contains overviews, the image pyramid gets a level for each of them, so that they are read
+     * instead of subsampling the full resolution image.
+     */
+    private void setNumResolutions(Product product) throws IOException {
+        final int numOverviews = getOverviewIndexes().size();
+        if (numOverviews > 0) {
+            final int defaultLevelCount = DefaultMultiLevelModel.getLevelCount(product.getSceneRasterWidth(),
+                                                                               product.getSceneRasterHeight());
+            product.setNumResolutionsMax(Math.max(defaultLevelCount, numOverviews + 1));
+        }
+    }
+
     private MultiLevelImage getMultiLevelImageSourceImage(final Band band, final int bandIndex) throws IOException {
         MultiLevelModel model = ImageManager.getMultiLevelModel(band);
         Assert.state(model.getLevelCount() == 1 || model.getScale(1) == 2.0);
@@ -754,7 +771,16 @@ class BigGeoTiffProductReader extends AbstractProductReader {
                 readParam.setDestinationBands(new int[]{bandIndex});
 //double scale = this.getModel().getScale(level);
 //System.out.println("level = " + level + ", scale = " + scale);
+                int imageIndex = FIRST_IMAGE;
                 if (level > 0) {
+                    final Rectangle levelBounds = getModel().getModelToImageTransform(level).createTransformedShape(getModel().getModelBounds()).getBounds();
+                    try {
+                        imageIndex = getOverviewImageIndex(levelBounds.width, levelBounds.height);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                if (level > 0 && imageIndex == FIRST_IMAGE) {
                     int sourceSubsampling = 1 << level;
                     readParam.setSourceSubsampling(sourceSubsampling, sourceSubsampling, 0, 0);
                 }
@@ -767,7 +793,7 @@ class BigGeoTiffProductReader extends AbstractProductReader {
 //readParam.setDestinationType(imageType);
                 TIFFRenderedImage tiffImage;
                 try {
-                    tiffImage = (TIFFRenderedImage) imageReader.readAsRenderedImage(FIRST_IMAGE, readParam);
+                    tiffImage = (TIFFRenderedImage) imageReader.readAsRenderedImage(imageIndex, readParam);
                 } catch (IOException e) {
                     e.printStackTrace();
                     throw new RuntimeException(e);
@@ -825,6 +851,30 @@ class BigGeoTiffProductReader extends AbstractProductReader {
         });
     }
 
+    /*
+     * Returns the index of the reduced resolution image (overview) with the given size, or FIRST_IMAGE if the file
+     * contains no such image.
+     */
+    private synchronized int getOverviewImageIndex(int width, int height) throws IOException {
+        final Integer imageIndex = getOverviewIndexes().get(new Dimension(width, height));
+        return imageIndex != null ? imageIndex : FIRST_IMAGE;
+    }
+
+    private synchronized Map<Dimension, Integer> getOverviewIndexes() throws IOException {
+        if (overviewIndexes == null) {
+            overviewIndexes = new HashMap<>();
+            final int numImages = imageReader.getNumImages(true);
+            for (int i = FIRST_IMAGE + 1; i < numImages; i++) {
+                final TIFFImageMetadata metadata = (TIFFImageMetadata) imageReader.getImageMetadata(i);
+                final TIFFField subfileType = metadata.getTIFFField(BaselineTIFFTagSet.TAG_NEW_SUBFILE_TYPE);
+                if (subfileType != null && (subfileType.getAsInt(0) & BaselineTIFFTagSet.NEW_SUBFILE_TYPE_REDUCED_RESOLUTION) != 0) {
+                    overviewIndexes.putIfAbsent(new Dimension(imageReader.getWidth(i), imageReader.getHeight(i)), i);
+                }
+            }
+        }
+        return overviewIndexes;
+    }
+
     static boolean isBadTiling(TIFFImageReader imageReader) throws IOException {
         final int imageHeight = imageReader.getHeight(FIRST_IMAGE);
         final int tileHeight = imageReader.getTileHeight(FIRST_IMAGE);
@@ -2,14 +2,12 @@ package org.esa.snap.dataio.bigtiff;
 
 import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
-import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
 import it.geosolutions.imageio.plugins.tiff.TIFFField;
 import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
 import it.geosolutions.imageio.plugins.tiff.TIFFTag;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFIFD;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageMetadata;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriter;
-import it.geosolutions.imageioimpl.plugins.tiff.TIFFLZWCompressor;
 import org.esa.snap.core.dataio.AbstractProductWriter;
 import org.esa.snap.core.dataio.ProductWriterPlugIn;
 import org.esa.snap.core.dataio.dimap.DimapHeaderWriter;
@@ -26,6 +24,8 @@ import org.esa.snap.core.util.geotiff.GeoTIFF;
 import org.esa.snap.core.util.geotiff.GeoTIFFMetadata;
 import org.esa.snap.core.util.io.FileUtils;
 import org.esa.snap.dataio.bigtiff.internal.TiffIFD;
+import org.esa.snap.dataio.bigtiff.internal.TiffTileEncoder;
+import org.esa.snap.dataio.bigtiff.internal.TiledBigTiffWriter;
 import org.esa.snap.runtime.Config;
 
 import javax.imageio.IIOImage;
@@ -47,11 +47,14 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 
 class BigGeoTiffProductWriter extends AbstractProductWriter {
 
-    private static String PARAM_COMPRESSION_TYPE = "snap.dataio.bigtiff.compression.type";   // value must be "LZW"
+    private static String PARAM_COMPRESSION_TYPE = "snap.dataio.bigtiff.compression.type";   // value must be "LZW" or "DEFLATE"
+
+    private static String PARAM_COMPRESSION_PREDICTOR = "snap.dataio.bigtiff.compression.predictor";   // "NONE", "HORIZONTAL" or "FLOATING_POINT", default "NONE"
 
     private static String PARAM_COMPRESSION_QUALITY = "snap.dataio.bigtiff.compression.quality";   // value float 0 ... 1, default 0.75
     private static float PARAM_COMPRESSION_QUALITY_DEFAULT = 0.75f;
@@ -61,11 +64,18 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
 
     private static String PARAM_FORCE_BIGTIFF = "snap.dataio.bigtiff.force.bigtiff";   // boolean
 
+    private static String PARAM_OVERVIEWS = "snap.dataio.bigtiff.overviews";   // boolean, default true, only for compressed images
+
+    private static String PARAM_PARALLELISM = "snap.dataio.bigtiff.parallelism";   // integer value, default is the number of processors
+
     private File outputFile;
     private TIFFImageWriter imageWriter;
     private boolean isWritten;
     private FileImageOutputStream outputStream;
     private TIFFImageWriteParam writeParam;
+    private String compressionType;
+    private int tileWidth;
+    private int tileHeight;
 
     public BigGeoTiffProductWriter(ProductWriterPlugIn writerPlugIn) {
         super(writerPlugIn);
@@ -76,20 +86,14 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
     private void createWriterParams() {
         writeParam = new TIFFImageWriteParam(Locale.ENGLISH);
 
-        final String compressionType = Config.instance().preferences().get(PARAM_COMPRESSION_TYPE, null);
+        compressionType = Config.instance().preferences().get(PARAM_COMPRESSION_TYPE, null);
         if (StringUtils.isNotNullAndNotEmpty(compressionType)) {
-            if (compressionType.equals("LZW")) {
-                writeParam.setCompressionMode(TIFFImageWriteParam.MODE_EXPLICIT);
-
-                final TIFFLZWCompressor compressor = new TIFFLZWCompressor(BaselineTIFFTagSet.PREDICTOR_NONE);
-                writeParam.setTIFFCompressor(compressor);
-                writeParam.setCompressionType(compressor.getCompressionType());
-
-                final float compressionQuality = Config.instance().preferences().getFloat(PARAM_COMPRESSION_QUALITY, PARAM_COMPRESSION_QUALITY_DEFAULT);
-                writeParam.setCompressionQuality(compressionQuality);
-            } else {
+            // compressed images are written by the TiledBigTiffWriter, not by the TIFFImageWriter
+            if (!compressionType.equals("LZW") && !compressionType.equals("DEFLATE")) {
                 throw new IllegalArgumentException("Compression type '" + compressionType + "' is not supported");
             }
+        } else {
+            compressionType = null;
         }
 
         final String tilingWidthProperty = Config.instance().preferences().get(PARAM_TILING_WIDTH, null);
@@ -100,6 +104,8 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
 
             writeParam.setTilingMode(TIFFImageWriteParam.MODE_EXPLICIT);
             writeParam.setTiling(tileWidth, tileHeight, 0, 0);
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
         }
 
         final boolean forceBigTiff = Config.instance().preferences().getBoolean(PARAM_FORCE_BIGTIFF, false);
@@ -123,6 +129,10 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
         updateProductName();
         updateTilingParameter();
 
+        if (compressionType != null) {
+            return;
+        }
+
         imageWriter = getTiffImageWriter();
 
         outputStream = new FileImageOutputStream(outputFile);
@@ -138,6 +148,8 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
 
             writeParam.setTilingMode(TIFFImageWriteParam.MODE_EXPLICIT);
             writeParam.setTiling(tileWidth, tileHeight, 0, 0);
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
         }
     }
 
@@ -160,6 +172,16 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
 
         final Product sourceProduct = sourceBand.getProduct();
 
+        if (compressionType != null) {
+            if (writeCompressedTiles(sourceProduct, pm)) {
+                isWritten = true;
+            } else {
+                // the incomplete file has been deleted, the caller shall not consider the product as written
+                pm.setCanceled(true);
+            }
+            return;
+        }
+
         final int targetDataType = getTargetDataType(sourceProduct);
         final ArrayList<Band> bandsToExport = getBandsToExport(sourceProduct);
 
@@ -197,6 +219,63 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
         isWritten = true;
     }
 
+    /*
+     * Writes a tiled BigTIFF with overviews. The tiles are computed, predicted and compressed in parallel.
+     * Returns false if writing has been cancelled.
+     */
+    private boolean writeCompressedTiles(Product sourceProduct, ProgressMonitor pm) throws IOException {
+        final ArrayList<Band> bandsToExport = getBandsToExport(sourceProduct);
+        final int dataType = TiffIFD.getMaxElemSizeBandDataType(sourceProduct.getBands());
+        final int targetDataType = ImageManager.getDataBufferType(dataType);
+        final String predictorType = Config.instance().preferences().get(PARAM_COMPRESSION_PREDICTOR, null);
+        final float compressionQuality = Config.instance().preferences().getFloat(PARAM_COMPRESSION_QUALITY,
+                                                                                  PARAM_COMPRESSION_QUALITY_DEFAULT);
+        final TiffTileEncoder encoder = new TiffTileEncoder(compressionType, predictorType, dataType,
+                                                            Math.round(compressionQuality * 9));
+        // TIFF requires tile sizes which are multiples of 16
+        final int alignedTileWidth = Math.max(16, (tileWidth + 15) / 16 * 16);
+        final int alignedTileHeight = Math.max(16, (tileHeight + 15) / 16 * 16);
+
+        final TiffIFD tiffIFD = TiffIFD.createTiled(sourceProduct, alignedTileWidth, alignedTileHeight,
+                                                    encoder.getCompression(), encoder.getPredictor());
+        final List<TiffIFD> ifds = new ArrayList<>();
+        final List<RenderedImage[]> levelImages = new ArrayList<>();
+        ifds.add(tiffIFD);
+        levelImages.add(getLevelImages(bandsToExport, 0, targetDataType));
+
+        if (Config.instance().preferences().getBoolean(PARAM_OVERVIEWS, true)) {
+            final int levelCount = bandsToExport.get(0).getSourceImage().getModel().getLevelCount();
+            RenderedImage image = levelImages.get(0)[0];
+            for (int level = 1; level < levelCount; level++) {
+                if (image.getWidth() <= alignedTileWidth && image.getHeight() <= alignedTileHeight) {
+                    break;
+                }
+                final RenderedImage[] images = getLevelImages(bandsToExport, level, targetDataType);
+                image = images[0];
+                ifds.add(tiffIFD.createOverview(image.getWidth(), image.getHeight()));
+                levelImages.add(images);
+            }
+        }
+
+        final int parallelism = Config.instance().preferences().getInt(PARAM_PARALLELISM,
+                                                                       Runtime.getRuntime().availableProcessors());
+        final TiledBigTiffWriter tiledWriter = new TiledBigTiffWriter(outputFile,
+                                                                      ifds.toArray(new TiffIFD[ifds.size()]),
+                                                                      levelImages.toArray(new RenderedImage[ifds.size()][]),
+                                                                      encoder, alignedTileWidth, alignedTileHeight,
+                                                                      parallelism);
+        return tiledWriter.write(pm);
+    }
+
+    private RenderedImage[] getLevelImages(List<Band> bands, int level, int targetDataType) {
+        final RenderedImage[] images = new RenderedImage[bands.size()];
+        for (int i = 0; i < images.length; i++) {
+            final RenderedImage levelImage = bands.get(i).getSourceImage().getImage(level);
+            images[i] = getImageWithTargetDataType(targetDataType, levelImage);
+        }
+        return images;
+    }
+
     private ArrayList<Band> getBandsToExport(Product sourceProduct) {
         final int nodeCount = sourceProduct.getNumBands();
         final ArrayList<Band> bandsToWrite = new ArrayList<>();
@@ -233,7 +312,10 @@ class BigGeoTiffProductWriter extends AbstractProductWriter {
     }
 
     private RenderedImage getImageWithTargetDataType(int targetDataType, Band subsetBand) {
-        RenderedImage sourceImage = subsetBand.getSourceImage();
+        return getImageWithTargetDataType(targetDataType, subsetBand.getSourceImage());
+    }
+
+    private static RenderedImage getImageWithTargetDataType(int targetDataType, RenderedImage sourceImage) {
         final int actualTargetBandDataType = sourceImage.getSampleModel().getDataType();
         if (actualTargetBandDataType != targetDataType) {
             sourceImage = FormatDescriptor.create(sourceImage, targetDataType, null);
@@ -30,6 +30,7 @@ import java.io.IOException;
 public class TiffDirectoryEntry {
 
     public static final short BYTES_PER_ENTRY = 12;
+    public static final short BYTES_PER_BIG_TIFF_ENTRY = 20;
     private TiffShort tag;
     private TiffShort type;
     private TiffUInt count;
@@ -41,7 +42,11 @@ public class TiffDirectoryEntry {
     }
 
     public TiffDirectoryEntry(final TiffShort tiffTag, final TiffValue[] values) {
-        type = TiffType.getType(values);
+        this(tiffTag, TiffType.getType(values), values);
+    }
+
+    TiffDirectoryEntry(final TiffShort tiffTag, final TiffShort type, final TiffValue[] values) {
+        this.type = type;
         tag = tiffTag;
         count = getCount(values);
         this.values = values;
@@ -79,6 +84,30 @@ public class TiffDirectoryEntry {
         }
     }
 
+    /**
+     * Writes this entry in the BigTIFF layout, which uses 8-byte counts and offsets.
+     */
+    public void writeBigTiff(final ImageOutputStream ios) throws IOException {
+        if (mustBigTiffValuesBeReferenced() && valuesOffset == null) {
+            throw new IllegalStateException("no value offset given");
+        }
+
+        tag.write(ios);
+        type.write(ios);
+        ios.writeLong(count.getValue());
+
+        if (mustBigTiffValuesBeReferenced()) {
+            ios.writeLong(valuesOffset.getValue());
+            ios.seek(valuesOffset.getValue());
+            writeValues(ios);
+        } else {
+            writeValues(ios);
+            for (long i = getValuesSizeInBytes(); i < 8; i++) {
+                ios.writeByte(0);
+            }
+        }
+    }
+
     private void writeValuesInsideEnty(final ImageOutputStream ios) throws IOException {
         writeValues(ios);
         fillEntry(ios);
@@ -111,6 +140,10 @@ public class TiffDirectoryEntry {
         return getValuesSizeInBytes() > 4;
     }
 
+    public boolean mustBigTiffValuesBeReferenced() {
+        return getValuesSizeInBytes() > 8;
+    }
+
     public long getValuesSizeInBytes() {
         int size = 0;
         for (TiffValue _value : values) {
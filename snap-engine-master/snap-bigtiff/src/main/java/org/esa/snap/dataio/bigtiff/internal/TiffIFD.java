@@ -52,6 +52,12 @@ public class TiffIFD {
     private static final int TIFF_COLORMAP_SIZE = 256;
     private static final int BYTES_FOR_NEXT_IFD_OFFSET = 4;
     private static final int BYTES_FOR_NUMBER_OF_ENTRIES = 2;
+    private static final int BYTES_FOR_BIG_TIFF_OFFSET = 8;
+    private static final TiffShort[] OVERVIEW_TAGS = {
+            TiffTag.BITS_PER_SAMPLE, TiffTag.COMPRESSION, TiffTag.PHOTOMETRIC_INTERPRETATION,
+            TiffTag.SAMPLES_PER_PIXEL, TiffTag.PLANAR_CONFIGURATION, TiffTag.PREDICTOR, TiffTag.COLOR_MAP,
+            TiffTag.TILE_WIDTH, TiffTag.TILE_LENGTH, TiffTag.SAMPLE_FORMAT
+    };
 
     private final TiffDirectoryEntrySet entrySet;
     private int maxElemSizeBandDataType;
@@ -61,6 +67,167 @@ public class TiffIFD {
         initEntrys(product);
     }
 
+    private TiffIFD(final TiffIFD fullResolutionIfd, final int width, final int height) {
+        entrySet = new TiffDirectoryEntrySet();
+        maxElemSizeBandDataType = fullResolutionIfd.maxElemSizeBandDataType;
+        for (TiffShort tag : OVERVIEW_TAGS) {
+            final TiffDirectoryEntry entry = fullResolutionIfd.getEntry(tag);
+            if (entry != null) {
+                setEntry(entry);
+            }
+        }
+        setEntry(new TiffDirectoryEntry(TiffTag.NEW_SUBFILE_TYPE, new TiffUInt(1)));
+        initTileLayoutEntrys(width, height);
+    }
+
+    /**
+     * Creates the IFD of a tiled and compressed BigTIFF image. The tiles of each band are stored
+     * separately. The tile offsets and byte counts must be set by {@link #setTiles(long[], long[])}
+     * before the IFD is written with {@link #writeBigTiff(ImageOutputStream, long, long)}.
+     *
+     * @param product     the product to be written
+     * @param tileWidth   the tile width, a multiple of 16
+     * @param tileHeight  the tile height, a multiple of 16
+     * @param compression the TIFF compression code
+     * @param predictor   the TIFF predictor code
+     * @return the IFD
+     */
+    public static TiffIFD createTiled(final Product product, final int tileWidth, final int tileHeight,
+                                      final int compression, final int predictor) {
+        final TiffIFD ifd = new TiffIFD(product);
+        ifd.entrySet.remove(TiffTag.STRIP_OFFSETS);
+        ifd.entrySet.remove(TiffTag.ROWS_PER_STRIP);
+        ifd.entrySet.remove(TiffTag.STRIP_BYTE_COUNTS);
+        ifd.setEntry(new TiffDirectoryEntry(TiffTag.COMPRESSION, new TiffShort(compression)));
+        if (predictor != TiffCode.PREDICTOR_NONE) {
+            ifd.setEntry(new TiffDirectoryEntry(TiffTag.PREDICTOR, new TiffShort(predictor)));
+        }
+        ifd.setEntry(new TiffDirectoryEntry(TiffTag.TILE_WIDTH, new TiffUInt(tileWidth)));
+        ifd.setEntry(new TiffDirectoryEntry(TiffTag.TILE_LENGTH, new TiffUInt(tileHeight)));
+        ifd.initTileLayoutEntrys(product.getSceneRasterWidth(), product.getSceneRasterHeight());
+        return ifd;
+    }
+
+    /**
+     * Creates the IFD of a reduced resolution version (an overview) of the image described by this tiled IFD.
+     *
+     * @param width  the width of the overview
+     * @param height the height of the overview
+     * @return the IFD of the overview
+     */
+    public TiffIFD createOverview(final int width, final int height) {
+        return new TiffIFD(this, width, height);
+    }
+
+    /**
+     * @return the number of tiles per band of a tiled IFD
+     */
+    public int getNumTiles() {
+        return getNumTilesX() * getNumTilesY();
+    }
+
+    public int getNumTilesX() {
+        return (int) ((getWidth() + getTileWidth() - 1) / getTileWidth());
+    }
+
+    public int getNumTilesY() {
+        return (int) ((getHeight() + getTileHeight() - 1) / getTileHeight());
+    }
+
+    /**
+     * Sets the offsets and byte counts of the tiles of a tiled IFD, band after band.
+     *
+     * @param offsets    the file offsets of the tiles
+     * @param byteCounts the byte counts of the tiles
+     */
+    public void setTiles(final long[] offsets, final long[] byteCounts) {
+        final int numTiles = getNumTiles() * getNumSamples();
+        Guardian.assertEquals("offsets.length", offsets.length, numTiles);
+        Guardian.assertEquals("byteCounts.length", byteCounts.length, numTiles);
+        setEntry(new TiffDirectoryEntry(TiffTag.TILE_OFFSETS, TiffType.LONG_8, toTiffLongs(offsets)));
+        setEntry(new TiffDirectoryEntry(TiffTag.TILE_BYTE_COUNTS, TiffType.LONG_8, toTiffLongs(byteCounts)));
+    }
+
+    /**
+     * @return the number of bytes required by this IFD and its referenced values in the BigTIFF layout
+     */
+    public long getRequiredBigTiffSize() {
+        final TiffDirectoryEntry[] entries = entrySet.getEntries();
+        long size = computeBigTiffStartOffsetForValues(entries.length, 0);
+        for (final TiffDirectoryEntry entry : entries) {
+            if (entry.mustBigTiffValuesBeReferenced()) {
+                size += toWordBoundary(entry.getValuesSizeInBytes());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes this IFD in the BigTIFF layout. The referenced values are written directly behind the IFD.
+     *
+     * @param ios           the stream to write to
+     * @param ifdOffset     the offset of this IFD
+     * @param nextIfdOffset the offset of the next IFD, or 0 if this is the last IFD
+     */
+    public void writeBigTiff(final ImageOutputStream ios, final long ifdOffset, final long nextIfdOffset) throws
+            IOException {
+        Guardian.assertGreaterThan("ifdOffset", ifdOffset, -1);
+        final TiffDirectoryEntry[] entries = entrySet.getEntries();
+        long valuesOffset = computeBigTiffStartOffsetForValues(entries.length, ifdOffset);
+        for (final TiffDirectoryEntry entry : entries) {
+            if (entry.mustBigTiffValuesBeReferenced()) {
+                entry.setValuesOffset(valuesOffset);
+                valuesOffset += toWordBoundary(entry.getValuesSizeInBytes());
+            }
+        }
+        ios.seek(ifdOffset);
+        ios.writeLong(entries.length);
+        long entryPosition = ios.getStreamPosition();
+        for (TiffDirectoryEntry entry : entries) {
+            ios.seek(entryPosition);
+            entry.writeBigTiff(ios);
+            entryPosition += TiffDirectoryEntry.BYTES_PER_BIG_TIFF_ENTRY;
+        }
+        ios.seek(entryPosition);
+        ios.writeLong(nextIfdOffset);
+    }
+
+    private void initTileLayoutEntrys(final int width, final int height) {
+        setEntry(new TiffDirectoryEntry(TiffTag.IMAGE_WIDTH, new TiffUInt(width)));
+        setEntry(new TiffDirectoryEntry(TiffTag.IMAGE_LENGTH, new TiffUInt(height)));
+        final long[] placeholders = new long[getNumTiles() * getNumSamples()];
+        setTiles(placeholders, placeholders);
+    }
+
+    private static long computeBigTiffStartOffsetForValues(final int numEntries, final long ifdOffset) {
+        return ifdOffset + BYTES_FOR_BIG_TIFF_OFFSET + numEntries * TiffDirectoryEntry.BYTES_PER_BIG_TIFF_ENTRY +
+               BYTES_FOR_BIG_TIFF_OFFSET;
+    }
+
+    private static long toWordBoundary(final long size) {
+        return (size + 1) & ~1L;
+    }
+
+    private static TiffLong[] toTiffLongs(final long[] values) {
+        final TiffLong[] tiffLongs = new TiffLong[values.length];
+        for (int i = 0; i < values.length; i++) {
+            tiffLongs[i] = new TiffLong(values[i]);
+        }
+        return tiffLongs;
+    }
+
+    private int getNumSamples() {
+        return ((TiffShort) getEntry(TiffTag.SAMPLES_PER_PIXEL).getValues()[0]).getValue();
+    }
+
+    private long getTileWidth() {
+        return ((TiffUInt) getEntry(TiffTag.TILE_WIDTH).getValues()[0]).getValue();
+    }
+
+    private long getTileHeight() {
+        return ((TiffUInt) getEntry(TiffTag.TILE_LENGTH).getValues()[0]).getValue();
+    }
+
     public void write(final ImageOutputStream ios, final long ifdOffset, final long nextIfdOffset) throws IOException {
         Guardian.assertGreaterThan("ifdOffset", ifdOffset, -1);
         computeOffsets(ifdOffset);
@@ -327,7 +494,7 @@ public class TiffIFD {
         return true;
     }
 
-    static int getMaxElemSizeBandDataType(final Band[] bands) {
+    public static int getMaxElemSizeBandDataType(final Band[] bands) {
         int maxSignedIntType = -1;
         int maxUnsignedIntType = -1;
         int maxFloatType = -1;
@@ -435,11 +602,18 @@ public class TiffIFD {
     }
 
     private long getHeight() {
-        return ((TiffLong) getEntry(TiffTag.IMAGE_LENGTH).getValues()[0]).getValue();
+        return getLongValue(getEntry(TiffTag.IMAGE_LENGTH).getValues()[0]);
     }
 
     private long getWidth() {
-        return ((TiffLong) getEntry(TiffTag.IMAGE_WIDTH).getValues()[0]).getValue();
+        return getLongValue(getEntry(TiffTag.IMAGE_WIDTH).getValues()[0]);
+    }
+
+    private static long getLongValue(TiffValue value) {
+        if (value instanceof TiffUInt) {
+            return ((TiffUInt) value).getValue();
+        }
+        return ((TiffLong) value).getValue();
     }
 
     // @todo 1 tb/tb copied from utils class ...
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.bigtiff.internal;
+
+import java.util.Arrays;
+
+/**
+ * An LZW compressor producing the code stream of the TIFF LZW compression scheme, including the
+ * early change of the code width as done by libtiff.
+ *
+ * @since SNAP 2.0
+ */
+final class TiffLzwCompressor {
+
+    private static final int CLEAR_CODE = 256;
+    private static final int EOI_CODE = 257;
+    private static final int FIRST_CODE = 258;
+    private static final int LAST_CODE = 4094;
+    private static final int MIN_CODE_WIDTH = 9;
+    private static final int HASH_BITS = 13;
+    private static final int HASH_MASK = (1 << HASH_BITS) - 1;
+
+    // the keys are (prefix code << 8 | byte) + 1, 0 marks an empty slot
+    private final int[] hashKeys;
+    private final int[] hashCodes;
+    private byte[] out;
+    private int outLength;
+    private long bitBuffer;
+    private int bitCount;
+    private int codeWidth;
+    private int nextCode;
+
+    private TiffLzwCompressor(int expectedLength) {
+        hashKeys = new int[1 << HASH_BITS];
+        hashCodes = new int[1 << HASH_BITS];
+        out = new byte[Math.max(64, expectedLength / 2)];
+    }
+
+    static byte[] compress(byte[] data) {
+        return new TiffLzwCompressor(data.length).encode(data);
+    }
+
+    private byte[] encode(byte[] data) {
+        resetTable();
+        writeCode(CLEAR_CODE);
+        if (data.length > 0) {
+            int prefix = data[0] & 0xff;
+            for (int i = 1; i < data.length; i++) {
+                final int c = data[i] & 0xff;
+                final int key = (prefix << 8 | c) + 1;
+                int slot = getSlot(key);
+                if (hashKeys[slot] == key) {
+                    prefix = hashCodes[slot];
+                } else {
+                    writeCode(prefix);
+                    hashKeys[slot] = key;
+                    hashCodes[slot] = nextCode;
+                    incrementNextCode();
+                    prefix = c;
+                }
+            }
+            writeCode(prefix);
+            incrementNextCode();
+        }
+        writeCode(EOI_CODE);
+        if (bitCount > 0) {
+            writeByte((int) (bitBuffer << (8 - bitCount)));
+        }
+        return Arrays.copyOf(out, outLength);
+    }
+
+    private void incrementNextCode() {
+        nextCode++;
+        if (nextCode == LAST_CODE) {
+            writeCode(CLEAR_CODE);
+            resetTable();
+        } else if (nextCode == 1 << codeWidth) {
+            codeWidth++;
+        }
+    }
+
+    private void resetTable() {
+        Arrays.fill(hashKeys, 0);
+        codeWidth = MIN_CODE_WIDTH;
+        nextCode = FIRST_CODE;
+    }
+
+    private int getSlot(int key) {
+        int slot = (key * 0x9E3779B1) >>> (32 - HASH_BITS);
+        while (hashKeys[slot] != 0 && hashKeys[slot] != key) {
+            slot = (slot + 1) & HASH_MASK;
+        }
+        return slot;
+    }
+
+    private void writeCode(int code) {
+        bitBuffer = bitBuffer << codeWidth | code;
+        bitCount += codeWidth;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            writeByte((int) (bitBuffer >>> bitCount));
+        }
+        bitBuffer &= (1L << bitCount) - 1;
+    }
+
+    private void writeByte(int b) {
+        if (outLength == out.length) {
+            out = Arrays.copyOf(out, 2 * out.length);
+        }
+        out[outLength++] = (byte) b;
+    }
+}
@@ -28,7 +28,7 @@ import org.esa.snap.dataio.bigtiff.Constants;
  */
 public class TiffTag {
 
-    public static final short NewSubfileType = 254;
+    public static final TiffShort NEW_SUBFILE_TYPE = new TiffShort(254);
     public static final short SubfileType = 255;
     public static final TiffShort IMAGE_WIDTH = new TiffShort(256);
     public static final TiffShort IMAGE_LENGTH = new TiffShort(257);
@@ -69,15 +69,15 @@ public class TiffTag {
     public static final short DateTime = 306;
     public static final short Artist = 315;
     public static final short HostComputer = 316;
-    public static final short Predictor = 317;
+    public static final TiffShort PREDICTOR = new TiffShort(317);
     public static final short WhitePoint = 318;
     public static final short PrimaryChromaticities = 319;
     public static final TiffShort COLOR_MAP = new TiffShort(320);
     public static final short HalftoneHints = 321;
     public static final TiffShort TILE_WIDTH = new TiffShort(322);
     public static final TiffShort TILE_LENGTH = new TiffShort(323);
-    public static final short TileOffsets = 324;
-    public static final short TileByteCounts = 325;
+    public static final TiffShort TILE_OFFSETS = new TiffShort(324);
+    public static final TiffShort TILE_BYTE_COUNTS = new TiffShort(325);
     public static final short InkSet = 332;
     public static final short InkNames = 333;
     public static final short NumberOfInks = 334;
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.bigtiff.internal;
+
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes the samples of a tile of one band: applies a TIFF predictor and compresses the result with
+ * LZW or Deflate. Instances are immutable and may be used by several threads concurrently.
+ *
+ * @since SNAP 2.0
+ */
+public class TiffTileEncoder {
+
+    private final int compression;
+    private final int predictor;
+    private final int elemSize;
+    private final int deflateLevel;
+
+    /**
+     * @param compressionType the compression, either "LZW" or "DEFLATE"
+     * @param predictorType   the predictor, either "NONE", "HORIZONTAL" or "FLOATING_POINT", may be {@code null}
+     * @param dataType        the product data type of the samples
+     * @param deflateLevel    the compression level used by Deflate, 1 (fastest) to 9 (best compression)
+     * @throws IllegalArgumentException if the compression or the predictor is not supported for the data type
+     */
+    public TiffTileEncoder(String compressionType, String predictorType, int dataType, int deflateLevel) {
+        if ("LZW".equals(compressionType)) {
+            compression = TiffCode.COMPRESSION_LZW;
+        } else if ("DEFLATE".equals(compressionType)) {
+            compression = TiffCode.COMPRESSION_DEFLATE;
+        } else {
+            throw new IllegalArgumentException("Compression type '" + compressionType + "' is not supported");
+        }
+        if (predictorType == null || "NONE".equals(predictorType)) {
+            predictor = TiffCode.PREDICTOR_NONE;
+        } else if ("HORIZONTAL".equals(predictorType)) {
+            predictor = TiffCode.PREDICTOR_HORIZONTAL;
+        } else if ("FLOATING_POINT".equals(predictorType) && ProductData.isFloatingPointType(dataType)) {
+            predictor = TiffCode.PREDICTOR_FLOATING_POINT;
+        } else {
+            throw new IllegalArgumentException("Predictor '" + predictorType + "' is not supported for data type " +
+                                               ProductData.getTypeString(dataType));
+        }
+        this.elemSize = ProductData.getElemSize(dataType);
+        this.deflateLevel = Math.max(1, Math.min(9, deflateLevel));
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    public int getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Encodes the samples of a tile.
+     *
+     * @param samples the big-endian samples of the tile, row by row; modified by the predictor
+     * @param width   the tile width
+     * @param height  the tile height
+     * @return the compressed tile
+     */
+    public byte[] encode(byte[] samples, int width, int height) {
+        if (predictor == TiffCode.PREDICTOR_HORIZONTAL) {
+            applyHorizontalDifferencing(samples, width, height, elemSize);
+        } else if (predictor == TiffCode.PREDICTOR_FLOATING_POINT) {
+            applyFloatingPointDifferencing(samples, width, height, elemSize);
+        }
+        if (compression == TiffCode.COMPRESSION_LZW) {
+            return TiffLzwCompressor.compress(samples);
+        }
+        return deflate(samples);
+    }
+
+    static void applyHorizontalDifferencing(byte[] samples, int width, int height, int elemSize) {
+        final ByteBuffer buffer = ByteBuffer.wrap(samples);
+        final int rowSize = width * elemSize;
+        for (int rowStart = 0; rowStart < height * rowSize; rowStart += rowSize) {
+            for (int i = rowStart + rowSize - elemSize; i > rowStart; i -= elemSize) {
+                switch (elemSize) {
+                    case 1:
+                        samples[i] -= samples[i - 1];
+                        break;
+                    case 2:
+                        buffer.putShort(i, (short) (buffer.getShort(i) - buffer.getShort(i - 2)));
+                        break;
+                    case 4:
+                        buffer.putInt(i, buffer.getInt(i) - buffer.getInt(i - 4));
+                        break;
+                    default:
+                        buffer.putLong(i, buffer.getLong(i) - buffer.getLong(i - 8));
+                }
+            }
+        }
+    }
+
+    /*
+     * The floating point predictor of the Adobe Photoshop TIFF Technical Note 3: the bytes of the samples
+     * of a row are regrouped by significance, the most significant bytes first, and then differenced.
+     */
+    static void applyFloatingPointDifferencing(byte[] samples, int width, int height, int elemSize) {
+        final int rowSize = width * elemSize;
+        final byte[] row = new byte[rowSize];
+        for (int rowStart = 0; rowStart < height * rowSize; rowStart += rowSize) {
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < elemSize; b++) {
+                    row[b * width + x] = samples[rowStart + x * elemSize + b];
+                }
+            }
+            for (int i = rowSize - 1; i > 0; i--) {
+                row[i] -= row[i - 1];
+            }
+            System.arraycopy(row, 0, samples, rowStart, rowSize);
+        }
+    }
+
+    private byte[] deflate(byte[] data) {
+        final Deflater deflater = new Deflater(deflateLevel);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, data.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, 2 * out.length);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+}
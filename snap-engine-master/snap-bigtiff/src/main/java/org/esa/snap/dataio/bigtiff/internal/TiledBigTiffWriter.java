@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.bigtiff.internal;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+import javax.imageio.stream.FileImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a tiled and compressed BigTIFF file, including reduced resolution versions (overviews) of the image.
+ * <p>
+ * The space for the BigTIFF header and all IFDs is reserved at the beginning of the file. The tiles of all
+ * bands and resolution levels are then computed, encoded and written by a pool of worker threads. Each
+ * compressed tile is appended at an offset reserved by its worker. When all tiles are written, the IFDs
+ * are completed with the tile offsets and byte counts and written into the reserved space.
+ *
+ * @since SNAP 2.0
+ */
+public class TiledBigTiffWriter {
+
+    private static final int BIG_TIFF_HEADER_SIZE = 16;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final File file;
+    private final TiffIFD[] ifds;
+    private final RenderedImage[][] images;
+    private final TiffTileEncoder encoder;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int parallelism;
+    private final long[][] tileOffsets;
+    private final long[][] tileByteCounts;
+    private AtomicLong nextTileOffset;
+    private FileChannel channel;
+
+    /**
+     * @param file        the output file
+     * @param ifds        the IFDs of the full resolution image and its overviews,
+     *                    see {@link TiffIFD#createTiled} and {@link TiffIFD#createOverview}
+     * @param images      the band images of each resolution level, already converted to the data type of the IFDs
+     * @param encoder     the tile encoder
+     * @param tileWidth   the tile width, as given to the IFDs
+     * @param tileHeight  the tile height, as given to the IFDs
+     * @param parallelism the number of worker threads
+     */
+    public TiledBigTiffWriter(File file, TiffIFD[] ifds, RenderedImage[][] images, TiffTileEncoder encoder,
+                              int tileWidth, int tileHeight, int parallelism) {
+        this.file = file;
+        this.ifds = ifds;
+        this.images = images;
+        this.encoder = encoder;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.parallelism = Math.max(1, parallelism);
+        tileOffsets = new long[ifds.length][];
+        tileByteCounts = new long[ifds.length][];
+        for (int level = 0; level < ifds.length; level++) {
+            tileOffsets[level] = new long[ifds[level].getNumTiles() * images[level].length];
+            tileByteCounts[level] = new long[tileOffsets[level].length];
+        }
+    }
+
+    /**
+     * Writes the file. If writing is cancelled, the incomplete file is deleted.
+     *
+     * @param pm a progress monitor
+     * @return {@code false} if writing has been cancelled
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean write(ProgressMonitor pm) throws IOException {
+        final long[] ifdOffsets = new long[ifds.length];
+        long position = BIG_TIFF_HEADER_SIZE;
+        for (int level = 0; level < ifds.length; level++) {
+            ifdOffsets[level] = position;
+            position += toWordBoundary(ifds[level].getRequiredBigTiffSize());
+        }
+        nextTileOffset = new AtomicLong(position);
+
+        boolean written = false;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(position);
+            channel = randomAccessFile.getChannel();
+            if (!writeTiles(pm)) {
+                return false;
+            }
+            final FileImageOutputStream ios = new FileImageOutputStream(randomAccessFile);
+            try {
+                writeHeader(ios, ifdOffsets[0]);
+                for (int level = 0; level < ifds.length; level++) {
+                    ifds[level].setTiles(tileOffsets[level], tileByteCounts[level]);
+                    final long nextIfdOffset = level + 1 < ifds.length ? ifdOffsets[level + 1] : 0;
+                    ifds[level].writeBigTiff(ios, ifdOffsets[level], nextIfdOffset);
+                }
+                ios.flush();
+            } finally {
+                ios.close();
+            }
+            written = true;
+            return true;
+        } finally {
+            channel = null;
+            if (!written) {
+                // without header and IFDs the file is not a valid TIFF
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private boolean writeTiles(ProgressMonitor pm) throws IOException {
+        final List<TileTask> tasks = new ArrayList<>();
+        for (int level = 0; level < ifds.length; level++) {
+            final int numTilesX = ifds[level].getNumTilesX();
+            final int numTilesY = ifds[level].getNumTilesY();
+            for (int band = 0; band < images[level].length; band++) {
+                for (int tileY = 0; tileY < numTilesY; tileY++) {
+                    for (int tileX = 0; tileX < numTilesX; tileX++) {
+                        tasks.add(new TileTask(level, band, tileX, tileY, numTilesX));
+                    }
+                }
+            }
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        final int maxPendingTasks = 2 * parallelism;
+        final Deque<Future<?>> pendingTasks = new ArrayDeque<>(maxPendingTasks);
+        pm.beginTask("Writing tiles...", tasks.size());
+        try {
+            int submitCount = 0;
+            while (submitCount < tasks.size() || !pendingTasks.isEmpty()) {
+                while (submitCount < tasks.size() && pendingTasks.size() < maxPendingTasks) {
+                    pendingTasks.add(executor.submit(tasks.get(submitCount++)));
+                }
+                waitFor(pendingTasks.poll());
+                pm.worked(1);
+                if (pm.isCanceled()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            for (Future<?> pendingTask : pendingTasks) {
+                pendingTask.cancel(false);
+            }
+            shutdown(executor);
+            pm.done();
+        }
+    }
+
+    private static void writeHeader(FileImageOutputStream ios, long firstIfdOffset) throws IOException {
+        ios.seek(0);
+        ios.writeByte('M');
+        ios.writeByte('M');
+        ios.writeShort(43);
+        ios.writeShort(8);
+        ios.writeShort(0);
+        ios.writeLong(firstIfdOffset);
+    }
+
+    private static long toWordBoundary(long size) {
+        return (size + 1) & ~1L;
+    }
+
+    private static void waitFor(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Writing of tiles has been interrupted.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static byte[] getTileSamples(RenderedImage image, Rectangle tileRect) {
+        final int elemSize = DataBuffer.getDataTypeSize(image.getSampleModel().getDataType()) / 8;
+        final byte[] samples = new byte[tileRect.width * tileRect.height * elemSize];
+        final Rectangle dataRect = tileRect.intersection(new Rectangle(image.getMinX(), image.getMinY(),
+                                                                       image.getWidth(), image.getHeight()));
+        if (dataRect.isEmpty()) {
+            return samples;
+        }
+        final Raster raster = image.getData(dataRect);
+        final ByteBuffer buffer = ByteBuffer.wrap(samples);
+        Object row = null;
+        for (int y = dataRect.y; y < dataRect.y + dataRect.height; y++) {
+            row = raster.getDataElements(dataRect.x, y, dataRect.width, 1, row);
+            buffer.position(((y - tileRect.y) * tileRect.width + dataRect.x - tileRect.x) * elemSize);
+            if (row instanceof byte[]) {
+                buffer.put((byte[]) row);
+            } else if (row instanceof short[]) {
+                buffer.asShortBuffer().put((short[]) row);
+            } else if (row instanceof int[]) {
+                buffer.asIntBuffer().put((int[]) row);
+            } else if (row instanceof float[]) {
+                buffer.asFloatBuffer().put((float[]) row);
+            } else if (row instanceof double[]) {
+                buffer.asDoubleBuffer().put((double[]) row);
+            } else {
+                throw new IllegalArgumentException("Unsupported transfer type: " + row.getClass().getName());
+            }
+        }
+        return samples;
+    }
+
+    private class TileTask implements Callable<Void> {
+
+        private final int level;
+        private final int band;
+        private final int tileX;
+        private final int tileY;
+        private final int tileIndex;
+
+        private TileTask(int level, int band, int tileX, int tileY, int numTilesX) {
+            this.level = level;
+            this.band = band;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.tileIndex = band * ifds[level].getNumTiles() + tileY * numTilesX + tileX;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            final Rectangle tileRect = new Rectangle(tileX * tileWidth, tileY * tileHeight, tileWidth, tileHeight);
+            final byte[] samples = getTileSamples(images[level][band], tileRect);
+            final byte[] tile = encoder.encode(samples, tileWidth, tileHeight);
+            final long offset = nextTileOffset.getAndAdd(toWordBoundary(tile.length));
+            final ByteBuffer buffer = ByteBuffer.wrap(tile);
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            tileOffsets[level][tileIndex] = offset;
+            tileByteCounts[level][tileIndex] = tile.length;
+            return null;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "SNAP-BigTiffWriter-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
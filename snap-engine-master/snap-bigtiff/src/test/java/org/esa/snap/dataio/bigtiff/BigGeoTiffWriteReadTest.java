@@ -16,10 +16,12 @@
 
 package org.esa.snap.dataio.bigtiff;
 
+import com.bc.ceres.core.NullProgressMonitor;
 import com.bc.ceres.core.ProgressMonitor;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFRenderedImage;
 import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.dataio.ProductWriter;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.ColorPaletteDef;
 import org.esa.snap.core.datamodel.CrsGeoCoding;
@@ -66,10 +68,12 @@ import javax.imageio.stream.ImageInputStream;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
@@ -370,6 +374,104 @@ public class BigGeoTiffWriteReadTest {
         }
     }
 
+    @Test
+    public void testWriteReadTiePointGeoCoding_deflate() throws IOException {
+        setTiePointGeoCoding(outProduct);
+        Band bandFloat32 = outProduct.addBand("float32_1", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 2.343f));
+
+        bandFloat32 = outProduct.addBand("float32_2", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 5.66f));
+
+        try {
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.type", "DEFLATE");
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.quality", "0.5");
+            Config.instance().preferences().put("snap.dataio.bigtiff.parallelism", "2");
+
+            performTest(2.0e-5f);
+        } finally {
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.type");
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.quality");
+            Config.instance().preferences().remove("snap.dataio.bigtiff.parallelism");
+        }
+    }
+
+    @Test
+    public void testWriteReadTiePointGeoCoding_lzwWithHorizontalPredictor() throws IOException {
+        setTiePointGeoCoding(outProduct);
+        final Band bandInt16 = outProduct.addBand("int16_2", ProductData.TYPE_INT16);
+        bandInt16.setDataElems(createShortData(getProductSize(), -300));
+
+        try {
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.type", "LZW");
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.predictor", "HORIZONTAL");
+
+            performTest(2.0e-5f);
+        } finally {
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.type");
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.predictor");
+        }
+    }
+
+    @Test
+    public void testWriteReadTiePointGeoCoding_deflateWithFloatingPointPredictor() throws IOException {
+        setTiePointGeoCoding(outProduct);
+        Band bandFloat32 = outProduct.addBand("float32_1", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 2.343f));
+
+        bandFloat32 = outProduct.addBand("float32_2", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), -108.65f));
+
+        try {
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.type", "DEFLATE");
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.predictor", "FLOATING_POINT");
+
+            performTest(2.0e-5f);
+        } finally {
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.type");
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.predictor");
+        }
+    }
+
+    @Test
+    public void testWriteReadOverviews() throws IOException {
+        outProduct = new Product("P", "T", 64, 48);
+        outProduct.setNumResolutionsMax(3);
+        final Band bandFloat32 = outProduct.addBand("float32", ProductData.TYPE_FLOAT32);
+        bandFloat32.setDataElems(createFloats(getProductSize(), 0.5f));
+
+        try {
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.type", "DEFLATE");
+            Config.instance().preferences().put("snap.dataio.bigtiff.tiling.width", "16");
+            Config.instance().preferences().put("snap.dataio.bigtiff.tiling.height", "16");
+
+            final Product inProduct = writeReadProduct();
+            try {
+                final Band inBand = inProduct.getBand("float32");
+                // the overviews of the file determine the levels of the read image pyramid
+                assertEquals(3, inBand.getSourceImage().getModel().getLevelCount());
+                assertEquality(bandFloat32, inBand);
+                for (int level = 1; level < 3; level++) {
+                    final Raster expected = bandFloat32.getSourceImage().getImage(level).getData();
+                    final Raster actual = inBand.getSourceImage().getImage(level).getData();
+                    assertEquals(expected.getWidth(), actual.getWidth());
+                    assertEquals(expected.getHeight(), actual.getHeight());
+                    for (int y = 0; y < expected.getHeight(); y++) {
+                        for (int x = 0; x < expected.getWidth(); x++) {
+                            assertEquals(expected.getSampleFloat(x, y, 0), actual.getSampleFloat(x, y, 0), 0.0f);
+                        }
+                    }
+                }
+            } finally {
+                inProduct.dispose();
+            }
+        } finally {
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.type");
+            Config.instance().preferences().remove("snap.dataio.bigtiff.tiling.width");
+            Config.instance().preferences().remove("snap.dataio.bigtiff.tiling.height");
+        }
+    }
+
     @Test
     public void testWriteReadTransverseMercator() throws IOException, TransformException, FactoryException {
         setGeoCoding(outProduct, NEW_ZEALAND_TRANSVERSE_MERCATOR_2000);
@@ -405,6 +507,30 @@ public class BigGeoTiffWriteReadTest {
         performTest(2.0e-5f);
     }
 
+    @Test
+    public void testCancelledCompressedWriteIsNotConsideredWritten() throws IOException {
+        location = new File(TEST_DIR, "test_product.tif");
+        try {
+            Config.instance().preferences().put("snap.dataio.bigtiff.compression.type", "LZW");
+            final ProductWriter writer = ProductIO.getProductWriter(BigGeoTiffProductReaderPlugIn.FORMAT_NAME);
+            writer.writeProductNodes(outProduct, location);
+            final Band band = outProduct.getBandAt(0);
+
+            final ProgressMonitor pm = new NullProgressMonitor();
+            pm.setCanceled(true);
+            writer.writeBandRasterData(band, 0, 0, band.getRasterWidth(), band.getRasterHeight(), band.getData(), pm);
+            assertTrue(pm.isCanceled());
+            assertFalse(location.exists());
+
+            writer.writeBandRasterData(band, 0, 0, band.getRasterWidth(), band.getRasterHeight(), band.getData(),
+                                       ProgressMonitor.NULL);
+            writer.close();
+            assertTrue(location.exists());
+        } finally {
+            Config.instance().preferences().remove("snap.dataio.bigtiff.compression.type");
+        }
+    }
+
     private void performTest(float accuracy) throws IOException {
         final Product inProduct = writeReadProduct();
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.bigtiff.internal;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+public class TiffTileEncoderTest {
+
+    @Test
+    public void testLzwCodeStream() {
+        final byte[] compressed = TiffLzwCompressor.compress(new byte[]{7, 7, 7, 7});
+
+        // 9-bit codes: CLEAR, 7, 258, 7, EOI
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x01, (byte) 0xE0, 0x40, 0x78, 0x08}, compressed);
+    }
+
+    @Test
+    public void testDeflateWithHorizontalPredictor() throws Exception {
+        final int width = 32;
+        final int height = 16;
+        final ByteBuffer samples = ByteBuffer.allocate(width * height * 2);
+        for (int i = 0; i < width * height; i++) {
+            samples.putShort((short) (1000 + 3 * i));
+        }
+        final TiffTileEncoder encoder = new TiffTileEncoder("DEFLATE", "HORIZONTAL", ProductData.TYPE_UINT16, 6);
+        assertEquals(TiffCode.COMPRESSION_DEFLATE, encoder.getCompression());
+        assertEquals(TiffCode.PREDICTOR_HORIZONTAL, encoder.getPredictor());
+
+        final ByteBuffer decoded = ByteBuffer.wrap(inflate(encoder.encode(samples.array(), width, height),
+                                                           width * height * 2));
+        for (int y = 0; y < height; y++) {
+            assertEquals(1000 + 3 * y * width, decoded.getShort(y * width * 2));
+            for (int x = 1; x < width; x++) {
+                assertEquals(3, decoded.getShort((y * width + x) * 2));
+            }
+        }
+    }
+
+    @Test
+    public void testFloatingPointPredictor() {
+        final ByteBuffer samples = ByteBuffer.allocate(8);
+        samples.putFloat(1.0f).putFloat(-2.0f);   // 3f 80 00 00, c0 00 00 00
+        TiffTileEncoder.applyFloatingPointDifferencing(samples.array(), 2, 1, 4);
+
+        // regrouped: 3f c0 80 00 00 00 00 00, then differenced
+        assertArrayEquals(new byte[]{0x3f, (byte) 0x81, (byte) 0xc0, (byte) 0x80, 0, 0, 0, 0}, samples.array());
+    }
+
+    @Test
+    public void testUnsupportedParameters() {
+        try {
+            new TiffTileEncoder("JPEG", null, ProductData.TYPE_UINT8, 6);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new TiffTileEncoder("LZW", "FLOATING_POINT", ProductData.TYPE_INT16, 6);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) throws Exception {
+        final Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        final byte[] data = new byte[length];
+        assertEquals(length, inflater.inflate(data));
+        inflater.end();
+        return data;
+    }
+}
@@ -62,10 +62,34 @@ public abstract class Bin implements BinContext {
         this.numObs = numObs;
     }
 
+    /**
+     * Gets the feature values. Bins not backed by a {@code float} array, e.g. views of stored bins, return
+     * a copy, so the values must be modified through {@link #toVector()}.
+     *
+     * @return The feature values.
+     */
     public float[] getFeatureValues() {
         return featureValues;
     }
 
+    /**
+     * @return The number of feature values.
+     */
+    public int getNumFeatures() {
+        return featureValues.length;
+    }
+
+    /**
+     * Gets a single feature value. In contrast to {@link #getFeatureValues()}, bins not
+     * backed by a {@code float} array need not create one.
+     *
+     * @param featureIndex The index of the feature.
+     * @return The feature value.
+     */
+    public float getFeatureValue(int featureIndex) {
+        return featureValues[featureIndex];
+    }
+
     // for Calvalus where bins are re-used
     public void setNumFeatures(int numFeatures) {
         if (numFeatures < 0) {
@@ -21,6 +21,7 @@ import org.esa.snap.binning.support.VariableContextImpl;
 import org.esa.snap.binning.support.VectorImpl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -186,7 +187,7 @@ public class BinManager {
     }
 
     public final Vector getTemporalVector(TemporalBin bin, int aggIndex) {
-        final VectorImpl vector = new VectorImpl(bin.featureValues);
+        final BinVector vector = new BinVector(bin);
         final Aggregator aggregator = aggregators[aggIndex];
         vector.setOffsetAndSize(temporalFeatureOffsets[aggIndex], aggregator.getTemporalFeatureNames().length);
         return vector;
@@ -243,34 +244,36 @@ public class BinManager {
 
     public void aggregateTemporalBin(SpatialBin inputBin, TemporalBin outputBin) {
         aggregateBin(inputBin, outputBin);
-        outputBin.numPasses++;
+        outputBin.setNumPasses(outputBin.getNumPasses() + 1);
         traceTemporal("aggregateTemporal", inputBin, outputBin);
     }
 
     // method is used in Calvalus - undocumented API :-) don't remove
     public void aggregateTemporalBin(TemporalBin inputBin, TemporalBin outputBin) {
         aggregateBin(inputBin, outputBin);
-        outputBin.numPasses += inputBin.numPasses;
+        outputBin.setNumPasses(outputBin.getNumPasses() + inputBin.getNumPasses());
     }
 
     private void aggregateBin(Bin inputBin, Bin outputBin) {
-        final VectorImpl spatialVector = new VectorImpl(inputBin.featureValues);
-        final VectorImpl temporalVector = new VectorImpl(outputBin.featureValues);
+        final BinVector spatialVector = new BinVector(inputBin);
+        final BinVector temporalVector = new BinVector(outputBin);
+        final int inputNumObs = inputBin.getNumObs();
         for (int i = 0; i < aggregators.length; i++) {
             final Aggregator aggregator = aggregators[i];
             spatialVector.setOffsetAndSize(spatialFeatureOffsets[i], aggregator.getSpatialFeatureNames().length);
             temporalVector.setOffsetAndSize(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length);
-            aggregator.aggregateTemporal(outputBin, spatialVector, inputBin.numObs, temporalVector);
+            aggregator.aggregateTemporal(outputBin, spatialVector, inputNumObs, temporalVector);
         }
-        outputBin.numObs += inputBin.numObs;
+        outputBin.setNumObs(outputBin.getNumObs() + inputNumObs);
     }
 
     public void completeTemporalBin(TemporalBin temporalBin) {
-        final VectorImpl temporalVector = new VectorImpl(temporalBin.featureValues);
+        final BinVector temporalVector = new BinVector(temporalBin);
+        final int numObs = temporalBin.getNumObs();
         for (int i = 0; i < aggregators.length; i++) {
             final Aggregator aggregator = aggregators[i];
             temporalVector.setOffsetAndSize(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length);
-            aggregator.completeTemporal(temporalBin, temporalBin.numObs, temporalVector);
+            aggregator.completeTemporal(temporalBin, numObs, temporalVector);
         }
         traceTemporal("completeTemporal", null, temporalBin);
     }
@@ -280,7 +283,7 @@ public class BinManager {
     }
 
     public void computeOutput(TemporalBin temporalBin, WritableVector outputVector) {
-        final VectorImpl temporalVector = new VectorImpl(temporalBin.featureValues);
+        final BinVector temporalVector = new BinVector(temporalBin);
         final VectorImpl outputVectorImpl = (VectorImpl) outputVector;
         for (int i = 0; i < aggregators.length; i++) {
             final Aggregator aggregator = aggregators[i];
@@ -302,7 +305,7 @@ public class BinManager {
     }
 
     protected void initTemporalBin(TemporalBin bin) {
-        final VectorImpl vector = new VectorImpl(bin.featureValues);
+        final BinVector vector = new BinVector(bin);
         for (int i = 0; i < aggregators.length; i++) {
             final Aggregator aggregator = aggregators[i];
             vector.setOffsetAndSize(temporalFeatureOffsets[i], aggregator.getTemporalFeatureNames().length);
@@ -344,6 +347,57 @@ public class BinManager {
         }
     }
 
+    /**
+     * A vector over a range of the features of a bin. Bins which are not backed by a feature array, such as the
+     * views of stored temporal bins, are accessed through {@link Bin#toVector()}.
+     */
+    private static final class BinVector implements WritableVector {
+
+        private final float[] elements;
+        private final WritableVector features;
+        private int offset;
+        private int size;
+
+        private BinVector(Bin bin) {
+            elements = bin.featureValues;
+            features = elements == null ? bin.toVector() : null;
+            size = elements != null ? elements.length : features.size();
+        }
+
+        private void setOffsetAndSize(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public float get(int index) {
+            return elements != null ? elements[offset + index] : features.get(offset + index);
+        }
+
+        @Override
+        public void set(int index, float element) {
+            if (elements != null) {
+                elements[offset + index] = element;
+            } else {
+                features.set(offset + index, element);
+            }
+        }
+
+        @Override
+        public String toString() {
+            final float[] values = new float[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = get(i);
+            }
+            return Arrays.toString(values);
+        }
+    }
+
     private void traceSpatial(String action, Observation observation, SpatialBin spatialBin) {
         if (BinTracer.traceThis(binTracer, spatialBin.getIndex())) {
             binTracer.traceSpatial(action, observation, spatialBin);
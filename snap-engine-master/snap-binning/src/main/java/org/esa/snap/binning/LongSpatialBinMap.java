@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from bin indexes to spatial bins used by the {@link SpatialBinner}.
+ * <p>
+ * In contrast to a {@code Map<Long, SpatialBin>}, the bin indexes are not boxed. The entries are kept
+ * in an open-addressing hash table with linear probing. Each entry carries an integer mark, which
+ * the spatial binner sets to the number of the slice in which a bin has been updated last. So all bins
+ * not updated by the current slice can be removed in a single pass over the table.
+ * <p>
+ * The order in which removed bins are returned is undefined. This class is not thread-safe.
+ *
+ * @since SNAP 2.0
+ */
+final class LongSpatialBinMap {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private long[] keys;
+    private SpatialBin[] values;
+    private int[] marks;
+    private int mask;
+    private int shift;
+    private int size;
+    private long[] removedKeys;
+
+    LongSpatialBinMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongSpatialBinMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        removedKeys = new long[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key The bin index.
+     * @return The bin or {@code null}, if there is no bin for the given index.
+     */
+    SpatialBin get(long key) {
+        final int slot = findSlot(key);
+        return slot >= 0 ? values[slot] : null;
+    }
+
+    /**
+     * Gets a bin and sets its mark.
+     *
+     * @param key  The bin index.
+     * @param mark The new mark of the bin.
+     * @return The bin or {@code null}, if there is no bin for the given index.
+     */
+    SpatialBin get(long key, int mark) {
+        final int slot = findSlot(key);
+        if (slot >= 0) {
+            marks[slot] = mark;
+            return values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * Puts a bin into this map, replacing any bin with the same index.
+     *
+     * @param key  The bin index.
+     * @param bin  The bin.
+     * @param mark The mark of the bin.
+     */
+    void put(long key, SpatialBin bin, int mark) {
+        if (bin == null) {
+            throw new NullPointerException("bin");
+        }
+        int slot = hash(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                values[slot] = bin;
+                marks[slot] = mark;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = bin;
+        marks[slot] = mark;
+        size++;
+        if (2 * size > values.length) {
+            rehash(2 * values.length);
+        }
+    }
+
+    /**
+     * @param key The bin index.
+     * @return The removed bin or {@code null}, if there is no bin for the given index.
+     */
+    SpatialBin remove(long key) {
+        final int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        final SpatialBin bin = values[slot];
+        removeSlot(slot);
+        return bin;
+    }
+
+    /**
+     * Removes all bins whose mark is less than the given mark.
+     *
+     * @param mark        The mark.
+     * @param removedBins A list to which the removed bins are added.
+     */
+    void removeMarkedBefore(int mark, List<SpatialBin> removedBins) {
+        int numRemoved = 0;
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null && marks[slot] < mark) {
+                if (numRemoved == removedKeys.length) {
+                    removedKeys = Arrays.copyOf(removedKeys, 2 * numRemoved);
+                }
+                removedKeys[numRemoved++] = keys[slot];
+                removedBins.add(values[slot]);
+            }
+        }
+        if (numRemoved == size) {
+            clear();
+        } else {
+            // removing while scanning would move not yet visited entries in front of the scan position
+            for (int i = 0; i < numRemoved; i++) {
+                removeSlot(findSlot(removedKeys[i]));
+            }
+        }
+    }
+
+    /**
+     * Removes all bins.
+     *
+     * @param removedBins A list to which the removed bins are added, may be {@code null}.
+     */
+    void removeAll(List<SpatialBin> removedBins) {
+        if (removedBins != null) {
+            for (SpatialBin bin : values) {
+                if (bin != null) {
+                    removedBins.add(bin);
+                }
+            }
+        }
+        clear();
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    private int findSlot(long key) {
+        int slot = hash(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // backward shift deletion, keeps all probe sequences intact without tombstones
+    private void removeSlot(int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == null) {
+                break;
+            }
+            final int home = hash(keys[next]);
+            final boolean homeInRange = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!homeInRange) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                marks[hole] = marks[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+    }
+
+    private int hash(long key) {
+        // Fibonacci hashing, bin indexes of a slice are mostly consecutive numbers
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final SpatialBin[] oldValues = values;
+        final int[] oldMarks = marks;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                marks[slot] = oldMarks[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new SpatialBin[capacity];
+        marks = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+}
@@ -18,9 +18,9 @@ package org.esa.snap.binning;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Produces spatial bins by processing a given "slice" of observations.
@@ -33,15 +33,22 @@ import java.util.TreeMap;
  */
 public class SpatialBinner {
 
+    private static final Comparator<SpatialBin> BIN_INDEX_COMPARATOR = new Comparator<SpatialBin>() {
+        @Override
+        public int compare(SpatialBin bin1, SpatialBin bin2) {
+            return Long.compare(bin1.getIndex(), bin2.getIndex());
+        }
+    };
+
     private final BinningContext binningContext;
     private final PlanetaryGrid planetaryGrid;
     private final BinManager binManager;
     private final SpatialBinConsumer consumer;
 
     // State variables
-    private final Map<Long, SpatialBin> activeBinMap;
-    private final Map<Long, SpatialBin> finalizedBinMap;
+    private final LongSpatialBinMap activeBinMap;
     private final ArrayList<Exception> exceptions;
+    private int sliceCount;
 
     /**
      * Constructs a spatial binner.
@@ -54,8 +61,7 @@ public class SpatialBinner {
         this.planetaryGrid = binningContext.getPlanetaryGrid();
         this.binManager = binningContext.getBinManager();
         this.consumer = consumer;
-        this.activeBinMap = new TreeMap<Long, SpatialBin>();
-        this.finalizedBinMap = new TreeMap<Long, SpatialBin>();
+        this.activeBinMap = new LongSpatialBinMap();
         this.exceptions = new ArrayList<Exception>();
     }
 
@@ -83,27 +89,27 @@ public class SpatialBinner {
      */
     public long processObservationSlice(Iterable<Observation> observations) {
 
-        finalizedBinMap.putAll(activeBinMap);
+        // bins which are not updated by this slice are finalized
+        final int slice = ++sliceCount;
 
         long observationCounter = 0;
         for (Observation observation : observations) {
             observationCounter++;
-            Long binIndex = planetaryGrid.getBinIndex(observation.getLatitude(), observation.getLongitude());
-            SpatialBin bin = activeBinMap.get(binIndex);
+            long binIndex = planetaryGrid.getBinIndex(observation.getLatitude(), observation.getLongitude());
+            SpatialBin bin = activeBinMap.get(binIndex, slice);
             if (bin == null) {
                 bin = binManager.createSpatialBin(binIndex);
-                activeBinMap.put(binIndex, bin);
+                activeBinMap.put(binIndex, bin, slice);
             }
             binManager.aggregateSpatialBin(observation, bin);
-            finalizedBinMap.remove(binIndex);
         }
 
-        if (!finalizedBinMap.isEmpty()) {
-            for (Long key : finalizedBinMap.keySet()) {
-                activeBinMap.remove(key);
+        if (!activeBinMap.isEmpty()) {
+            List<SpatialBin> finalizedBins = new ArrayList<SpatialBin>();
+            activeBinMap.removeMarkedBefore(slice, finalizedBins);
+            if (!finalizedBins.isEmpty()) {
+                emitSliceBins(finalizedBins);
             }
-            emitSliceBins(finalizedBinMap);
-            finalizedBinMap.clear();
         }
 
         return observationCounter;
@@ -127,14 +133,15 @@ public class SpatialBinner {
      */
     public void complete() {
         if (!activeBinMap.isEmpty()) {
-            emitSliceBins(activeBinMap);
-            activeBinMap.clear();
+            List<SpatialBin> bins = new ArrayList<SpatialBin>(activeBinMap.size());
+            activeBinMap.removeAll(bins);
+            emitSliceBins(bins);
         }
-        finalizedBinMap.clear();
     }
 
-    private void emitSliceBins(Map<Long, SpatialBin> binMap) {
-        List<SpatialBin> bins = new ArrayList<SpatialBin>(binMap.values());
+    private void emitSliceBins(List<SpatialBin> bins) {
+        // consumers receive the bins ordered by index
+        Collections.sort(bins, BIN_INDEX_COMPARATOR);
         for (SpatialBin bin : bins) {
             binManager.completeSpatialBin(bin);
         }
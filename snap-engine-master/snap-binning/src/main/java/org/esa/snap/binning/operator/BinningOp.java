@@ -61,6 +61,8 @@ import java.awt.geom.GeneralPath;
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -68,6 +70,12 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 /*
@@ -225,6 +233,17 @@ public class BinningOp extends Operator {
             defaultValue = "NAME")
     private String metadataAggregatorName;
 
+    @Parameter(description = "The number of source products which are spatially binned in parallel.\n" +
+                             "The result does not depend on this value, because the bins of the products are\n" +
+                             "collected in the order of the source products.",
+            defaultValue = "1")
+    private int numParallelProducts;
+
+    @Parameter(description = "The maximum number of spatial bins buffered for a product which is binned in parallel.\n" +
+                             "If exceeded, the binning of the product waits until all preceding products are binned.",
+            defaultValue = "4000000")
+    private long maxBufferedBinsPerProduct;
+
 
     private transient BinningContext binningContext;
     private transient FormatterConfig formatterConfig;
@@ -242,7 +261,7 @@ public class BinningOp extends Operator {
     private Product writtenProduct;
 
     public BinningOp() throws OperatorException {
-        addedVariableBands = new HashMap<>();
+        addedVariableBands = Collections.synchronizedMap(new HashMap<Product, List<Band>>());
     }
 
     public Geometry getRegion() {
@@ -364,6 +383,22 @@ public class BinningOp extends Operator {
         this.metadataAggregatorName = metadataAggregatorName;
     }
 
+    public int getNumParallelProducts() {
+        return numParallelProducts;
+    }
+
+    public void setNumParallelProducts(int numParallelProducts) {
+        this.numParallelProducts = numParallelProducts;
+    }
+
+    public long getMaxBufferedBinsPerProduct() {
+        return maxBufferedBinsPerProduct;
+    }
+
+    public void setMaxBufferedBinsPerProduct(long maxBufferedBinsPerProduct) {
+        this.maxBufferedBinsPerProduct = maxBufferedBinsPerProduct;
+    }
+
     public String getOutputFile() {
         return outputFile;
     }
@@ -589,51 +624,36 @@ public class BinningOp extends Operator {
 
     private SpatialBinCollection doSpatialBinning(BinningProductFilter productFilter) throws IOException {
         SpatialBinCollector spatialBinCollector = new GeneralSpatialBinCollector(binningContext.getPlanetaryGrid().getNumBins());
-        final SpatialBinner spatialBinner = new SpatialBinner(binningContext, spatialBinCollector);
-        if (sourceProducts != null) {
-            for (Product sourceProduct : sourceProducts) {
-                if (productFilter.accept(sourceProduct)) {
-                    processSource(sourceProduct, spatialBinner);
-                } else {
-                    getLogger().warning("Filtered out product '" + sourceProduct.getFileLocation() + "'");
-                    getLogger().warning("              reason: " + productFilter.getReason());
-                }
-            }
-        }
+        SortedSet<File> fileSet = new TreeSet<>();
         if (sourceProductPaths != null) {
-            SortedSet<File> fileSet = new TreeSet<>();
             for (String filePattern : sourceProductPaths) {
                 WildcardMatcher.glob(filePattern, fileSet);
             }
             if (fileSet.isEmpty()) {
                 getLogger().warning("The given source file patterns did not match any files");
             }
-            for (File file : fileSet) {
-                Product sourceProduct = null;
-                try {
-                    if (sourceProductFormat != null) {
-                        sourceProduct = ProductIO.readProduct(file, sourceProductFormat);
-                    } else {
-                        sourceProduct = ProductIO.readProduct(file);
+        }
+        if (numParallelProducts > 1) {
+            doParallelSpatialBinning(productFilter, fileSet, spatialBinCollector);
+        } else {
+            final SpatialBinner spatialBinner = new SpatialBinner(binningContext, spatialBinCollector);
+            if (sourceProducts != null) {
+                for (Product sourceProduct : sourceProducts) {
+                    if (acceptSource(productFilter, sourceProduct)) {
+                        processSource(sourceProduct, spatialBinner);
                     }
-                } catch (Exception e) {
-                    String msgPattern = "Failed to read file '%s'. %s: %s";
-                    getLogger().severe(String.format(msgPattern, file, e.getClass().getSimpleName(), e.getMessage()));
                 }
+            }
+            for (File file : fileSet) {
+                Product sourceProduct = readSource(file);
                 if (sourceProduct != null) {
                     try {
-                        if (productFilter.accept(sourceProduct)) {
+                        if (acceptSource(productFilter, sourceProduct)) {
                             processSource(sourceProduct, spatialBinner);
-                        } else {
-                            getLogger().warning("Filtered out product '" + sourceProduct.getFileLocation() + "'");
-                            getLogger().warning("              reason: " + productFilter.getReason());
                         }
                     } finally {
                         sourceProduct.dispose();
                     }
-                } else {
-                    String msgPattern = "Failed to read file '%s' (not a data product or reader missing)";
-                    getLogger().severe(String.format(msgPattern, file));
                 }
             }
         }
@@ -641,14 +661,93 @@ public class BinningOp extends Operator {
         return spatialBinCollector.getSpatialBinCollection();
     }
 
+    /*
+     * Bins up to numParallelProducts source products concurrently, each with its own spatial binner.
+     * The bins of a product are buffered by an OrderedSpatialBinConsumer and passed to the collector
+     * in the order of the source products, so the collector is accessed by one thread at a time only
+     * and the result is the same as for sequential binning.
+     */
+    private void doParallelSpatialBinning(BinningProductFilter productFilter, SortedSet<File> fileSet,
+                                          SpatialBinCollector spatialBinCollector) throws IOException {
+        final List<ProductBinningTask> tasks = new ArrayList<>();
+        final OrderedSpatialBinConsumer.Sequencer sequencer = new OrderedSpatialBinConsumer.Sequencer();
+        final AtomicBoolean failed = new AtomicBoolean();
+        if (sourceProducts != null) {
+            for (Product sourceProduct : sourceProducts) {
+                tasks.add(new ProductBinningTask(tasks.size(), sourceProduct, null, productFilter, sequencer, spatialBinCollector, failed));
+            }
+        }
+        for (File file : fileSet) {
+            tasks.add(new ProductBinningTask(tasks.size(), null, file, productFilter, sequencer, spatialBinCollector, failed));
+        }
+        getLogger().info(String.format("Spatial binning of %d product(s) using %d threads", tasks.size(), numParallelProducts));
+
+        // the tasks are executed in the order of submission, so the task which has its turn is always running
+        final ExecutorService executorService = Executors.newFixedThreadPool(numParallelProducts);
+        try {
+            final List<Future<Void>> futures = executorService.invokeAll(tasks);
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new OperatorException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Spatial binning has been interrupted", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private boolean acceptSource(BinningProductFilter productFilter, Product sourceProduct) {
+        // the filter keeps the reason of the last rejection
+        synchronized (productFilter) {
+            if (productFilter.accept(sourceProduct)) {
+                return true;
+            }
+            getLogger().warning("Filtered out product '" + sourceProduct.getFileLocation() + "'");
+            getLogger().warning("              reason: " + productFilter.getReason());
+            return false;
+        }
+    }
+
+    private Product readSource(File file) {
+        Product sourceProduct = null;
+        try {
+            if (sourceProductFormat != null) {
+                sourceProduct = ProductIO.readProduct(file, sourceProductFormat);
+            } else {
+                sourceProduct = ProductIO.readProduct(file);
+            }
+        } catch (Exception e) {
+            String msgPattern = "Failed to read file '%s'. %s: %s";
+            getLogger().severe(String.format(msgPattern, file, e.getClass().getSimpleName(), e.getMessage()));
+        }
+        if (sourceProduct == null) {
+            String msgPattern = "Failed to read file '%s' (not a data product or reader missing)";
+            getLogger().severe(String.format(msgPattern, file));
+        }
+        return sourceProduct;
+    }
 
     private void processSource(Product sourceProduct, SpatialBinner spatialBinner) throws IOException {
+        aggregateSourceMetadata(sourceProduct);
+        binSource(sourceProduct, spatialBinner);
+        aggregateSourceRegion(sourceProduct);
+    }
+
+    private void binSource(Product sourceProduct, SpatialBinner spatialBinner) throws IOException {
         final StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        updateDateRangeUtc(sourceProduct);
-        metadataAggregator.aggregateMetadata(sourceProduct);
-
         final String productName = sourceProduct.getName();
         getLogger().info(String.format("Spatial binning of product '%s'...", productName));
         getLogger().fine(String.format("Product start time: '%s'", sourceProduct.getStartTime()));
@@ -669,7 +768,16 @@ public class BinningOp extends Operator {
         stopWatch.stop();
 
         getLogger().info(String.format("Spatial binning of product '%s' done, %d observations seen, took %s", productName, numObs, stopWatch));
+    }
 
+    // must be called in the order of the source products
+    private void aggregateSourceMetadata(Product sourceProduct) {
+        updateDateRangeUtc(sourceProduct);
+        metadataAggregator.aggregateMetadata(sourceProduct);
+    }
+
+    // must be called in the order of the source products
+    private void aggregateSourceRegion(Product sourceProduct) {
         if (region == null && regionArea != null) {
             for (GeneralPath generalPath : ProductUtils.createGeoBoundaryPaths(sourceProduct)) {
                 try {
@@ -825,6 +933,63 @@ public class BinningOp extends Operator {
         }
     }
 
+    private class ProductBinningTask implements Callable<Void> {
+
+        private final int index;
+        private final Product product;
+        private final File file;
+        private final BinningProductFilter productFilter;
+        private final OrderedSpatialBinConsumer.Sequencer sequencer;
+        private final SpatialBinCollector spatialBinCollector;
+        private final AtomicBoolean failed;
+
+        private ProductBinningTask(int index, Product product, File file, BinningProductFilter productFilter,
+                                   OrderedSpatialBinConsumer.Sequencer sequencer, SpatialBinCollector spatialBinCollector,
+                                   AtomicBoolean failed) {
+            this.index = index;
+            this.product = product;
+            this.file = file;
+            this.productFilter = productFilter;
+            this.sequencer = sequencer;
+            this.spatialBinCollector = spatialBinCollector;
+            this.failed = failed;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            Product sourceProduct = null;
+            try {
+                if (failed.get()) {
+                    return null;
+                }
+                sourceProduct = product != null ? product : readSource(file);
+                if (sourceProduct != null && acceptSource(productFilter, sourceProduct)) {
+                    final OrderedSpatialBinConsumer consumer = new OrderedSpatialBinConsumer(spatialBinCollector, sequencer,
+                                                                                             index, maxBufferedBinsPerProduct);
+                    final SpatialBinner spatialBinner = new SpatialBinner(binningContext, consumer);
+                    binSource(sourceProduct, spatialBinner);
+                    final Exception[] exceptions = spatialBinner.getExceptions();
+                    if (exceptions.length > 0) {
+                        // the bins passed to the failing consumer are lost
+                        throw exceptions[0];
+                    }
+                    consumer.commit();
+                    aggregateSourceMetadata(sourceProduct);
+                    aggregateSourceRegion(sourceProduct);
+                }
+            } catch (Exception e) {
+                failed.set(true);
+                throw e;
+            } finally {
+                if (sourceProduct != null && product == null) {
+                    sourceProduct.dispose();
+                }
+                sequencer.complete(index);
+            }
+            return null;
+        }
+    }
+
     private static class SimpleTemporalBinSource implements TemporalBinSource {
 
         private final List<TemporalBin> temporalBins;
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning.operator;
+
+import org.esa.snap.binning.TemporalBin;
+import org.esa.snap.binning.WritableVector;
+import org.esa.snap.binning.support.VectorImpl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stores temporal bins outside of the Java heap in columns: bin index, number of observations,
+ * number of passes and one column per feature.
+ * <p>
+ * The bins are stored in chunks of a fixed number of bins. A chunk is either a direct buffer or a
+ * region of a memory-mapped file, so large bin lists neither occupy the heap nor need explicit
+ * file I/O. Stored bins are accessed through lightweight {@link TemporalBin} views, which read
+ * and write the columns directly and do not hold a feature array.
+ * <p>
+ * Bins must be added by a single thread. Once added, they may be read concurrently.
+ * <p>
+ * Only temporal bins are stored this way. The spatial bins of a {@link SpatialBinCollection} remain objects,
+ * because the spatial binner creates and aggregates them one by one and the existing collectors already keep
+ * them outside of the heap where needed ({@link FileBackedSpatialBinCollector}).
+ *
+ * @since SNAP 2.0
+ */
+final class ColumnarBinStore {
+
+    private final int numFeatures;
+    private final int binsPerChunk;
+    private final int chunkSize;
+    private final RandomAccessFile file;
+    private final List<ByteBuffer> chunks;
+    private volatile int size;
+
+    /**
+     * @param numFeatures  The number of features of each bin.
+     * @param binsPerChunk The number of bins per chunk.
+     * @param file         The file used for memory-mapping the chunks. If {@code null}, direct buffers are used.
+     * @throws IOException If the file cannot be opened.
+     */
+    ColumnarBinStore(int numFeatures, int binsPerChunk, File file) throws IOException {
+        if (numFeatures < 0) {
+            throw new IllegalArgumentException("numFeatures < 0");
+        }
+        if (binsPerChunk <= 0) {
+            throw new IllegalArgumentException("binsPerChunk <= 0");
+        }
+        this.numFeatures = numFeatures;
+        this.binsPerChunk = binsPerChunk;
+        this.chunkSize = binsPerChunk * (8 + 4 + 4 + 4 * numFeatures);
+        this.file = file != null ? new RandomAccessFile(file, "rw") : null;
+        // chunks are rarely added but looked up for every access, also by concurrent readers
+        this.chunks = new CopyOnWriteArrayList<>();
+    }
+
+    int getNumFeatures() {
+        return numFeatures;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a copy of the given bin.
+     *
+     * @param bin The bin.
+     * @return The position of the bin in this store.
+     * @throws IOException If a new chunk cannot be mapped.
+     */
+    int add(TemporalBin bin) throws IOException {
+        if (bin.getNumFeatures() != numFeatures) {
+            throw new IllegalArgumentException(String.format("Bin has %d features, expected %d",
+                                                             bin.getNumFeatures(), numFeatures));
+        }
+        final int pos = size;
+        final int chunkIndex = pos / binsPerChunk;
+        if (chunkIndex == chunks.size()) {
+            chunks.add(allocateChunk(chunkIndex));
+        }
+        setIndex(pos, bin.getIndex());
+        setNumObs(pos, bin.getNumObs());
+        setNumPasses(pos, bin.getNumPasses());
+        for (int i = 0; i < numFeatures; i++) {
+            setFeatureValue(pos, i, bin.getFeatureValue(i));
+        }
+        size++;
+        return pos;
+    }
+
+    /**
+     * @param pos The position of the bin.
+     * @return A view of the bin at the given position.
+     */
+    TemporalBin get(int pos) {
+        if (pos < 0 || pos >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", pos, size));
+        }
+        return new BinView(pos);
+    }
+
+    long getIndex(int pos) {
+        return chunk(pos).getLong(8 * (pos % binsPerChunk));
+    }
+
+    int getNumObs(int pos) {
+        return chunk(pos).getInt(binsPerChunk * 8 + 4 * (pos % binsPerChunk));
+    }
+
+    int getNumPasses(int pos) {
+        return chunk(pos).getInt(binsPerChunk * 12 + 4 * (pos % binsPerChunk));
+    }
+
+    float getFeatureValue(int pos, int featureIndex) {
+        return chunk(pos).getFloat(featureOffset(pos, featureIndex));
+    }
+
+    void setIndex(int pos, long index) {
+        chunk(pos).putLong(8 * (pos % binsPerChunk), index);
+    }
+
+    void setNumObs(int pos, int numObs) {
+        chunk(pos).putInt(binsPerChunk * 8 + 4 * (pos % binsPerChunk), numObs);
+    }
+
+    void setNumPasses(int pos, int numPasses) {
+        chunk(pos).putInt(binsPerChunk * 12 + 4 * (pos % binsPerChunk), numPasses);
+    }
+
+    void setFeatureValue(int pos, int featureIndex, float value) {
+        chunk(pos).putFloat(featureOffset(pos, featureIndex), value);
+    }
+
+    /**
+     * Releases the chunks and closes the file. The file itself is not deleted.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    void close() throws IOException {
+        chunks.clear();
+        size = 0;
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private ByteBuffer chunk(int pos) {
+        return chunks.get(pos / binsPerChunk);
+    }
+
+    private int featureOffset(int pos, int featureIndex) {
+        if (featureIndex < 0 || featureIndex >= numFeatures) {
+            throw new IndexOutOfBoundsException(String.format("Feature index: %d, number of features: %d",
+                                                              featureIndex, numFeatures));
+        }
+        return binsPerChunk * (16 + 4 * featureIndex) + 4 * (pos % binsPerChunk);
+    }
+
+    private ByteBuffer allocateChunk(int chunkIndex) throws IOException {
+        final ByteBuffer buffer;
+        if (file != null) {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) chunkIndex * chunkSize, chunkSize);
+        } else {
+            buffer = ByteBuffer.allocateDirect(chunkSize);
+        }
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * A temporal bin whose fields are read from and written to the columns of the store.
+     * {@link #getFeatureValues()} returns a copy of the feature values, they are modified through
+     * {@link #toVector()}. Re-using the view with the same number of features resets the feature values.
+     * If the view is re-used with another number of features, or reads another number of features, its
+     * feature values are held by the view itself from then on, like those of any other bin.
+     */
+    private final class BinView extends TemporalBin {
+
+        private final int pos;
+        private float[] ownFeatureValues;
+
+        private BinView(int pos) {
+            this.pos = pos;
+        }
+
+        @Override
+        public long getIndex() {
+            return ColumnarBinStore.this.getIndex(pos);
+        }
+
+        @Override
+        public void setIndex(long index) {
+            ColumnarBinStore.this.setIndex(pos, index);
+        }
+
+        @Override
+        public int getNumObs() {
+            return ColumnarBinStore.this.getNumObs(pos);
+        }
+
+        @Override
+        public void setNumObs(int numObs) {
+            ColumnarBinStore.this.setNumObs(pos, numObs);
+        }
+
+        @Override
+        public int getNumPasses() {
+            return ColumnarBinStore.this.getNumPasses(pos);
+        }
+
+        @Override
+        public void setNumPasses(int numPasses) {
+            ColumnarBinStore.this.setNumPasses(pos, numPasses);
+        }
+
+        @Override
+        public int getNumFeatures() {
+            return ownFeatureValues != null ? ownFeatureValues.length : numFeatures;
+        }
+
+        @Override
+        public float getFeatureValue(int featureIndex) {
+            if (ownFeatureValues != null) {
+                return ownFeatureValues[featureIndex];
+            }
+            return ColumnarBinStore.this.getFeatureValue(pos, featureIndex);
+        }
+
+        @Override
+        public float[] getFeatureValues() {
+            if (ownFeatureValues != null) {
+                return ownFeatureValues;
+            }
+            final float[] featureValues = new float[numFeatures];
+            for (int i = 0; i < numFeatures; i++) {
+                featureValues[i] = getFeatureValue(i);
+            }
+            return featureValues;
+        }
+
+        @Override
+        public void setNumFeatures(int numFeatures) {
+            if (numFeatures < 0) {
+                throw new IllegalArgumentException("numFeatures < 0");
+            }
+            if (numFeatures != ColumnarBinStore.this.numFeatures) {
+                ownFeatureValues = new float[numFeatures];
+                return;
+            }
+            ownFeatureValues = null;
+            for (int i = 0; i < numFeatures; i++) {
+                setFeatureValue(pos, i, 0.0f);
+            }
+        }
+
+        @Override
+        public WritableVector toVector() {
+            return ownFeatureValues != null ? new VectorImpl(ownFeatureValues) : new FeatureVector(pos);
+        }
+
+        @Override
+        public void write(DataOutput dataOutput) throws IOException {
+            final int numFeatures = getNumFeatures();
+            dataOutput.writeInt(getNumObs());
+            dataOutput.writeInt(getNumPasses());
+            dataOutput.writeInt(numFeatures);
+            for (int i = 0; i < numFeatures; i++) {
+                dataOutput.writeFloat(getFeatureValue(i));
+            }
+        }
+
+        @Override
+        public void readFields(DataInput dataInput) throws IOException {
+            setNumObs(dataInput.readInt());
+            setNumPasses(dataInput.readInt());
+            final int numFeatures = dataInput.readInt();
+            setNumFeatures(numFeatures);
+            final WritableVector vector = toVector();
+            for (int i = 0; i < numFeatures; i++) {
+                vector.set(i, dataInput.readFloat());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{index=%d, numObs=%d, numPasses=%d, featureValues=%s}",
+                                 TemporalBin.class.getSimpleName(), getIndex(), getNumObs(), getNumPasses(),
+                                 Arrays.toString(getFeatureValues()));
+        }
+    }
+
+    private final class FeatureVector implements WritableVector {
+
+        private final int pos;
+
+        private FeatureVector(int pos) {
+            this.pos = pos;
+        }
+
+        @Override
+        public int size() {
+            return numFeatures;
+        }
+
+        @Override
+        public float get(int index) {
+            return getFeatureValue(pos, index);
+        }
+
+        @Override
+        public void set(int index, float element) {
+            setFeatureValue(pos, index, element);
+        }
+
+        @Override
+        public String toString() {
+            final float[] elements = new float[numFeatures];
+            for (int i = 0; i < numFeatures; i++) {
+                elements[i] = get(i);
+            }
+            return Arrays.toString(elements);
+        }
+    }
+}
@@ -154,10 +154,10 @@ class FullyPopulatedBinWriter extends AbstractBinWriter {
             binListVars.add(new BinListVar(featureVars.get(k), new BinListElementSetter() {
                 @Override
                 public void setArray(Array array, int binIndex, TemporalBin bin) {
-                    if (bin.getFeatureValues().length == 0) {
+                    if (bin.getNumFeatures() == 0) {
                         array.setFloat(binIndex, Float.NaN);
                     } else {
-                        array.setFloat(binIndex, bin.getFeatureValues()[k]);
+                        array.setFloat(binIndex, bin.getFeatureValue(k));
                     }
                 }
             }));
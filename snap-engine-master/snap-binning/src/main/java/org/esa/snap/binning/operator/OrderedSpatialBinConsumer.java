@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning.operator;
+
+import org.esa.snap.binning.BinningContext;
+import org.esa.snap.binning.SpatialBin;
+import org.esa.snap.binning.SpatialBinConsumer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A {@link SpatialBinConsumer} used for the parallel spatial binning of multiple source products.
+ * Each source product is binned by its own {@link org.esa.snap.binning.SpatialBinner} which emits its
+ * bins into an instance of this class. The bins are buffered until {@link #commit()} is called and then
+ * passed to the target consumer as soon as all source products with a lower index have been committed.
+ * So the target consumer receives the bins in the same order as in sequential binning, regardless of
+ * the order in which the products are completed, and it is never accessed concurrently.
+ * <p>
+ * If the number of buffered bins exceeds the given limit, the consumer waits for its turn and then
+ * passes all following bins directly to the target consumer.
+ *
+ * @since SNAP 2.0
+ */
+class OrderedSpatialBinConsumer implements SpatialBinConsumer {
+
+    private final SpatialBinConsumer targetConsumer;
+    private final Sequencer sequencer;
+    private final int index;
+    private final long maxBufferedBins;
+    private final List<List<SpatialBin>> bufferedBins;
+    private BinningContext binningContext;
+    private long numBufferedBins;
+    private boolean hasTurn;
+
+    /**
+     * @param targetConsumer  The consumer which finally receives the spatial bins.
+     * @param sequencer       The sequencer which defines the order of the products.
+     * @param index           The index of the product binned by this consumer.
+     * @param maxBufferedBins The maximum number of bins to be buffered.
+     */
+    OrderedSpatialBinConsumer(SpatialBinConsumer targetConsumer, Sequencer sequencer, int index, long maxBufferedBins) {
+        this.targetConsumer = targetConsumer;
+        this.sequencer = sequencer;
+        this.index = index;
+        this.maxBufferedBins = maxBufferedBins;
+        this.bufferedBins = new ArrayList<>();
+    }
+
+    @Override
+    public void consumeSpatialBins(BinningContext binningContext, List<SpatialBin> spatialBins) throws Exception {
+        this.binningContext = binningContext;
+        if (hasTurn) {
+            targetConsumer.consumeSpatialBins(binningContext, spatialBins);
+            return;
+        }
+        bufferedBins.add(spatialBins);
+        numBufferedBins += spatialBins.size();
+        if (numBufferedBins > maxBufferedBins) {
+            commit();
+        }
+    }
+
+    /**
+     * Waits until all products with a lower index have been completed and passes the buffered bins
+     * to the target consumer. Must be called after the product has been binned.
+     * {@link Sequencer#complete(int)} must be called for the index of this consumer afterwards.
+     *
+     * @throws Exception If the target consumer fails or the current thread has been interrupted.
+     */
+    void commit() throws Exception {
+        if (!hasTurn) {
+            sequencer.awaitTurn(index);
+            hasTurn = true;
+            for (List<SpatialBin> spatialBins : bufferedBins) {
+                targetConsumer.consumeSpatialBins(binningContext, spatialBins);
+            }
+            bufferedBins.clear();
+            numBufferedBins = 0;
+        }
+    }
+
+    /**
+     * @return The number of currently buffered bins.
+     */
+    long getNumBufferedBins() {
+        return numBufferedBins;
+    }
+
+    /**
+     * Defines the order in which the products are passed to the target consumer.
+     * A product has its turn if all products with a lower index have been completed.
+     */
+    static final class Sequencer {
+
+        private final BitSet completed = new BitSet();
+        private int nextIndex;
+
+        synchronized void awaitTurn(int index) throws InterruptedException {
+            while (index > nextIndex) {
+                wait();
+            }
+        }
+
+        synchronized void complete(int index) {
+            completed.set(index);
+            while (completed.get(nextIndex)) {
+                nextIndex++;
+            }
+            notifyAll();
+        }
+    }
+}
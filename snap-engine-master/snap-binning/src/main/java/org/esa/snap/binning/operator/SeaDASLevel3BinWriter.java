@@ -214,7 +214,7 @@ class SeaDASLevel3BinWriter extends AbstractBinWriter {
             binListVars.add(new BinListVar(featureVars.get(k), new BinListElementSetter() {
                 @Override
                 public void setArray(Array array, int binIndex, TemporalBin bin) {
-                    array.setFloat(binIndex, bin.getFeatureValues()[k]);
+                    array.setFloat(binIndex, bin.getFeatureValue(k));
                 }
             }));
         }
@@ -23,175 +23,97 @@ import org.esa.snap.binning.TemporalBin;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.io.FileUtils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.AbstractList;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A list implementation for storing the results of the temporal binning.
- * The implementation creates at most 100 temporary files to hold the results of the binning.
+ * The bins are stored outside of the Java heap in a memory-mapped temporary file, using a {@link ColumnarBinStore}.
+ * The bins returned by {@link #get(int)} are views of the stored bins, no feature arrays are created for them.
  */
 class TemporalBinList extends AbstractList<TemporalBin> {
 
-    public static final int DEFAULT_MAX_CACHE_FILES = 10000;
-    public static final int DEFAULT_BINS_PER_FILE = 1000;
+    public static final int DEFAULT_MAX_CHUNKS = 1024;
+    public static final int DEFAULT_BINS_PER_CHUNK = 64 * 1024;
 
-    private static final String FILE_NAME_PATTERN = "temporal-bins-%05d.tmp"; // at least 5 digits; zero padded
+    private static final String FILE_NAME = "temporal-bins.tmp";
     private static final Logger logger = SystemUtils.LOG;
 
 
     private final long numberOfBins;
-    private final int binsPerFile;
-    private final List<TemporalBin> currentBinList;
+    private final int binsPerChunk;
     private final File tempDir;
-    private int size;
-    private int lastFileIndex;
-    private boolean firstGet;
+    private ColumnarBinStore binStore;
 
     public TemporalBinList(int numberOfBins) throws IOException {
-        this(numberOfBins, DEFAULT_MAX_CACHE_FILES, DEFAULT_BINS_PER_FILE);
+        this(numberOfBins, DEFAULT_MAX_CHUNKS, DEFAULT_BINS_PER_CHUNK);
     }
 
-    TemporalBinList(int numberOfBins, int maxNumberOfCacheFiles, int preferredBinsPerFile) throws IOException {
+    /**
+     * @param numberOfBins           The maximum number of bins.
+     * @param maxNumberOfChunks      The preferred maximum number of chunks, the chunk size is increased accordingly.
+     * @param preferredBinsPerChunk  The preferred number of bins per chunk (the minimum).
+     */
+    TemporalBinList(int numberOfBins, int maxNumberOfChunks, int preferredBinsPerChunk) throws IOException {
         tempDir = VirtualDir.createUniqueTempDir();
         Runtime.getRuntime().addShutdownHook(new DeleteDirThread(tempDir));
         this.numberOfBins = numberOfBins;
-        binsPerFile = computeBinsPerFile(numberOfBins, maxNumberOfCacheFiles, preferredBinsPerFile);
-        currentBinList = new LinkedList<TemporalBin>();
-        size = 0;
-        lastFileIndex = 0;
-        firstGet = true;
+        binsPerChunk = computeBinsPerChunk(numberOfBins, maxNumberOfChunks, preferredBinsPerChunk);
     }
 
     @Override
-    public boolean add(TemporalBin temporalBin) {
-        if (size >= numberOfBins) {
+    public synchronized boolean add(TemporalBin temporalBin) {
+        if (size() >= numberOfBins) {
             throw new IllegalStateException("Number of add operation exceeds maximum number of bins");
         }
-        synchronized (currentBinList) {
-            try {
-                int currentFileIndex = calculateFileIndex(size);
-                if (currentFileIndex != lastFileIndex) {
-                    writeBinList(lastFileIndex, currentBinList);
-                    currentBinList.clear();
-                    readBinList(currentFileIndex, currentBinList);
-                    lastFileIndex = currentFileIndex;
-                }
-                currentBinList.add(temporalBin);
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, "Error adding temporal bins.", e);
-                return false;
+        try {
+            if (binStore == null) {
+                // the number of features is known with the first bin
+                binStore = new ColumnarBinStore(temporalBin.getNumFeatures(), binsPerChunk, new File(tempDir, FILE_NAME));
             }
+            binStore.add(temporalBin);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error adding temporal bins.", e);
+            return false;
         }
-        size++;
         return true;
     }
 
     @Override
-    public TemporalBin get(int index) {
+    public synchronized TemporalBin get(int index) {
         if (index >= numberOfBins) {
             throw new IllegalStateException(String.format("Index out of range. Maximum is %d but was %d", numberOfBins - 1, index));
         }
-        if (firstGet) {
-            try {
-                writeBinList(lastFileIndex, currentBinList);
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, "Error storing temporal bins.", e);
-                return null;
-            }finally {
-                firstGet = false;
-            }
-        }
-        synchronized (currentBinList) {
-            try {
-                int currentFileIndex = calculateFileIndex(index);
-                if (currentFileIndex != lastFileIndex) {
-                    currentBinList.clear();
-                    readBinList(currentFileIndex, currentBinList);
-                    lastFileIndex = currentFileIndex;
-                }
-
-                int fileBinOffset = binsPerFile * currentFileIndex;
-                return currentBinList.get(index - fileBinOffset);
-
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, String.format("Error getting temporal bin at index %d.", index), e);
-            }
+        if (binStore == null) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: 0", index));
         }
-        return null;
+        return binStore.get(index);
     }
 
     @Override
-    public int size() {
-        return size;
+    public synchronized int size() {
+        return binStore != null ? binStore.size() : 0;
     }
 
-    public void close() {
-        FileUtils.deleteTree(tempDir);
-    }
-
-    static int computeBinsPerFile(int numberOfBins, int maxNumberOfCacheFiles, int preferredBinsPerFile) {
-        int numCacheFiles = (int) Math.ceil(numberOfBins / (float) preferredBinsPerFile);
-        numCacheFiles = Math.min(numCacheFiles, maxNumberOfCacheFiles);
-        int binsPerFile = (int) Math.ceil(numberOfBins / (float) numCacheFiles);
-        return binsPerFile < preferredBinsPerFile ? preferredBinsPerFile : binsPerFile;
-    }
-
-
-    private int calculateFileIndex(int index) {
-        return index / binsPerFile;
-    }
-
-    private File getFile(int fileIndex) throws IOException {
-        return new File(tempDir, String.format(FILE_NAME_PATTERN, fileIndex));
-    }
-
-    private void writeBinList(int currentFileIndex, List<TemporalBin> binList) throws IOException {
-        File file = getFile(currentFileIndex);
-        writeToFile(binList, file);
-    }
-
-    private void readBinList(int currentFileIndex, List<TemporalBin> binList) throws IOException {
-        File file = getFile(currentFileIndex);
-        if (file.exists()) {
-            readFromFile(file, binList);
-        }
-    }
-
-    private static void writeToFile(List<TemporalBin> temporalBins, File file) throws IOException {
-        FileOutputStream fos = new FileOutputStream(file);
-        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, 5 * 1024 * 1024));
-        try {
-            for (TemporalBin bin : temporalBins) {
-                dos.writeLong(bin.getIndex());
-                bin.write(dos);
+    public synchronized void close() {
+        if (binStore != null) {
+            try {
+                binStore.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error closing temporal bin store.", e);
             }
-        } finally {
-            dos.close();
+            binStore = null;
         }
+        FileUtils.deleteTree(tempDir);
     }
 
-    private static void readFromFile(File file, List<TemporalBin> temporalBins) throws IOException {
-        FileInputStream fis = new FileInputStream(file);
-        DataInputStream dis = new DataInputStream(new BufferedInputStream(fis, 5 * 1024 * 1024));
-        try {
-            while (dis.available() != 0) {
-                long binIndex = dis.readLong();
-                temporalBins.add(TemporalBin.read(binIndex, dis));
-            }
-        } finally {
-            dis.close();
-        }
-
+    static int computeBinsPerChunk(int numberOfBins, int maxNumberOfChunks, int preferredBinsPerChunk) {
+        int numChunks = (int) Math.ceil(numberOfBins / (float) preferredBinsPerChunk);
+        numChunks = Math.min(numChunks, maxNumberOfChunks);
+        int binsPerChunk = (int) Math.ceil(numberOfBins / (float) numChunks);
+        return binsPerChunk < preferredBinsPerChunk ? preferredBinsPerChunk : binsPerChunk;
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class LongSpatialBinMapTest {
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        final LongSpatialBinMap map = new LongSpatialBinMap();
+        assertTrue(map.isEmpty());
+
+        final SpatialBin bin1 = new SpatialBin(1, 1);
+        final SpatialBin bin2 = new SpatialBin(-2, 1);
+        final SpatialBin bin3 = new SpatialBin(Long.MAX_VALUE, 1);
+        map.put(1, bin1, 0);
+        map.put(-2, bin2, 0);
+        map.put(Long.MAX_VALUE, bin3, 0);
+        assertEquals(3, map.size());
+        assertSame(bin1, map.get(1));
+        assertSame(bin2, map.get(-2));
+        assertSame(bin3, map.get(Long.MAX_VALUE));
+        assertNull(map.get(0));
+
+        final SpatialBin bin4 = new SpatialBin(1, 1);
+        map.put(1, bin4, 0);
+        assertEquals(3, map.size());
+        assertSame(bin4, map.get(1));
+
+        assertSame(bin2, map.remove(-2));
+        assertNull(map.remove(-2));
+        assertEquals(2, map.size());
+        assertNull(map.get(-2));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void testRemoveMarkedBefore() throws Exception {
+        final LongSpatialBinMap map = new LongSpatialBinMap();
+        for (int i = 0; i < 10; i++) {
+            map.put(i, new SpatialBin(i, 1), 1);
+        }
+        assertNotNull(map.get(3, 2));
+        assertNotNull(map.get(7, 2));
+        map.put(10, new SpatialBin(10, 1), 2);
+
+        final List<SpatialBin> removedBins = new ArrayList<>();
+        map.removeMarkedBefore(2, removedBins);
+        assertEquals(8, removedBins.size());
+        assertEquals(3, map.size());
+        assertNotNull(map.get(3));
+        assertNotNull(map.get(7));
+        assertNotNull(map.get(10));
+        for (SpatialBin removedBin : removedBins) {
+            assertNull(map.get(removedBin.getIndex()));
+        }
+
+        removedBins.clear();
+        map.removeAll(removedBins);
+        assertEquals(3, removedBins.size());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testAgainstTreeMap() throws Exception {
+        final LongSpatialBinMap map = new LongSpatialBinMap(4);
+        final Map<Long, SpatialBin> expectedMap = new TreeMap<>();
+        final Map<Long, Integer> expectedMarks = new TreeMap<>();
+        final Random random = new Random(5033);
+        for (int mark = 1; mark <= 200; mark++) {
+            // a band of mostly consecutive bin indexes moving along, like the bins of swath slices
+            final long offset = mark * 100L;
+            for (int i = 0; i < 150; i++) {
+                final long key = offset + random.nextInt(300);
+                SpatialBin bin = map.get(key, mark);
+                assertSame(expectedMap.get(key), bin);
+                if (bin == null) {
+                    bin = new SpatialBin(key, 1);
+                    map.put(key, bin, mark);
+                    expectedMap.put(key, bin);
+                }
+                expectedMarks.put(key, mark);
+            }
+            if (random.nextInt(10) == 0) {
+                final long key = offset + random.nextInt(300);
+                assertSame(expectedMap.remove(key), map.remove(key));
+                expectedMarks.remove(key);
+            }
+
+            final List<SpatialBin> removedBins = new ArrayList<>();
+            map.removeMarkedBefore(mark, removedBins);
+            int expectedNumRemoved = 0;
+            for (Iterator<Map.Entry<Long, Integer>> iterator = expectedMarks.entrySet().iterator(); iterator.hasNext(); ) {
+                final Map.Entry<Long, Integer> entry = iterator.next();
+                if (entry.getValue() < mark) {
+                    expectedMap.remove(entry.getKey());
+                    iterator.remove();
+                    expectedNumRemoved++;
+                }
+            }
+            assertEquals(expectedNumRemoved, removedBins.size());
+            assertEquals(expectedMap.size(), map.size());
+            for (Map.Entry<Long, SpatialBin> entry : expectedMap.entrySet()) {
+                assertSame(entry.getValue(), map.get(entry.getKey()));
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning;
+
+import org.esa.snap.binning.aggregators.AggregatorAverage;
+import org.esa.snap.binning.support.BinningContextImpl;
+import org.esa.snap.binning.support.ObservationImpl;
+import org.esa.snap.binning.support.SEAGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measures the time the {@link SpatialBinner} needs to bin slices of a simulated satellite swath and
+ * compares it with the former implementation based on {@code TreeMap<Long, SpatialBin>}.
+ * <p>
+ * The swath is slightly inclined against the meridians, like the swaths of sun-synchronous orbits.
+ * Each pixel is super-sampled into 3 x 3 observations.
+ * <p>
+ * Usage: {@code SpatialBinnerPerformanceTest [MERIS_RR|MERIS_FR|OLCI_FR [<numRows>]]}
+ */
+public class SpatialBinnerPerformanceTest {
+
+    private enum Swath {
+        // width in pixels, pixel size in degrees
+        MERIS_RR(1121, 0.0108),
+        MERIS_FR(2241, 0.0027),
+        OLCI_FR(4865, 0.0027);
+
+        final int width;
+        final double pixelSize;
+
+        Swath(int width, double pixelSize) {
+            this.width = width;
+            this.pixelSize = pixelSize;
+        }
+    }
+
+    private static final int SLICE_HEIGHT = 64;
+    private static final int NUM_SLICES = 40;
+    private static final int SUPER_SAMPLING = 3;
+
+    public static void main(String[] args) {
+        final Swath swath = args.length > 0 ? Swath.valueOf(args[0]) : Swath.MERIS_RR;
+        final int numRows = args.length > 1 ? Integer.parseInt(args[1]) : 4320;
+
+        final MyVariableContext variableContext = new MyVariableContext("x");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorAverage(variableContext, "x", 0.0));
+        final BinningContext binningContext = new BinningContextImpl(new SEAGrid(numRows), binManager,
+                                                                     CompositingType.BINNING, SUPER_SAMPLING, null, null);
+        System.out.printf("swath = %s, grid rows = %d, slices = %d x %d x %d%n",
+                          swath, numRows, NUM_SLICES, swath.width, SLICE_HEIGHT);
+
+        for (int i = 0; i < 3; i++) {
+            final CountingConsumer consumer1 = new CountingConsumer();
+            final TreeMapSpatialBinner treeMapBinner = new TreeMapSpatialBinner(binningContext, consumer1);
+            long time1 = 0;
+            for (int slice = 0; slice < NUM_SLICES; slice++) {
+                final List<Observation> observations = createSlice(swath, slice);
+                final long t0 = System.nanoTime();
+                treeMapBinner.processObservationSlice(observations);
+                time1 += System.nanoTime() - t0;
+            }
+            treeMapBinner.complete();
+
+            final CountingConsumer consumer2 = new CountingConsumer();
+            final SpatialBinner spatialBinner = new SpatialBinner(binningContext, consumer2);
+            long time2 = 0;
+            for (int slice = 0; slice < NUM_SLICES; slice++) {
+                final List<Observation> observations = createSlice(swath, slice);
+                final long t0 = System.nanoTime();
+                spatialBinner.processObservationSlice(observations);
+                time2 += System.nanoTime() - t0;
+            }
+            spatialBinner.complete();
+
+            System.out.printf("TreeMap: %.1f ms, %d bins; SpatialBinner: %.1f ms, %d bins%n",
+                              time1 / 1.0e6, consumer1.numBins, time2 / 1.0e6, consumer2.numBins);
+        }
+    }
+
+    private static List<Observation> createSlice(Swath swath, int sliceIndex) {
+        final double step = swath.pixelSize / SUPER_SAMPLING;
+        final List<Observation> observations = new ArrayList<>(swath.width * SLICE_HEIGHT * SUPER_SAMPLING * SUPER_SAMPLING);
+        for (int y = sliceIndex * SLICE_HEIGHT; y < (sliceIndex + 1) * SLICE_HEIGHT; y++) {
+            for (int x = 0; x < swath.width; x++) {
+                for (int sy = 0; sy < SUPER_SAMPLING; sy++) {
+                    for (int sx = 0; sx < SUPER_SAMPLING; sx++) {
+                        final double along = (y * SUPER_SAMPLING + sy + 0.5) * step;
+                        final double across = (x * SUPER_SAMPLING + sx + 0.5 - swath.width * SUPER_SAMPLING / 2) * step;
+                        final double lat = 60.0 - along + 0.2 * across;
+                        final double lon = 10.0 + across - 0.2 * along;
+                        observations.add(new ObservationImpl(lat, lon, 0.0, (float) (x * 0.001)));
+                    }
+                }
+            }
+        }
+        return observations;
+    }
+
+    private static class CountingConsumer implements SpatialBinConsumer {
+
+        long numBins;
+
+        @Override
+        public void consumeSpatialBins(BinningContext binningContext, List<SpatialBin> spatialBins) {
+            numBins += spatialBins.size();
+        }
+    }
+
+    /**
+     * The former implementation of {@link SpatialBinner#processObservationSlice(Iterable)}.
+     */
+    private static class TreeMapSpatialBinner {
+
+        private final BinningContext binningContext;
+        private final SpatialBinConsumer consumer;
+        private final Map<Long, SpatialBin> activeBinMap = new TreeMap<>();
+        private final Map<Long, SpatialBin> finalizedBinMap = new TreeMap<>();
+
+        TreeMapSpatialBinner(BinningContext binningContext, SpatialBinConsumer consumer) {
+            this.binningContext = binningContext;
+            this.consumer = consumer;
+        }
+
+        void processObservationSlice(Iterable<Observation> observations) {
+            final PlanetaryGrid planetaryGrid = binningContext.getPlanetaryGrid();
+            final BinManager binManager = binningContext.getBinManager();
+            finalizedBinMap.putAll(activeBinMap);
+            for (Observation observation : observations) {
+                Long binIndex = planetaryGrid.getBinIndex(observation.getLatitude(), observation.getLongitude());
+                SpatialBin bin = activeBinMap.get(binIndex);
+                if (bin == null) {
+                    bin = binManager.createSpatialBin(binIndex);
+                    activeBinMap.put(binIndex, bin);
+                }
+                binManager.aggregateSpatialBin(observation, bin);
+                finalizedBinMap.remove(binIndex);
+            }
+            if (!finalizedBinMap.isEmpty()) {
+                for (Long key : finalizedBinMap.keySet()) {
+                    activeBinMap.remove(key);
+                }
+                emitSliceBins(finalizedBinMap);
+                finalizedBinMap.clear();
+            }
+        }
+
+        void complete() {
+            if (!activeBinMap.isEmpty()) {
+                emitSliceBins(activeBinMap);
+                activeBinMap.clear();
+            }
+        }
+
+        private void emitSliceBins(Map<Long, SpatialBin> binMap) {
+            final List<SpatialBin> bins = new ArrayList<>(binMap.values());
+            for (SpatialBin bin : bins) {
+                binningContext.getBinManager().completeSpatialBin(bin);
+            }
+            try {
+                consumer.consumeSpatialBins(binningContext, bins);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
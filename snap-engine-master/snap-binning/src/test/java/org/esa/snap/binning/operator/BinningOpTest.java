@@ -328,6 +328,51 @@ public class BinningOpTest {
     }
 
 
+    /**
+     * Same as {@link #testGlobalBinning}, but the source products are binned in parallel.
+     * The small buffer size forces the products to wait for their turn while being binned.
+     *
+     * @throws Exception if something goes badly wrong
+     */
+    @Test
+    public void testGlobalBinningInParallel() throws Exception {
+        final File targetFile = getTestFile("target-1.dim");
+
+        float obs1 = 0.2F;
+        float obs2 = 0.4F;
+        float obs3 = 0.6F;
+        float obs4 = 0.8F;
+        float obs5 = 1.0F;
+
+        final BinningOp binningOp = createBinningOp();
+        binningOp.setAggregatorConfigs(chlAgg(), p70Agg());
+        binningOp.setNumRows(180);
+        binningOp.setMaskExpr("true");
+        binningOp.setNumParallelProducts(3);
+        binningOp.setMaxBufferedBinsPerProduct(1);
+        binningOp.setSourceProducts(createSourceProduct(1, obs1),
+                createSourceProduct(2, obs2),
+                createSourceProduct(3, obs3),
+                createSourceProduct(4, obs4),
+                createSourceProduct(5, obs5));
+
+        JtsGeometryConverter geometryConverter = new JtsGeometryConverter();
+        binningOp.setOutputFile(targetFile.getPath());
+        binningOp.setOutputType("Product");
+        binningOp.setOutputFormat("BEAM-DIMAP");
+        binningOp.setStartDateTime("2002-01-01");
+        binningOp.setPeriodDuration(10.0);
+        binningOp.setRegion(geometryConverter.parse("POLYGON ((-180 -90, -180 90, 180 90, 180 -90, -180 -90))"));
+
+        final Product targetProduct = binningOp.getTargetProduct();
+        assertNotNull(targetProduct);
+        try {
+            assertGlobalBinningProductIsOk(targetProduct, null, obs1, obs2, obs3, obs4, obs5);
+        } finally {
+            targetProduct.dispose();
+        }
+    }
+
     /**
      * Same as {@link #testGlobalBinning}, but this time via the GPF facade.
      *
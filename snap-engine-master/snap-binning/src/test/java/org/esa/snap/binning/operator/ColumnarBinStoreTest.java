@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning.operator;
+
+import org.esa.snap.binning.BinManager;
+import org.esa.snap.binning.MyVariableContext;
+import org.esa.snap.binning.SpatialBin;
+import org.esa.snap.binning.TemporalBin;
+import org.esa.snap.binning.VariableContext;
+import org.esa.snap.binning.WritableVector;
+import org.esa.snap.binning.aggregators.AggregatorAverage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+
+import static org.esa.snap.binning.aggregators.AggregatorTestUtils.obs;
+import static org.junit.Assert.*;
+
+public class ColumnarBinStoreTest {
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        final ColumnarBinStore binStore = new ColumnarBinStore(3, 7, null);
+        try {
+            assertStoreWorks(binStore);
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        final File file = File.createTempFile("bins-", ".tmp");
+        final ColumnarBinStore binStore = new ColumnarBinStore(3, 7, file);
+        try {
+            assertStoreWorks(binStore);
+            assertTrue(file.length() > 0);
+        } finally {
+            binStore.close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    @Test
+    public void testBinViewIsWritable() throws Exception {
+        final ColumnarBinStore binStore = new ColumnarBinStore(2, 4, null);
+        try {
+            binStore.add(createBin(42, 2, 1.0F));
+            final TemporalBin bin = binStore.get(0);
+            bin.setNumObs(7);
+            bin.setNumPasses(3);
+            final WritableVector vector = bin.toVector();
+            assertEquals(2, vector.size());
+            vector.set(1, -1.5F);
+
+            final TemporalBin sameBin = binStore.get(0);
+            assertEquals(42, sameBin.getIndex());
+            assertEquals(7, sameBin.getNumObs());
+            assertEquals(3, sameBin.getNumPasses());
+            assertArrayEquals(new float[]{42.0F, -1.5F}, sameBin.getFeatureValues(), 0.0F);
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test
+    public void testBinViewIsSerializedLikeTemporalBin() throws Exception {
+        final ColumnarBinStore binStore = new ColumnarBinStore(2, 4, null);
+        try {
+            final TemporalBin bin = createBin(11, 2, 0.5F);
+            binStore.add(bin);
+
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            bin.write(new DataOutputStream(expected));
+            final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            binStore.get(0).write(new DataOutputStream(actual));
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+            final TemporalBin readBin = TemporalBin.read(11, new DataInputStream(new ByteArrayInputStream(actual.toByteArray())));
+            assertEquals(bin.toString(), readBin.toString());
+            assertEquals(bin.toString(), binStore.get(0).toString());
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test
+    public void testBinViewCanBeReusedLikeTemporalBin() throws Exception {
+        final ColumnarBinStore binStore = new ColumnarBinStore(2, 4, null);
+        try {
+            binStore.add(createBin(3, 2, 1.0F));
+            final TemporalBin bin = binStore.get(0);
+            bin.setNumFeatures(2);
+            assertArrayEquals(new float[2], binStore.get(0).getFeatureValues(), 0.0F);
+
+            bin.setNumFeatures(3);
+            assertEquals(3, bin.getNumFeatures());
+            bin.toVector().set(2, 4.5F);
+            assertArrayEquals(new float[]{0.0F, 0.0F, 4.5F}, bin.getFeatureValues(), 0.0F);
+
+            final TemporalBin otherBin = createBin(3, 4, 2.0F);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            otherBin.write(new DataOutputStream(bytes));
+            bin.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            assertEquals(otherBin.toString(), bin.toString());
+
+            bin.setNumFeatures(2);
+            bin.toVector().set(0, 8.0F);
+            assertEquals(8.0F, binStore.get(0).getFeatureValue(0), 0.0F);
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test
+    public void testBinManagerWorksOnBinViews() throws Exception {
+        final VariableContext variableContext = new MyVariableContext("c");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorAverage(variableContext, "c", 0.0));
+        final SpatialBin spatialBin1 = createSpatialBin(binManager, 2.0F, 4.0F);
+        final SpatialBin spatialBin2 = createSpatialBin(binManager, 6.0F);
+
+        final TemporalBin expectedBin = binManager.createTemporalBin(5);
+        binManager.aggregateTemporalBin(spatialBin1, expectedBin);
+        binManager.aggregateTemporalBin(spatialBin2, expectedBin);
+        binManager.completeTemporalBin(expectedBin);
+
+        final ColumnarBinStore binStore = new ColumnarBinStore(binManager.getTemporalFeatureCount(), 4, null);
+        try {
+            binStore.add(binManager.createTemporalBin(5));
+            final TemporalBin view = binStore.get(0);
+            binManager.aggregateTemporalBin(spatialBin1, view);
+            binManager.aggregateTemporalBin(spatialBin2, view);
+            binManager.completeTemporalBin(view);
+
+            final TemporalBin storedBin = binStore.get(0);
+            assertEquals(expectedBin.getNumObs(), storedBin.getNumObs());
+            assertEquals(expectedBin.getNumPasses(), storedBin.getNumPasses());
+            assertArrayEquals(expectedBin.getFeatureValues(), storedBin.getFeatureValues(), 1e-6F);
+
+            final WritableVector expectedOutput = binManager.createOutputVector();
+            binManager.computeOutput(expectedBin, expectedOutput);
+            final WritableVector actualOutput = binManager.createOutputVector();
+            binManager.computeOutput(storedBin, actualOutput);
+            for (int i = 0; i < expectedOutput.size(); i++) {
+                assertEquals(expectedOutput.get(i), actualOutput.get(i), 1e-6F);
+            }
+        } finally {
+            binStore.close();
+        }
+    }
+
+    @Test
+    public void testWrongNumberOfFeatures() throws Exception {
+        final ColumnarBinStore binStore = new ColumnarBinStore(3, 4, null);
+        try {
+            binStore.add(new TemporalBin(1, 2));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // ok
+        } finally {
+            binStore.close();
+        }
+    }
+
+    private static void assertStoreWorks(ColumnarBinStore binStore) throws Exception {
+        final int numBins = 50;
+        for (int i = 0; i < numBins; i++) {
+            assertEquals(i, binStore.add(createBin(1000L * i, 3, 0.25F * i)));
+        }
+        assertEquals(numBins, binStore.size());
+        assertEquals(3, binStore.getNumFeatures());
+        for (int i = numBins - 1; i >= 0; i--) {
+            final TemporalBin bin = binStore.get(i);
+            assertEquals(1000L * i, bin.getIndex());
+            assertEquals(i + 1, bin.getNumObs());
+            assertEquals(i % 3, bin.getNumPasses());
+            assertEquals(3, bin.getNumFeatures());
+            assertArrayEquals(createBin(1000L * i, 3, 0.25F * i).getFeatureValues(), bin.getFeatureValues(), 0.0F);
+            assertEquals(-0.25F * i, bin.toVector().get(2), 0.0F);
+        }
+        try {
+            binStore.get(numBins);
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+    }
+
+    private static SpatialBin createSpatialBin(BinManager binManager, float... values) {
+        final SpatialBin spatialBin = binManager.createSpatialBin(5);
+        for (float value : values) {
+            binManager.aggregateSpatialBin(obs(0.0, value), spatialBin);
+        }
+        binManager.completeSpatialBin(spatialBin);
+        return spatialBin;
+    }
+
+    private static TemporalBin createBin(long index, int numFeatures, float value) {
+        final TemporalBin bin = new TemporalBin(index, numFeatures);
+        bin.setNumObs((int) (index / 1000) + 1);
+        bin.setNumPasses((int) (index / 1000) % 3);
+        final float[] featureValues = bin.getFeatureValues();
+        featureValues[0] = index;
+        featureValues[1] = value;
+        if (featureValues.length > 2) {
+            featureValues[2] = -value;
+        }
+        return bin;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.snap.binning.operator;
+
+import org.esa.snap.binning.BinningContext;
+import org.esa.snap.binning.SpatialBin;
+import org.esa.snap.binning.SpatialBinConsumer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OrderedSpatialBinConsumerTest {
+
+    private List<Long> consumedBinIndexes;
+    private SpatialBinConsumer targetConsumer;
+    private OrderedSpatialBinConsumer.Sequencer sequencer;
+
+    @Before
+    public void setUp() throws Exception {
+        consumedBinIndexes = Collections.synchronizedList(new ArrayList<Long>());
+        targetConsumer = new SpatialBinConsumer() {
+            @Override
+            public void consumeSpatialBins(BinningContext binningContext, List<SpatialBin> spatialBins) {
+                for (SpatialBin spatialBin : spatialBins) {
+                    consumedBinIndexes.add(spatialBin.getIndex());
+                }
+            }
+        };
+        sequencer = new OrderedSpatialBinConsumer.Sequencer();
+    }
+
+    @Test
+    public void testBinsAreConsumedInProductOrder() throws Exception {
+        final OrderedSpatialBinConsumer consumer0 = new OrderedSpatialBinConsumer(targetConsumer, sequencer, 0, 100);
+        final OrderedSpatialBinConsumer consumer1 = new OrderedSpatialBinConsumer(targetConsumer, sequencer, 1, 100);
+        final OrderedSpatialBinConsumer consumer2 = new OrderedSpatialBinConsumer(targetConsumer, sequencer, 2, 100);
+
+        consumer2.consumeSpatialBins(null, createBins(20, 21));
+        consumer1.consumeSpatialBins(null, createBins(10));
+        consumer0.consumeSpatialBins(null, createBins(0, 1));
+        consumer1.consumeSpatialBins(null, createBins(11));
+        assertEquals(2, consumer1.getNumBufferedBins());
+        assertEquals(2, consumer2.getNumBufferedBins());
+
+        final Thread thread2 = startCommit(consumer2, 2);
+        final Thread thread1 = startCommit(consumer1, 1);
+        thread2.join(100);
+        thread1.join(100);
+        assertTrue(consumedBinIndexes.isEmpty());
+
+        consumer0.commit();
+        sequencer.complete(0);
+        thread1.join();
+        thread2.join();
+
+        assertEquals(createIndexes(0, 1, 10, 11, 20, 21), consumedBinIndexes);
+        assertEquals(0, consumer1.getNumBufferedBins());
+        assertEquals(0, consumer2.getNumBufferedBins());
+    }
+
+    @Test
+    public void testBinsArePassedThroughIfBufferIsExceeded() throws Exception {
+        final OrderedSpatialBinConsumer consumer0 = new OrderedSpatialBinConsumer(targetConsumer, sequencer, 0, 2);
+        final OrderedSpatialBinConsumer consumer1 = new OrderedSpatialBinConsumer(targetConsumer, sequencer, 1, 2);
+
+        consumer0.consumeSpatialBins(null, createBins(0, 1));
+        assertTrue(consumedBinIndexes.isEmpty());
+        consumer0.consumeSpatialBins(null, createBins(2));
+        assertEquals(createIndexes(0, 1, 2), consumedBinIndexes);
+        consumer0.consumeSpatialBins(null, createBins(3));
+        assertEquals(createIndexes(0, 1, 2, 3), consumedBinIndexes);
+        assertEquals(0, consumer0.getNumBufferedBins());
+
+        final Thread thread1 = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    consumer1.consumeSpatialBins(null, createBins(10, 11, 12));
+                    consumer1.consumeSpatialBins(null, createBins(13));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        thread1.start();
+        thread1.join(100);
+        assertTrue(thread1.isAlive());
+        assertEquals(createIndexes(0, 1, 2, 3), consumedBinIndexes);
+
+        consumer0.commit();
+        sequencer.complete(0);
+        thread1.join();
+        assertEquals(createIndexes(0, 1, 2, 3, 10, 11, 12, 13), consumedBinIndexes);
+    }
+
+    @Test
+    public void testSequencerSkipsCompletedIndexes() throws Exception {
+        sequencer.complete(1);
+        sequencer.complete(2);
+        sequencer.complete(0);
+        // must not block
+        sequencer.awaitTurn(3);
+        sequencer.awaitTurn(0);
+    }
+
+    private Thread startCommit(final OrderedSpatialBinConsumer consumer, final int index) {
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    consumer.commit();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    sequencer.complete(index);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static List<SpatialBin> createBins(long... binIndexes) {
+        final List<SpatialBin> spatialBins = new ArrayList<>();
+        for (long binIndex : binIndexes) {
+            spatialBins.add(new SpatialBin(binIndex, 2));
+        }
+        return spatialBins;
+    }
+
+    private static List<Long> createIndexes(long... binIndexes) {
+        final List<Long> indexes = new ArrayList<>();
+        for (long binIndex : binIndexes) {
+            indexes.add(binIndex);
+        }
+        return indexes;
+    }
+}
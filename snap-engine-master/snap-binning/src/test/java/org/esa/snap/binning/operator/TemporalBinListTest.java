@@ -29,8 +29,13 @@ public class TemporalBinListTest {
     }
 
     @Test
-    public void testComputeBinsPerFile() throws Exception {
-        assertEquals(15000, TemporalBinList.computeBinsPerFile(235000, 100, 15000));
-        assertEquals(23500, TemporalBinList.computeBinsPerFile(2350000, 100, TemporalBinList.DEFAULT_BINS_PER_FILE));
+    public void testComputeBinsPerChunk() throws Exception {
+        assertEquals(15000, TemporalBinList.computeBinsPerChunk(235000, 100, 15000));
+        assertEquals(23500, TemporalBinList.computeBinsPerChunk(2350000, 100, 1000));
+        assertEquals(TemporalBinList.DEFAULT_BINS_PER_CHUNK,
+                     TemporalBinList.computeBinsPerChunk(2350000, TemporalBinList.DEFAULT_MAX_CHUNKS,
+                                                         TemporalBinList.DEFAULT_BINS_PER_CHUNK));
+        assertEquals(2097152, TemporalBinList.computeBinsPerChunk(Integer.MAX_VALUE, TemporalBinList.DEFAULT_MAX_CHUNKS,
+                                                                   TemporalBinList.DEFAULT_BINS_PER_CHUNK));
     }
 }
@@ -23,7 +23,6 @@ import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.FlagCoding;
 import org.esa.snap.core.datamodel.IndexCoding;
 import org.esa.snap.core.datamodel.Mask;
-import org.esa.snap.core.datamodel.PixelPos;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.datamodel.ProductNodeGroup;
@@ -45,6 +44,7 @@ import org.esa.snap.core.util.StringUtils;
 import java.awt.Rectangle;
 import java.text.MessageFormat;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -114,6 +114,7 @@ public class CollocateOp extends Operator {
     private ResamplingType resamplingType;
 
     private transient Map<Band, RasterDataNode> sourceRasterMap;
+    private transient Map<Rectangle, CollocationPlan> collocationPlanCache;
 
     public Product getMasterProduct() {
         return masterProduct;
@@ -201,6 +202,13 @@ public class CollocateOp extends Operator {
         }
 
         sourceRasterMap = new HashMap<>(31);
+        final int maxCachedPlanCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+        collocationPlanCache = new LinkedHashMap<Rectangle, CollocationPlan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Rectangle, CollocationPlan> eldest) {
+                return size() > maxCachedPlanCount;
+            }
+        };
 
         targetProduct = new Product(
                 targetProductName != null ? targetProductName : masterProduct.getName() + "_" + slaveProduct.getName(),
@@ -280,25 +288,21 @@ public class CollocateOp extends Operator {
                                                                                                                OperatorException {
         pm.beginTask("Collocating bands...", targetProduct.getNumBands() + 1);
         try {
-            final PixelPos[] sourcePixelPositions = ProductUtils.computeSourcePixelCoordinates(
-                    slaveProduct.getSceneGeoCoding(),
-                    slaveProduct.getSceneRasterWidth(),
-                    slaveProduct.getSceneRasterHeight(),
-                    masterProduct.getSceneGeoCoding(),
-                    targetRectangle);
-            final Rectangle sourceRectangle = getBoundingBox(
-                    sourcePixelPositions,
-                    slaveProduct.getSceneRasterWidth(),
-                    slaveProduct.getSceneRasterHeight());
+            final CollocationPlan collocationPlan = getCollocationPlan(targetRectangle);
             pm.worked(1);
 
             for (final Band targetBand : targetProduct.getBands()) {
                 checkForCancellation();
                 final RasterDataNode sourceRaster = sourceRasterMap.get(targetBand);
                 final Tile targetTile = targetTileMap.get(targetBand);
-
-                collocateSourceBand(sourceRaster, sourceRectangle, sourcePixelPositions, targetTile,
-                                    SubProgressMonitor.create(pm, 1));
+                if (targetTile == null) {
+                    pm.worked(1);
+                } else if (sourceRaster.getProduct() == slaveProduct) {
+                    collocateSourceBand(sourceRaster, collocationPlan, targetTile, SubProgressMonitor.create(pm, 1));
+                } else {
+                    targetTile.setRawSamples(getSourceTile(sourceRaster, targetRectangle).getRawSamples());
+                    pm.worked(1);
+                }
             }
         } finally {
             pm.done();
@@ -310,18 +314,7 @@ public class CollocateOp extends Operator {
         final RasterDataNode sourceRaster = sourceRasterMap.get(targetBand);
 
         if (sourceRaster.getProduct() == slaveProduct) {
-            final PixelPos[] sourcePixelPositions = ProductUtils.computeSourcePixelCoordinates(
-                    slaveProduct.getSceneGeoCoding(),
-                    slaveProduct.getSceneRasterWidth(),
-                    slaveProduct.getSceneRasterHeight(),
-                    masterProduct.getSceneGeoCoding(),
-                    targetTile.getRectangle());
-            final Rectangle sourceRectangle = getBoundingBox(
-                    sourcePixelPositions,
-                    slaveProduct.getSceneRasterWidth(),
-                    slaveProduct.getSceneRasterHeight());
-
-            collocateSourceBand(sourceRaster, sourceRectangle, sourcePixelPositions, targetTile, pm);
+            collocateSourceBand(sourceRaster, getCollocationPlan(targetTile.getRectangle()), targetTile, pm);
         } else {
             targetTile.setRawSamples(getSourceTile(sourceRaster, targetTile.getRectangle()).getRawSamples());
         }
@@ -330,19 +323,40 @@ public class CollocateOp extends Operator {
     @Override
     public void dispose() {
         sourceRasterMap = null;
+        collocationPlanCache = null;
         super.dispose();
     }
 
-    private void collocateSourceBand(RasterDataNode sourceBand, Rectangle sourceRectangle,
-                                     PixelPos[] sourcePixelPositions,
-                                     Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        pm.beginTask(MessageFormat.format("collocating band {0}", sourceBand.getName()), targetTile.getHeight());
+    /**
+     * Gets the collocation plan of a target tile. When the target bands are computed tile by tile
+     * instead of as a tile stack, the plans of the most recently computed tiles are reused
+     * for the other bands.
+     */
+    private CollocationPlan getCollocationPlan(Rectangle targetRectangle) {
+        CollocationPlan collocationPlan;
+        synchronized (collocationPlanCache) {
+            collocationPlan = collocationPlanCache.get(targetRectangle);
+        }
+        if (collocationPlan == null) {
+            collocationPlan = CollocationPlan.create(slaveProduct.getSceneGeoCoding(),
+                                                     slaveProduct.getSceneRasterWidth(),
+                                                     slaveProduct.getSceneRasterHeight(),
+                                                     masterProduct.getSceneGeoCoding(),
+                                                     targetRectangle,
+                                                     ResamplingType.NEAREST_NEIGHBOUR.getResampling(),
+                                                     resamplingType.getResampling());
+            synchronized (collocationPlanCache) {
+                collocationPlanCache.put(new Rectangle(targetRectangle), collocationPlan);
+            }
+        }
+        return collocationPlan;
+    }
+
+    private void collocateSourceBand(RasterDataNode sourceBand, CollocationPlan collocationPlan,
+                                     Tile targetTile, final ProgressMonitor pm) throws OperatorException {
+        pm.beginTask(MessageFormat.format("collocating band {0}", sourceBand.getName()), targetTile.getHeight() + 1);
         try {
             final RasterDataNode targetBand = targetTile.getRasterDataNode();
-            final Rectangle targetRectangle = targetTile.getRectangle();
-
-            final int sourceRasterHeight = slaveProduct.getSceneRasterHeight();
-            final int sourceRasterWidth = slaveProduct.getSceneRasterWidth();
 
             final Resampling resampling;
             if (isFlagBand(sourceBand) || isValidPixelExpressionUsed(sourceBand)) {
@@ -350,50 +364,21 @@ public class CollocateOp extends Operator {
             } else {
                 resampling = resamplingType.getResampling();
             }
-            final Resampling.Index resamplingIndex = resampling.createIndex();
             final double noDataValue = targetBand.getGeophysicalNoDataValue();
 
-            if (sourceRectangle != null) {
-                final Tile sourceTile = getSourceTile(sourceBand, sourceRectangle);
-                final ResamplingRaster resamplingRaster = new ResamplingRaster(sourceTile);
-
-                for (int y = targetRectangle.y, index = 0; y < targetRectangle.y + targetRectangle.height; ++y) {
-                    for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; ++x, ++index) {
-                        final PixelPos sourcePixelPos = sourcePixelPositions[index];
-
-                        if (sourcePixelPos != null) {
-                            resampling.computeIndex(sourcePixelPos.x, sourcePixelPos.y,
-                                                    sourceRasterWidth, sourceRasterHeight, resamplingIndex);
-                            double sample;
-                            if (resampling == Resampling.NEAREST_NEIGHBOUR) {
-                                sample = sourceTile.getSampleDouble((int) resamplingIndex.i0, (int) resamplingIndex.j0);
-                            } else {
-                                try {
-                                    sample = resampling.resample(resamplingRaster, resamplingIndex);
-                                } catch (Exception e) {
-                                    throw new OperatorException(e.getMessage());
-                                }
-                            }
-                            if (Double.isNaN(sample)) {
-                                sample = noDataValue;
-                            }
-                            targetTile.setSample(x, y, sample);
-                        } else {
-                            targetTile.setSample(x, y, noDataValue);
-                        }
-                    }
-                    checkForCancellation();
-                    pm.worked(1);
-                }
-            } else {
-                for (int y = targetRectangle.y, index = 0; y < targetRectangle.y + targetRectangle.height; ++y) {
-                    for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; ++x, ++index) {
-                        targetTile.setSample(x, y, noDataValue);
-                    }
+            final Rectangle sourceRectangle = collocationPlan.getSourceRectangle();
+            final Tile sourceTile = sourceRectangle != null ? getSourceTile(sourceBand, sourceRectangle) : null;
+            pm.worked(1);
+
+            final double[] targetSamples = new double[targetTile.getWidth() * targetTile.getHeight()];
+            collocationPlan.collocate(sourceTile, resampling, noDataValue, targetSamples, new Runnable() {
+                @Override
+                public void run() {
                     checkForCancellation();
                     pm.worked(1);
                 }
-            }
+            });
+            targetTile.setSamples(targetSamples);
         } finally {
             pm.done();
         }
@@ -493,43 +478,6 @@ public class CollocateOp extends Operator {
         product.getIndexCodingGroup().add(targetIndexCoding);
     }
 
-    private static Rectangle getBoundingBox(PixelPos[] pixelPositions, int maxWidth, int maxHeight) {
-        int minX = Integer.MAX_VALUE;
-        int maxX = Integer.MIN_VALUE;
-        int minY = Integer.MAX_VALUE;
-        int maxY = Integer.MIN_VALUE;
-
-        for (final PixelPos pixelsPos : pixelPositions) {
-            if (pixelsPos != null) {
-                final int x = (int) Math.floor(pixelsPos.getX());
-                final int y = (int) Math.floor(pixelsPos.getY());
-
-                if (x < minX) {
-                    minX = x;
-                }
-                if (x > maxX) {
-                    maxX = x;
-                }
-                if (y < minY) {
-                    minY = y;
-                }
-                if (y > maxY) {
-                    maxY = y;
-                }
-            }
-        }
-        if (minX > maxX || minY > maxY) {
-            return null;
-        }
-
-        minX = Math.max(minX - 2, 0);
-        maxX = Math.min(maxX + 2, maxWidth - 1);
-        minY = Math.max(minY - 2, 0);
-        maxY = Math.min(maxY + 2, maxHeight - 1);
-
-        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
-    }
-
     private static boolean isFlagBand(RasterDataNode sourceRaster) {
         return (sourceRaster instanceof Band && ((Band) sourceRaster).isFlagBand());
     }
@@ -539,50 +487,6 @@ public class CollocateOp extends Operator {
         return validPixelExpression != null && !validPixelExpression.trim().isEmpty();
     }
 
-    private static class ResamplingRaster implements Resampling.Raster {
-
-        private final Tile tile;
-
-        public ResamplingRaster(Tile tile) {
-            this.tile = tile;
-        }
-
-        public final int getWidth() {
-            return tile.getWidth();
-        }
-
-        public final int getHeight() {
-            return tile.getHeight();
-        }
-
-        public boolean getSamples(int[] x, int[] y, double[][] samples) {
-            boolean allValid = true;
-            for (int i = 0; i < y.length; i++) {
-                for (int j = 0; j < x.length; j++) {
-                    samples[i][j] = tile.getSampleDouble(x[j], y[i]);
-                    if (isNoDataValue(samples[i][j])) {
-                        allValid = false;
-                    }
-                }
-            }
-            return allValid;
-        }
-
-        private boolean isNoDataValue(double sample) {
-            final RasterDataNode rasterDataNode = tile.getRasterDataNode();
-
-            if (rasterDataNode.isNoDataValueUsed()) {
-                if (rasterDataNode.isScalingApplied()) {
-                    return rasterDataNode.getGeophysicalNoDataValue() == sample;
-                } else {
-                    return rasterDataNode.getNoDataValue() == sample;
-                }
-            }
-
-            return false;
-        }
-    }
-
     /**
      * Collocation operator SPI.
      */
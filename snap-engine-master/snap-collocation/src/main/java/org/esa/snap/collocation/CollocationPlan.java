@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.collocation;
+
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.datamodel.RasterDataNode;
+import org.esa.snap.core.dataop.resamp.Resampling;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.gpf.Tile;
+import org.esa.snap.core.util.ProductUtils;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The collocation plan of a target tile. For each target pixel, it holds the slave pixel indices and
+ * interpolation weights of the {@link Resampling}s used for the tile, so that they are computed only once
+ * per target tile and then applied to all slave rasters collocated for this tile. The indices and weights
+ * are kept in flat primitive arrays, the slave pixel positions they are computed from are not kept.
+ * <p>
+ * The results are the same as if each slave raster was resampled by the {@link Resampling} itself,
+ * apart from the interpolation weights, which are stored as floats.
+ *
+ * @since SNAP 2.0
+ */
+final class CollocationPlan {
+
+    private static final int NO_SOURCE_PIXEL = -1;
+
+    private final Rectangle targetRectangle;
+    private final Rectangle sourceRectangle;
+    private final Map<Resampling, Kernel> kernels;
+
+    /**
+     * @param targetRectangle      The target rectangle.
+     * @param sourcePixelPositions The slave pixel positions of the target pixels, {@code null} for target
+     *                             pixels not covered by the slave raster.
+     * @param sourceRasterWidth    The width of the slave raster.
+     * @param sourceRasterHeight   The height of the slave raster.
+     * @param resamplings          The resamplings this plan is used with.
+     */
+    CollocationPlan(Rectangle targetRectangle, PixelPos[] sourcePixelPositions,
+                    int sourceRasterWidth, int sourceRasterHeight, Resampling... resamplings) {
+        this.targetRectangle = targetRectangle;
+        this.sourceRectangle = getBoundingBox(sourcePixelPositions, sourceRasterWidth, sourceRasterHeight);
+        this.kernels = new HashMap<>();
+        if (sourceRectangle != null) {
+            for (Resampling resampling : resamplings) {
+                if (!kernels.containsKey(resampling)) {
+                    kernels.put(resampling, createKernel(resampling, sourcePixelPositions,
+                                                         sourceRasterWidth, sourceRasterHeight));
+                }
+            }
+        }
+    }
+
+    static CollocationPlan create(GeoCoding sourceGeoCoding, int sourceRasterWidth, int sourceRasterHeight,
+                                  GeoCoding targetGeoCoding, Rectangle targetRectangle, Resampling... resamplings) {
+        final PixelPos[] sourcePixelPositions = ProductUtils.computeSourcePixelCoordinates(
+                sourceGeoCoding, sourceRasterWidth, sourceRasterHeight, targetGeoCoding, targetRectangle);
+        return new CollocationPlan(targetRectangle, sourcePixelPositions, sourceRasterWidth, sourceRasterHeight,
+                                   resamplings);
+    }
+
+    Rectangle getTargetRectangle() {
+        return targetRectangle;
+    }
+
+    /**
+     * @return The rectangle of slave pixels required for this plan, or {@code null} if no target pixel
+     * is covered by the slave raster.
+     */
+    Rectangle getSourceRectangle() {
+        return sourceRectangle;
+    }
+
+    /**
+     * Resamples the slave samples of the given source tile onto the target rectangle, row by row.
+     *
+     * @param sourceTile    The source tile covering the {@link #getSourceRectangle() source rectangle},
+     *                      may be {@code null} if the source rectangle is {@code null}.
+     * @param resampling    The resampling method, one of those given when this plan was created.
+     * @param noDataValue   The (geo-)physical value set for target pixels without valid slave sample.
+     * @param targetSamples The (geo-)physical target samples, in the order of the target rectangle's pixels.
+     * @param rowDone       Run after each target row, e.g. to check for cancellation.
+     */
+    void collocate(Tile sourceTile, Resampling resampling, double noDataValue, double[] targetSamples,
+                   Runnable rowDone) {
+        final int width = targetRectangle.width;
+        final int height = targetRectangle.height;
+        if (sourceRectangle == null) {
+            for (int y = 0; y < height; y++) {
+                Arrays.fill(targetSamples, y * width, (y + 1) * width, noDataValue);
+                rowDone.run();
+            }
+            return;
+        }
+        final Kernel kernel = kernels.get(resampling);
+        if (kernel == null) {
+            throw new IllegalArgumentException("Collocation plan not created for resampling " + resampling.getName());
+        }
+        final SourceRaster sourceRaster = new SourceRaster(sourceTile, sourceRectangle);
+        for (int y = 0; y < height; y++) {
+            final int k1 = (y + 1) * width;
+            try {
+                kernel.apply(sourceRaster, targetSamples, y * width, k1);
+            } catch (Exception e) {
+                throw new OperatorException(e.getMessage());
+            }
+            for (int k = y * width; k < k1; k++) {
+                if (Double.isNaN(targetSamples[k])) {
+                    targetSamples[k] = noDataValue;
+                }
+            }
+            rowDone.run();
+        }
+    }
+
+    private Kernel createKernel(Resampling resampling, PixelPos[] sourcePixelPositions,
+                                int sourceRasterWidth, int sourceRasterHeight) {
+        if (resampling == Resampling.NEAREST_NEIGHBOUR) {
+            return new NearestNeighbourKernel(sourcePixelPositions, sourceRasterWidth, sourceRasterHeight);
+        } else if (resampling == Resampling.BILINEAR_INTERPOLATION) {
+            return new BilinearKernel(sourcePixelPositions, sourceRasterWidth, sourceRasterHeight);
+        } else {
+            return new GenericKernel(resampling, sourcePixelPositions, sourceRasterWidth, sourceRasterHeight);
+        }
+    }
+
+    private int getSourceOffset(double i, double j) {
+        return ((int) j - sourceRectangle.y) * sourceRectangle.width + ((int) i - sourceRectangle.x);
+    }
+
+    private static Rectangle getBoundingBox(PixelPos[] pixelPositions, int maxWidth, int maxHeight) {
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+
+        for (final PixelPos pixelsPos : pixelPositions) {
+            if (pixelsPos != null) {
+                final int x = (int) Math.floor(pixelsPos.getX());
+                final int y = (int) Math.floor(pixelsPos.getY());
+
+                if (x < minX) {
+                    minX = x;
+                }
+                if (x > maxX) {
+                    maxX = x;
+                }
+                if (y < minY) {
+                    minY = y;
+                }
+                if (y > maxY) {
+                    maxY = y;
+                }
+            }
+        }
+        if (minX > maxX || minY > maxY) {
+            return null;
+        }
+
+        minX = Math.max(minX - 2, 0);
+        maxX = Math.min(maxX + 2, maxWidth - 1);
+        minY = Math.max(minY - 2, 0);
+        maxY = Math.min(maxY + 2, maxHeight - 1);
+
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    private interface Kernel {
+
+        /**
+         * Computes the target samples {@code k0} (inclusive) to {@code k1} (exclusive), which are NaN
+         * for target pixels without slave pixel.
+         */
+        void apply(SourceRaster sourceRaster, double[] targetSamples, int k0, int k1) throws Exception;
+    }
+
+    /**
+     * Nearest neighbour: one sample offset per target pixel.
+     */
+    private final class NearestNeighbourKernel implements Kernel {
+
+        private final int[] offsets;
+
+        private NearestNeighbourKernel(PixelPos[] sourcePixelPositions, int sourceRasterWidth, int sourceRasterHeight) {
+            final Resampling.Index index = Resampling.NEAREST_NEIGHBOUR.createIndex();
+            offsets = new int[sourcePixelPositions.length];
+            for (int k = 0; k < offsets.length; k++) {
+                final PixelPos pixelPos = sourcePixelPositions[k];
+                if (pixelPos != null) {
+                    Resampling.NEAREST_NEIGHBOUR.computeIndex(pixelPos.x, pixelPos.y,
+                                                              sourceRasterWidth, sourceRasterHeight, index);
+                    offsets[k] = getSourceOffset(index.i0, index.j0);
+                } else {
+                    offsets[k] = NO_SOURCE_PIXEL;
+                }
+            }
+        }
+
+        @Override
+        public void apply(SourceRaster sourceRaster, double[] targetSamples, int k0, int k1) {
+            final double[] samples = sourceRaster.samples;
+            for (int k = k0; k < k1; k++) {
+                final int offset = offsets[k];
+                targetSamples[k] = offset != NO_SOURCE_PIXEL ? samples[offset] : Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Bilinear interpolation: the offset of the upper left sample, the steps to its right and lower
+     * neighbours (which are 0 at the raster borders) and the two weights per target pixel.
+     */
+    private final class BilinearKernel implements Kernel {
+
+        private static final byte STEP_X = 1;
+        private static final byte STEP_Y = 2;
+
+        private final int[] offsets;
+        private final byte[] steps;
+        private final float[] weightsX;
+        private final float[] weightsY;
+
+        private BilinearKernel(PixelPos[] sourcePixelPositions, int sourceRasterWidth, int sourceRasterHeight) {
+            final Resampling.Index index = Resampling.BILINEAR_INTERPOLATION.createIndex();
+            offsets = new int[sourcePixelPositions.length];
+            steps = new byte[sourcePixelPositions.length];
+            weightsX = new float[sourcePixelPositions.length];
+            weightsY = new float[sourcePixelPositions.length];
+            for (int k = 0; k < offsets.length; k++) {
+                final PixelPos pixelPos = sourcePixelPositions[k];
+                if (pixelPos != null) {
+                    Resampling.BILINEAR_INTERPOLATION.computeIndex(pixelPos.x, pixelPos.y,
+                                                                   sourceRasterWidth, sourceRasterHeight, index);
+                    offsets[k] = getSourceOffset(index.i[0], index.j[0]);
+                    steps[k] = (byte) ((index.i[1] > index.i[0] ? STEP_X : 0) | (index.j[1] > index.j[0] ? STEP_Y : 0));
+                    weightsX[k] = (float) index.ki[0];
+                    weightsY[k] = (float) index.kj[0];
+                } else {
+                    offsets[k] = NO_SOURCE_PIXEL;
+                }
+            }
+        }
+
+        @Override
+        public void apply(SourceRaster sourceRaster, double[] targetSamples, int k0, int k1) {
+            final double[] samples = sourceRaster.samples;
+            final int lineStride = sourceRectangle.width;
+            for (int k = k0; k < k1; k++) {
+                final int offset00 = offsets[k];
+                if (offset00 == NO_SOURCE_PIXEL) {
+                    targetSamples[k] = Double.NaN;
+                    continue;
+                }
+                final int offset01 = offset00 + ((steps[k] & STEP_X) != 0 ? 1 : 0);
+                final int offset10 = offset00 + ((steps[k] & STEP_Y) != 0 ? lineStride : 0);
+                final int offset11 = offset10 + (offset01 - offset00);
+                final double s00 = samples[offset00];
+                final double s01 = samples[offset01];
+                final double s10 = samples[offset10];
+                final double s11 = samples[offset11];
+                if (sourceRaster.isNoDataValue(s00) || sourceRaster.isNoDataValue(s01)
+                    || sourceRaster.isNoDataValue(s10) || sourceRaster.isNoDataValue(s11)) {
+                    targetSamples[k] = s00;
+                } else {
+                    final double ki = weightsX[k];
+                    final double kj = weightsY[k];
+                    targetSamples[k] = s00 * (1.0 - ki) * (1.0 - kj) +
+                                       s01 * ki * (1.0 - kj) +
+                                       s10 * (1.0 - ki) * kj +
+                                       s11 * ki * kj;
+                }
+            }
+        }
+    }
+
+    /**
+     * Any other resampling: the fields of the resampling index of each target pixel, flattened into
+     * arrays of pixel coordinates and weights. An index is filled from them for each target pixel.
+     */
+    private static final class GenericKernel implements Kernel {
+
+        private final Resampling resampling;
+        private final int sourceRasterWidth;
+        private final int sourceRasterHeight;
+        private final int numCoordinates;
+        private final int numWeights;
+        // NO_SOURCE_PIXEL in the first x coordinate of target pixels without slave pixel
+        private final int[] xCoordinates;
+        private final int[] yCoordinates;
+        private final float[] xWeights;
+        private final float[] yWeights;
+
+        private GenericKernel(Resampling resampling, PixelPos[] sourcePixelPositions,
+                              int sourceRasterWidth, int sourceRasterHeight) {
+            this.resampling = resampling;
+            this.sourceRasterWidth = sourceRasterWidth;
+            this.sourceRasterHeight = sourceRasterHeight;
+            final Resampling.Index index = resampling.createIndex();
+            numCoordinates = index.i.length;
+            numWeights = index.ki.length;
+            final int numPixels = sourcePixelPositions.length;
+            xCoordinates = new int[numPixels * numCoordinates];
+            yCoordinates = new int[numPixels * numCoordinates];
+            xWeights = new float[numPixels * numWeights];
+            yWeights = new float[numPixels * numWeights];
+            for (int k = 0; k < numPixels; k++) {
+                final PixelPos pixelPos = sourcePixelPositions[k];
+                if (pixelPos == null) {
+                    xCoordinates[k * numCoordinates] = NO_SOURCE_PIXEL;
+                    continue;
+                }
+                resampling.computeIndex(pixelPos.x, pixelPos.y, sourceRasterWidth, sourceRasterHeight, index);
+                for (int m = 0; m < numCoordinates; m++) {
+                    xCoordinates[k * numCoordinates + m] = (int) index.i[m];
+                    yCoordinates[k * numCoordinates + m] = (int) index.j[m];
+                }
+                for (int n = 0; n < numWeights; n++) {
+                    xWeights[k * numWeights + n] = (float) index.ki[n];
+                    yWeights[k * numWeights + n] = (float) index.kj[n];
+                }
+            }
+        }
+
+        @Override
+        public void apply(SourceRaster sourceRaster, double[] targetSamples, int k0, int k1) throws Exception {
+            final Resampling.Index index = resampling.createIndex();
+            index.width = sourceRasterWidth;
+            index.height = sourceRasterHeight;
+            for (int k = k0; k < k1; k++) {
+                if (xCoordinates[k * numCoordinates] == NO_SOURCE_PIXEL) {
+                    targetSamples[k] = Double.NaN;
+                    continue;
+                }
+                for (int m = 0; m < numCoordinates; m++) {
+                    index.i[m] = xCoordinates[k * numCoordinates + m];
+                    index.j[m] = yCoordinates[k * numCoordinates + m];
+                }
+                for (int n = 0; n < numWeights; n++) {
+                    index.ki[n] = xWeights[k * numWeights + n];
+                    index.kj[n] = yWeights[k * numWeights + n];
+                }
+                targetSamples[k] = resampling.resample(sourceRaster, index);
+            }
+        }
+    }
+
+    /**
+     * The (geo-)physical samples of a source tile within the source rectangle, read once per slave raster.
+     */
+    private static final class SourceRaster implements Resampling.Raster {
+
+        private final Tile tile;
+        private final Rectangle rectangle;
+        private final double[] samples;
+        private final boolean noDataValueUsed;
+        private final double noDataValue;
+
+        private SourceRaster(Tile tile, Rectangle rectangle) {
+            this.tile = tile;
+            this.rectangle = rectangle;
+            this.samples = new double[rectangle.width * rectangle.height];
+            for (int y = rectangle.y, index = 0; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++, index++) {
+                    samples[index] = tile.getSampleDouble(x, y);
+                }
+            }
+            final RasterDataNode rasterDataNode = tile.getRasterDataNode();
+            noDataValueUsed = rasterDataNode.isNoDataValueUsed();
+            noDataValue = rasterDataNode.isScalingApplied() ? rasterDataNode.getGeophysicalNoDataValue() : rasterDataNode.getNoDataValue();
+        }
+
+        @Override
+        public int getWidth() {
+            return tile.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return tile.getHeight();
+        }
+
+        @Override
+        public boolean getSamples(int[] x, int[] y, double[][] samples) {
+            boolean allValid = true;
+            for (int i = 0; i < y.length; i++) {
+                for (int j = 0; j < x.length; j++) {
+                    samples[i][j] = getSample(x[j], y[i]);
+                    if (isNoDataValue(samples[i][j])) {
+                        allValid = false;
+                    }
+                }
+            }
+            return allValid;
+        }
+
+        private double getSample(int x, int y) {
+            if (rectangle.contains(x, y)) {
+                return samples[(y - rectangle.y) * rectangle.width + (x - rectangle.x)];
+            }
+            // kernels wider than the margin of the source rectangle
+            return tile.getSampleDouble(x, y);
+        }
+
+        private boolean isNoDataValue(double sample) {
+            return noDataValueUsed && sample == noDataValue;
+        }
+    }
+}
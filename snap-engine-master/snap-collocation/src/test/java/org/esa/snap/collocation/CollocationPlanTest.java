@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.collocation;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.dataop.resamp.Resampling;
+import org.esa.snap.core.gpf.Tile;
+import org.esa.snap.core.gpf.internal.TileImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CollocationPlanTest {
+
+    private static final int SOURCE_WIDTH = 20;
+    private static final int SOURCE_HEIGHT = 16;
+    private static final double NO_DATA_VALUE = -1.0;
+    // the plan stores the interpolation weights as floats
+    private static final double EPS = 1.0e-4;
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private Band sourceBand;
+    private Tile sourceTile;
+    private Rectangle targetRectangle;
+    private PixelPos[] sourcePixelPositions;
+
+    @Before
+    public void setUp() throws Exception {
+        sourceBand = new Band("source", ProductData.TYPE_INT16, SOURCE_WIDTH, SOURCE_HEIGHT);
+        sourceBand.setScalingFactor(0.5);
+        sourceBand.setScalingOffset(10.0);
+        sourceBand.setNoDataValue(-7);
+        sourceBand.setNoDataValueUsed(true);
+        final short[] data = new short[SOURCE_WIDTH * SOURCE_HEIGHT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (short) (i % 17 == 0 ? -7 : (i * 31) % 101);
+        }
+        sourceBand.setRasterData(ProductData.createInstance(data));
+        sourceTile = new TileImpl(sourceBand, sourceBand.getSourceImage().getData());
+
+        targetRectangle = new Rectangle(3, 5, 9, 7);
+        sourcePixelPositions = new PixelPos[targetRectangle.width * targetRectangle.height];
+        final Random random = new Random(42);
+        for (int i = 0; i < sourcePixelPositions.length; i++) {
+            if (i % 11 != 5) {
+                sourcePixelPositions[i] = new PixelPos(-0.3 + random.nextDouble() * (SOURCE_WIDTH + 0.6),
+                                                       -0.3 + random.nextDouble() * (SOURCE_HEIGHT + 0.6));
+            }
+        }
+    }
+
+    @Test
+    public void testNearestNeighbour() throws Exception {
+        assertCollocatedAsResampled(Resampling.NEAREST_NEIGHBOUR);
+    }
+
+    @Test
+    public void testBilinearInterpolation() throws Exception {
+        assertCollocatedAsResampled(Resampling.BILINEAR_INTERPOLATION);
+    }
+
+    @Test
+    public void testOtherResamplings() throws Exception {
+        assertCollocatedAsResampled(Resampling.CUBIC_CONVOLUTION);
+        assertCollocatedAsResampled(Resampling.BISINC_5_POINT_INTERPOLATION);
+        assertCollocatedAsResampled(Resampling.BICUBIC_INTERPOLATION);
+    }
+
+    @Test
+    public void testSourceRectangle() throws Exception {
+        final CollocationPlan plan = new CollocationPlan(targetRectangle, sourcePixelPositions, SOURCE_WIDTH, SOURCE_HEIGHT,
+                                                         Resampling.BILINEAR_INTERPOLATION);
+        assertEquals(new Rectangle(0, 0, SOURCE_WIDTH, SOURCE_HEIGHT), plan.getSourceRectangle());
+
+        final PixelPos[] noPixelPositions = new PixelPos[sourcePixelPositions.length];
+        final CollocationPlan emptyPlan = new CollocationPlan(targetRectangle, noPixelPositions, SOURCE_WIDTH, SOURCE_HEIGHT,
+                                                              Resampling.BILINEAR_INTERPOLATION);
+        assertNull(emptyPlan.getSourceRectangle());
+        final double[] targetSamples = new double[noPixelPositions.length];
+        emptyPlan.collocate(null, Resampling.BILINEAR_INTERPOLATION, NO_DATA_VALUE, targetSamples, NO_OP);
+        for (double targetSample : targetSamples) {
+            assertEquals(NO_DATA_VALUE, targetSample, 0.0);
+        }
+    }
+
+    @Test
+    public void testRowDoneIsRunAfterEachRow() throws Exception {
+        final CollocationPlan plan = new CollocationPlan(targetRectangle, sourcePixelPositions, SOURCE_WIDTH, SOURCE_HEIGHT,
+                                                         Resampling.NEAREST_NEIGHBOUR, Resampling.CUBIC_CONVOLUTION);
+        final int[] rowCount = new int[1];
+        plan.collocate(sourceTile, Resampling.CUBIC_CONVOLUTION, NO_DATA_VALUE, new double[sourcePixelPositions.length],
+                       new Runnable() {
+                           @Override
+                           public void run() {
+                               rowCount[0]++;
+                           }
+                       });
+        assertEquals(targetRectangle.height, rowCount[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testResamplingMustBePlanned() throws Exception {
+        final CollocationPlan plan = new CollocationPlan(targetRectangle, sourcePixelPositions, SOURCE_WIDTH, SOURCE_HEIGHT,
+                                                         Resampling.NEAREST_NEIGHBOUR);
+        plan.collocate(sourceTile, Resampling.BILINEAR_INTERPOLATION, NO_DATA_VALUE, new double[sourcePixelPositions.length], NO_OP);
+    }
+
+    private void assertCollocatedAsResampled(Resampling resampling) throws Exception {
+        final CollocationPlan plan = new CollocationPlan(targetRectangle, sourcePixelPositions, SOURCE_WIDTH, SOURCE_HEIGHT,
+                                                         resampling);
+        final double[] targetSamples = new double[sourcePixelPositions.length];
+        // twice, the second time with the cached kernel
+        for (int run = 0; run < 2; run++) {
+            plan.collocate(sourceTile, resampling, NO_DATA_VALUE, targetSamples, NO_OP);
+            for (int i = 0; i < sourcePixelPositions.length; i++) {
+                assertEquals(resampling.getName() + " at " + i, resample(resampling, sourcePixelPositions[i]), targetSamples[i], EPS);
+            }
+        }
+    }
+
+    private double resample(Resampling resampling, PixelPos pixelPos) throws Exception {
+        if (pixelPos == null) {
+            return NO_DATA_VALUE;
+        }
+        final Resampling.Index index = resampling.createIndex();
+        resampling.computeIndex(pixelPos.x, pixelPos.y, SOURCE_WIDTH, SOURCE_HEIGHT, index);
+        final double sample = resampling.resample(new Resampling.Raster() {
+            @Override
+            public int getWidth() {
+                return SOURCE_WIDTH;
+            }
+
+            @Override
+            public int getHeight() {
+                return SOURCE_HEIGHT;
+            }
+
+            @Override
+            public boolean getSamples(int[] x, int[] y, double[][] samples) {
+                boolean allValid = true;
+                for (int i = 0; i < y.length; i++) {
+                    for (int j = 0; j < x.length; j++) {
+                        samples[i][j] = sourceTile.getSampleDouble(x[j], y[i]);
+                        if (samples[i][j] == sourceBand.getGeophysicalNoDataValue()) {
+                            allValid = false;
+                        }
+                    }
+                }
+                return allValid;
+            }
+        }, index);
+        return Double.isNaN(sample) ? NO_DATA_VALUE : sample;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.FilterBand;
+import org.esa.snap.core.datamodel.ProductData;
+
+import javax.media.jai.PlanarImage;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the rasters of several bands using a bounded pool of worker threads.
+ * <p>
+ * The bands are split into chunks along the tile grid of their source images. The chunks are computed
+ * by the workers while at most {@code maxPendingChunks} chunks are in flight. If the product writer is
+ * thread-safe, the workers also write the chunks, otherwise the calling thread writes them in the same
+ * order as {@link Band#writeRasterDataFully(ProgressMonitor)} does, band after band.
+ *
+ * @since SNAP 2.0
+ */
+class ConcurrentBandWriter {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ProductWriter productWriter;
+    private final boolean concurrentWrite;
+    private final int parallelism;
+    private final int maxPendingChunks;
+
+    ConcurrentBandWriter(ProductWriter productWriter, boolean concurrentWrite, int parallelism, int maxPendingChunks) {
+        this.productWriter = productWriter;
+        this.concurrentWrite = concurrentWrite;
+        this.parallelism = parallelism;
+        this.maxPendingChunks = Math.max(parallelism, maxPendingChunks);
+    }
+
+    void writeBands(List<Band> bands, ProgressMonitor pm) throws IOException {
+        final List<Chunk> chunks = new ArrayList<>();
+        for (Band band : bands) {
+            addChunks(band, chunks);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        final Deque<Future<Chunk>> pendingChunks = new ArrayDeque<>(maxPendingChunks);
+        pm.beginTask("Writing bands...", chunks.size());
+        try {
+            int submitCount = 0;
+            Band currentBand = null;
+            while (submitCount < chunks.size() || !pendingChunks.isEmpty()) {
+                while (submitCount < chunks.size() && pendingChunks.size() < maxPendingChunks) {
+                    pendingChunks.add(executor.submit(chunks.get(submitCount++)));
+                }
+                final Chunk chunk = getResult(pendingChunks.poll());
+                if (chunk.band != currentBand) {
+                    currentBand = chunk.band;
+                    pm.setSubTaskName("Writing band '" + currentBand.getName() + "'");
+                }
+                if (!concurrentWrite) {
+                    chunk.write();
+                }
+                pm.worked(1);
+                if (pm.isCanceled()) {
+                    break;
+                }
+            }
+        } finally {
+            // running chunks are not interrupted, they may be writing to the product writer
+            for (Future<Chunk> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(false);
+            }
+            shutdown(executor);
+            for (Band band : bands) {
+                if (band.isSourceImageSet()) {
+                    band.getSourceImage().reset();
+                }
+            }
+            pm.done();
+        }
+    }
+
+    private void addChunks(Band band, List<Chunk> chunks) {
+        if (band.hasRasterData() || band instanceof FilterBand) {
+            // written as a whole, exactly as by Band.writeRasterDataFully()
+            chunks.add(new Chunk(band, null));
+            return;
+        }
+        final PlanarImage sourceImage = band.getSourceImage();
+        final Point[] tileIndices = sourceImage.getTileIndices(new Rectangle(0, 0, sourceImage.getWidth(),
+                                                                             sourceImage.getHeight()));
+        for (Point tileIndex : tileIndices) {
+            final Rectangle rect = sourceImage.getTileRect(tileIndex.x, tileIndex.y);
+            if (!rect.isEmpty()) {
+                chunks.add(new Chunk(band, rect));
+            }
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Chunk getResult(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Writing of bands has been interrupted.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private class Chunk implements Callable<Chunk> {
+
+        private final Band band;
+        private final Rectangle rect;
+        private ProductData rasterData;
+
+        private Chunk(Band band, Rectangle rect) {
+            this.band = band;
+            this.rect = rect;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            if (rect != null) {
+                final Raster data = band.getSourceImage().getData(rect);
+                rasterData = band.createCompatibleRasterData(rect.width, rect.height);
+                data.getDataElements(rect.x, rect.y, rect.width, rect.height, rasterData.getElems());
+            }
+            if (concurrentWrite) {
+                write();
+            }
+            return this;
+        }
+
+        private void write() throws IOException {
+            if (rect == null) {
+                band.writeRasterDataFully(ProgressMonitor.NULL);
+            } else {
+                productWriter.writeBandRasterData(band, rect.x, rect.y, rect.width, rect.height, rasterData,
+                                                  ProgressMonitor.NULL);
+                rasterData = null;
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "SNAP-BandWriter-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
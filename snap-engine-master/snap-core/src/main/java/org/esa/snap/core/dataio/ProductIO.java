@@ -22,12 +22,23 @@ import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.util.Guardian;
 import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.runtime.Config;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -53,6 +64,38 @@ public class ProductIO {
      */
     public static final String DEFAULT_FORMAT_NAME = DimapProductConstants.DIMAP_FORMAT_NAME;
 
+    /**
+     * The name of the preference which gives the number of threads used to compute and write the bands
+     * of a product. The default is the number of available processors. A value of {@code 1} writes the
+     * bands one after another.
+     *
+     * @since SNAP 2.0
+     */
+    public static final String WRITER_PARALLELISM_PROPERTY = "snap.dataio.writer.parallelism";
+
+    /**
+     * The name of the preference which gives the number of threads used to probe the reader plug-ins
+     * when searching a reader for an input. The default is the number of available processors.
+     * The threads are shared by all searches, their number is read at the first concurrent search.
+     *
+     * @since SNAP 2.0
+     */
+    public static final String READER_DETECTION_PARALLELISM_PROPERTY = "snap.dataio.reader.detection.parallelism";
+
+    /**
+     * The name of the preference which tells whether the reader plug-ins selected for product files
+     * are remembered across sessions. The default is {@code true}.
+     *
+     * @since SNAP 2.0
+     */
+    public static final String READER_DETECTION_CACHE_PROPERTY = "snap.dataio.reader.detection.cache";
+
+    private static final int READER_DETECTION_CACHE_SIZE = 10000;
+    private static final int FILE_HEADER_LENGTH = 64;
+
+    private static ReaderPlugInCache readerPlugInCache;
+    private static ThreadPoolExecutor readerDetectionExecutor;
+
     /**
      * Gets a product reader for the given format name.
      *
@@ -249,25 +292,22 @@ public class ProductIO {
         final long startTimeTotal = System.currentTimeMillis();
         Logger logger = SystemUtils.LOG;
         logger.fine("Searching reader plugin for '" + input + "'");
-        ProductIOPlugInManager registry = ProductIOPlugInManager.getInstance();
-        Iterator<ProductReaderPlugIn> it = registry.getAllReaderPlugIns();
+        final File file = getFile(input);
         ProductReaderPlugIn selectedPlugIn = null;
-        while (it.hasNext()) {
-            ProductReaderPlugIn plugIn = it.next();
-            try {
-
-                final long startTime = System.currentTimeMillis();
-                DecodeQualification decodeQualification = plugIn.getDecodeQualification(input);
-                final long endTime = System.currentTimeMillis();
-                logger.fine(String.format("Checking reader plugin %s (took %d ms)", plugIn.getClass().getName(), (endTime - startTime)));
-                if (decodeQualification == DecodeQualification.INTENDED) {
-                    selectedPlugIn = plugIn;
-                    break;
-                } else if (decodeQualification == DecodeQualification.SUITABLE) {
-                    selectedPlugIn = plugIn;
-                }
-            } catch (Exception e) {
-                logger.severe("Error attempting to read "+input+" with plugin reader "+plugIn.toString()+": "+e.getMessage());
+        if (file != null) {
+            selectedPlugIn = getCachedReaderPlugIn(file, input);
+        }
+        if (selectedPlugIn == null) {
+            final List<ProductReaderPlugIn> plugIns = getCandidateReaderPlugIns(file);
+            final int parallelism = Config.instance().preferences().getInt(READER_DETECTION_PARALLELISM_PROPERTY,
+                                                                           Runtime.getRuntime().availableProcessors());
+            if (parallelism > 1 && plugIns.size() > 1) {
+                selectedPlugIn = selectReaderPlugInConcurrently(plugIns, input, parallelism);
+            } else {
+                selectedPlugIn = selectReaderPlugIn(plugIns, input);
+            }
+            if (selectedPlugIn != null && file != null && isReaderDetectionCacheEnabled()) {
+                getReaderPlugInCache().put(file, selectedPlugIn.getClass().getName());
             }
         }
         final long endTimeTotal = System.currentTimeMillis();
@@ -281,6 +321,200 @@ public class ProductIO {
         }
     }
 
+    private static ProductReaderPlugIn getCachedReaderPlugIn(File file, Object input) {
+        if (!isReaderDetectionCacheEnabled()) {
+            return null;
+        }
+        final ReaderPlugInCache cache = getReaderPlugInCache();
+        final String plugInClassName = cache.get(file);
+        if (plugInClassName == null) {
+            return null;
+        }
+        Iterator<ProductReaderPlugIn> it = ProductIOPlugInManager.getInstance().getAllReaderPlugIns();
+        while (it.hasNext()) {
+            ProductReaderPlugIn plugIn = it.next();
+            if (plugIn.getClass().getName().equals(plugInClassName)) {
+                // the cached plug-in is checked again, the cache only saves probing all the others
+                if (getDecodeQualification(plugIn, input) != DecodeQualification.UNABLE) {
+                    return plugIn;
+                }
+                break;
+            }
+        }
+        cache.remove(file);
+        return null;
+    }
+
+    private static List<ProductReaderPlugIn> getCandidateReaderPlugIns(File file) {
+        final byte[] fileHeader = file != null ? readFileHeader(file) : null;
+        final List<ProductReaderPlugIn> plugIns = new ArrayList<>();
+        Iterator<ProductReaderPlugIn> it = ProductIOPlugInManager.getInstance().getAllReaderPlugIns();
+        while (it.hasNext()) {
+            ProductReaderPlugIn plugIn = it.next();
+            try {
+                if (file == null || plugIn.isDecodeCandidate(file, fileHeader)) {
+                    plugIns.add(plugIn);
+                }
+            } catch (Exception e) {
+                plugIns.add(plugIn);
+            }
+        }
+        return plugIns;
+    }
+
+    /*
+     * The first plug-in which is INTENDED to decode the input is selected, otherwise the last SUITABLE one.
+     */
+    private static ProductReaderPlugIn selectReaderPlugIn(List<ProductReaderPlugIn> plugIns, Object input) {
+        ProductReaderPlugIn selectedPlugIn = null;
+        for (ProductReaderPlugIn plugIn : plugIns) {
+            DecodeQualification decodeQualification = getDecodeQualification(plugIn, input);
+            if (decodeQualification == DecodeQualification.INTENDED) {
+                return plugIn;
+            } else if (decodeQualification == DecodeQualification.SUITABLE) {
+                selectedPlugIn = plugIn;
+            }
+        }
+        return selectedPlugIn;
+    }
+
+    /*
+     * Same selection as by selectReaderPlugIn(), but the plug-ins are probed concurrently.
+     */
+    private static ProductReaderPlugIn selectReaderPlugInConcurrently(List<ProductReaderPlugIn> plugIns,
+                                                                      final Object input, int parallelism) {
+        final ThreadPoolExecutor executor = getReaderDetectionExecutor(parallelism);
+        final CountDownLatch probesFinished = new CountDownLatch(plugIns.size());
+        final List<FutureTask<DecodeQualification>> probes = new ArrayList<>(plugIns.size());
+        for (final ProductReaderPlugIn plugIn : plugIns) {
+            probes.add(new FutureTask<DecodeQualification>(() -> getDecodeQualification(plugIn, input)) {
+                @Override
+                public void run() {
+                    try {
+                        super.run();
+                    } finally {
+                        probesFinished.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            for (FutureTask<DecodeQualification> probe : probes) {
+                executor.execute(probe);
+            }
+            ProductReaderPlugIn selectedPlugIn = null;
+            for (int i = 0; i < plugIns.size(); i++) {
+                DecodeQualification decodeQualification;
+                try {
+                    decodeQualification = probes.get(i).get();
+                } catch (ExecutionException e) {
+                    decodeQualification = DecodeQualification.UNABLE;
+                }
+                if (decodeQualification == DecodeQualification.INTENDED) {
+                    return plugIns.get(i);
+                } else if (decodeQualification == DecodeQualification.SUITABLE) {
+                    selectedPlugIn = plugIns.get(i);
+                }
+            }
+            return selectedPlugIn;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // the remaining probes are interrupted and awaited, so that none of them still accesses the input
+            // when it is read by the selected plug-in
+            for (FutureTask<DecodeQualification> probe : probes) {
+                if (executor.remove(probe)) {
+                    probesFinished.countDown();
+                } else {
+                    probe.cancel(true);
+                }
+            }
+            awaitUninterruptibly(probesFinished);
+        }
+        return selectReaderPlugIn(plugIns, input);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getReaderDetectionExecutor(int parallelism) {
+        if (readerDetectionExecutor == null) {
+            readerDetectionExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "SNAP-ReaderDetection");
+                thread.setDaemon(true);
+                return thread;
+            });
+            readerDetectionExecutor.allowCoreThreadTimeOut(true);
+        }
+        return readerDetectionExecutor;
+    }
+
+    private static DecodeQualification getDecodeQualification(ProductReaderPlugIn plugIn, Object input) {
+        Logger logger = SystemUtils.LOG;
+        try {
+            final long startTime = System.currentTimeMillis();
+            DecodeQualification decodeQualification = plugIn.getDecodeQualification(input);
+            final long endTime = System.currentTimeMillis();
+            logger.fine(String.format("Checking reader plugin %s (took %d ms)", plugIn.getClass().getName(), (endTime - startTime)));
+            return decodeQualification;
+        } catch (Exception e) {
+            logger.severe("Error attempting to read "+input+" with plugin reader "+plugIn.toString()+": "+e.getMessage());
+            return DecodeQualification.UNABLE;
+        }
+    }
+
+    private static File getFile(Object input) {
+        if (input instanceof File) {
+            return (File) input;
+        } else if (input instanceof String) {
+            return new File((String) input);
+        }
+        return null;
+    }
+
+    private static byte[] readFileHeader(File file) {
+        if (!file.isFile()) {
+            return new byte[0];
+        }
+        try (InputStream inputStream = new FileInputStream(file)) {
+            final byte[] buffer = new byte[FILE_HEADER_LENGTH];
+            int length = 0;
+            int count;
+            while (length < buffer.length && (count = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+                length += count;
+            }
+            return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    private static boolean isReaderDetectionCacheEnabled() {
+        return Config.instance().preferences().getBoolean(READER_DETECTION_CACHE_PROPERTY, true);
+    }
+
+    private static synchronized ReaderPlugInCache getReaderPlugInCache() {
+        if (readerPlugInCache == null) {
+            final File cacheFile = new File(SystemUtils.getCacheDir(), "reader-plugins.properties");
+            readerPlugInCache = new ReaderPlugInCache(cacheFile, READER_DETECTION_CACHE_SIZE);
+            Runtime.getRuntime().addShutdownHook(new Thread(readerPlugInCache::save));
+        }
+        return readerPlugInCache;
+    }
+
     /**
      * Writes a product with the specified format to the given file path.
      * <p>The method also writes all band data to the file. Therefore the band data must either
@@ -414,7 +648,8 @@ public class ProductIO {
     /*
      * This implementation helper methods writes all bands of the given product using the specified product writer. If a
      * band is entirely loaded its data is written out immediately, if not, a band's data raster is written out
-     * line-by-line without producing any memory overhead.
+     * tile-by-tile. Unless configured otherwise, tiles are computed concurrently and written either concurrently,
+     * if the writer is thread-safe, or in band order.
      */
     private static void writeAllBands(Product product, ProgressMonitor pm) throws IOException {
         ProductWriter productWriter = product.getProductWriter();
@@ -429,7 +664,14 @@ public class ProductIO {
             }
         }
 
-        if (!bandsToWrite.isEmpty()) {
+        final int parallelism = Config.instance().preferences().getInt(WRITER_PARALLELISM_PROPERTY,
+                                                                       Runtime.getRuntime().availableProcessors());
+        if (!bandsToWrite.isEmpty() && parallelism > 1) {
+            final boolean concurrentWrite = productWriter.isThreadSafe();
+            final ConcurrentBandWriter bandWriter = new ConcurrentBandWriter(productWriter, concurrentWrite,
+                                                                             parallelism, 2 * parallelism);
+            bandWriter.writeBands(bandsToWrite, pm);
+        } else if (!bandsToWrite.isEmpty()) {
             pm.beginTask("Writing bands of product '" + product.getName() + "'...", bandsToWrite.size());
             try {
                 for (Band band : bandsToWrite) {
@@ -15,6 +15,8 @@
  */
 package org.esa.snap.core.dataio;
 
+import java.io.File;
+
 /**
  * The <code>ProductReaderPlugIn</code> interface is implemented by data product reader plug-ins.
  * <p>XMLDecoder plug-ins are used to provide meta-information about a particular data format and to create instances of
@@ -53,4 +55,22 @@ public interface ProductReaderPlugIn extends ProductIOPlugIn {
      */
     ProductReader createReaderInstance();
 
+    /**
+     * Performs a fast pre-check whether the given file may be decoded by this plug-in, for example by looking
+     * at the file name extension or at the magic bytes of the file header. {@link ProductIO} does not call the
+     * possibly expensive {@link #getDecodeQualification(Object)} of plug-ins which return {@code false} here.
+     * Hence, an implementation must only return {@code false} if {@code getDecodeQualification} would return
+     * {@link DecodeQualification#UNABLE} for the file.
+     * <p>
+     * The default implementation returns {@code true}.
+     *
+     * @param file       the file, may also be a directory
+     * @param fileHeader the first bytes of the file, empty if the file is a directory or cannot be read
+     * @return {@code false} if the file can certainly not be decoded by this plug-in
+     * @since SNAP 2.0
+     */
+    default boolean isDecodeCandidate(File file, byte[] fileHeader) {
+        return true;
+    }
+
 }
@@ -157,4 +157,19 @@ public interface ProductWriter {
      * @param formatName The name of the file format.
      */
     void setFormatName(final String formatName);
+
+    /**
+     * Tells whether this writer is thread-safe, that is, whether {@link #writeBandRasterData} can be called
+     * concurrently from several threads, for different bands and regions.
+     * <p>
+     * The default implementation asks the {@link ProductWriterPlugIn#isWriterThreadSafe() writer plug-in}.
+     * Writers whose thread-safety depends on their configuration override this method.
+     *
+     * @return {@code true} if this writer is thread-safe.
+     * @since SNAP 2.0
+     */
+    default boolean isThreadSafe() {
+        final ProductWriterPlugIn writerPlugIn = getWriterPlugIn();
+        return writerPlugIn != null && writerPlugIn.isWriterThreadSafe();
+    }
 }
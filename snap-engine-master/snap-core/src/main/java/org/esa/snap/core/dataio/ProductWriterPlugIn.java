@@ -58,4 +58,20 @@ public interface ProductWriterPlugIn extends ProductIOPlugIn {
      */
     ProductWriter createWriterInstance();
 
+    /**
+     * Tells whether the product writers created by this plug-in are thread-safe, that is, whether
+     * {@link ProductWriter#writeBandRasterData} can be called concurrently from several threads,
+     * for different bands and regions. If so, {@link ProductIO} writes the bands in parallel,
+     * otherwise the writer is only called from a single thread, in band order. Callers holding a writer
+     * instance ask it by {@link ProductWriter#isThreadSafe()}, which can override this plug-in's answer.
+     * <p>
+     * The default implementation returns {@code false}.
+     *
+     * @return {@code true} if the created writers are thread-safe.
+     * @since SNAP 2.0
+     */
+    default boolean isWriterThreadSafe() {
+        return false;
+    }
+
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio;
+
+import org.esa.snap.core.util.SystemUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+/**
+ * A persistent cache which maps product files to the name of the reader plug-in class that has been
+ * selected for them. An entry is only valid as long as the size and the modification time of the file
+ * are unchanged. Directories are not cached, because their size and modification time do not change
+ * when files within them change.
+ * <p>The cache file stores the position of each entry in the access order, so that the least recently
+ * used entries are still evicted first after the cache has been reloaded. The file is replaced as a
+ * whole, so that readers never see a partly written file.
+ *
+ * @since SNAP 2.0
+ */
+class ReaderPlugInCache {
+
+    private static final int SAVE_INTERVAL = 100;
+
+    private final File cacheFile;
+    private final Map<String, String> entries;
+    private boolean loaded;
+    private int unsavedCount;
+
+    ReaderPlugInCache(File cacheFile, final int maxSize) {
+        this.cacheFile = cacheFile;
+        this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the class name of the reader plug-in which has been selected for the given file.
+     *
+     * @param file the product file
+     * @return the class name, or {@code null} if the file is not cached or has been modified since
+     */
+    synchronized String get(File file) {
+        if (file.isDirectory()) {
+            return null;
+        }
+        load();
+        final String value = entries.get(getKey(file));
+        if (value == null) {
+            return null;
+        }
+        final String stamp = getStamp(file);
+        if (!value.startsWith(stamp)) {
+            return null;
+        }
+        // the access order has changed
+        unsavedCount++;
+        return value.substring(stamp.length());
+    }
+
+    synchronized void put(File file, String plugInClassName) {
+        if (file.isDirectory()) {
+            return;
+        }
+        load();
+        final String value = getStamp(file) + plugInClassName;
+        if (!value.equals(entries.put(getKey(file), value))) {
+            unsavedCount++;
+            if (unsavedCount >= SAVE_INTERVAL) {
+                save();
+            }
+        }
+    }
+
+    synchronized void remove(File file) {
+        load();
+        if (entries.remove(getKey(file)) != null) {
+            unsavedCount++;
+        }
+    }
+
+    synchronized void save() {
+        if (unsavedCount == 0) {
+            return;
+        }
+        final Properties properties = new Properties();
+        int position = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            properties.setProperty(entry.getKey(), position + ":" + entry.getValue());
+            position++;
+        }
+        final File parentDir = cacheFile.getAbsoluteFile().getParentFile();
+        if (!parentDir.exists() && !parentDir.mkdirs()) {
+            SystemUtils.LOG.warning("Failed to create directory " + parentDir);
+            return;
+        }
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", parentDir);
+            try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+                properties.store(outputStream, "Product reader plug-ins selected for product files");
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            unsavedCount = 0;
+        } catch (IOException e) {
+            SystemUtils.LOG.log(Level.WARNING, "Failed to write " + cacheFile, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(cacheFile)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            SystemUtils.LOG.log(Level.WARNING, "Failed to read " + cacheFile, e);
+            return;
+        }
+        final Map<Long, String> keysByPosition = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            final String value = properties.getProperty(key);
+            try {
+                keysByPosition.put(Long.parseLong(value.substring(0, Math.max(value.indexOf(':'), 0))), key);
+            } catch (NumberFormatException e) {
+                // not written by this cache, ignore the entry
+            }
+        }
+        for (String key : keysByPosition.values()) {
+            final String value = properties.getProperty(key);
+            entries.put(key, value.substring(value.indexOf(':') + 1));
+        }
+    }
+
+    private static String getKey(File file) {
+        return file.getAbsolutePath();
+    }
+
+    private static String getStamp(File file) {
+        return file.length() + ":" + file.lastModified() + ":";
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio.dimap;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes band data to the raw, big-endian image files of a DIMAP product by a dedicated I/O thread.
+ * <p>
+ * Callers only encode the samples and enqueue them. The I/O thread coalesces the tiles of a band which
+ * share the same rows into full-width stripes and writes each stripe with a single gathering write.
+ * Tiles which do not complete a stripe are written on {@link #flush()}, or as soon as the amount of
+ * queued data reaches the memory limit. Callers block while the limit is exceeded. Pending tiles which overlap
+ * a tile written later are written first, so that the later tile wins.
+ * <p>
+ * Any error of the I/O thread is recorded and reported to the callers by the next {@link #write}, {@link #flush()}
+ * or {@link #close()}. The data queued after an error is discarded.
+ *
+ * @since SNAP 2.0
+ */
+class AsyncBandWriter {
+
+    interface ImageFileProvider {
+
+        File getImageFile(Band band) throws IOException;
+    }
+
+    private static final Object STOP = new Object();
+
+    private final ImageFileProvider imageFileProvider;
+    private final long maxQueuedBytes;
+    private final BlockingQueue<Object> queue;
+    private final Map<Band, BandOutput> bandOutputs;
+    private final Map<Band, BandWriteMetrics> metrics;
+    private final Thread ioThread;
+    private final Object memoryLock;
+    private long queuedBytes;
+    private int waitingCount;
+    private volatile Throwable failure;
+
+    AsyncBandWriter(ImageFileProvider imageFileProvider, long maxQueuedBytes) {
+        this.imageFileProvider = imageFileProvider;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.queue = new LinkedBlockingQueue<>();
+        this.bandOutputs = new HashMap<>();
+        this.metrics = Collections.synchronizedMap(new LinkedHashMap<>());
+        this.memoryLock = new Object();
+        this.ioThread = new Thread(this::run, "SNAP-DimapWriter");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    void write(Band band, int x, int y, int width, int height, ProductData data) throws IOException {
+        checkFailure();
+        final ByteBuffer bytes = encode(data.getElems(), width * height, data.getElemSize());
+        acquire(bytes.capacity());
+        queue.add(new Chunk(band, x, y, width, height, bytes));
+    }
+
+    void flush() throws IOException {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        queue.add(flushed);
+        try {
+            // the I/O thread counts down the latch, unless it has already terminated
+            while (!flushed.await(100, TimeUnit.MILLISECONDS)) {
+                if (!ioThread.isAlive()) {
+                    queue.remove(flushed);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing band data.");
+        }
+        checkFailure();
+    }
+
+    void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            queue.add(STOP);
+            try {
+                ioThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkFailure();
+    }
+
+    Map<Band, BandWriteMetrics> getMetrics() {
+        synchronized (metrics) {
+            return new LinkedHashMap<>(metrics);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable e = failure;
+        if (e != null) {
+            throw new IOException("Failed to write band data: " + e.getMessage(), e);
+        }
+    }
+
+    private void acquire(long byteCount) throws InterruptedIOException {
+        synchronized (memoryLock) {
+            waitingCount++;
+            try {
+                while (queuedBytes > 0 && queuedBytes + byteCount > maxQueuedBytes) {
+                    memoryLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for queued band data to be written.");
+            } finally {
+                waitingCount--;
+            }
+            queuedBytes += byteCount;
+        }
+    }
+
+    private void release(long byteCount) {
+        synchronized (memoryLock) {
+            queuedBytes -= byteCount;
+            memoryLock.notifyAll();
+        }
+    }
+
+    private boolean isMemoryExhausted() {
+        synchronized (memoryLock) {
+            return waitingCount > 0;
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final Object item = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (item == STOP) {
+                    break;
+                } else if (item instanceof Chunk) {
+                    handle((Chunk) item);
+                } else if (item instanceof CountDownLatch) {
+                    writePendingChunks();
+                    ((CountDownLatch) item).countDown();
+                } else if (item == null && isMemoryExhausted()) {
+                    // the tiles of incomplete stripes occupy the memory
+                    writePendingChunks();
+                }
+            }
+        } catch (InterruptedException e) {
+            setFailure(new InterruptedIOException("Band writer thread has been interrupted."));
+        } catch (Throwable t) {
+            setFailure(t);
+        } finally {
+            for (BandOutput bandOutput : bandOutputs.values()) {
+                bandOutput.discardPendingChunks();
+                bandOutput.close();
+            }
+            bandOutputs.clear();
+            discardQueue();
+        }
+    }
+
+    private void handle(Chunk chunk) {
+        if (failure != null) {
+            release(chunk.bytes.capacity());
+            return;
+        }
+        try {
+            BandOutput bandOutput = bandOutputs.get(chunk.band);
+            if (bandOutput == null) {
+                bandOutput = new BandOutput(chunk.band);
+                bandOutputs.put(chunk.band, bandOutput);
+            }
+            bandOutput.add(chunk);
+        } catch (Throwable t) {
+            setFailure(t);
+        }
+    }
+
+    private void writePendingChunks() {
+        for (BandOutput bandOutput : bandOutputs.values()) {
+            try {
+                bandOutput.writePendingChunks();
+            } catch (Throwable t) {
+                setFailure(t);
+            }
+        }
+    }
+
+    /**
+     * Called when the I/O thread terminates. Releases the memory of the chunks still queued and
+     * the callers waiting for a flush.
+     */
+    private void discardQueue() {
+        Object item;
+        while ((item = queue.poll()) != null) {
+            if (item instanceof Chunk) {
+                release(((Chunk) item).bytes.capacity());
+            } else if (item instanceof CountDownLatch) {
+                ((CountDownLatch) item).countDown();
+            }
+        }
+    }
+
+    private void setFailure(Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    static ByteBuffer encode(Object elems, int numElems, int elemSize) {
+        final ByteBuffer bytes = ByteBuffer.allocate(numElems * elemSize);
+        if (elems instanceof byte[]) {
+            bytes.put((byte[]) elems, 0, numElems);
+        } else if (elems instanceof short[]) {
+            bytes.asShortBuffer().put((short[]) elems, 0, numElems);
+        } else if (elems instanceof int[]) {
+            bytes.asIntBuffer().put((int[]) elems, 0, numElems);
+        } else if (elems instanceof long[]) {
+            bytes.asLongBuffer().put((long[]) elems, 0, numElems);
+        } else if (elems instanceof float[]) {
+            bytes.asFloatBuffer().put((float[]) elems, 0, numElems);
+        } else if (elems instanceof double[]) {
+            bytes.asDoubleBuffer().put((double[]) elems, 0, numElems);
+        } else {
+            throw new IllegalArgumentException("Unsupported data type: " + elems.getClass().getName());
+        }
+        bytes.clear();
+        return bytes;
+    }
+
+    private static class Chunk {
+
+        private final Band band;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final ByteBuffer bytes;
+
+        private Chunk(Band band, int x, int y, int width, int height, ByteBuffer bytes) {
+            this.band = band;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.bytes = bytes;
+        }
+
+        private boolean overlaps(Chunk other) {
+            return x < other.x + other.width && other.x < x + width
+                   && y < other.y + other.height && other.y < y + height;
+        }
+
+        private ByteBuffer getRow(int row) {
+            final int rowSize = bytes.capacity() / height;
+            final ByteBuffer rowBytes = bytes.duplicate();
+            rowBytes.limit((row + 1) * rowSize).position(row * rowSize);
+            return rowBytes;
+        }
+    }
+
+    /**
+     * The output of a single band. Only accessed by the I/O thread.
+     */
+    private class BandOutput {
+
+        private final Band band;
+        private final int bandWidth;
+        private final int elemSize;
+        private final FileChannel channel;
+        private final BandWriteMetrics bandMetrics;
+        // incomplete stripes, key is (y, height), the tiles are sorted by x
+        private final Map<Long, TreeMap<Integer, Chunk>> stripes;
+
+        private BandOutput(Band band) throws IOException {
+            this.band = band;
+            this.bandWidth = band.getRasterWidth();
+            this.elemSize = ProductData.getElemSize(band.getDataType());
+            this.channel = FileChannel.open(imageFileProvider.getImageFile(band).toPath(), StandardOpenOption.WRITE);
+            this.bandMetrics = new BandWriteMetrics(band.getName());
+            this.stripes = new LinkedHashMap<>();
+            metrics.put(band, bandMetrics);
+        }
+
+        private void add(Chunk chunk) throws IOException {
+            bandMetrics.addTile();
+            // a region written again, keep the order of the writes
+            writeOverlappingChunks(chunk);
+            if (chunk.x == 0 && chunk.width == bandWidth) {
+                writeStripe(Collections.singletonList(chunk));
+                return;
+            }
+            final long key = ((long) chunk.y << 32) | chunk.height;
+            TreeMap<Integer, Chunk> stripe = stripes.get(key);
+            if (stripe == null) {
+                stripe = new TreeMap<>();
+                stripes.put(key, stripe);
+            }
+            stripe.put(chunk.x, chunk);
+            if (isComplete(stripe)) {
+                stripes.remove(key);
+                writeStripe(new ArrayList<>(stripe.values()));
+            }
+        }
+
+        private void writeOverlappingChunks(Chunk chunk) throws IOException {
+            final Iterator<TreeMap<Integer, Chunk>> stripeIterator = stripes.values().iterator();
+            while (stripeIterator.hasNext()) {
+                final TreeMap<Integer, Chunk> stripe = stripeIterator.next();
+                final Iterator<Chunk> chunkIterator = stripe.values().iterator();
+                while (chunkIterator.hasNext()) {
+                    final Chunk pendingChunk = chunkIterator.next();
+                    if (pendingChunk.overlaps(chunk)) {
+                        chunkIterator.remove();
+                        writeChunk(pendingChunk);
+                    }
+                }
+                if (stripe.isEmpty()) {
+                    stripeIterator.remove();
+                }
+            }
+        }
+
+        private boolean isComplete(TreeMap<Integer, Chunk> stripe) {
+            int expectedX = 0;
+            for (Chunk chunk : stripe.values()) {
+                if (chunk.x != expectedX) {
+                    return false;
+                }
+                expectedX += chunk.width;
+            }
+            return expectedX == bandWidth;
+        }
+
+        private void writeStripe(List<Chunk> chunks) throws IOException {
+            final Chunk firstChunk = chunks.get(0);
+            final int height = firstChunk.height;
+            final ByteBuffer[] rows = new ByteBuffer[height * chunks.size()];
+            long byteCount = 0;
+            int index = 0;
+            for (int row = 0; row < height; row++) {
+                for (Chunk chunk : chunks) {
+                    rows[index++] = chunk.getRow(row);
+                }
+            }
+            for (Chunk chunk : chunks) {
+                byteCount += chunk.bytes.capacity();
+            }
+            try {
+                final long startTime = System.nanoTime();
+                channel.position((long) firstChunk.y * bandWidth * elemSize);
+                long written = 0;
+                while (written < byteCount) {
+                    written += channel.write(rows);
+                }
+                bandMetrics.addWrite(byteCount, System.nanoTime() - startTime, true);
+            } finally {
+                release(byteCount);
+            }
+        }
+
+        private void writeChunk(Chunk chunk) throws IOException {
+            try {
+                final long startTime = System.nanoTime();
+                for (int row = 0; row < chunk.height; row++) {
+                    final ByteBuffer rowBytes = chunk.getRow(row);
+                    long position = ((long) (chunk.y + row) * bandWidth + chunk.x) * elemSize;
+                    while (rowBytes.hasRemaining()) {
+                        position += channel.write(rowBytes, position);
+                    }
+                }
+                bandMetrics.addWrite(chunk.bytes.capacity(), System.nanoTime() - startTime, false);
+            } finally {
+                release(chunk.bytes.capacity());
+            }
+        }
+
+        private void writePendingChunks() throws IOException {
+            IOException firstException = null;
+            for (TreeMap<Integer, Chunk> stripe : stripes.values()) {
+                for (Chunk chunk : stripe.values()) {
+                    if (firstException != null || failure != null) {
+                        release(chunk.bytes.capacity());
+                        continue;
+                    }
+                    try {
+                        writeChunk(chunk);
+                    } catch (IOException e) {
+                        firstException = e;
+                    }
+                }
+            }
+            stripes.clear();
+            if (firstException != null) {
+                throw firstException;
+            }
+        }
+
+        private void discardPendingChunks() {
+            for (TreeMap<Integer, Chunk> stripe : stripes.values()) {
+                for (Chunk chunk : stripe.values()) {
+                    release(chunk.bytes.capacity());
+                }
+            }
+            stripes.clear();
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                setFailure(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio.dimap;
+
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads rectangular regions of a band from a raw, big-endian DIMAP image file. Reads use positional
+ * {@link FileChannel} access, hence any number of threads can read from the same band at the same time.
+ *
+ * @since SNAP 2.0
+ */
+class BandFileChannel {
+
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+
+    private final File file;
+    private final int rasterWidth;
+    private final int elemSize;
+    private volatile FileChannel channel;
+    private boolean closed;
+
+    BandFileChannel(File file, int rasterWidth, int elemSize) throws IOException {
+        this.file = file;
+        this.rasterWidth = rasterWidth;
+        this.elemSize = elemSize;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Reads the samples of the given source region into the destination buffer.
+     *
+     * @param sourceMinX  the minimum X of the source region
+     * @param sourceMinY  the minimum Y of the source region
+     * @param sourceMaxX  the maximum X of the source region
+     * @param sourceMaxY  the maximum Y of the source region
+     * @param sourceStepX the sub-sampling in X direction
+     * @param sourceStepY the sub-sampling in Y direction
+     * @param destBuffer  the buffer which receives the samples
+     * @throws IOException if an I/O error occurs
+     */
+    void read(int sourceMinX, int sourceMinY, int sourceMaxX, int sourceMaxY,
+              int sourceStepX, int sourceStepY, ProductData destBuffer) throws IOException {
+        final Object elems = destBuffer.getElems();
+        final int spanWidth = sourceMaxX - sourceMinX + 1;
+        final int destWidth = (spanWidth - 1) / sourceStepX + 1;
+        int destPos = 0;
+        if (sourceStepX == 1 && sourceStepY == 1 && spanWidth == rasterWidth) {
+            // the region is contiguous in the file, read it in as few chunks as possible
+            final int rowsPerChunk = Math.max(1, MAX_BUFFER_SIZE / (rasterWidth * elemSize));
+            for (int y = sourceMinY; y <= sourceMaxY; y += rowsPerChunk) {
+                final int numRows = Math.min(rowsPerChunk, sourceMaxY - y + 1);
+                final ByteBuffer buffer = readElems((long) y * rasterWidth, numRows * rasterWidth);
+                copyElems(buffer, elems, destPos, numRows * rasterWidth, 1);
+                destPos += numRows * rasterWidth;
+            }
+        } else {
+            for (int y = sourceMinY; y <= sourceMaxY; y += sourceStepY) {
+                final ByteBuffer buffer = readElems((long) y * rasterWidth + sourceMinX, spanWidth);
+                copyElems(buffer, elems, destPos, destWidth, sourceStepX);
+                destPos += destWidth;
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private ByteBuffer readElems(long elemPos, int numElems) throws IOException {
+        final ByteBuffer buffer = getBuffer(numElems * elemSize);
+        final long startPos = elemPos * elemSize;
+        try {
+            readFully(channel, buffer, startPos);
+        } catch (ClosedChannelException e) {
+            // the channel is closed for all threads if a reading thread is interrupted
+            buffer.clear().limit(numElems * elemSize);
+            readFully(reopen(e), buffer, startPos);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private synchronized FileChannel reopen(ClosedChannelException e) throws IOException {
+        if (closed) {
+            throw e;
+        }
+        if (!channel.isOpen()) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            position += count;
+        }
+    }
+
+    private static ByteBuffer getBuffer(int size) {
+        ByteBuffer buffer = BUFFERS.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, 64 * 1024));
+            if (buffer.capacity() <= MAX_BUFFER_SIZE) {
+                BUFFERS.set(buffer);
+            }
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    static void copyElems(ByteBuffer buffer, Object elems, int destPos, int numElems, int step) {
+        if (elems instanceof byte[]) {
+            final byte[] array = (byte[]) elems;
+            if (step == 1) {
+                buffer.get(array, destPos, numElems);
+            } else {
+                for (int i = 0; i < numElems; i++) {
+                    array[destPos + i] = buffer.get(i * step);
+                }
+            }
+        } else if (elems instanceof short[]) {
+            final short[] array = (short[]) elems;
+            if (step == 1) {
+                buffer.asShortBuffer().get(array, destPos, numElems);
+            } else {
+                for (int i = 0; i < numElems; i++) {
+                    array[destPos + i] = buffer.getShort(i * step * 2);
+                }
+            }
+        } else if (elems instanceof int[]) {
+            final int[] array = (int[]) elems;
+            if (step == 1) {
+                buffer.asIntBuffer().get(array, destPos, numElems);
+            } else {
+                for (int i = 0; i < numElems; i++) {
+                    array[destPos + i] = buffer.getInt(i * step * 4);
+                }
+            }
+        } else if (elems instanceof long[]) {
+            final long[] array = (long[]) elems;
+            if (step == 1) {
+                buffer.asLongBuffer().get(array, destPos, numElems);
+            } else {
+                for (int i = 0; i < numElems; i++) {
+                    array[destPos + i] = buffer.getLong(i * step * 8);
+                }
+            }
+        } else if (elems instanceof float[]) {
+            final float[] array = (float[]) elems;
+            if (step == 1) {
+                buffer.asFloatBuffer().get(array, destPos, numElems);
+            } else {
+                for (int i = 0; i < numElems; i++) {
+                    array[destPos + i] = buffer.getFloat(i * step * 4);
+                }
+            }
+        } else if (elems instanceof double[]) {
+            final double[] array = (double[]) elems;
+            if (step == 1) {
+                buffer.asDoubleBuffer().get(array, destPos, numElems);
+            } else {
+                for (int i = 0; i < numElems; i++) {
+                    array[destPos + i] = buffer.getDouble(i * step * 8);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported data type: " + elems.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio.dimap;
+
+/**
+ * Throughput metrics of the asynchronous writing of a band by the {@link DimapProductWriter}.
+ *
+ * @since SNAP 2.0
+ */
+public final class BandWriteMetrics {
+
+    private final String bandName;
+    private volatile long tileCount;
+    private volatile long stripeCount;
+    private volatile long byteCount;
+    private volatile long writeTimeNanos;
+
+    BandWriteMetrics(String bandName) {
+        this.bandName = bandName;
+    }
+
+    public String getBandName() {
+        return bandName;
+    }
+
+    /**
+     * @return the number of tiles passed to the writer
+     */
+    public long getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * @return the number of full-width stripes written with a single gathering write
+     */
+    public long getStripeCount() {
+        return stripeCount;
+    }
+
+    /**
+     * @return the number of bytes written to the image file
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the time spent in writing to the image file, in nanoseconds
+     */
+    public long getWriteTimeNanos() {
+        return writeTimeNanos;
+    }
+
+    /**
+     * @return the write throughput in bytes per second, or 0 if nothing has been written yet
+     */
+    public double getThroughput() {
+        final long nanos = writeTimeNanos;
+        return nanos > 0 ? byteCount * 1.0e9 / nanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d tiles, %d stripes, %d bytes, %.1f MB/s",
+                             bandName, tileCount, stripeCount, byteCount, getThroughput() / (1024 * 1024));
+    }
+
+    // only called by the writing thread
+
+    void addTile() {
+        tileCount++;
+    }
+
+    void addWrite(long bytes, long nanos, boolean stripe) {
+        byteCount += bytes;
+        writeTimeNanos += nanos;
+        if (stripe) {
+            stripeCount++;
+        }
+    }
+}
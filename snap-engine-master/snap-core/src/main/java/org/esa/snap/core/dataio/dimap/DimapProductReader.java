@@ -45,7 +45,6 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import javax.imageio.stream.FileImageInputStream;
-import javax.imageio.stream.ImageInputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.BufferedInputStream;
@@ -56,8 +55,8 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -78,7 +77,7 @@ public class DimapProductReader extends AbstractProductReader {
 
     private File inputDir;
     private File inputFile;
-    private Map<Band, ImageInputStream> bandInputStreams;
+    private Map<Band, BandFileChannel> bandChannels;
 
     private Map<Band, File> bandDataFiles;
     private Set<ReaderExtender> readerExtenders;
@@ -312,36 +311,16 @@ public class DimapProductReader extends AbstractProductReader {
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
 
         final File dataFile = bandDataFiles.get(destBand);
-        final ImageInputStream inputStream = getOrCreateImageInputStream(destBand, dataFile);
-        if (inputStream == null) {
+        final BandFileChannel bandChannel = getOrCreateBandChannel(destBand, dataFile);
+        if (bandChannel == null) {
             return;
         }
 
-        int destPos = 0;
-
-        pm.beginTask("Reading band '" + destBand.getName() + "'...", sourceMaxY - sourceMinY);
-        // For each scan in the data source
+        pm.beginTask("Reading band '" + destBand.getName() + "'...", 1);
         try {
-            synchronized (inputStream) {
-                for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
-                    if (pm.isCanceled()) {
-                        break;
-                    }
-                    final long sourcePosY = (long) sourceY * destBand.getRasterWidth();
-                    if (sourceStepX == 1) {
-                        long inputPos = sourcePosY + sourceMinX;
-                        destBuffer.readFrom(destPos, destWidth, inputStream, inputPos);
-                        destPos += destWidth;
-                    } else {
-                        for (int sourceX = sourceMinX; sourceX <= sourceMaxX; sourceX += sourceStepX) {
-                            long inputPos = sourcePosY + sourceX;
-                            destBuffer.readFrom(destPos, 1, inputStream, inputPos);
-                            destPos++;
-                        }
-                    }
-                }
-                pm.worked(1);
-            }
+            // positional reads, no need to synchronise concurrent reads of the same band
+            bandChannel.read(sourceMinX, sourceMinY, sourceMaxX, sourceMaxY, sourceStepX, sourceStepY, destBuffer);
+            pm.worked(1);
         } finally {
             pm.done();
         }
@@ -358,14 +337,9 @@ public class DimapProductReader extends AbstractProductReader {
      */
     @Override
     public void close() throws IOException {
-        if (bandInputStreams == null) {
+        if (!closeBandChannels()) {
             return;
         }
-        for (ImageInputStream imageInputStream : bandInputStreams.values()) {
-            (imageInputStream).close();
-        }
-        bandInputStreams.clear();
-        bandInputStreams = null;
         if (readerExtenders != null) {
             readerExtenders.clear();
             readerExtenders = null;
@@ -373,32 +347,36 @@ public class DimapProductReader extends AbstractProductReader {
         super.close();
     }
 
-    private ImageInputStream getOrCreateImageInputStream(Band band, File file) throws IOException {
-        ImageInputStream inputStream = getImageInputStream(band);
-        if (inputStream == null) {
+    private synchronized boolean closeBandChannels() throws IOException {
+        if (bandChannels == null) {
+            return false;
+        }
+        for (BandFileChannel bandChannel : bandChannels.values()) {
+            bandChannel.close();
+        }
+        bandChannels.clear();
+        bandChannels = null;
+        return true;
+    }
+
+    private synchronized BandFileChannel getOrCreateBandChannel(Band band, File file) {
+        BandFileChannel bandChannel = bandChannels != null ? bandChannels.get(band) : null;
+        if (bandChannel == null) {
             try {
-                inputStream = new FileImageInputStream(file);
+                bandChannel = new BandFileChannel(file, band.getRasterWidth(),
+                                                  ProductData.getElemSize(band.getDataType()));
             } catch (IOException e) {
                 SystemUtils.LOG.log(Level.WARNING,
                                     "DimapProductReader: Unable to read file '" + file + "' referenced by '" + band.getName() + "'.",
                                     e);
-            }
-            if (inputStream == null) {
                 return null;
             }
-            if (bandInputStreams == null) {
-                bandInputStreams = new Hashtable<Band, ImageInputStream>();
+            if (bandChannels == null) {
+                bandChannels = new HashMap<>();
             }
-            bandInputStreams.put(band, inputStream);
-        }
-        return inputStream;
-    }
-
-    private ImageInputStream getImageInputStream(Band band) {
-        if (bandInputStreams != null) {
-            return bandInputStreams.get(band);
+            bandChannels.put(band, bandChannel);
         }
-        return null;
+        return bandChannel;
     }
 
     private void readVectorData(final CoordinateReferenceSystem modelCrs, final boolean onlyGCPs) throws IOException {
@@ -81,6 +81,11 @@ public class DimapProductReaderPlugIn implements ProductReaderPlugIn {
         return "DIMAP (BEAM profile) product reader"; /*I18N*/
     }
 
+    @Override
+    public boolean isDecodeCandidate(File file, byte[] fileHeader) {
+        return file.getPath().toLowerCase().endsWith(DimapProductConstants.DIMAP_HEADER_FILE_EXTENSION);
+    }
+
     /**
      * Checks whether the given object is an acceptable input for this product reader and if so, the method checks if
      * it's content has the BEAM-DIMAP format.
@@ -35,12 +35,14 @@ import org.esa.snap.core.util.Debug;
 import org.esa.snap.core.util.Guardian;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.runtime.Config;
 
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -58,12 +60,33 @@ import java.util.Set;
  */
 public class DimapProductWriter extends AbstractProductWriter {
 
+    /**
+     * The name of the preference which enables the asynchronous write mode. In this mode band data is written
+     * by a dedicated I/O thread, which coalesces the tiles of a band into full-width stripes. The default is
+     * {@code false}.
+     *
+     * @since SNAP 2.0
+     */
+    public static final String ASYNC_WRITE_PROPERTY = "snap.dataio.writer.dimap.async";
+
+    /**
+     * The name of the preference which gives the maximum amount of band data, in MiB, which may be queued in the
+     * asynchronous write mode. Callers of {@link #writeBandRasterData} block while this limit is exceeded.
+     * The default is {@code 256}.
+     *
+     * @since SNAP 2.0
+     */
+    public static final String ASYNC_MEMORY_LIMIT_PROPERTY = "snap.dataio.writer.dimap.asyncMemoryLimit";
+
     private File outputDir;
     private File outputFile;
     private Map<Band, ImageOutputStream> bandOutputStreams;
     private File dataOutputDir;
     private boolean incremental = true;
     private Set<WriterExtender> writerExtenders;
+    private boolean asyncMode;
+    private long asyncMemoryLimit;
+    private AsyncBandWriter asyncBandWriter;
 
     /**
      * Construct a new instance of a product writer for the given BEAM-DIMAP product writer plug-in.
@@ -72,6 +95,12 @@ public class DimapProductWriter extends AbstractProductWriter {
      */
     public DimapProductWriter(ProductWriterPlugIn writerPlugIn) {
         super(writerPlugIn);
+        asyncMode = isAsyncModeEnabled();
+        asyncMemoryLimit = Config.instance().preferences().getLong(ASYNC_MEMORY_LIMIT_PROPERTY, 256L) * 1024L * 1024L;
+    }
+
+    static boolean isAsyncModeEnabled() {
+        return Config.instance().preferences().getBoolean(ASYNC_WRITE_PROPERTY, false);
     }
 
     /**
@@ -88,6 +117,36 @@ public class DimapProductWriter extends AbstractProductWriter {
         return bandOutputStreams;
     }
 
+    /**
+     * Returns the write statistics of the bands written so far. Statistics are only gathered in the
+     * asynchronous write mode, otherwise the returned map is empty.
+     *
+     * @return the statistics, never {@code null}
+     * @see #ASYNC_WRITE_PROPERTY
+     * @since SNAP 2.0
+     */
+    public synchronized Map<Band, BandWriteMetrics> getBandWriteMetrics() {
+        if (asyncBandWriter == null) {
+            return Collections.emptyMap();
+        }
+        return asyncBandWriter.getMetrics();
+    }
+
+    /**
+     * This writer is thread-safe if it has been created with the asynchronous write mode enabled.
+     *
+     * @see #ASYNC_WRITE_PROPERTY
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return asyncMode;
+    }
+
+    void setAsyncMode(boolean asyncMode, long memoryLimit) {
+        this.asyncMode = asyncMode;
+        this.asyncMemoryLimit = memoryLimit;
+    }
+
     /**
      * Writes the in-memory representation of a data product. This method was called by <code>writeProductNodes(product,
      * output)</code> of the AbstractProductWriter.
@@ -177,6 +236,11 @@ public class DimapProductWriter extends AbstractProductWriter {
         final long sourceBandHeight = sourceBand.getSceneRasterHeight();
         checkSourceRegionInsideBandRegion(sourceWidth, sourceBandWidth, sourceHeight, sourceBandHeight, sourceOffsetX,
                                           sourceOffsetY);
+        if (asyncMode) {
+            getOrCreateAsyncBandWriter().write(sourceBand, sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight,
+                                               sourceBuffer);
+            return;
+        }
         final ImageOutputStream outputStream = getOrCreateImageOutputStream(sourceBand);
         long outputPos = (long) sourceOffsetY * sourceBandWidth + (long) sourceOffsetX;
         pm.beginTask("Writing band '" + sourceBand.getName() + "'...", sourceHeight);
@@ -232,6 +296,9 @@ public class DimapProductWriter extends AbstractProductWriter {
      */
     @Override
     public synchronized void flush() throws IOException {
+        if (asyncBandWriter != null) {
+            asyncBandWriter.flush();
+        }
         if (bandOutputStreams == null) {
             return;
         }
@@ -247,6 +314,13 @@ public class DimapProductWriter extends AbstractProductWriter {
      */
     @Override
     public synchronized void close() throws IOException {
+        if (asyncBandWriter != null) {
+            try {
+                asyncBandWriter.close();
+            } finally {
+                asyncBandWriter = null;
+            }
+        }
         if (bandOutputStreams == null) {
             return;
         }
@@ -308,6 +382,13 @@ public class DimapProductWriter extends AbstractProductWriter {
         return outputStream;
     }
 
+    private synchronized AsyncBandWriter getOrCreateAsyncBandWriter() {
+        if (asyncBandWriter == null) {
+            asyncBandWriter = new AsyncBandWriter(this::getValidImageFile, asyncMemoryLimit);
+        }
+        return asyncBandWriter;
+    }
+
     private synchronized ImageOutputStream getImageOutputStream(Band band) {
         if (bandOutputStreams != null) {
             return bandOutputStreams.get(band);
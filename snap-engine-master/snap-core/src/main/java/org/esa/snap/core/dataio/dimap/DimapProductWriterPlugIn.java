@@ -491,6 +491,17 @@ public class DimapProductWriterPlugIn implements ProductWriterPlugIn {
         return dimapProductWriter;
     }
 
+    /**
+     * Writers created now are thread-safe if the asynchronous write mode is enabled. The mode of an existing
+     * writer is given by {@link DimapProductWriter#isThreadSafe()}.
+     *
+     * @see DimapProductWriter#ASYNC_WRITE_PROPERTY
+     */
+    @Override
+    public boolean isWriterThreadSafe() {
+        return DimapProductWriter.isAsyncModeEnabled();
+    }
+
     public SnapFileFilter getProductFileFilter() {
         return dimapFileFilter;
     }
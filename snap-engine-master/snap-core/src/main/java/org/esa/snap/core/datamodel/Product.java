@@ -2572,9 +2572,13 @@ public class Product extends ProductNode {
         final RasterDataLoop loop = new RasterDataLoop(0, 0,
                                                        productWidth, productHeight,
                                                        new Term[]{term}, pm);
-        loop.forEachPixel((env, pixelIndex) -> {
-            if (term.evalB(env)) {
-                validMask.set(pixelIndex);
+        final boolean[] values = new boolean[productWidth];
+        loop.forEachLine((env, pixelIndex, pixelCount) -> {
+            term.evalB(env, values, 0, pixelCount);
+            for (int i = 0; i < pixelCount; i++) {
+                if (values[i]) {
+                    validMask.set(pixelIndex + i);
+                }
             }
         }, "Computing valid-mask..."); /*I18N*/
 
@@ -2623,7 +2627,8 @@ public class Product extends ProductNode {
         final RasterDataLoop loop = new RasterDataLoop(offsetX, offsetY,
                                                        width, height,
                                                        new Term[]{bitmaskTerm}, pm);
-        loop.forEachPixel((env, pixelIndex) -> bitmask[pixelIndex] = bitmaskTerm.evalB(env));
+        loop.forEachLine((env, pixelIndex, pixelCount) -> bitmaskTerm.evalB(env, bitmask, pixelIndex, pixelCount),
+                         "Performing raster data operation..."); /*I18N*/
     }
 
 
@@ -2670,11 +2675,11 @@ public class Product extends ProductNode {
         final RasterDataLoop loop = new RasterDataLoop(offsetX, offsetY,
                                                        width, height,
                                                        new Term[]{bitmaskTerm}, pm);
-        loop.forEachPixel((env, pixelIndex) -> {
-            if (bitmaskTerm.evalB(env)) {
-                bitmask[pixelIndex] = trueValue;
-            } else {
-                bitmask[pixelIndex] = falseValue;
+        final boolean[] values = new boolean[width];
+        loop.forEachLine((env, pixelIndex, pixelCount) -> {
+            bitmaskTerm.evalB(env, values, 0, pixelCount);
+            for (int i = 0; i < pixelCount; i++) {
+                bitmask[pixelIndex + i] = values[i] ? trueValue : falseValue;
             }
         }, "Reading bitmask...");  /*I18N*/
     }
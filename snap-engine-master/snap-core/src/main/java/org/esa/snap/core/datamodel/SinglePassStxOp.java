@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.datamodel;
+
+import org.esa.snap.core.util.math.DoubleList;
+
+import javax.media.jai.Histogram;
+import javax.media.jai.UnpackedImageData;
+import java.util.Arrays;
+
+/**
+ * Utility class for calculating the summary statistics and the histogram of image data in a single pass,
+ * i.e. without knowing minimum and maximum in advance.
+ * <p>
+ * Besides a {@link SummaryStxOp}, samples are counted in an adaptive histogram of fine bins. The width of the fine
+ * bins is a power of two and the bins are aligned to multiples of their width. If a sample falls outside the range
+ * covered by the fine bins, the width is doubled by merging pairs of neighbouring bins until all samples fit.
+ * Because of the common alignment, instances which have accumulated different tiles (e.g. in different threads)
+ * can be {@link #merge merged} without any loss of accuracy.
+ * <p>
+ * Once minimum and maximum are known, the fine bins are rescaled to the bins of a histogram as created by
+ * {@link HistogramStxOp} by {@link #accumulateHistogram(Histogram)}. Each fine bin is counted in the histogram bin
+ * containing its centre (or, for integer histograms, its lower edge). So each sample is counted either in the same
+ * bin as by the {@link HistogramStxOp} or in a neighbouring one, the latter only if the sample is closer than one
+ * fine bin width to the boundary between them. The fine bin width is less than {@code 2 * (max - min) / (n - 1)}
+ * for {@code n} fine bins, which is about 1/8 of the histogram bin width if the fine bin count is obtained from
+ * {@link #getFineBinCount(int)}. Histograms of integer data which spans less than {@code n / 2} values are exact.
+ * <p>
+ * As long as no more than {@code n / 2} samples have been accumulated, the samples themselves are kept instead of
+ * the fine bins, and their histograms are exact. So instances which receive only a few samples, e.g. those for the
+ * many small regions of zonal statistics, do not need more memory than their samples.
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @since SNAP 2.0
+ */
+final public class SinglePassStxOp extends StxOp {
+
+    /**
+     * The number of fine bins used per histogram bin by {@link #getFineBinCount(int)}.
+     */
+    public static final int FINE_BINS_PER_BIN = 16;
+    /**
+     * The maximum number of fine bins returned by {@link #getFineBinCount(int)}.
+     */
+    public static final int MAX_FINE_BIN_COUNT = 1 << 22;
+
+    private final SummaryStxOp summaryOp;
+    private final int fineBinCount;
+    private final boolean intHistogram;
+    private final boolean logHistogram;
+    private final Scaling scaling;
+
+    // the samples (in histogram scaling) as long as they are not counted in fine bins
+    private double[] samples;
+    private int sampleCount;
+    private int[] fineBins;
+    // the width of the fine bins is 2^exponent, the key of a fine bin is floor(value / 2^exponent)
+    private int exponent;
+    private long firstKey;
+    private long minKey;
+    private long maxKey;
+
+    public SinglePassStxOp(int fineBinCount, boolean intHistogram, boolean logHistogram) {
+        super("Single-Pass");
+        if (fineBinCount < 2) {
+            throw new IllegalArgumentException("fineBinCount < 2");
+        }
+        this.summaryOp = new SummaryStxOp();
+        this.fineBinCount = fineBinCount;
+        this.intHistogram = intHistogram;
+        this.logHistogram = logHistogram;
+        this.scaling = Stx.getHistogramScaling(logHistogram);
+    }
+
+    /**
+     * Gets a number of fine bins suitable for the creation of histograms with the given bin count.
+     *
+     * @param binCount The bin count of the histograms to be created.
+     * @return The number of fine bins.
+     */
+    public static int getFineBinCount(int binCount) {
+        return (int) Math.min((long) binCount * FINE_BINS_PER_BIN, MAX_FINE_BIN_COUNT);
+    }
+
+    public SummaryStxOp getSummaryOp() {
+        return summaryOp;
+    }
+
+    public int getFineBinCount() {
+        return fineBinCount;
+    }
+
+    public boolean isIntHistogram() {
+        return intHistogram;
+    }
+
+    public boolean isLogHistogram() {
+        return logHistogram;
+    }
+
+    /**
+     * @return The current width of the fine bins (in histogram scaling), or {@code NaN} if the samples
+     * are not (yet) counted in fine bins.
+     */
+    public double getFineBinWidth() {
+        return fineBins != null ? Math.scalb(1.0, exponent) : Double.NaN;
+    }
+
+    /**
+     * Creates a histogram as the {@link HistogramStxOp} would compute for the given minimum and maximum.
+     *
+     * @param binCount The bin count.
+     * @param minimum  The minimum, usually the one of the {@link #getSummaryOp() summary}.
+     * @param maximum  The maximum, usually the one of the {@link #getSummaryOp() summary}.
+     * @return The histogram.
+     */
+    public Histogram createHistogram(int binCount, double minimum, double maximum) {
+        final HistogramStxOp histogramOp = new HistogramStxOp(binCount, minimum, maximum, intHistogram, logHistogram);
+        accumulateHistogram(histogramOp.getHistogram());
+        return histogramOp.getHistogram();
+    }
+
+    /**
+     * Adds the counts of the fine bins to the bins of the given histogram. Fine bins outside the range of the
+     * histogram are ignored.
+     *
+     * @param histogram The histogram, its low and high values must be given in the histogram scaling of this instance.
+     */
+    public void accumulateHistogram(Histogram histogram) {
+        final int[] bins = histogram.getBins(0);
+        final double lowValue = histogram.getLowValue(0);
+        final double highValue = histogram.getHighValue(0);
+        final double binWidth = (highValue - lowValue) / bins.length;
+
+        // samples are counted exactly as by HistogramStxOp
+        for (int k = 0; k < sampleCount; k++) {
+            final double value = samples[k];
+            if (value >= lowValue && value <= highValue) {
+                int i = (int) ((value - lowValue) / binWidth);
+                if (i == bins.length) {
+                    i--;
+                }
+                bins[i]++;
+            }
+        }
+
+        if (fineBins == null) {
+            return;
+        }
+        final double fineBinWidth = Math.scalb(1.0, exponent);
+        // integer samples are located at the lower edge of their fine bin as long as the fine bin width is <= 1
+        final double offset = intHistogram && !logHistogram ? 0.0 : 0.5 * fineBinWidth;
+
+        for (long key = minKey; key <= maxKey; key++) {
+            final int count = fineBins[(int) (key - firstKey)];
+            if (count == 0) {
+                continue;
+            }
+            final double fineBinLowValue = Math.scalb((double) key, exponent);
+            if (fineBinLowValue + fineBinWidth <= lowValue || fineBinLowValue > highValue) {
+                continue;
+            }
+            final double value = fineBinLowValue + offset;
+            int i = value > lowValue ? (int) ((value - lowValue) / binWidth) : 0;
+            if (i >= bins.length) {
+                i = bins.length - 1;
+            }
+            bins[i] += count;
+        }
+    }
+
+    /**
+     * Merges the samples accumulated by another instance into this one.
+     *
+     * @param other The instance to be merged into this one. Must have the same histogram scaling.
+     */
+    public void merge(SinglePassStxOp other) {
+        if (other.logHistogram != logHistogram) {
+            throw new IllegalArgumentException("other.logHistogram != logHistogram");
+        }
+        summaryOp.merge(other.summaryOp);
+        if (other.sampleCount > 0) {
+            if (fineBins == null && sampleCount + other.sampleCount <= getMaxSampleCount()) {
+                ensureSampleCapacity(sampleCount + other.sampleCount);
+                System.arraycopy(other.samples, 0, samples, sampleCount, other.sampleCount);
+                sampleCount += other.sampleCount;
+            } else {
+                flushSamples();
+                countInFineBins(other.samples, other.sampleCount);
+            }
+        }
+        if (other.fineBins == null) {
+            return;
+        }
+        flushSamples();
+        ensureRange(Math.scalb((double) other.minKey, other.exponent),
+                    Math.scalb((double) other.maxKey, other.exponent),
+                    other.exponent);
+        final int shift = exponent - other.exponent;
+        for (long key = other.minKey; key <= other.maxKey; key++) {
+            final int count = other.fineBins[(int) (key - other.firstKey)];
+            if (count != 0) {
+                fineBins[(int) (shiftKey(key, shift) - firstKey)] += count;
+            }
+        }
+    }
+
+    @Override
+    public void accumulateData(UnpackedImageData dataPixels,
+                               UnpackedImageData maskPixels) {
+
+        summaryOp.accumulateData(dataPixels, maskPixels);
+
+        // Do not change this code block without doing the same changes in HistogramStxOp.java and SummaryStxOp.java
+        // {{ Block Start
+
+        final DoubleList values = asDoubleList(dataPixels);
+
+        final int dataPixelStride = dataPixels.pixelStride;
+        final int dataLineStride = dataPixels.lineStride;
+        final int dataBandOffset = dataPixels.bandOffsets[0];
+
+        byte[] mask = null;
+        int maskPixelStride = 0;
+        int maskLineStride = 0;
+        int maskBandOffset = 0;
+        if (maskPixels != null) {
+            mask = maskPixels.getByteData(0);
+            maskPixelStride = maskPixels.pixelStride;
+            maskLineStride = maskPixels.lineStride;
+            maskBandOffset = maskPixels.bandOffsets[0];
+        }
+
+        final int width = dataPixels.rect.width;
+        final int height = dataPixels.rect.height;
+
+        int dataLineOffset = dataBandOffset;
+        int maskLineOffset = maskBandOffset;
+
+        // }} Block End
+
+        // find the range of the tile first, so that the fine bins need to be adapted at most once per tile
+        double tileMinimum = Double.POSITIVE_INFINITY;
+        double tileMaximum = Double.NEGATIVE_INFINITY;
+        int tileSampleCount = 0;
+        for (int y = 0; y < height; y++) {
+            int dataPixelOffset = dataLineOffset + y * dataLineStride;
+            int maskPixelOffset = maskLineOffset + y * maskLineStride;
+            for (int x = 0; x < width; x++) {
+                if (mask == null || mask[maskPixelOffset] != 0) {
+                    final double value = scaling.scale(values.getDouble(dataPixelOffset));
+                    if (value > Double.NEGATIVE_INFINITY && value < Double.POSITIVE_INFINITY) {
+                        tileSampleCount++;
+                        if (value < tileMinimum) {
+                            tileMinimum = value;
+                        }
+                        if (value > tileMaximum) {
+                            tileMaximum = value;
+                        }
+                    }
+                }
+                dataPixelOffset += dataPixelStride;
+                maskPixelOffset += maskPixelStride;
+            }
+        }
+        if (tileMinimum > tileMaximum) {
+            return;
+        }
+        if (fineBins == null && sampleCount + tileSampleCount <= getMaxSampleCount()) {
+            ensureSampleCapacity(sampleCount + tileSampleCount);
+            for (int y = 0; y < height; y++) {
+                int dataPixelOffset = dataLineOffset;
+                int maskPixelOffset = maskLineOffset;
+                for (int x = 0; x < width; x++) {
+                    if (mask == null || mask[maskPixelOffset] != 0) {
+                        final double value = scaling.scale(values.getDouble(dataPixelOffset));
+                        if (value >= tileMinimum && value <= tileMaximum) {
+                            samples[sampleCount++] = value;
+                        }
+                    }
+                    dataPixelOffset += dataPixelStride;
+                    maskPixelOffset += maskPixelStride;
+                }
+                dataLineOffset += dataLineStride;
+                maskLineOffset += maskLineStride;
+            }
+            return;
+        }
+        flushSamples();
+        ensureRange(tileMinimum, tileMaximum, Integer.MIN_VALUE);
+
+        final int[] bins = fineBins;
+        final double scale = Math.scalb(1.0, -exponent);
+        final long firstKey = this.firstKey;
+        for (int y = 0; y < height; y++) {
+            int dataPixelOffset = dataLineOffset;
+            int maskPixelOffset = maskLineOffset;
+            for (int x = 0; x < width; x++) {
+                if (mask == null || mask[maskPixelOffset] != 0) {
+                    final double value = scaling.scale(values.getDouble(dataPixelOffset));
+                    if (value >= tileMinimum && value <= tileMaximum) {
+                        bins[(int) ((long) Math.floor(value * scale) - firstKey)]++;
+                    }
+                }
+                dataPixelOffset += dataPixelStride;
+                maskPixelOffset += maskPixelStride;
+            }
+            dataLineOffset += dataLineStride;
+            maskLineOffset += maskLineStride;
+        }
+    }
+
+    private int getMaxSampleCount() {
+        // the samples must not need more memory than the fine bins
+        return fineBinCount / 2;
+    }
+
+    private void ensureSampleCapacity(int capacity) {
+        if (samples == null) {
+            samples = new double[Math.min(Math.max(16, capacity), getMaxSampleCount())];
+        } else if (samples.length < capacity) {
+            samples = Arrays.copyOf(samples, Math.min(Math.max(2 * samples.length, capacity), getMaxSampleCount()));
+        }
+    }
+
+    /**
+     * Counts the kept samples in the fine bins and forgets them.
+     */
+    private void flushSamples() {
+        if (sampleCount > 0) {
+            countInFineBins(samples, sampleCount);
+        }
+        samples = null;
+        sampleCount = 0;
+    }
+
+    private void countInFineBins(double[] values, int count) {
+        double minimum = Double.POSITIVE_INFINITY;
+        double maximum = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minimum = Math.min(minimum, values[i]);
+            maximum = Math.max(maximum, values[i]);
+        }
+        ensureRange(minimum, maximum, Integer.MIN_VALUE);
+        final double scale = Math.scalb(1.0, -exponent);
+        for (int i = 0; i < count; i++) {
+            fineBins[(int) ((long) Math.floor(values[i] * scale) - firstKey)]++;
+        }
+    }
+
+    /**
+     * Ensures that the fine bins cover the given range, by doubling the fine bin width if required.
+     */
+    private void ensureRange(double low, double high, int minExponent) {
+        // fine bins narrower than the resolution of the values are useless and their keys could overflow
+        final double magnitude = Math.max(Math.abs(low), Math.abs(high));
+        minExponent = Math.max(minExponent, Math.max(Math.getExponent(magnitude) - 52, Double.MIN_EXPONENT));
+
+        int newExponent;
+        if (fineBins == null) {
+            // start with the smallest power of two for which the range fits into the fine bins
+            final double width = (0.5 * high - 0.5 * low) / (0.5 * fineBinCount);
+            newExponent = Math.max(width > 0.0 ? Math.getExponent(width) + 1 : minExponent, minExponent);
+        } else {
+            newExponent = Math.max(exponent, minExponent);
+        }
+        while (true) {
+            // keys must be computed exactly as in accumulateData()
+            final double scale = Math.scalb(1.0, -newExponent);
+            double lowKey = Math.floor(low * scale);
+            double highKey = Math.floor(high * scale);
+            if (fineBins != null) {
+                lowKey = Math.min(lowKey, shiftKey(minKey, newExponent - exponent));
+                highKey = Math.max(highKey, shiftKey(maxKey, newExponent - exponent));
+            }
+            if (highKey - lowKey < fineBinCount) {
+                if (fineBins != null && newExponent == exponent && lowKey >= firstKey && highKey < firstKey + fineBinCount) {
+                    minKey = (long) lowKey;
+                    maxKey = (long) highKey;
+                } else {
+                    rebin(newExponent, (long) lowKey, (long) highKey);
+                }
+                return;
+            }
+            newExponent++;
+        }
+    }
+
+    private void rebin(int newExponent, long newMinKey, long newMaxKey) {
+        // centre the occupied keys, so that the bins need not to be moved for every new extremum
+        final long newFirstKey = newMinKey - (fineBinCount - 1 - (newMaxKey - newMinKey)) / 2;
+        final int[] newBins = new int[fineBinCount];
+        if (fineBins != null) {
+            final int shift = newExponent - exponent;
+            for (long key = minKey; key <= maxKey; key++) {
+                final int count = fineBins[(int) (key - firstKey)];
+                if (count != 0) {
+                    newBins[(int) (shiftKey(key, shift) - newFirstKey)] += count;
+                }
+            }
+        }
+        fineBins = newBins;
+        exponent = newExponent;
+        firstKey = newFirstKey;
+        minKey = newMinKey;
+        maxKey = newMaxKey;
+    }
+
+    private static long shiftKey(long key, int shift) {
+        // the key in case of the doubled bin width is floor(key / 2), note that shift distances are taken modulo 64
+        return key >> Math.min(shift, 63);
+    }
+}
@@ -21,8 +21,16 @@ import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The factory for {@link Stx} instances.
@@ -51,6 +59,9 @@ public class StxFactory {
     private Number coefficientOfVariation;
     private Number enl;
 
+    private boolean singlePass;
+    private Integer parallelism;
+
     public StxFactory() {
     }
 
@@ -123,6 +134,33 @@ public class StxFactory {
         return this;
     }
 
+    /**
+     * If set, minimum, maximum and histogram are computed in a single pass over the data using a
+     * {@link SinglePassStxOp}, instead of a pass for minimum and maximum followed by a pass for the histogram.
+     * The tiles are then accumulated in parallel, see {@link #withParallelism(Integer)}.
+     * The histogram may slightly differ from the one computed in two passes, see {@link SinglePassStxOp}
+     * for the error bound.
+     *
+     * @param singlePass Whether to compute the statistics in a single pass.
+     * @return This instance.
+     * @since SNAP 2.0
+     */
+    public StxFactory withSinglePass(boolean singlePass) {
+        this.singlePass = singlePass;
+        return this;
+    }
+
+    /**
+     * @param parallelism The number of threads accumulating tiles in single-pass mode.
+     *                    Defaults to the number of available processors.
+     * @return This instance.
+     * @since SNAP 2.0
+     */
+    public StxFactory withParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
     /**
      * Creates an {@code Stx} instance.
      *
@@ -189,15 +227,31 @@ public class StxFactory {
 
             boolean mustComputeSummaryStx = this.minimum == null || this.maximum == null;
             boolean mustComputeHistogramStx = this.histogram == null && this.histogramBins == null;
+            int binCount = histogramBinCount != null ? histogramBinCount : DEFAULT_BIN_COUNT;
 
             try {
                 pm.beginTask("Computing statistics", mustComputeSummaryStx && mustComputeHistogramStx ? 100 : 50);
 
-                if (mustComputeSummaryStx) {
-                    final SummaryStxOp meanOp = new SummaryStxOp();
+                SinglePassStxOp singlePassOp = null;
+                if (singlePass && mustComputeSummaryStx && mustComputeHistogramStx) {
+                    int parallelism = this.parallelism != null ? this.parallelism : Runtime.getRuntime().availableProcessors();
+                    singlePassOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(binCount), intHistogram, logHistogram);
                     for (int i = 0; i < filteredRasters.length; i++) {
                         final RasterDataNode rasterDataNode = filteredRasters[i];
-                        accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], meanOp, SubProgressMonitor.create(pm, 50));
+                        accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], singlePassOp, parallelism, SubProgressMonitor.create(pm, 100));
+                    }
+                }
+
+                if (mustComputeSummaryStx) {
+                    final SummaryStxOp meanOp;
+                    if (singlePassOp != null) {
+                        meanOp = singlePassOp.getSummaryOp();
+                    } else {
+                        meanOp = new SummaryStxOp();
+                        for (int i = 0; i < filteredRasters.length; i++) {
+                            final RasterDataNode rasterDataNode = filteredRasters[i];
+                            accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], meanOp, SubProgressMonitor.create(pm, 50));
+                        }
                     }
                     if (this.minimum == null) {
                         minimum = meanOp.getMinimum();
@@ -220,13 +274,16 @@ public class StxFactory {
                 }
 
                 if (mustComputeHistogramStx) {
-                    int binCount = histogramBinCount != null ? histogramBinCount : DEFAULT_BIN_COUNT;
-                    final HistogramStxOp histogramOp = new HistogramStxOp(binCount, minimum, maximum, intHistogram, logHistogram);
-                    for (int i = 0; i < filteredRasters.length; i++) {
-                        final RasterDataNode rasterDataNode = filteredRasters[i];
-                        accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], histogramOp, SubProgressMonitor.create(pm, 50));
+                    if (singlePassOp != null) {
+                        histogram = singlePassOp.createHistogram(binCount, minimum, maximum);
+                    } else {
+                        final HistogramStxOp histogramOp = new HistogramStxOp(binCount, minimum, maximum, intHistogram, logHistogram);
+                        for (int i = 0; i < filteredRasters.length; i++) {
+                            final RasterDataNode rasterDataNode = filteredRasters[i];
+                            accumulate(rasterDataNode, level, roiImages[i], roiShapes[i], histogramOp, SubProgressMonitor.create(pm, 50));
+                        }
+                        histogram = histogramOp.getHistogram();
                     }
-                    histogram = histogramOp.getHistogram();
                 }
             } finally {
                 pm.done();
@@ -296,6 +353,237 @@ public class StxFactory {
         accumulate(op, dataImage, maskImage, maskShape, pm);
     }
 
+    /**
+     * Accumulates the tiles of the given raster data node in parallel. Each thread accumulates its tiles
+     * into its own {@link SinglePassStxOp}, which are finally merged into the given one.
+     *
+     * @param rasterDataNode The raster data node.
+     * @param level          The resolution level.
+     * @param roiImage       The ROI image, may be {@code null}.
+     * @param roiShape       The ROI shape, may be {@code null}.
+     * @param op             The operation to accumulate the data into.
+     * @param parallelism    The number of threads. If less than 2, tiles are accumulated sequentially.
+     * @param pm             A progress monitor.
+     * @since SNAP 2.0
+     */
+    public static void accumulate(RasterDataNode rasterDataNode,
+                                  int level,
+                                  RenderedImage roiImage,
+                                  Shape roiShape,
+                                  SinglePassStxOp op,
+                                  int parallelism,
+                                  ProgressMonitor pm) {
+
+        Assert.notNull(rasterDataNode, "raster");
+        Assert.argument(level >= 0, "level");
+        Assert.argument(roiImage == null || level == 0, "level");
+        Assert.notNull(pm, "pm");
+
+        final PlanarImage dataImage = ImageManager.getInstance().getGeophysicalImage(rasterDataNode, level);
+        if (dataImage.getSampleModel().getNumBands() != 1) {
+            throw new IllegalStateException("dataImage.sampleModel.numBands != 1");
+        }
+        PlanarImage maskImage = getEffectiveMaskImage(rasterDataNode, level, roiImage);
+        Shape maskShape = getEffectiveShape(rasterDataNode, roiShape);
+
+        if (parallelism < 2) {
+            accumulate(op, dataImage, maskImage, maskShape, pm);
+        } else {
+            accumulate(op, dataImage, maskImage, maskShape, parallelism, pm);
+        }
+    }
+
+    /**
+     * Accumulates the data of the given raster data node for many regions at once, reading each tile of the
+     * raster only once. The regions are given by label images: a pixel having the label {@code l > 0} in the
+     * label image at index {@code k} is accumulated by {@code ops[k][l - 1]}. Pixels which are invalid
+     * with respect to the raster's valid-pixel mask are not accumulated. Within each label image,
+     * each pixel belongs to a single region only, overlapping regions must be given in different label images.
+     * <p>
+     * Every op receives exactly the pixels, in the same order, as if it had been accumulated by
+     * {@link #accumulate(RasterDataNode, int, RenderedImage, Shape, StxOp, ProgressMonitor)} with the
+     * region's mask as ROI image.
+     *
+     * @param rasterDataNode The raster data node.
+     * @param level          The resolution level.
+     * @param labelImages    The label images, of type {@code int} and at the given resolution level.
+     * @param ops            The ops for each label of each label image, may contain {@code null} elements.
+     * @param pm             A progress monitor.
+     * @since SNAP 2.0
+     */
+    public static void accumulate(RasterDataNode rasterDataNode,
+                                  int level,
+                                  RenderedImage[] labelImages,
+                                  StxOp[][] ops,
+                                  ProgressMonitor pm) {
+
+        Assert.notNull(rasterDataNode, "raster");
+        Assert.argument(level >= 0, "level");
+        Assert.argument(labelImages.length == ops.length, "labelImages.length == ops.length");
+        Assert.notNull(pm, "pm");
+
+        final PlanarImage dataImage = ImageManager.getInstance().getGeophysicalImage(rasterDataNode, level);
+        if (dataImage.getSampleModel().getNumBands() != 1) {
+            throw new IllegalStateException("dataImage.sampleModel.numBands != 1");
+        }
+        final PlanarImage maskImage = ImageManager.getInstance().getValidMaskImage(rasterDataNode, level);
+        if (maskImage != null) {
+            ensureImageCompatibility(dataImage, maskImage);
+        }
+        final PixelAccessor dataAccessor = new PixelAccessor(dataImage.getSampleModel(), null);
+        final LabelBounds[] labelBounds = new LabelBounds[ops.length];
+        for (int k = 0; k < ops.length; k++) {
+            labelBounds[k] = new LabelBounds(ops[k].length);
+        }
+
+        try {
+            pm.beginTask("Computing statistics", dataImage.getNumXTiles() * dataImage.getNumYTiles());
+
+            for (int tileY = dataImage.getMinTileY(); tileY <= dataImage.getMaxTileY(); tileY++) {
+                for (int tileX = dataImage.getMinTileX(); tileX <= dataImage.getMaxTileX(); tileX++) {
+                    if (pm.isCanceled()) {
+                        throw new CancellationException("Process terminated by user."); /*I18N*/
+                    }
+                    accumulateLabelledTile(ops, labelBounds, dataImage, maskImage, labelImages, dataAccessor, tileX, tileY);
+                    pm.worked(1);
+                }
+            }
+        } finally {
+            pm.done();
+        }
+    }
+
+    static void accumulateLabelledTile(StxOp[][] ops,
+                                       LabelBounds[] labelBounds,
+                                       PlanarImage dataImage,
+                                       PlanarImage maskImage,
+                                       RenderedImage[] labelImages,
+                                       PixelAccessor dataAccessor,
+                                       int tileX, int tileY) {
+        final Rectangle rect = dataImage.getTileRect(tileX, tileY);
+        final int[][] labels = new int[labelImages.length][];
+        boolean tileContainsLabels = false;
+        for (int k = 0; k < labelImages.length; k++) {
+            labels[k] = labelImages[k].getData(rect).getSamples(rect.x, rect.y, rect.width, rect.height, 0, (int[]) null);
+            tileContainsLabels |= labelBounds[k].update(labels[k], rect.width);
+        }
+        if (!tileContainsLabels) {
+            return;
+        }
+        final Raster dataTile = dataImage.getTile(tileX, tileY);
+        if (dataTile instanceof NoDataRaster) {
+            for (LabelBounds bounds : labelBounds) {
+                bounds.clear();
+            }
+            return;
+        }
+        final UnpackedImageData dataPixels = dataAccessor.getPixels(dataTile, rect, dataImage.getSampleModel().getDataType(), false);
+        final int[] valid = maskImage != null ? maskImage.getData(rect).getSamples(rect.x, rect.y, rect.width, rect.height, 0, (int[]) null) : null;
+
+        for (int k = 0; k < labelImages.length; k++) {
+            final LabelBounds bounds = labelBounds[k];
+            for (int i = 0; i < bounds.labelCount; i++) {
+                final int label = bounds.presentLabels[i];
+                final StxOp op = ops[k][label - 1];
+                if (op == null) {
+                    continue;
+                }
+                // accumulate the bounding rectangle of the region within the tile only
+                final int x0 = bounds.minX[label - 1];
+                final int y0 = bounds.minY[label - 1];
+                final int width = bounds.maxX[label - 1] - x0 + 1;
+                final int height = bounds.maxY[label - 1] - y0 + 1;
+                final byte[] mask = new byte[width * height];
+                for (int y = 0; y < height; y++) {
+                    int offset = (y0 + y) * rect.width + x0;
+                    for (int x = 0; x < width; x++, offset++) {
+                        if (labels[k][offset] == label && (valid == null || valid[offset] != 0)) {
+                            mask[y * width + x] = 1;
+                        }
+                    }
+                }
+                final Rectangle regionRect = new Rectangle(rect.x + x0, rect.y + y0, width, height);
+                final int[] bandOffsets = {dataPixels.bandOffsets[0] + y0 * dataPixels.lineStride + x0 * dataPixels.pixelStride};
+                final UnpackedImageData regionPixels = new UnpackedImageData(null, regionRect, dataPixels.type, dataPixels.data,
+                                                                             dataPixels.pixelStride, dataPixels.lineStride,
+                                                                             bandOffsets, false);
+                final UnpackedImageData maskPixels = new UnpackedImageData(null, regionRect, DataBuffer.TYPE_BYTE, new byte[][]{mask},
+                                                                           1, width, new int[]{0}, false);
+                op.accumulateData(regionPixels, maskPixels);
+            }
+            bounds.clear();
+        }
+    }
+
+    static void accumulate(SinglePassStxOp op, PlanarImage dataImage, PlanarImage maskImage, Shape maskShape,
+                           int parallelism, ProgressMonitor pm) {
+        if (maskImage != null) {
+            ensureImageCompatibility(dataImage, maskImage);
+        }
+
+        // tiles are accumulated by tasks which borrow one of the per-thread ops from this queue
+        final BlockingQueue<SinglePassStxOp> threadOps = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            threadOps.add(new SinglePassStxOp(op.getFineBinCount(), op.isIntHistogram(), op.isLogHistogram()));
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try {
+            pm.beginTask("Computing " + op.getName(), dataImage.getNumXTiles() * dataImage.getNumYTiles());
+
+            final CompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+            int taskCount = 0;
+            for (int tileY = dataImage.getMinTileY(); tileY <= dataImage.getMaxTileY(); tileY++) {
+                for (int tileX = dataImage.getMinTileX(); tileX <= dataImage.getMaxTileX(); tileX++) {
+                    if (maskShape != null && !maskShape.intersects(dataImage.getTileRect(tileX, tileY))) {
+                        pm.worked(1);
+                        continue;
+                    }
+                    final int x = tileX;
+                    final int y = tileY;
+                    completionService.submit(() -> {
+                        final SinglePassStxOp threadOp = threadOps.take();
+                        try {
+                            final PixelAccessor dataAccessor = new PixelAccessor(dataImage.getSampleModel(), null);
+                            final PixelAccessor maskAccessor = maskImage != null ? new PixelAccessor(maskImage.getSampleModel(), null) : null;
+                            accumulateTile(threadOp, dataImage, maskImage, dataAccessor, maskAccessor, x, y);
+                        } finally {
+                            threadOps.put(threadOp);
+                        }
+                        return null;
+                    });
+                    taskCount++;
+                }
+            }
+
+            for (int i = 0; i < taskCount; i++) {
+                if (pm.isCanceled()) {
+                    throw new CancellationException("Process terminated by user."); /*I18N*/
+                }
+                completionService.take().get();
+                pm.worked(1);
+            }
+            for (SinglePassStxOp threadOp : threadOps) {
+                op.merge(threadOp);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while computing " + op.getName());
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executorService.shutdownNow();
+            pm.done();
+        }
+    }
+
     static void accumulate(StxOp op, PlanarImage dataImage, PlanarImage maskImage, Shape maskShape, ProgressMonitor pm) {
         if (maskImage != null) {
             ensureImageCompatibility(dataImage, maskImage);
@@ -429,6 +717,70 @@ public class StxFactory {
         return histogram;
     }
 
+    /**
+     * The bounding rectangles of the labels present in a tile, relative to the tile.
+     */
+    static final class LabelBounds {
+
+        private static final int CLEARED = Integer.MAX_VALUE;
+
+        final int[] minX;
+        final int[] minY;
+        final int[] maxX;
+        final int[] maxY;
+        final int[] presentLabels;
+        int labelCount;
+
+        LabelBounds(int maxLabel) {
+            minX = new int[maxLabel];
+            minY = new int[maxLabel];
+            maxX = new int[maxLabel];
+            maxY = new int[maxLabel];
+            presentLabels = new int[maxLabel];
+            Arrays.fill(minX, CLEARED);
+        }
+
+        /**
+         * Adds the bounds of the labels of a tile. Labels greater than the max. label are ignored.
+         *
+         * @return {@code true}, if the tile contains any label.
+         */
+        boolean update(int[] labels, int width) {
+            final int maxLabel = minX.length;
+            for (int offset = 0; offset < labels.length; offset++) {
+                final int label = labels[offset];
+                if (label <= 0 || label > maxLabel) {
+                    continue;
+                }
+                final int x = offset % width;
+                final int y = offset / width;
+                final int i = label - 1;
+                if (minX[i] == CLEARED) {
+                    presentLabels[labelCount++] = label;
+                    minX[i] = x;
+                    maxX[i] = x;
+                    minY[i] = y;
+                    maxY[i] = y;
+                } else {
+                    if (x < minX[i]) {
+                        minX[i] = x;
+                    } else if (x > maxX[i]) {
+                        maxX[i] = x;
+                    }
+                    maxY[i] = y;
+                }
+            }
+            return labelCount > 0;
+        }
+
+        void clear() {
+            for (int i = 0; i < labelCount; i++) {
+                minX[presentLabels[i] - 1] = CLEARED;
+            }
+            labelCount = 0;
+        }
+    }
+
     static long computeSum(int[] sampleFrequencies) {
         long sum = 0;
         for (int sampleFrequency : sampleFrequencies) {
@@ -105,6 +105,31 @@ final public class SummaryStxOp extends StxOp {
         return enl;
     }
 
+    /**
+     * Merges the statistics accumulated by another instance into this one, e.g. if both have been
+     * accumulated for different tiles by different threads. Mean and variance are combined using the
+     * pairwise update formula of Chan et al., so the result equals the one of a single instance
+     * accumulating all data, except for rounding.
+     *
+     * @param other The instance to be merged into this one.
+     * @since SNAP 2.0
+     */
+    public void merge(SummaryStxOp other) {
+        if (other.sampleCount == 0) {
+            return;
+        }
+        final long count = sampleCount + other.sampleCount;
+        final double delta = other.mean - mean;
+        mean += delta * other.sampleCount / count;
+        meanSqr += other.meanSqr + delta * delta * ((double) sampleCount * other.sampleCount / count);
+        sampleCount = count;
+        minimum = Math.min(minimum, other.minimum);
+        maximum = Math.max(maximum, other.maximum);
+        valueSum += other.valueSum;
+        sqrSum += other.sqrSum;
+        power4Sum += other.power4Sum;
+    }
+
     @Override
     public void accumulateData(UnpackedImageData dataPixels,
                                UnpackedImageData maskPixels) {
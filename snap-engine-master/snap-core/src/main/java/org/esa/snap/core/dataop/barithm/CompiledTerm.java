@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.dataop.barithm;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.jexp.Term;
+
+/**
+ * A band maths term compiled by the {@link TermCompiler}.
+ * <p>
+ * A compiled term can be applied to any term which is structurally equal to the term it has been compiled from
+ * and whose {@link RasterDataSymbol}s have data of the same types. Use {@link #isApplicable(RasterDataSymbol[])}
+ * to check this for the symbols of a term.
+ * <p>
+ * The data of the symbols is retrieved when it is accessed for the first time, hence a compiled term
+ * does not load the data of symbols which are only referred in branches not taken.
+ *
+ * @since SNAP 2.0
+ */
+public final class CompiledTerm {
+
+    private final int[] dataTypes;
+    private final Code code;
+
+    CompiledTerm(int[] dataTypes, Code code) {
+        this.dataTypes = dataTypes;
+        this.code = code;
+    }
+
+    /**
+     * Tests if this compiled term can be evaluated for the given symbols.
+     *
+     * @param symbols The symbols as returned by {@link BandArithmetic#getRefRasterDataSymbols(Term...)} for the
+     *                term to be evaluated.
+     * @return {@code true}, if the number and data types of the symbols' data match the ones used for compilation.
+     * The data of the symbols is not loaded for this test.
+     */
+    public boolean isApplicable(RasterDataSymbol[] symbols) {
+        if (symbols.length != dataTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < symbols.length; i++) {
+            if (TermCompiler.getDataType(symbols[i]) != dataTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the term for {@code count} consecutive data elements, same as {@link Term#evalD} would do.
+     *
+     * @param symbols The symbols as returned by {@link BandArithmetic#getRefRasterDataSymbols(Term...)}.
+     * @param target  The target buffer, receives {@code count} values starting at index zero.
+     * @param offset  The index of the first data element to be evaluated.
+     * @param count   The number of data elements to be evaluated.
+     */
+    public void evalD(RasterDataSymbol[] symbols, double[] target, int offset, int count) {
+        code.evalD(symbols, target, offset, count);
+    }
+
+    /**
+     * Evaluates the term for {@code count} consecutive data elements, same as {@link Term#evalB} would do.
+     *
+     * @param symbols The symbols as returned by {@link BandArithmetic#getRefRasterDataSymbols(Term...)}.
+     * @param target  The target buffer, receives {@code count} values starting at index zero.
+     * @param offset  The index of the first data element to be evaluated.
+     * @param count   The number of data elements to be evaluated.
+     */
+    public void evalB(RasterDataSymbol[] symbols, boolean[] target, int offset, int count) {
+        code.evalB(symbols, target, offset, count);
+    }
+
+    /**
+     * Gets the data elements of a symbol for the generated code. If the data loaded on demand turns out to be
+     * of another type than the one the term has been compiled for, it is converted.
+     * Not intended to be used by clients.
+     *
+     * @param symbol   The symbol.
+     * @param dataType The data type the term has been compiled for.
+     * @return The primitive array of the symbol's data.
+     */
+    public static Object getElems(RasterDataSymbol symbol, int dataType) {
+        final ProductData data = symbol.getData();
+        if (data.getType() == dataType) {
+            return data.getElems();
+        }
+        final ProductData converted = ProductData.createInstance(dataType, data.getNumElems());
+        for (int i = 0; i < data.getNumElems(); i++) {
+            converted.setElemDoubleAt(i, data.getElemDoubleAt(i));
+        }
+        symbol.setData(converted);
+        return converted.getElems();
+    }
+
+    /**
+     * The interface implemented by the code generated by the {@link TermCompiler}.
+     * Not intended to be implemented by clients.
+     */
+    public interface Code {
+
+        void evalD(RasterDataSymbol[] symbols, double[] target, int offset, int count);
+
+        void evalB(RasterDataSymbol[] symbols, boolean[] target, int offset, int count);
+    }
+}
@@ -17,7 +17,7 @@ package org.esa.snap.core.dataop.barithm;
 
 import org.esa.snap.core.image.LevelImageSupport;
 import org.esa.snap.core.image.ResolutionLevel;
-import org.esa.snap.core.jexp.EvalEnv;
+import org.esa.snap.core.jexp.IndexedEvalEnv;
 
 /**
  * Represents an evaluation environment for {@link org.esa.snap.core.jexp.Term Terms} which are operating on raster data.
@@ -29,7 +29,7 @@ import org.esa.snap.core.jexp.EvalEnv;
  * interfaces, such as {@link RasterDataSymbol}, can then use the environment in order to perform
  * raster data specific evaluations.
  */
-public class RasterDataEvalEnv implements EvalEnv {
+public class RasterDataEvalEnv implements IndexedEvalEnv {
 
     private final int offsetX;
     private final int offsetY;
@@ -132,6 +132,7 @@ public class RasterDataEvalEnv implements EvalEnv {
      *
      * @return the index of the current data element
      */
+    @Override
     public final int getElemIndex() {
         return elemIndex;
     }
@@ -141,6 +142,7 @@ public class RasterDataEvalEnv implements EvalEnv {
      *
      * @param elemIndex the index of the current data element
      */
+    @Override
     public void setElemIndex(int elemIndex) {
         this.elemIndex = elemIndex;
     }
@@ -153,6 +153,40 @@ public class RasterDataLoop {
         }
     }
 
+    /**
+     * Evaluates the <code>body</code> by calling its {@link LineBody#eval(RasterDataEvalEnv, int, int) eval()} method
+     * once for each line of the region. Compared to {@link #forEachPixel(Body, String)}, this allows for using the
+     * array versions of the term evaluation methods, e.g. {@link Term#evalB(org.esa.snap.core.jexp.EvalEnv, boolean[], int, int)}.
+     *
+     * @param body    the object whose <code>eval</code> method is called.
+     * @param message the progress message
+     * @throws IOException if the raster data could not be read.
+     */
+    public void forEachLine(final LineBody body, String message) throws IOException {
+        Guardian.assertNotNull("body", body);
+        final int offsetY = getOffsetY();
+        final int width = getRegionWidth();
+        final int height = getRegionHeight();
+        final RasterDataEvalEnv env = rasterDataEvalEnv;
+        message = (message == null) ? "Computing pixels..." : message;
+        pm.beginTask(message, (height - offsetY) * 2);
+        try {
+            int pixelIndex = 0;
+            for (int y = offsetY; y < offsetY + height; y++) {
+                if (pm.isCanceled()) {
+                    break;
+                }
+                readRegion(y, 1, SubProgressMonitor.create(pm, 1));
+                env.setElemIndex(0);
+                body.eval(env, pixelIndex, width);
+                pixelIndex += width;
+                pm.worked(1);
+            }
+        } finally {
+            pm.done();
+        }
+    }
+
     private void readRegion(final int offsetY, final int height, ProgressMonitor pm) throws IOException {
         for (RasterRegion rasterRegion : rasterRegions) {
             rasterRegion.readRegion(getOffsetX(), offsetY, getRegionWidth(), height, pm);
@@ -215,6 +249,25 @@ public class RasterDataLoop {
         void eval(final RasterDataEvalEnv env, final int pixelIndex);
     }
 
+    /**
+     * Represents the body to be evaluated for each line within the raster.
+     */
+    public interface LineBody {
+
+        /**
+         * This method is called for each line within the sub-raster. The environment's element index refers
+         * to the first pixel of the line. The supplied pixel index is defined relative to the sub-rasters origin
+         * so that the index 0 (zero) corresponds to the raster's origin at
+         * {@link RasterDataEvalEnv#getOffsetX()},{@link RasterDataEvalEnv#getOffsetY()}.
+         *
+         * @param env        the {@link RasterDataEvalEnv} which must be used by any term to be evaluated.
+         * @param pixelIndex the relative index of the first pixel of the current line
+         * @param pixelCount the number of pixels in the line
+         * @see RasterDataLoop#forEachLine(LineBody, String)
+         */
+        void eval(final RasterDataEvalEnv env, final int pixelIndex, final int pixelCount);
+    }
+
     private static class RasterRegion {
 
         private final RasterDataNode _rasterNode;
@@ -51,11 +51,29 @@ public class RasterDataSymbol implements Symbol, Cloneable {
         GEOPHYSICAL,
     }
 
+    /**
+     * Loads the data of a symbol on demand, that is when the symbol is evaluated for the first time.
+     *
+     * @see #setDataLoader(DataLoader)
+     * @since SNAP 2.0
+     */
+    public interface DataLoader {
+
+        /**
+         * Loads the data for the given symbol.
+         *
+         * @param symbol the symbol which is about to be evaluated
+         * @return the symbol's data, see {@link #setData(Object)}
+         */
+        Object loadData(RasterDataSymbol symbol);
+    }
+
     private final String symbolName;
     private final int symbolType;
     private final RasterDataNode raster;
     private final Source source;
     protected ProductData data;
+    private DataLoader dataLoader;
 
     public RasterDataSymbol(final String symbolName, final Mask mask) {
         this(symbolName, Term.TYPE_B, mask, RAW);
@@ -115,7 +133,38 @@ public class RasterDataSymbol implements Symbol, Cloneable {
         return raster;
     }
 
+    /**
+     * Gets the data of this symbol. If the data has not been set but a {@link DataLoader} is set,
+     * the data loader is called first.
+     *
+     * @return the data, may be {@code null}
+     * @since SNAP 2.0
+     */
+    public final ProductData getData() {
+        if (data == null && dataLoader != null) {
+            final DataLoader dataLoader = this.dataLoader;
+            this.dataLoader = null;
+            setData(dataLoader.loadData(this));
+        }
+        return data;
+    }
+
+    /**
+     * Sets a data loader which is used to load this symbol's data on demand, instead of setting it in advance.
+     * Any data previously set is discarded. This allows for not reading the data of rasters which are referred
+     * in branches of a term which are never taken, e.g. {@code B} in {@code A < 0 ? B : C} if {@code A} is never
+     * negative.
+     *
+     * @param dataLoader the data loader
+     * @since SNAP 2.0
+     */
+    public void setDataLoader(DataLoader dataLoader) {
+        this.data = null;
+        this.dataLoader = dataLoader;
+    }
+
     public void setData(final Object data) {
+        this.dataLoader = null;
         if (ProductData.class.isAssignableFrom(data.getClass())) {
             this.data = (ProductData) data;
         } else if (data instanceof float[]) {
@@ -130,19 +179,91 @@ public class RasterDataSymbol implements Symbol, Cloneable {
     @Override
     public boolean evalB(final EvalEnv env) throws EvalException {
         final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return Term.toB(data.getElemDoubleAt(elemIndex));
+        return Term.toB(getData().getElemDoubleAt(elemIndex));
     }
 
     @Override
     public int evalI(final EvalEnv env) throws EvalException {
         final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return data.getElemIntAt(elemIndex);
+        return getData().getElemIntAt(elemIndex);
     }
 
     @Override
     public double evalD(final EvalEnv env) throws EvalException {
         final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return data.getElemDoubleAt(elemIndex);
+        return getData().getElemDoubleAt(elemIndex);
+    }
+
+    @Override
+    public void evalB(EvalEnv env, boolean[] out, int offset, int count) throws EvalException {
+        Term.evalBFromD(values -> evalD(env, values, 0, count), out, offset, count);
+    }
+
+    @Override
+    public void evalD(EvalEnv env, double[] out, int offset, int count) throws EvalException {
+        final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
+        final ProductData data = getData();
+        final Object elems = data.getElems();
+        switch (data.getType()) {
+            case ProductData.TYPE_INT8: {
+                final byte[] a = (byte[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i];
+                }
+                break;
+            }
+            case ProductData.TYPE_UINT8: {
+                final byte[] a = (byte[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i] & 0xff;
+                }
+                break;
+            }
+            case ProductData.TYPE_INT16: {
+                final short[] a = (short[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i];
+                }
+                break;
+            }
+            case ProductData.TYPE_UINT16: {
+                final short[] a = (short[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i] & 0xffff;
+                }
+                break;
+            }
+            case ProductData.TYPE_INT32: {
+                final int[] a = (int[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i];
+                }
+                break;
+            }
+            case ProductData.TYPE_UINT32: {
+                final int[] a = (int[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i] & 0xffffffffL;
+                }
+                break;
+            }
+            case ProductData.TYPE_FLOAT32: {
+                final float[] a = (float[]) elems;
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = a[elemIndex + i];
+                }
+                break;
+            }
+            case ProductData.TYPE_FLOAT64: {
+                final double[] a = (double[]) elems;
+                System.arraycopy(a, elemIndex, out, offset, count);
+                break;
+            }
+            default:
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = data.getElemDoubleAt(elemIndex + i);
+                }
+        }
     }
 
     @Override
@@ -15,6 +15,7 @@
  */
 package org.esa.snap.core.dataop.barithm;
 
+import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.datamodel.RasterDataNode;
 import org.esa.snap.core.jexp.EvalEnv;
 import org.esa.snap.core.jexp.EvalException;
@@ -71,19 +72,37 @@ public final class SingleFlagSymbol extends RasterDataSymbol {
     @Override
     public final boolean evalB(final EvalEnv env) throws EvalException {
         final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return (data.getElemIntAt(elemIndex) & flagMask) == flagValue;
+        return (getData().getElemIntAt(elemIndex) & flagMask) == flagValue;
     }
 
     @Override
     public final int evalI(final EvalEnv env) throws EvalException {
         final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return (data.getElemIntAt(elemIndex) & flagMask) == flagValue ? 1 : 0;
+        return (getData().getElemIntAt(elemIndex) & flagMask) == flagValue ? 1 : 0;
     }
 
     @Override
     public final double evalD(final EvalEnv env) throws EvalException {
         final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
-        return (data.getElemIntAt(elemIndex) & flagMask) == flagValue ? 1.0 : 0.0;
+        return (getData().getElemIntAt(elemIndex) & flagMask) == flagValue ? 1.0 : 0.0;
+    }
+
+    @Override
+    public final void evalB(EvalEnv env, boolean[] out, int offset, int count) throws EvalException {
+        final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
+        final ProductData data = getData();
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = (data.getElemIntAt(elemIndex + i) & flagMask) == flagValue;
+        }
+    }
+
+    @Override
+    public final void evalD(EvalEnv env, double[] out, int offset, int count) throws EvalException {
+        final int elemIndex = ((RasterDataEvalEnv) env).getElemIndex();
+        final ProductData data = getData();
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = (data.getElemIntAt(elemIndex + i) & flagMask) == flagValue ? 1.0 : 0.0;
+        }
     }
 
     @Override
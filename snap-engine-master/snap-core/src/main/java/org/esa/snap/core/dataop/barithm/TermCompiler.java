@@ -0,0 +1,611 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.dataop.barithm;
+
+import com.bc.ceres.compiler.Code;
+import com.bc.ceres.compiler.CodeCompiler;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.RasterDataNode;
+import org.esa.snap.core.jexp.Function;
+import org.esa.snap.core.jexp.Symbol;
+import org.esa.snap.core.jexp.Term;
+import org.esa.snap.core.jexp.impl.Functions;
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.runtime.Config;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Compiles band maths {@link Term}s into Java byte code which evaluates the term for a whole
+ * raster region within a single loop over the primitive data arrays of the referenced
+ * {@link RasterDataSymbol}s.
+ * <p>
+ * The generated code mirrors the {@code evalB()}, {@code evalI()} and {@code evalD()} implementations of the
+ * {@link Term} classes, so that a {@link CompiledTerm} produces the same results as the term itself. The only
+ * exception are the trigonometric and exponential functions which use {@code java.lang.Math} instead
+ * of {@code FastMath} and may hence differ in the last digit.
+ * <p>
+ * Terms which contain unsupported elements (e.g. string constants, assignments, symbols other than
+ * {@link RasterDataSymbol}s or functions not defined in {@link Functions}) are not compiled, {@link #compile(Term)}
+ * returns {@code null} for them and clients shall fall back to the term interpreter.
+ * <p>
+ * The compiler is opt-in and enabled by the {@link #PROPERTY_KEY_COMPILE_TERMS} preference.
+ * It requires a Java compiler to be available at runtime.
+ *
+ * @since SNAP 2.0
+ */
+public class TermCompiler {
+
+    /**
+     * Preferences key which enables band maths term compilation, default is {@code false}.
+     */
+    public static final String PROPERTY_KEY_COMPILE_TERMS = "snap.jexp.compileTerms";
+
+    private static final String PACKAGE_NAME = TermCompiler.class.getPackage().getName() + ".compiled";
+
+    private static final String CLASS_PART = "" +
+            "/*\n" +
+            " * This is machine-generated code, DO NOT EDIT!\n" +
+            " * Code generated by %s for term: %s\n" +
+            " */\n" +
+            "package %s;\n" +
+            "\n" +
+            "public final class %s implements %s {\n" +
+            "%s" +
+            "}\n";
+
+    private static final String BODY_PART = "" +
+            "\n" +
+            "    @Override\n" +
+            "    public void evalD(%1$s[] symbols, double[] target, int offset, int count) {\n" +
+            "%2$s" +
+            "        for (int j = 0, i = offset; j < count; j++, i++) {\n" +
+            "            target[j] = %3$s;\n" +
+            "        }\n" +
+            "    }\n" +
+            "\n" +
+            "    @Override\n" +
+            "    public void evalB(%1$s[] symbols, boolean[] target, int offset, int count) {\n" +
+            "%2$s" +
+            "        for (int j = 0, i = offset; j < count; j++, i++) {\n" +
+            "            target[j] = %4$s;\n" +
+            "        }\n" +
+            "    }\n" +
+            "\n" +
+            "    private static boolean feq(double x1, double x2, double eps) {\n" +
+            "        return x1 == x2 || Math.abs(x1 - x2) <= eps;\n" +
+            "    }\n" +
+            "\n" +
+            "    private static int sign(int a) {\n" +
+            "        return a == 0 ? 0 : (a < 0 ? -1 : 1);\n" +
+            "    }\n" +
+            "\n" +
+            "    private static double sign(double a) {\n" +
+            "        if (Double.isNaN(a)) {\n" +
+            "            return Double.NaN;\n" +
+            "        }\n" +
+            "        return a == 0.0 ? 0.0 : (a < 0.0 ? -1.0 : 1.0);\n" +
+            "    }\n" +
+            "\n" +
+            "    private static double sq(double a) {\n" +
+            "        return a * a;\n" +
+            "    }\n" +
+            "\n" +
+            "    private static double ampl(double a, double b) {\n" +
+            "        return Math.sqrt(a * a + b * b);\n" +
+            "    }\n" +
+            "\n" +
+            "    private static double sech(double x) {\n" +
+            "        return 2.0 / (Math.exp(x) + Math.exp(-x));\n" +
+            "    }\n" +
+            "\n" +
+            "    private static double cosech(double x) {\n" +
+            "        return 2.0 / (Math.exp(x) - Math.exp(-x));\n" +
+            "    }\n";
+
+    // the data arrays are fetched when first accessed, so that the data of symbols which are only referred in
+    // branches not taken are never loaded, see RasterDataSymbol.setDataLoader()
+    private static final String DATA_PART = "        %1$s[] s%2$d = null;\n";
+    private static final String ELEMS_PART = "(s%2$d != null ? s%2$d : (s%2$d = (%1$s[]) %3$s.getElems(symbols[%2$d], %4$d)))";
+
+    private static final Map<Function, String> FUNCTION_CODES = new HashMap<>();
+
+    static {
+        FUNCTION_CODES.put(Functions.FEQ, "feq($0, $1, 1e-6)");
+        FUNCTION_CODES.put(Functions.FNEQ, "!feq($0, $1, 1e-6)");
+        FUNCTION_CODES.put(Functions.FEQ_EPS, "feq($0, $1, $2)");
+        FUNCTION_CODES.put(Functions.FNEQ_EPS, "!feq($0, $1, $2)");
+        FUNCTION_CODES.put(Functions.INF, "Double.isInfinite($0)");
+        FUNCTION_CODES.put(Functions.NAN, "Double.isNaN($0)");
+        FUNCTION_CODES.put(Functions.SIN, "Math.sin($0)");
+        FUNCTION_CODES.put(Functions.COS, "Math.cos($0)");
+        FUNCTION_CODES.put(Functions.TAN, "Math.tan($0)");
+        FUNCTION_CODES.put(Functions.ASIN, "Math.asin($0)");
+        FUNCTION_CODES.put(Functions.ACOS, "Math.acos($0)");
+        FUNCTION_CODES.put(Functions.ATAN, "Math.atan($0)");
+        FUNCTION_CODES.put(Functions.ATAN2, "Math.atan2($0, $1)");
+        FUNCTION_CODES.put(Functions.SINH, "Math.sinh($0)");
+        FUNCTION_CODES.put(Functions.COSH, "Math.cosh($0)");
+        FUNCTION_CODES.put(Functions.TANH, "Math.tanh($0)");
+        FUNCTION_CODES.put(Functions.SECH, "sech($0)");
+        FUNCTION_CODES.put(Functions.COSECH, "cosech($0)");
+        FUNCTION_CODES.put(Functions.LOG, "Math.log($0)");
+        FUNCTION_CODES.put(Functions.LOG10, "Math.log10($0)");
+        FUNCTION_CODES.put(Functions.EXP, "Math.exp($0)");
+        FUNCTION_CODES.put(Functions.EXP10, "Math.pow(10.0, $0)");
+        FUNCTION_CODES.put(Functions.SQ, "sq($0)");
+        FUNCTION_CODES.put(Functions.SQRT, "Math.sqrt($0)");
+        FUNCTION_CODES.put(Functions.POW, "Math.pow($0, $1)");
+        FUNCTION_CODES.put(Functions.MIN_I, "Math.min($0, $1)");
+        FUNCTION_CODES.put(Functions.MIN_D, "Math.min($0, $1)");
+        FUNCTION_CODES.put(Functions.MAX_I, "Math.max($0, $1)");
+        FUNCTION_CODES.put(Functions.MAX_D, "Math.max($0, $1)");
+        FUNCTION_CODES.put(Functions.FLOOR, "Math.floor($0)");
+        FUNCTION_CODES.put(Functions.ROUND, "(double) Math.round($0)");
+        FUNCTION_CODES.put(Functions.CEIL, "Math.ceil($0)");
+        FUNCTION_CODES.put(Functions.RÌNT, "Math.rint($0)");
+        FUNCTION_CODES.put(Functions.SIGN_I, "sign($0)");
+        FUNCTION_CODES.put(Functions.SIGN_D, "sign($0)");
+        FUNCTION_CODES.put(Functions.ABS_I, "Math.abs($0)");
+        FUNCTION_CODES.put(Functions.ABS_D, "Math.abs($0)");
+        FUNCTION_CODES.put(Functions.DEG, "Math.toDegrees($0)");
+        FUNCTION_CODES.put(Functions.RAD, "Math.toRadians($0)");
+        FUNCTION_CODES.put(Functions.AMPL, "ampl($0, $1)");
+        FUNCTION_CODES.put(Functions.PHASE, "Math.atan2($1, $0)");
+    }
+
+    /**
+     * The maximum number of compiled term classes kept for reuse. Evicted classes are unloaded together with
+     * their class loaders as soon as no {@link CompiledTerm} refers to them anymore.
+     */
+    private static final int MAX_CACHED_CODES = 64;
+
+    private static final Map<String, CompiledTerm.Code> codeCache = new LinkedHashMap<String, CompiledTerm.Code>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledTerm.Code> eldest) {
+            return size() > MAX_CACHED_CODES;
+        }
+    };
+
+    /**
+     * @return {@code true}, if term compilation has been enabled by the {@link #PROPERTY_KEY_COMPILE_TERMS} preference
+     * and a Java compiler is available.
+     */
+    public static boolean isEnabled() {
+        return Config.instance().preferences().getBoolean(PROPERTY_KEY_COMPILE_TERMS, false)
+               && ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /**
+     * Compiles the given term. The data types of the {@link RasterDataSymbol}s referred by the term determine
+     * the generated code. They are taken from the symbols' data if set, otherwise from their rasters, so that
+     * data which is loaded on demand is not loaded by the compiler.
+     *
+     * @param term The term.
+     * @return The compiled term, or {@code null} if the term contains elements which cannot be compiled.
+     */
+    public static CompiledTerm compile(Term term) {
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(term);
+        final int[] dataTypes = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            dataTypes[i] = getDataType(symbols[i]);
+            if (!isSupportedDataType(dataTypes[i])) {
+                return null;
+            }
+        }
+
+        final String body;
+        try {
+            body = new CodeGenerator(symbols, dataTypes).generateBody(term);
+        } catch (UnsupportedTermException e) {
+            SystemUtils.LOG.fine("Term not compiled: " + e.getMessage());
+            return null;
+        }
+
+        final CompiledTerm.Code code = compileBody(term, body);
+        return code != null ? new CompiledTerm(dataTypes, code) : null;
+    }
+
+    /**
+     * Gets the data type of the symbol's data without loading it.
+     */
+    static int getDataType(RasterDataSymbol symbol) {
+        if (symbol.data != null) {
+            return symbol.data.getType();
+        }
+        final RasterDataNode raster = symbol.getRaster();
+        if (raster == null) {
+            return ProductData.TYPE_UNDEFINED;
+        }
+        return symbol.getSource() == RasterDataSymbol.GEOPHYSICAL ? raster.getGeophysicalDataType() : raster.getDataType();
+    }
+
+    static String generateCode(String className, Term term, String body) {
+        return String.format(CLASS_PART,
+                             TermCompiler.class.getName(),
+                             term.toString().replace("*/", "* /"),
+                             PACKAGE_NAME,
+                             className,
+                             CompiledTerm.Code.class.getCanonicalName(),
+                             body);
+    }
+
+    private static synchronized CompiledTerm.Code compileBody(Term term, String body) {
+        final CompiledTerm.Code cachedCode = codeCache.get(body);
+        if (cachedCode != null) {
+            return cachedCode;
+        }
+        final JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+        final File classPath = getClassPath();
+        if (javaCompiler == null || classPath == null) {
+            return null;
+        }
+        final String className = "Term_" + Long.toHexString(System.nanoTime());
+        File outputDir = null;
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try {
+            outputDir = Files.createTempDirectory("snap-jexp").toFile();
+            // the generated class must see CompiledTerm.Code, also if the context class loader does not
+            thread.setContextClassLoader(TermCompiler.class.getClassLoader());
+            final CodeCompiler codeCompiler = new CodeCompiler(javaCompiler, outputDir, new File[]{outputDir, classPath});
+            final Class<?> termClass = codeCompiler.compile(new Code(PACKAGE_NAME + "." + className,
+                                                                     generateCode(className, term, body)));
+            final CompiledTerm.Code code = (CompiledTerm.Code) termClass.newInstance();
+            if (termClass.getClassLoader() instanceof URLClassLoader) {
+                ((URLClassLoader) termClass.getClassLoader()).close();
+            }
+            codeCache.put(body, code);
+            return code;
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            SystemUtils.LOG.log(Level.WARNING, "Failed to compile term: " + term, e);
+            return null;
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+            if (outputDir != null && !FileUtils.deleteTree(outputDir)) {
+                outputDir.deleteOnExit();
+            }
+        }
+    }
+
+    private static File getClassPath() {
+        try {
+            final CodeSource codeSource = CompiledTerm.class.getProtectionDomain().getCodeSource();
+            return codeSource != null ? new File(codeSource.getLocation().toURI()) : null;
+        } catch (URISyntaxException | RuntimeException e) {
+            SystemUtils.LOG.log(Level.FINE, "Class path for compiled terms not found", e);
+            return null;
+        }
+    }
+
+    private static boolean isSupportedDataType(int dataType) {
+        return getJavaTypeName(dataType) != null;
+    }
+
+    private static String getJavaTypeName(int dataType) {
+        switch (dataType) {
+            case ProductData.TYPE_INT8:
+            case ProductData.TYPE_UINT8:
+                return "byte";
+            case ProductData.TYPE_INT16:
+            case ProductData.TYPE_UINT16:
+                return "short";
+            case ProductData.TYPE_INT32:
+            case ProductData.TYPE_UINT32:
+                return "int";
+            case ProductData.TYPE_FLOAT32:
+                return "float";
+            case ProductData.TYPE_FLOAT64:
+                return "double";
+            default:
+                return null;
+        }
+    }
+
+    private static class UnsupportedTermException extends Exception {
+        private UnsupportedTermException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Generates Java expressions for the three evaluation methods of a term.
+     * Each of {@link #b(Term)}, {@link #i(Term)} and {@link #d(Term)} mirrors the corresponding
+     * {@code evalB}, {@code evalI} and {@code evalD} method of the term.
+     */
+    private static class CodeGenerator {
+
+        private final RasterDataSymbol[] symbols;
+        private final int[] dataTypes;
+        private final Map<Symbol, Integer> symbolIndexes;
+
+        private CodeGenerator(RasterDataSymbol[] symbols, int[] dataTypes) {
+            this.symbols = symbols;
+            this.dataTypes = dataTypes;
+            this.symbolIndexes = new IdentityHashMap<>();
+            for (int i = 0; i < symbols.length; i++) {
+                symbolIndexes.put(symbols[i], i);
+            }
+        }
+
+        String generateBody(Term term) throws UnsupportedTermException {
+            final StringBuilder dataPart = new StringBuilder();
+            for (int i = 0; i < symbols.length; i++) {
+                dataPart.append(String.format(DATA_PART, getJavaTypeName(dataTypes[i]), i));
+            }
+            return String.format(BODY_PART, RasterDataSymbol.class.getName(), dataPart, d(term), b(term));
+        }
+
+        private String b(Term term) throws UnsupportedTermException {
+            if (term instanceof Term.ConstS) {
+                throw new UnsupportedTermException(term.toString());
+            } else if (term instanceof Term.Const || isConstRef(term)) {
+                return String.valueOf(term.evalB(null));
+            } else if (term instanceof Term.Ref) {
+                final Symbol symbol = ((Term.Ref) term).getSymbol();
+                if (symbol instanceof SingleFlagSymbol) {
+                    final SingleFlagSymbol flagSymbol = (SingleFlagSymbol) symbol;
+                    return "((" + refI(flagSymbol) + " & " + flagSymbol.getFlagMask() + ") == " + flagSymbol.getFlagValue() + ")";
+                }
+                return "(" + d(term) + " != 0.0)";
+            } else if (term instanceof Term.Call) {
+                final Term.Call call = (Term.Call) term;
+                final int type = call.getFunction().getRetType();
+                if (type == Term.TYPE_B) {
+                    return call(call);
+                } else if (type == Term.TYPE_I) {
+                    return "(" + call(call) + " != 0)";
+                }
+                return "(" + call(call) + " != 0.0)";
+            } else if (term instanceof Term.Cond) {
+                return "(" + b(arg(term, 0)) + " ? " + b(arg(term, 1)) + " : " + b(arg(term, 2)) + ")";
+            } else if (term instanceof Term.NotB) {
+                return "(!" + b(arg(term, 0)) + ")";
+            } else if (term instanceof Term.AndB) {
+                return "(" + b(arg(term, 0)) + " && " + b(arg(term, 1)) + ")";
+            } else if (term instanceof Term.OrB) {
+                return "(" + b(arg(term, 0)) + " || " + b(arg(term, 1)) + ")";
+            } else if (term instanceof Term.EqB) {
+                return "(" + b(arg(term, 0)) + " == " + b(arg(term, 1)) + ")";
+            } else if (term instanceof Term.NEqB) {
+                return "(" + b(arg(term, 0)) + " != " + b(arg(term, 1)) + ")";
+            } else if (term instanceof Term.EqI) {
+                return binaryI(term, "==");
+            } else if (term instanceof Term.NEqI) {
+                return binaryI(term, "!=");
+            } else if (term instanceof Term.LtI) {
+                return binaryI(term, "<");
+            } else if (term instanceof Term.LeI) {
+                return binaryI(term, "<=");
+            } else if (term instanceof Term.GtI) {
+                return binaryI(term, ">");
+            } else if (term instanceof Term.GeI) {
+                return binaryI(term, ">=");
+            } else if (term instanceof Term.EqD) {
+                return binaryD(term, "==");
+            } else if (term instanceof Term.NEqD) {
+                return binaryD(term, "!=");
+            } else if (term instanceof Term.LtD) {
+                return binaryD(term, "<");
+            } else if (term instanceof Term.LeD) {
+                return binaryD(term, "<=");
+            } else if (term instanceof Term.GtD) {
+                return binaryD(term, ">");
+            } else if (term instanceof Term.GeD) {
+                return binaryD(term, ">=");
+            } else if (term instanceof Term.UnaryI || term instanceof Term.BinaryI) {
+                return "(" + i(term) + " != 0)";
+            } else if (term instanceof Term.BinaryN && term.isI()) {
+                return "(" + i(term) + " != 0)";
+            } else if (term instanceof Term.UnaryN || term instanceof Term.BinaryN) {
+                return "(" + d(term) + " != 0.0)";
+            }
+            throw new UnsupportedTermException(term.toString());
+        }
+
+        private String i(Term term) throws UnsupportedTermException {
+            if (term instanceof Term.ConstS) {
+                throw new UnsupportedTermException(term.toString());
+            } else if (term instanceof Term.Const || isConstRef(term)) {
+                return "(" + term.evalI(null) + ")";
+            } else if (term instanceof Term.Ref) {
+                final Symbol symbol = ((Term.Ref) term).getSymbol();
+                if (symbol instanceof SingleFlagSymbol) {
+                    return "(" + b(term) + " ? 1 : 0)";
+                }
+                return refI(symbol);
+            } else if (term instanceof Term.Call) {
+                final Term.Call call = (Term.Call) term;
+                final int type = call.getFunction().getRetType();
+                if (type == Term.TYPE_B) {
+                    return "(" + call(call) + " ? 1 : 0)";
+                } else if (type == Term.TYPE_I) {
+                    return call(call);
+                }
+                return "((int) " + call(call) + ")";
+            } else if (term instanceof Term.Cond) {
+                return "(" + b(arg(term, 0)) + " ? " + i(arg(term, 1)) + " : " + i(arg(term, 2)) + ")";
+            } else if (term instanceof Term.NotI) {
+                return "(~" + i(arg(term, 0)) + ")";
+            } else if (term instanceof Term.XOrI) {
+                return "(" + i(arg(term, 0)) + " ^ " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.AndI) {
+                return "(" + i(arg(term, 0)) + " & " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.OrI) {
+                return "(" + i(arg(term, 0)) + " | " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Neg) {
+                return "(-" + i(arg(term, 0)) + ")";
+            } else if (term instanceof Term.Add) {
+                return "(" + i(arg(term, 0)) + " + " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Sub) {
+                return "(" + i(arg(term, 0)) + " - " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Mul) {
+                return "(" + i(arg(term, 0)) + " * " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Div) {
+                return "(" + i(arg(term, 0)) + " / " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Mod) {
+                return "(" + i(arg(term, 0)) + " % " + i(arg(term, 1)) + ")";
+            } else if (term instanceof Term.UnaryB || term instanceof Term.BinaryB) {
+                return "(" + b(term) + " ? 1 : 0)";
+            }
+            throw new UnsupportedTermException(term.toString());
+        }
+
+        private String d(Term term) throws UnsupportedTermException {
+            if (term instanceof Term.ConstS) {
+                throw new UnsupportedTermException(term.toString());
+            } else if (term instanceof Term.Const || isConstRef(term)) {
+                return toLiteral(term.evalD(null));
+            } else if (term instanceof Term.Ref) {
+                final Symbol symbol = ((Term.Ref) term).getSymbol();
+                if (symbol instanceof SingleFlagSymbol) {
+                    return "(" + b(term) + " ? 1.0 : 0.0)";
+                }
+                return refD(symbol);
+            } else if (term instanceof Term.Call) {
+                final Term.Call call = (Term.Call) term;
+                final int type = call.getFunction().getRetType();
+                if (type == Term.TYPE_B) {
+                    return "(" + call(call) + " ? 1.0 : 0.0)";
+                } else if (type == Term.TYPE_I) {
+                    return "((double) " + call(call) + ")";
+                }
+                return call(call);
+            } else if (term instanceof Term.Cond) {
+                return "(" + b(arg(term, 0)) + " ? " + d(arg(term, 1)) + " : " + d(arg(term, 2)) + ")";
+            } else if (term instanceof Term.Neg) {
+                return "(-" + d(arg(term, 0)) + ")";
+            } else if (term instanceof Term.Add) {
+                return "(" + d(arg(term, 0)) + " + " + d(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Sub) {
+                return "(" + d(arg(term, 0)) + " - " + d(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Mul) {
+                return "(" + d(arg(term, 0)) + " * " + d(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Div) {
+                return "(" + d(arg(term, 0)) + " / " + d(arg(term, 1)) + ")";
+            } else if (term instanceof Term.Mod) {
+                return "(" + d(arg(term, 0)) + " % " + d(arg(term, 1)) + ")";
+            } else if (term instanceof Term.UnaryI || term instanceof Term.BinaryI) {
+                return "((double) " + i(term) + ")";
+            } else if (term instanceof Term.UnaryB || term instanceof Term.BinaryB) {
+                return "(" + b(term) + " ? 1.0 : 0.0)";
+            }
+            throw new UnsupportedTermException(term.toString());
+        }
+
+        private String binaryI(Term term, String op) throws UnsupportedTermException {
+            return "(" + i(arg(term, 0)) + " " + op + " " + i(arg(term, 1)) + ")";
+        }
+
+        private String binaryD(Term term, String op) throws UnsupportedTermException {
+            return "(" + d(arg(term, 0)) + " " + op + " " + d(arg(term, 1)) + ")";
+        }
+
+        private String call(Term.Call call) throws UnsupportedTermException {
+            final Function function = call.getFunction();
+            final String code = FUNCTION_CODES.get(function);
+            if (code == null) {
+                throw new UnsupportedTermException("function " + function.getName());
+            }
+            String result = code;
+            for (int k = call.getArgCount() - 1; k >= 0; k--) {
+                final Term arg = call.getArg(k);
+                final String argCode = function.getRetType() == Term.TYPE_I ? i(arg) : d(arg);
+                result = result.replace("$" + k, argCode);
+            }
+            return "(" + result + ")";
+        }
+
+        private String refI(Symbol symbol) throws UnsupportedTermException {
+            final int index = getSymbolIndex(symbol);
+            final String elem = elems(index) + "[i]";
+            switch (dataTypes[index]) {
+                case ProductData.TYPE_UINT8:
+                    return "(" + elem + " & 0xff)";
+                case ProductData.TYPE_UINT16:
+                    return "(" + elem + " & 0xffff)";
+                case ProductData.TYPE_FLOAT32:
+                    return "Math.round(" + elem + ")";
+                case ProductData.TYPE_FLOAT64:
+                    return "((int) Math.round(" + elem + "))";
+                default:
+                    return elem;
+            }
+        }
+
+        private String refD(Symbol symbol) throws UnsupportedTermException {
+            final int index = getSymbolIndex(symbol);
+            final String elem = elems(index) + "[i]";
+            switch (dataTypes[index]) {
+                case ProductData.TYPE_UINT8:
+                    return "((double) (" + elem + " & 0xff))";
+                case ProductData.TYPE_UINT16:
+                    return "((double) (" + elem + " & 0xffff))";
+                case ProductData.TYPE_UINT32:
+                    return "((double) (" + elem + " & 0xffffffffL))";
+                default:
+                    return "((double) " + elem + ")";
+            }
+        }
+
+        private String elems(int index) {
+            return String.format(ELEMS_PART, getJavaTypeName(dataTypes[index]), index,
+                                 CompiledTerm.class.getName(), dataTypes[index]);
+        }
+
+        private int getSymbolIndex(Symbol symbol) throws UnsupportedTermException {
+            final Integer index = symbolIndexes.get(symbol);
+            if (index == null || (symbol.getClass() != RasterDataSymbol.class && symbol.getClass() != SingleFlagSymbol.class)) {
+                throw new UnsupportedTermException("symbol " + symbol.getName());
+            }
+            return index;
+        }
+
+        private static boolean isConstRef(Term term) {
+            return term instanceof Term.Ref
+                   && !(((Term.Ref) term).getSymbol() instanceof RasterDataSymbol)
+                   && term.isConst();
+        }
+
+        private static Term arg(Term term, int index) {
+            return term.getChildren()[index];
+        }
+
+        private static String toLiteral(double value) {
+            if (Double.isNaN(value)) {
+                return "Double.NaN";
+            } else if (value == Double.POSITIVE_INFINITY) {
+                return "Double.POSITIVE_INFINITY";
+            } else if (value == Double.NEGATIVE_INFINITY) {
+                return "Double.NEGATIVE_INFINITY";
+            }
+            return "(" + Double.toString(value) + ")";
+        }
+    }
+}
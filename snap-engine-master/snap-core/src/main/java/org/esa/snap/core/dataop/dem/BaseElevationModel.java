@@ -21,11 +21,20 @@ import org.esa.snap.core.datamodel.GeoPos;
 import org.esa.snap.core.datamodel.PixelPos;
 import org.esa.snap.core.dataop.resamp.Resampling;
 
+import org.esa.snap.runtime.Config;
+
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
-
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base class of elevation models whose data is split into files of equal size in geographical coordinates.
+ * <p>
+ * The model can be used concurrently. The tiles holding cached data are tracked, and if there are more than
+ * the maximum cache size or their data exceeds the memory limit given by the preference
+ * {@code snap.dem.maxCacheMemory} (in MiB), the caches of the least recently used tiles are cleared.
+ */
 public abstract class BaseElevationModel implements ElevationModel, Resampling.Raster {
 
     private final int NUM_X_TILES;
@@ -44,8 +53,20 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     private final Resampling resampling;
     private final Resampling.Raster resamplingRaster;
 
-    private final List<ElevationTile> elevationTileCache = new ArrayList<>(20);
+    /**
+     * The tiles holding cached data, from the least to the most recently updated one.
+     */
+    private final LinkedHashMap<ElevationTile, CacheEntry> elevationTileCache = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The size of the cached data of all tiles in bytes, guarded by {@link #elevationTileCache}.
+     */
+    private long cachedSize;
     private int maxCacheSize = 60;
+    private final long maxCacheMemory;
+    /**
+     * A coarse clock for the access stamps of the tiles, advanced whenever tile data is loaded.
+     */
+    private volatile long accessClock;
 
     public BaseElevationModel(final ElevationModelDescriptor descriptor, Resampling resamplingMethod) {
         this.descriptor = descriptor;
@@ -67,6 +88,7 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
 
         DEGREE_RES_BY_NUM_PIXELS_PER_TILE = DEGREE_RES / (double) NUM_PIXELS_PER_TILE;
         DEGREE_RES_BY_NUM_PIXELS_PER_TILEinv = 1.0 / DEGREE_RES_BY_NUM_PIXELS_PER_TILE;
+        maxCacheMemory = Config.instance().preferences().getLong("snap.dem.maxCacheMemory", 0L) * 1024L * 1024L;
 
         elevationFiles = createElevationFiles();    // must be last
     }
@@ -84,6 +106,20 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     }
 
     public final double getElevation(final GeoPos geoPos) throws Exception {
+        return getElevation(geoPos, resampling.createIndex());
+    }
+
+    @Override
+    public void getElevations(final double[] lat, final double[] lon, final double[] elevations) throws Exception {
+        final Resampling.Index index = resampling.createIndex();
+        final GeoPos geoPos = new GeoPos();
+        for (int i = 0; i < elevations.length; i++) {
+            geoPos.setLocation(lat[i], lon[i]);
+            elevations[i] = getElevation(geoPos, index);
+        }
+    }
+
+    private double getElevation(final GeoPos geoPos, final Resampling.Index index) throws Exception {
         if (geoPos.lon > 180) {
             geoPos.lon -= 360;
         }
@@ -92,12 +128,8 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
             return NO_DATA_VALUE;
         }
 
-        final double elevation;
-        //synchronized(resampling) {
-        Resampling.Index newIndex = resampling.createIndex();
-        resampling.computeCornerBasedIndex(getIndexX(geoPos), pixelY, RASTER_WIDTH, RASTER_HEIGHT, newIndex);
-        elevation = resampling.resample(resamplingRaster, newIndex);
-        //}
+        resampling.computeCornerBasedIndex(getIndexX(geoPos), pixelY, RASTER_WIDTH, RASTER_HEIGHT, index);
+        final double elevation = resampling.resample(resamplingRaster, index);
         return Double.isNaN(elevation) ? NO_DATA_VALUE : elevation;
     }
 
@@ -119,16 +151,70 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return RASTER_HEIGHT;
     }
 
+    /**
+     * Notifies this model that a tile has loaded data. If the maximum cache size or memory is exceeded,
+     * the caches of the least recently used tiles are cleared.
+     *
+     * @param tile the tile
+     */
     public void updateCache(final ElevationTile tile) {
-        elevationTileCache.remove(tile);
-        elevationTileCache.add(0, tile);
-        while (elevationTileCache.size() > maxCacheSize) {
-            final int index = elevationTileCache.size() - 1;
-            final ElevationTile lastTile = elevationTileCache.get(index);
-            if (lastTile != null) {
-                lastTile.clearCache();
+        accessClock++;
+        touch(tile);
+        synchronized (elevationTileCache) {
+            CacheEntry entry = elevationTileCache.get(tile);
+            if (entry == null) {
+                entry = new CacheEntry();
+                elevationTileCache.put(tile, entry);
+            }
+            entry.access = accessClock;
+            final long size = tile instanceof BaseElevationTile ? ((BaseElevationTile) tile).getCachedSize() : 0L;
+            cachedSize += size - entry.size;
+            entry.size = size;
+            if (isCacheExceeded()) {
+                trimCache(tile);
+            }
+        }
+    }
+
+    private boolean isCacheExceeded() {
+        return elevationTileCache.size() > maxCacheSize || (maxCacheMemory > 0 && cachedSize > maxCacheMemory);
+    }
+
+    /**
+     * Clears the caches of the least recently updated tiles until the cache is not exceeded anymore. Tiles which
+     * have been accessed since they last loaded data get a second chance, so that tiles whose data is completely
+     * cached but still in use are not cleared. Must be called while holding the lock of the cache.
+     */
+    private void trimCache(final ElevationTile loadedTile) {
+        int numSecondChances = elevationTileCache.size();
+        while (elevationTileCache.size() > 1 && isCacheExceeded()) {
+            final Map.Entry<ElevationTile, CacheEntry> eldest = elevationTileCache.entrySet().iterator().next();
+            final ElevationTile tile = eldest.getKey();
+            final CacheEntry entry = eldest.getValue();
+            final long lastAccess = tile instanceof BaseElevationTile ? ((BaseElevationTile) tile).lastAccess : Long.MIN_VALUE;
+            if (tile == loadedTile || (numSecondChances > 0 && lastAccess > entry.access)) {
+                if (tile != loadedTile) {
+                    numSecondChances--;
+                    entry.access = lastAccess;
+                }
+                // moves the tile to the end of the access order
+                elevationTileCache.get(tile);
+                continue;
+            }
+            elevationTileCache.remove(tile);
+            cachedSize -= entry.size;
+            tile.clearCache();
+        }
+    }
+
+    private void touch(final ElevationTile tile) {
+        if (tile instanceof BaseElevationTile) {
+            final BaseElevationTile baseTile = (BaseElevationTile) tile;
+            final long now = accessClock;
+            // only written when the clock has advanced, to avoid contention on the tile between threads
+            if (baseTile.lastAccess != now) {
+                baseTile.lastAccess = now;
             }
-            elevationTileCache.remove(index);
         }
     }
 
@@ -139,6 +225,7 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         if (tile == null) {
             return Double.NaN;
         }
+        touch(tile);
         final double sample = tile.getSample((int) (pixelX - tileXIndex * NUM_PIXELS_PER_TILE),
                                              (int) (pixelY - tileYIndex * NUM_PIXELS_PER_TILE));
 
@@ -163,6 +250,7 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
                     ++j;
                     continue;
                 }
+                touch(tile);
 
                 samples[i][j] = tile.getSample(x - tileXIndex * NUM_PIXELS_PER_TILE, pixelY);
                 if (samples[i][j] == NO_DATA_VALUE) {
@@ -177,12 +265,13 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
     }
 
     public void dispose() {
-        for (ElevationTile tile : elevationTileCache) {
-            if (tile != null) {
+        synchronized (elevationTileCache) {
+            for (ElevationTile tile : elevationTileCache.keySet()) {
                 tile.dispose();
             }
+            elevationTileCache.clear();
+            cachedSize = 0;
         }
-        elevationTileCache.clear();
         for (ElevationFile[] elevationFile : elevationFiles) {
             for (ElevationFile anElevationFile : elevationFile) {
                 if (anElevationFile != null) {
@@ -212,4 +301,15 @@ public abstract class BaseElevationModel implements ElevationModel, Resampling.R
         return elevationFiles;
     }
 
+    private static final class CacheEntry {
+
+        /**
+         * The size of the tile's cached data in bytes when it was last updated.
+         */
+        long size;
+        /**
+         * The access stamp of the model when the tile was last moved to the end of the access order.
+         */
+        long access;
+    }
 }
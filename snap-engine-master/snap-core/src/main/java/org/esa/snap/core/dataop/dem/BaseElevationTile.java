@@ -20,8 +20,15 @@ import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.runtime.Config;
 
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * An elevation tile which reads the lines of the first band of a product on demand and caches them.
+ * <p>
+ * Cached lines are accessed without locking, only the reading of missing lines is synchronized per tile.
+ * If this tile belongs to a {@link BaseElevationModel}, the model is notified about each line read,
+ * so that it can release the cached lines of the least recently used tiles.
+ */
 public class BaseElevationTile implements ElevationTile {
 
     protected final ElevationModel demModel;
@@ -29,8 +36,13 @@ public class BaseElevationTile implements ElevationTile {
     private final Band band;
     private final int bandWidth;
     protected final float noDataValue;
-    private final float[][] objectArray;
+    private final AtomicReferenceArray<float[]> lines;
     private final boolean useDEMGravitationalModel;
+    private volatile int numCachedLines;
+    /**
+     * The access stamp of the {@link BaseElevationModel} at the last access to this tile.
+     */
+    long lastAccess;
 
     public BaseElevationTile(final ElevationModel demModel, final Product product) {
         this.demModel = demModel;
@@ -38,28 +50,55 @@ public class BaseElevationTile implements ElevationTile {
         this.band = product.getBandAt(0);
         this.bandWidth = band.getSceneRasterWidth();
         noDataValue = demModel.getDescriptor().getNoDataValue();
-        objectArray = new float[band.getSceneRasterHeight() + 1][];
+        lines = new AtomicReferenceArray<>(band.getSceneRasterHeight() + 1);
         useDEMGravitationalModel = Config.instance().preferences().getBoolean("snap.useDEMGravitationalModel", true);
         //System.out.println("Dem Tile "+product.getName());
     }
 
     public final void clearCache() {
-        if (objectArray != null) {
-            Arrays.fill(objectArray, 0, objectArray.length, null);
+        if (lines != null) {
+            synchronized (this) {
+                for (int i = 0; i < lines.length(); i++) {
+                    lines.set(i, null);
+                }
+                numCachedLines = 0;
+            }
         }
     }
 
     public final float getSample(final int pixelX, final int pixelY) throws Exception {
-
-        float[] line = objectArray[pixelY];
+        float[] line = lines.get(pixelY);
         if (line == null) {
+            line = readLine(pixelY);
+        }
+        return line[pixelX];
+    }
+
+    /**
+     * @return The size of the cached lines in bytes.
+     */
+    public long getCachedSize() {
+        return (long) numCachedLines * bandWidth * 4L;
+    }
+
+    private float[] readLine(final int pixelY) throws Exception {
+        float[] line;
+        synchronized (this) {
+            line = lines.get(pixelY);
+            if (line != null) {
+                return line;
+            }
             line = band.readPixels(0, pixelY, bandWidth, 1, new float[bandWidth], ProgressMonitor.NULL);
             if (useDEMGravitationalModel) {
                 addGravitationalModel(pixelY, line);
             }
-            objectArray[pixelY] = line;
+            lines.set(pixelY, line);
+            numCachedLines++;
         }
-        return line[pixelX];
+        if (demModel instanceof BaseElevationModel) {
+            ((BaseElevationModel) demModel).updateCache(this);
+        }
+        return line;
     }
 
     public void dispose() {
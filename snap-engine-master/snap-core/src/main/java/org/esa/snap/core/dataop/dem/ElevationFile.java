@@ -47,7 +47,7 @@ public abstract class ElevationFile {
     protected boolean localFileExists = false;
     protected boolean remoteFileExists = true;
     private boolean errorInLocalFile = false;
-    private ElevationTile tile = null;
+    private volatile ElevationTile tile = null;
     private ftpUtils ftp = null;
     private Map<String, Long> fileSizeMap = null;
     private boolean unrecoverableError = false;
@@ -64,8 +64,9 @@ public abstract class ElevationFile {
             if (ftp != null)
                 ftp.disconnect();
             ftp = null;
-            tile.dispose();
+            final ElevationTile elevationTile = tile;
             tile = null;
+            elevationTile.dispose();
         } catch (Exception e) {
             //
         }
@@ -76,11 +77,13 @@ public abstract class ElevationFile {
     }
 
     public final ElevationTile getTile() throws IOException {
-        if (tile == null) {
-            if (!remoteFileExists && !localFileExists)
-                return null;
-            getFile();
+        final ElevationTile elevationTile = tile;
+        if (elevationTile != null) {
+            return elevationTile;
         }
+        if (!remoteFileExists && !localFileExists)
+            return null;
+        getFile();
         return tile;
     }
 
@@ -41,6 +41,25 @@ public interface ElevationModel {
      */
     double getElevation(GeoPos geoPos) throws Exception;
 
+    /**
+     * Gets the elevations at a number of geographical coordinates in meters. Implementations may override this
+     * method in order to avoid the overhead of a call to {@link #getElevation(GeoPos)} for each coordinate.
+     *
+     * @param lat        the latitudes of the geographical coordinates
+     * @param lon        the longitudes of the geographical coordinates
+     * @param elevations the output elevations in meters, or the special value returned by
+     *                   {@link ElevationModelDescriptor#getNoDataValue()} if an elevation is not available
+     * @exception Exception if a non-runtime error occurs, e.g I/O error
+     * @since SNAP 2.0
+     */
+    default void getElevations(double[] lat, double[] lon, double[] elevations) throws Exception {
+        final GeoPos geoPos = new GeoPos();
+        for (int i = 0; i < elevations.length; i++) {
+            geoPos.setLocation(lat[i], lon[i]);
+            elevations[i] = getElevation(geoPos);
+        }
+    }
+
     /**
      * Gets the pixel index in the DEM reference system at the geographical coordinate in meters.
      *
@@ -0,0 +1,863 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.image;
+
+import org.esa.snap.core.util.SystemUtils;
+
+import javax.media.jai.CachedTile;
+import javax.media.jai.TileCache;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * A tile cache which can be used concurrently by many threads without a global lock.
+ * <p>
+ * Tiles are indexed by a {@link ConcurrentHashMap}, so that adding and retrieving tiles only locks
+ * a single tile entry. The used memory is counted atomically. If it exceeds the memory capacity,
+ * a single thread removes tiles until the memory in use drops below the {@link #getMemoryThreshold() memory
+ * threshold}, while the other threads continue to work. Tiles are removed in approximate LRU order, using
+ * the CLOCK algorithm: the tiles in memory are queued in the order they were added, a tile which has been
+ * used since it was queued is queued again instead of being removed. If a
+ * {@link #setTileComparator(Comparator) tile comparator} is set, the tile ordered first among a small sample
+ * of the queued tiles is removed. Neither requires sorting all tiles.
+ * <p>
+ * If a swap directory is given, removed tiles are written asynchronously to files in this directory
+ * using NIO {@link FileChannel}s and are read back on demand. While a tile is being written, it is still
+ * served from memory. If the tiles waiting to be written exceed the memory capacity, the thread which
+ * removes tiles from memory writes them itself.
+ * <p>
+ * In contrast to the {@link FileTileCache}, tiles are only written to disk if they are removed from memory.
+ *
+ * @since SNAP 2.0
+ */
+public class ConcurrentTileCache implements TileCache {
+
+    /**
+     * The default memory capacity of the cache (64 MB).
+     */
+    public static final long DEFAULT_MEMORY_CAPACITY = 64L * 1024L * 1024L;
+
+    private static final int SAMPLE_SIZE = 16;
+
+    private final Map<TileKey, Entry> tiles;
+    // the entries whose tiles are counted as memory in use, in CLOCK order
+    private final ConcurrentLinkedQueue<Entry> evictionQueue;
+    private final AtomicInteger evictionQueueSize;
+    private final ReferenceQueue<RenderedImage> collectedOwners;
+    private final Path swapDir;
+    private final ExecutorService swapExecutor;
+    private final AtomicLong memoryInUse;
+    private final AtomicLong memoryPending;
+    private final ReentrantLock memoryControlLock;
+    private volatile long memoryCapacity;
+    private volatile float memoryThreshold;
+    private volatile Comparator tileComparator;
+
+    /**
+     * Creates a tile cache with the default memory capacity which does not swap tiles.
+     */
+    public ConcurrentTileCache() {
+        this(DEFAULT_MEMORY_CAPACITY, null);
+    }
+
+    /**
+     * Creates a tile cache.
+     *
+     * @param memoryCapacity The memory capacity in bytes.
+     * @param swapDir        The directory to which tiles are swapped, if they are removed from memory.
+     *                       If {@code null}, removed tiles are discarded.
+     */
+    public ConcurrentTileCache(long memoryCapacity, File swapDir) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        this.tiles = new ConcurrentHashMap<>(1024, 0.75f, Runtime.getRuntime().availableProcessors());
+        this.evictionQueue = new ConcurrentLinkedQueue<>();
+        this.evictionQueueSize = new AtomicInteger();
+        this.collectedOwners = new ReferenceQueue<>();
+        this.swapDir = swapDir != null ? swapDir.toPath() : null;
+        this.swapExecutor = swapDir != null ? Executors.newSingleThreadExecutor(new SwapThreadFactory()) : null;
+        this.memoryInUse = new AtomicLong();
+        this.memoryPending = new AtomicLong();
+        this.memoryControlLock = new ReentrantLock();
+        this.memoryCapacity = memoryCapacity;
+        this.memoryThreshold = 0.75f;
+    }
+
+    /**
+     * @return The directory to which tiles are swapped, or {@code null} if tiles are not swapped.
+     */
+    public File getSwapDir() {
+        return swapDir != null ? swapDir.toFile() : null;
+    }
+
+    /**
+     * @return The number of bytes currently used by tiles held in memory.
+     */
+    public long getMemoryInUse() {
+        return memoryInUse.get();
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile) {
+        add(owner, tileX, tileY, tile, null);
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster tile, Object tileCacheMetric) {
+        if (memoryCapacity == 0) {
+            return;
+        }
+        removeCollectedOwners();
+        final Entry entry = new Entry(new TileKey(owner, tileX, tileY, collectedOwners), tile, tileCacheMetric);
+        memoryInUse.addAndGet(entry.tileSize);
+        final Entry oldEntry = tiles.put(entry.key, entry);
+        if (oldEntry != null) {
+            discard(oldEntry);
+        }
+        enqueue(entry);
+        checkMemory();
+    }
+
+    @Override
+    public void addTiles(RenderedImage owner, Point[] tileIndices, Raster[] tiles, Object tileCacheMetric) {
+        for (int i = 0; i < tileIndices.length; i++) {
+            add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
+        }
+    }
+
+    @Override
+    public Raster getTile(RenderedImage owner, int tileX, int tileY) {
+        final Entry entry = tiles.get(new TileKey(owner, tileX, tileY, null));
+        if (entry == null) {
+            return null;
+        }
+        Raster tile = entry.raster;
+        if (tile != null && entry.counted) {
+            entry.timeStamp = System.nanoTime();
+            entry.referenced = true;
+            return tile;
+        }
+        boolean recounted = false;
+        synchronized (entry) {
+            if (entry.removed) {
+                return null;
+            }
+            if (entry.raster == null && entry.onDisk) {
+                try {
+                    entry.raster = readTile(entry);
+                } catch (IOException e) {
+                    SystemUtils.LOG.log(Level.WARNING, "Failed to read swapped tile from " + entry.file, e);
+                    tiles.remove(entry.key, entry);
+                    discard(entry);
+                    return null;
+                }
+            }
+            tile = entry.raster;
+            if (tile == null) {
+                return null;
+            }
+            if (!entry.counted) {
+                entry.counted = true;
+                memoryInUse.addAndGet(entry.tileSize);
+                recounted = true;
+            }
+            entry.timeStamp = System.nanoTime();
+        }
+        if (recounted) {
+            enqueue(entry);
+        }
+        checkMemory();
+        return tile;
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner) {
+        final List<Raster> ownerTiles = new ArrayList<>();
+        for (Entry entry : tiles.values()) {
+            if (entry.key.get() == owner) {
+                final Raster tile = getTile(owner, entry.key.tileX, entry.key.tileY);
+                if (tile != null) {
+                    ownerTiles.add(tile);
+                }
+            }
+        }
+        return ownerTiles.isEmpty() ? null : ownerTiles.toArray(new Raster[ownerTiles.size()]);
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+        final Raster[] tiles = new Raster[tileIndices.length];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        }
+        return tiles;
+    }
+
+    @Override
+    public void removeTiles(RenderedImage owner) {
+        final Iterator<Entry> iterator = tiles.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entry.key.get() == owner) {
+                iterator.remove();
+                discard(entry);
+            }
+        }
+    }
+
+    @Override
+    public void remove(RenderedImage owner, int tileX, int tileY) {
+        final Entry entry = tiles.remove(new TileKey(owner, tileX, tileY, null));
+        if (entry != null) {
+            discard(entry);
+        }
+    }
+
+    @Override
+    public void flush() {
+        final Iterator<Entry> iterator = tiles.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            iterator.remove();
+            discard(entry);
+        }
+    }
+
+    @Override
+    public void memoryControl() {
+        memoryControlLock.lock();
+        try {
+            removeTiles();
+        } finally {
+            memoryControlLock.unlock();
+        }
+    }
+
+    /**
+     * Does nothing, the capacity of this cache is only controlled by its memory capacity.
+     *
+     * @deprecated as of JAI 1.1.
+     */
+    @Override
+    @Deprecated
+    public void setTileCapacity(int tileCapacity) {
+    }
+
+    /**
+     * @return Always zero, the capacity of this cache is only controlled by its memory capacity.
+     * @deprecated as of JAI 1.1.
+     */
+    @Override
+    @Deprecated
+    public int getTileCapacity() {
+        return 0;
+    }
+
+    @Override
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        final long oldCapacity = this.memoryCapacity;
+        this.memoryCapacity = memoryCapacity;
+        if (memoryCapacity == 0) {
+            flush();
+        } else if (memoryCapacity < oldCapacity) {
+            memoryControl();
+        }
+    }
+
+    @Override
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    @Override
+    public void setMemoryThreshold(float memoryThreshold) {
+        if (memoryThreshold < 0.0f || memoryThreshold > 1.0f) {
+            throw new IllegalArgumentException("memoryThreshold must be in the range 0.0 to 1.0");
+        }
+        final float oldThreshold = this.memoryThreshold;
+        this.memoryThreshold = memoryThreshold;
+        if (memoryThreshold < oldThreshold) {
+            memoryControl();
+        }
+    }
+
+    @Override
+    public float getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    @Override
+    public void setTileComparator(Comparator comparator) {
+        this.tileComparator = comparator;
+    }
+
+    @Override
+    public Comparator getTileComparator() {
+        return tileComparator;
+    }
+
+    /////////////////////////////////////////////////////////////////////////
+    // Implementation Helpers
+
+    private void checkMemory() {
+        // only one thread needs to remove tiles, the others can continue
+        if (memoryInUse.get() > memoryCapacity && memoryControlLock.tryLock()) {
+            try {
+                removeTiles();
+            } finally {
+                memoryControlLock.unlock();
+            }
+        }
+    }
+
+    private void removeTiles() {
+        removeCollectedOwners();
+        final long retainedMemory = (long) (memoryThreshold * memoryCapacity);
+        final Comparator comparator = tileComparator;
+        while (memoryInUse.get() > retainedMemory) {
+            final Entry entry = comparator != null ? pollFirstOfSample(comparator) : pollLeastRecentlyUsed();
+            if (entry == null) {
+                break;
+            }
+            removeFromMemory(entry);
+        }
+    }
+
+    /**
+     * CLOCK: an entry which has been used since it was queued is given a second chance. At most one round through
+     * the queue is made, so entries which are used all the time cannot keep the cache from removing tiles.
+     */
+    private Entry pollLeastRecentlyUsed() {
+        int secondChances = evictionQueueSize.get();
+        Entry entry;
+        while ((entry = pollQueuedEntry()) != null) {
+            if (entry.referenced && secondChances-- > 0) {
+                entry.referenced = false;
+                enqueue(entry);
+            } else {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private Entry pollFirstOfSample(Comparator comparator) {
+        final List<EntrySnapshot> sample = new ArrayList<>(SAMPLE_SIZE);
+        Entry entry;
+        while (sample.size() < SAMPLE_SIZE && (entry = pollQueuedEntry()) != null) {
+            sample.add(new EntrySnapshot(entry));
+        }
+        if (sample.isEmpty()) {
+            return null;
+        }
+        sortSnapshots(sample, comparator);
+        for (int i = 1; i < sample.size(); i++) {
+            enqueue(sample.get(i).entry);
+        }
+        return sample.get(0).entry;
+    }
+
+    /**
+     * Polls the next entry whose tile is still counted as memory in use. Entries of collected owners are discarded.
+     */
+    private Entry pollQueuedEntry() {
+        Entry entry;
+        while ((entry = evictionQueue.poll()) != null) {
+            evictionQueueSize.decrementAndGet();
+            if (entry.key.get() == null) {
+                tiles.remove(entry.key, entry);
+                discard(entry);
+            } else if (entry.counted) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void enqueue(Entry entry) {
+        evictionQueueSize.incrementAndGet();
+        evictionQueue.offer(entry);
+    }
+
+    /**
+     * Discards the tiles of owners which have been garbage collected, also if they are only on disk.
+     */
+    private void removeCollectedOwners() {
+        Reference<? extends RenderedImage> reference;
+        while ((reference = collectedOwners.poll()) != null) {
+            final TileKey key = (TileKey) reference;
+            final Entry entry = tiles.get(key);
+            if (entry != null && entry.key == key && tiles.remove(key, entry)) {
+                discard(entry);
+            }
+        }
+    }
+
+    private static void sortSnapshots(List<EntrySnapshot> snapshots, Comparator comparator) {
+        if (comparator != null) {
+            try {
+                //noinspection unchecked
+                Collections.sort(snapshots, comparator);
+                return;
+            } catch (IllegalArgumentException e) {
+                // the comparator is inconsistent, fall back to the time stamp order
+            }
+        }
+        Collections.sort(snapshots, TIME_STAMP_COMPARATOR);
+    }
+
+    private void removeFromMemory(Entry entry) {
+        boolean swapNow = false;
+        synchronized (entry) {
+            if (!entry.counted) {
+                return;
+            }
+            entry.counted = false;
+            memoryInUse.addAndGet(-entry.tileSize);
+            if (entry.onDisk) {
+                entry.raster = null;
+            } else if (swapExecutor != null && entry.swappable) {
+                if (!entry.writing) {
+                    entry.writing = true;
+                    if (memoryPending.addAndGet(entry.tileSize) <= memoryCapacity) {
+                        swapExecutor.execute(new SwapTask(entry));
+                    } else {
+                        swapNow = true;
+                    }
+                }
+            } else {
+                entry.raster = null;
+                entry.removed = true;
+                tiles.remove(entry.key, entry);
+            }
+        }
+        if (swapNow) {
+            // the swap thread can't keep up, so the thread which removes tiles from memory is slowed down
+            swap(entry);
+        }
+    }
+
+    private void discard(Entry entry) {
+        synchronized (entry) {
+            entry.removed = true;
+            entry.raster = null;
+            if (entry.counted) {
+                entry.counted = false;
+                memoryInUse.addAndGet(-entry.tileSize);
+            }
+            if (entry.onDisk && !entry.writing) {
+                deleteFile(entry);
+            }
+        }
+    }
+
+    private void swap(Entry entry) {
+        Raster tile;
+        Path file = null;
+        synchronized (entry) {
+            tile = entry.raster;
+            if (tile != null && !entry.removed) {
+                try {
+                    if (entry.file == null) {
+                        entry.file = Files.createTempFile(swapDir, "tile-", ".raw");
+                    }
+                    file = entry.file;
+                } catch (IOException e) {
+                    SystemUtils.LOG.log(Level.WARNING, "Failed to create swap file in " + swapDir, e);
+                    tile = null;
+                }
+            }
+        }
+        boolean written = false;
+        if (tile != null && file != null) {
+            // the file is not deleted while the entry is being written, see discard()
+            try {
+                writeTile(file, tile);
+                written = true;
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, "Failed to swap tile to " + file, e);
+            }
+        }
+        memoryPending.addAndGet(-entry.tileSize);
+        synchronized (entry) {
+            entry.writing = false;
+            entry.onDisk = written;
+            if (entry.removed) {
+                deleteFile(entry);
+            } else if (!entry.counted) {
+                // not used while it was written
+                entry.raster = null;
+                if (!written) {
+                    entry.removed = true;
+                    tiles.remove(entry.key, entry);
+                    deleteFile(entry);
+                }
+            }
+        }
+    }
+
+    // called with the entry's monitor held
+    private static void deleteFile(Entry entry) {
+        entry.onDisk = false;
+        if (entry.file != null) {
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, "Failed to delete swapped tile " + entry.file, e);
+            }
+            entry.file = null;
+        }
+    }
+
+    static void writeTile(Path file, Raster tile) throws IOException {
+        final DataBuffer dataBuffer = tile.getDataBuffer();
+        final int size = dataBuffer.getSize();
+        final int bankSize = size * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+        final ByteBuffer buffer = ByteBuffer.allocate(dataBuffer.getNumBanks() * bankSize).order(ByteOrder.nativeOrder());
+        for (int bank = 0; bank < dataBuffer.getNumBanks(); bank++) {
+            final int offset = dataBuffer.getOffsets()[bank];
+            buffer.position(bank * bankSize);
+            if (dataBuffer instanceof DataBufferByte) {
+                buffer.put(((DataBufferByte) dataBuffer).getData(bank), offset, size);
+            } else if (dataBuffer instanceof DataBufferShort) {
+                buffer.asShortBuffer().put(((DataBufferShort) dataBuffer).getData(bank), offset, size);
+            } else if (dataBuffer instanceof DataBufferUShort) {
+                buffer.asShortBuffer().put(((DataBufferUShort) dataBuffer).getData(bank), offset, size);
+            } else if (dataBuffer instanceof DataBufferInt) {
+                buffer.asIntBuffer().put(((DataBufferInt) dataBuffer).getData(bank), offset, size);
+            } else if (dataBuffer instanceof DataBufferFloat) {
+                buffer.asFloatBuffer().put(((DataBufferFloat) dataBuffer).getData(bank), offset, size);
+            } else if (dataBuffer instanceof DataBufferDouble) {
+                buffer.asDoubleBuffer().put(((DataBufferDouble) dataBuffer).getData(bank), offset, size);
+            } else {
+                throw new IllegalStateException("Unsupported data buffer: " + dataBuffer.getClass().getName());
+            }
+        }
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    static DataBuffer readTileData(Path file, int dataType, int size, int numBanks) throws IOException {
+        final int bankSize = size * DataBuffer.getDataTypeSize(dataType) / 8;
+        final ByteBuffer buffer = ByteBuffer.allocate(numBanks * bankSize).order(ByteOrder.nativeOrder());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+            }
+        }
+        final DataBuffer dataBuffer;
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                dataBuffer = new DataBufferByte(size, numBanks);
+                break;
+            case DataBuffer.TYPE_SHORT:
+                dataBuffer = new DataBufferShort(size, numBanks);
+                break;
+            case DataBuffer.TYPE_USHORT:
+                dataBuffer = new DataBufferUShort(size, numBanks);
+                break;
+            case DataBuffer.TYPE_INT:
+                dataBuffer = new DataBufferInt(size, numBanks);
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                dataBuffer = new DataBufferFloat(size, numBanks);
+                break;
+            case DataBuffer.TYPE_DOUBLE:
+                dataBuffer = new DataBufferDouble(size, numBanks);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported data type: " + dataType);
+        }
+        for (int bank = 0; bank < numBanks; bank++) {
+            buffer.position(bank * bankSize);
+            if (dataBuffer instanceof DataBufferByte) {
+                buffer.get(((DataBufferByte) dataBuffer).getData(bank));
+            } else if (dataBuffer instanceof DataBufferShort) {
+                buffer.asShortBuffer().get(((DataBufferShort) dataBuffer).getData(bank));
+            } else if (dataBuffer instanceof DataBufferUShort) {
+                buffer.asShortBuffer().get(((DataBufferUShort) dataBuffer).getData(bank));
+            } else if (dataBuffer instanceof DataBufferInt) {
+                buffer.asIntBuffer().get(((DataBufferInt) dataBuffer).getData(bank));
+            } else if (dataBuffer instanceof DataBufferFloat) {
+                buffer.asFloatBuffer().get(((DataBufferFloat) dataBuffer).getData(bank));
+            } else {
+                buffer.asDoubleBuffer().get(((DataBufferDouble) dataBuffer).getData(bank));
+            }
+        }
+        return dataBuffer;
+    }
+
+    private static Raster readTile(Entry entry) throws IOException {
+        final DataBuffer dataBuffer = readTileData(entry.file, entry.sampleModel.getDataType(), entry.dataSize, entry.numBanks);
+        Raster tile;
+        if (entry.writable) {
+            tile = Raster.createWritableRaster(entry.sampleModel, dataBuffer, entry.origin);
+        } else {
+            tile = Raster.createRaster(entry.sampleModel, dataBuffer, entry.origin);
+        }
+        if (!tile.getBounds().equals(entry.bounds)) {
+            final Rectangle b = entry.bounds;
+            if (entry.writable) {
+                tile = ((WritableRaster) tile).createWritableChild(b.x, b.y, b.width, b.height, b.x, b.y, null);
+            } else {
+                tile = tile.createChild(b.x, b.y, b.width, b.height, b.x, b.y, null);
+            }
+        }
+        return tile;
+    }
+
+    private static final Comparator<EntrySnapshot> TIME_STAMP_COMPARATOR = new Comparator<EntrySnapshot>() {
+        @Override
+        public int compare(EntrySnapshot s1, EntrySnapshot s2) {
+            return Long.compare(s1.timeStamp, s2.timeStamp);
+        }
+    };
+
+    /**
+     * The key of a tile, which refers to the tile's owner weakly. Once the owner has been collected,
+     * a key is only equal to itself.
+     */
+    private static final class TileKey extends WeakReference<RenderedImage> {
+
+        final int tileX;
+        final int tileY;
+        final int hash;
+
+        TileKey(RenderedImage owner, int tileX, int tileY, ReferenceQueue<RenderedImage> queue) {
+            super(owner, queue);
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.hash = 31 * (31 * System.identityHashCode(owner) + tileY) + tileX;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            final TileKey tileKey = (TileKey) other;
+            if (hash != tileKey.hash || tileX != tileKey.tileX || tileY != tileKey.tileY) {
+                return false;
+            }
+            final RenderedImage owner = get();
+            return owner != null && owner == tileKey.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry implements CachedTile {
+
+        final TileKey key;
+        final Object tileCacheMetric;
+        final SampleModel sampleModel;
+        final Rectangle bounds;
+        final Point origin;
+        final int dataSize;
+        final int numBanks;
+        final long tileSize;
+        final boolean writable;
+        final boolean swappable;
+        // the tile data, null if only on disk
+        volatile Raster raster;
+        // whether the raster is counted as memory in use
+        volatile boolean counted;
+        volatile long timeStamp;
+        // whether the tile has been used since the entry was queued for removal
+        volatile boolean referenced;
+        // all following fields are guarded by the entry's monitor
+        Path file;
+        boolean onDisk;
+        boolean writing;
+        boolean removed;
+
+        Entry(TileKey key, Raster tile, Object tileCacheMetric) {
+            final DataBuffer dataBuffer = tile.getDataBuffer();
+            this.key = key;
+            this.tileCacheMetric = tileCacheMetric;
+            this.sampleModel = tile.getSampleModel();
+            this.bounds = tile.getBounds();
+            this.origin = new Point(tile.getSampleModelTranslateX(), tile.getSampleModelTranslateY());
+            this.dataSize = dataBuffer.getSize();
+            this.numBanks = dataBuffer.getNumBanks();
+            this.tileSize = (long) dataSize * numBanks * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+            this.writable = tile instanceof WritableRaster;
+            this.swappable = isSwappable(dataBuffer, sampleModel);
+            this.raster = tile;
+            this.counted = true;
+            this.timeStamp = System.nanoTime();
+        }
+
+        private static boolean isSwappable(DataBuffer dataBuffer, SampleModel sampleModel) {
+            final Class<? extends DataBuffer> type = dataBuffer.getClass();
+            return dataBuffer.getDataType() == sampleModel.getDataType()
+                   && (type == DataBufferByte.class || type == DataBufferShort.class || type == DataBufferUShort.class
+                       || type == DataBufferInt.class || type == DataBufferFloat.class || type == DataBufferDouble.class);
+        }
+
+        @Override
+        public RenderedImage getOwner() {
+            return key.get();
+        }
+
+        @Override
+        public Raster getTile() {
+            return raster;
+        }
+
+        @Override
+        public Object getTileCacheMetric() {
+            return tileCacheMetric;
+        }
+
+        @Override
+        public long getTileTimeStamp() {
+            return timeStamp;
+        }
+
+        @Override
+        public long getTileSize() {
+            return tileSize;
+        }
+
+        @Override
+        public int getAction() {
+            return 0;
+        }
+    }
+
+    /**
+     * An entry with its time stamp frozen, as seen by the tile comparator while tiles are removed.
+     */
+    private static final class EntrySnapshot implements CachedTile {
+
+        final Entry entry;
+        final long timeStamp;
+
+        EntrySnapshot(Entry entry) {
+            this.entry = entry;
+            this.timeStamp = entry.timeStamp;
+        }
+
+        @Override
+        public RenderedImage getOwner() {
+            return entry.getOwner();
+        }
+
+        @Override
+        public Raster getTile() {
+            return entry.getTile();
+        }
+
+        @Override
+        public Object getTileCacheMetric() {
+            return entry.getTileCacheMetric();
+        }
+
+        @Override
+        public long getTileTimeStamp() {
+            return timeStamp;
+        }
+
+        @Override
+        public long getTileSize() {
+            return entry.getTileSize();
+        }
+
+        @Override
+        public int getAction() {
+            return entry.getAction();
+        }
+    }
+
+    private final class SwapTask implements Runnable {
+
+        private final Entry entry;
+
+        SwapTask(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            swap(entry);
+        }
+    }
+
+    private static final class SwapThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ConcurrentTileCache-swap");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
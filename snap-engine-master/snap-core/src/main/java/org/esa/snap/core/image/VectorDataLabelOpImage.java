@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.image;
+
+import com.vividsolutions.jts.geom.Geometry;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.VectorDataNode;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import javax.media.jai.PlanarImage;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An image which rasterises the geometries of several vector data nodes at once. The pixels covered by the
+ * geometries of the vector data node at index {@code i} have the label {@code i + 1}, all other pixels are zero.
+ * The geometries are rendered exactly as by the {@link VectorDataMaskOpImage}, so the pixels having a certain
+ * label are the pixels set in the mask image of the corresponding vector data node, as long as no other node
+ * of this image covers them as well. Use {@link #createDisjointImages} to obtain images which fulfil this condition.
+ *
+ * @since SNAP 2.0
+ */
+public class VectorDataLabelOpImage extends SingleBandedOpImage {
+
+    /**
+     * The maximum number of vector data nodes of a single image.
+     */
+    public static final int MAX_LABEL = 0xFFFFFF;
+
+    private final VectorDataNode[] vectorDataNodes;
+    private final Rectangle[] labelBounds;
+    private final AffineTransform m2iTransform;
+
+    public VectorDataLabelOpImage(VectorDataNode[] vectorDataNodes, ResolutionLevel level) {
+        this(vectorDataNodes, getLabelBounds(vectorDataNodes, level), level);
+        if (vectorDataNodes.length > MAX_LABEL) {
+            throw new IllegalArgumentException("vectorDataNodes.length > " + MAX_LABEL);
+        }
+    }
+
+    private VectorDataLabelOpImage(VectorDataNode[] vectorDataNodes, Rectangle[] labelBounds, ResolutionLevel level) {
+        super(DataBuffer.TYPE_INT,
+              getProduct(vectorDataNodes).getSceneRasterWidth(),
+              getProduct(vectorDataNodes).getSceneRasterHeight(),
+              getProduct(vectorDataNodes).getPreferredTileSize(),
+              null,
+              level);
+        this.vectorDataNodes = vectorDataNodes.clone();
+        this.labelBounds = labelBounds;
+        this.m2iTransform = getModelToImageTransform(getProduct(vectorDataNodes));
+    }
+
+    /**
+     * Distributes the given vector data nodes over as few label images as possible, so that the geometries of
+     * different nodes of the same image never cover the same pixel. For field parcels and other non-overlapping
+     * regions, a single image is usually sufficient.
+     *
+     * @param vectorDataNodes The vector data nodes, all must belong to the same product.
+     * @param level           The resolution level.
+     * @return The label images.
+     */
+    public static VectorDataLabelOpImage[] createDisjointImages(VectorDataNode[] vectorDataNodes, ResolutionLevel level) {
+        if (vectorDataNodes.length == 0) {
+            return new VectorDataLabelOpImage[0];
+        }
+        final Rectangle[] bounds = getLabelBounds(vectorDataNodes, level);
+        final List<List<VectorDataNode>> layerNodes = new ArrayList<>();
+        final List<List<Rectangle>> layerBounds = new ArrayList<>();
+        for (int i = 0; i < vectorDataNodes.length; i++) {
+            int layer = 0;
+            while (layer < layerNodes.size()
+                   && (layerNodes.get(layer).size() == MAX_LABEL || intersectsAny(bounds[i], layerBounds.get(layer)))) {
+                layer++;
+            }
+            if (layer == layerNodes.size()) {
+                layerNodes.add(new ArrayList<>());
+                layerBounds.add(new ArrayList<>());
+            }
+            layerNodes.get(layer).add(vectorDataNodes[i]);
+            layerBounds.get(layer).add(bounds[i]);
+        }
+        final VectorDataLabelOpImage[] images = new VectorDataLabelOpImage[layerNodes.size()];
+        for (int i = 0; i < images.length; i++) {
+            final List<VectorDataNode> nodes = layerNodes.get(i);
+            final List<Rectangle> nodeBounds = layerBounds.get(i);
+            images[i] = new VectorDataLabelOpImage(nodes.toArray(new VectorDataNode[nodes.size()]),
+                                                   nodeBounds.toArray(new Rectangle[nodeBounds.size()]),
+                                                   level);
+        }
+        return images;
+    }
+
+    /**
+     * @return The vector data nodes, the node at index {@code i} has the label {@code i + 1}.
+     */
+    public VectorDataNode[] getVectorDataNodes() {
+        return vectorDataNodes.clone();
+    }
+
+    @Override
+    protected void computeRect(PlanarImage[] sourceImages, WritableRaster tile, Rectangle destRect) {
+        final BufferedImage image = new BufferedImage(destRect.width, destRect.height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics2D = image.createGraphics();
+        graphics2D.translate(-(destRect.x + 0.5), -(destRect.y + 0.5));
+
+        AffineTransform transform = AffineTransform.getScaleInstance(1.0 / getScale(), 1.0 / getScale());
+        transform.concatenate(m2iTransform);
+        AffineTransform2D transform2D = new AffineTransform2D(transform);
+
+        for (int i = 0; i < vectorDataNodes.length; i++) {
+            if (!labelBounds[i].intersects(destRect)) {
+                continue;
+            }
+            // the RGB value of the colour is the label
+            graphics2D.setColor(new Color(i + 1));
+            FeatureCollection<SimpleFeatureType, SimpleFeature> features = vectorDataNodes[i].getFeatureCollection();
+            FeatureIterator<SimpleFeature> featureIterator = features.features();
+            try {
+                while (featureIterator.hasNext()) {
+                    SimpleFeature feature = featureIterator.next();
+                    Object value = feature.getDefaultGeometry();
+                    if (value instanceof Geometry) {
+                        try {
+                            VectorDataMaskOpImage.renderGeometry((Geometry) value, graphics2D, transform2D);
+                        } catch (Exception ignored) {
+                            // ignore
+                        }
+                    }
+                }
+            } finally {
+                featureIterator.close();
+            }
+        }
+        graphics2D.dispose();
+
+        final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+            data[i] &= MAX_LABEL;
+        }
+        tile.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, data);
+    }
+
+    private static boolean intersectsAny(Rectangle bounds, List<Rectangle> boundsList) {
+        for (Rectangle other : boundsList) {
+            if (bounds.intersects(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the bounds of the pixels which may be covered by the geometries of each node. The bounds are
+     * enlarged by two pixels, in order to account for the width of rendered lines and points.
+     */
+    private static Rectangle[] getLabelBounds(VectorDataNode[] vectorDataNodes, ResolutionLevel level) {
+        final AffineTransform transform = AffineTransform.getScaleInstance(1.0 / level.getScale(), 1.0 / level.getScale());
+        transform.concatenate(getModelToImageTransform(getProduct(vectorDataNodes)));
+        final Rectangle[] bounds = new Rectangle[vectorDataNodes.length];
+        for (int i = 0; i < vectorDataNodes.length; i++) {
+            final ReferencedEnvelope envelope = vectorDataNodes[i].getEnvelope();
+            if (envelope == null || envelope.isNull()) {
+                bounds[i] = new Rectangle();
+                continue;
+            }
+            final Rectangle2D modelBounds = new Rectangle2D.Double(envelope.getMinX(), envelope.getMinY(),
+                                                                   envelope.getWidth(), envelope.getHeight());
+            final Rectangle2D imageBounds = transform.createTransformedShape(modelBounds).getBounds2D();
+            final int x1 = (int) Math.floor(imageBounds.getMinX()) - 2;
+            final int y1 = (int) Math.floor(imageBounds.getMinY()) - 2;
+            final int x2 = (int) Math.ceil(imageBounds.getMaxX()) + 2;
+            final int y2 = (int) Math.ceil(imageBounds.getMaxY()) + 2;
+            bounds[i] = new Rectangle(x1, y1, x2 - x1, y2 - y1);
+        }
+        return bounds;
+    }
+
+    private static Product getProduct(VectorDataNode[] vectorDataNodes) {
+        if (vectorDataNodes.length == 0) {
+            throw new IllegalArgumentException("vectorDataNodes.length == 0");
+        }
+        final Product product = vectorDataNodes[0].getProduct();
+        for (VectorDataNode vectorDataNode : vectorDataNodes) {
+            if (vectorDataNode.getProduct() != product) {
+                throw new IllegalArgumentException("All vector data nodes must belong to the same product.");
+            }
+        }
+        return product;
+    }
+
+    private static AffineTransform getModelToImageTransform(Product product) {
+        GeoCoding geoCoding = product.getSceneGeoCoding();
+        AffineTransform transform = ImageManager.getImageToModelTransform(geoCoding);
+        try {
+            transform.invert();
+            return transform;
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalArgumentException("Could not invert model-to-image transformation.", e);
+        }
+    }
+}
@@ -115,7 +115,7 @@ public class VectorDataMaskOpImage extends SingleBandedOpImage {
         }
     }
 
-    private static void renderGeometry(Geometry geom, Graphics2D graphics, MathTransform2D transform) throws Exception {
+    static void renderGeometry(Geometry geom, Graphics2D graphics, MathTransform2D transform) throws Exception {
         if (geom instanceof Puntal) {
             Coordinate c = geom.getCoordinate();
             Point2D.Double pt = new Point2D.Double(c.x, c.y);
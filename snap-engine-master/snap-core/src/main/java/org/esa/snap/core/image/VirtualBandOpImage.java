@@ -22,9 +22,11 @@ import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.datamodel.RasterDataNode;
 import org.esa.snap.core.dataop.barithm.BandArithmetic;
+import org.esa.snap.core.dataop.barithm.CompiledTerm;
 import org.esa.snap.core.dataop.barithm.RasterDataEvalEnv;
 import org.esa.snap.core.dataop.barithm.RasterDataSymbol;
 import org.esa.snap.core.dataop.barithm.RasterDataSymbolReplacer;
+import org.esa.snap.core.dataop.barithm.TermCompiler;
 import org.esa.snap.core.jexp.ParseException;
 import org.esa.snap.core.jexp.Term;
 import org.esa.snap.core.jexp.impl.TermDecompiler;
@@ -57,10 +59,13 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
     private final int dataType;
     private final Number fillValue;
     private final boolean mask;
+    private final boolean compileTerm;
 
     private final Map<Point, Term> effectiveTerms = new ConcurrentHashMap<Point, Term>();
 
     private volatile NoDataRaster noDataRaster;
+    private volatile CompiledTerm compiledTerm;
+    private volatile boolean compiledTermFailed;
 
     public static Builder builder(Term term) {
         return new Builder(term);
@@ -205,6 +210,7 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
         this.dataType = dataType;
         this.mask = mask;
         this.fillValue = fillValue;
+        this.compileTerm = TermCompiler.isEnabled();
     }
 
     public int getDataType() {
@@ -228,14 +234,19 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
     @Override
     public Raster computeTile(int tileX, int tileY) {
         final Term effectiveTerm = new RasterDataSymbolReplacer().apply(this.term);
-        // todo - addDataToReferredRasterDataSymbols() makes wrong assumptions wrt its return value!       (nf, 2015-07-25)
-        //        Consider expr "A < 0 ? B : C" --> if C is a no-data tile at (tileX,tileY), then computeTile()
-        //        will return a noDataRaster, regardless of A's actual pixel values.
-        //
-        if (addDataToReferredRasterDataSymbols(getTileRect(tileX, tileY), effectiveTerm)) {
-            effectiveTerms.put(new Point(tileX, tileY), effectiveTerm);
+        // The data of the referred rasters is loaded on demand, so that rasters only referred in branches of
+        // conditional terms which are not taken for any pixel of the tile are not read at all. For the same reason,
+        // a no-data tile of such a raster does not cause a no-data result tile, e.g. for "A < 0 ? B : C".
+        final TileDataLoader dataLoader = new TileDataLoader(getTileRect(tileX, tileY));
+        for (final RasterDataSymbol symbol : BandArithmetic.getRefRasterDataSymbols(effectiveTerm)) {
+            symbol.setDataLoader(dataLoader);
+        }
+        final Point tileIndices = new Point(tileX, tileY);
+        effectiveTerms.put(tileIndices, effectiveTerm);
+        try {
             return super.computeTile(tileX, tileY);
-        } else {
+        } catch (NoDataException e) {
+            effectiveTerms.remove(tileIndices);
             if (noDataRaster == null) {
                 synchronized (this) {
                     if (noDataRaster == null) {
@@ -260,42 +271,79 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
         final int colCount = destRect.width;
         final int rowCount = destRect.height;
         final int pixelCount = colCount * rowCount;
+
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(effectiveTerm);
+        final CompiledTerm compiledTerm = getCompiledTerm(effectiveTerm, symbols);
         final RasterDataEvalEnv env = new RasterDataEvalEnv(destRect.x, destRect.y,
                                                             colCount, rowCount,
                                                             getLevelImageSupport());
 
+        // terms are evaluated line-wise, either by the compiled term or by the array versions of Term.evalX()
         if (mask) {
+            final boolean[] values = new boolean[colCount];
             for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                if (compiledTerm != null) {
+                    compiledTerm.evalB(symbols, values, i, colCount);
+                } else {
+                    env.setElemIndex(i);
+                    effectiveTerm.evalB(env, values, 0, colCount);
+                }
                 for (int j = 0, l = x; j < colCount; j++, l++) {
-                    env.setElemIndex(i + j);
-                    productData.setElemUIntAt(k + l, effectiveTerm.evalB(env) ? TRUE : FALSE);
+                    productData.setElemUIntAt(k + l, values[j] ? TRUE : FALSE);
                 }
             }
-        } else if (fillValue != null) {
-            final double fv = fillValue.doubleValue();
+        } else {
+            final boolean replaceInvalid = fillValue != null;
+            final double fv = replaceInvalid ? fillValue.doubleValue() : 0.0;
+            final double[] values = new double[colCount];
             for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
+                if (compiledTerm != null) {
+                    compiledTerm.evalD(symbols, values, i, colCount);
+                } else {
+                    env.setElemIndex(i);
+                    effectiveTerm.evalD(env, values, 0, colCount);
+                }
                 for (int j = 0, l = x; j < colCount; j++, l++) {
-                    env.setElemIndex(i + j);
-                    final double v = effectiveTerm.evalD(env);
-                    if (Double.isNaN(v) || Double.isInfinite(v)) {
+                    final double v = values[j];
+                    if (replaceInvalid && (Double.isNaN(v) || Double.isInfinite(v))) {
                         productData.setElemDoubleAt(k + l, fv);
                     } else {
                         productData.setElemDoubleAt(k + l, v);
                     }
                 }
             }
-        } else {
-            for (int i = 0, k = w * y; i < pixelCount; i += colCount, k += w) {
-                for (int j = 0, l = x; j < colCount; j++, l++) {
-                    env.setElemIndex(i + j);
-                    productData.setElemDoubleAt(k + l, effectiveTerm.evalD(env));
+        }
+    }
+
+    private CompiledTerm getCompiledTerm(Term effectiveTerm, RasterDataSymbol[] symbols) {
+        if (!compileTerm || compiledTermFailed) {
+            return null;
+        }
+        if (compiledTerm == null) {
+            synchronized (this) {
+                if (compiledTerm == null && !compiledTermFailed) {
+                    compiledTerm = TermCompiler.compile(effectiveTerm);
+                    compiledTermFailed = compiledTerm == null;
                 }
             }
         }
+        final CompiledTerm compiledTerm = this.compiledTerm;
+        return compiledTerm != null && compiledTerm.isApplicable(symbols) ? compiledTerm : null;
     }
 
-    private boolean addDataToReferredRasterDataSymbols(Rectangle destRect, Term term) {
-        for (final RasterDataSymbol symbol : BandArithmetic.getRefRasterDataSymbols(term)) {
+    /**
+     * Loads the data of the rasters referred by the effective term of a tile.
+     */
+    private class TileDataLoader implements RasterDataSymbol.DataLoader {
+
+        private final Rectangle destRect;
+
+        private TileDataLoader(Rectangle destRect) {
+            this.destRect = destRect;
+        }
+
+        @Override
+        public Object loadData(RasterDataSymbol symbol) {
             final RenderedImage sourceImage;
             final int dataType;
             final RasterDataNode rasterDataNode = symbol.getRaster();
@@ -308,7 +356,7 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
             }
             final Raster sourceRaster = sourceImage.getData(destRect);
             if (sourceRaster instanceof NoDataRaster) {
-                return false;
+                throw new NoDataException();
             }
             DataBuffer dataBuffer = sourceRaster.getDataBuffer();
             if (dataBuffer.getSize() != destRect.width * destRect.height) {
@@ -316,9 +364,17 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
                 sourceImage.copyData(writableRaster);
                 dataBuffer = writableRaster.getDataBuffer();
             }
-            symbol.setData(ProductData.createInstance(dataType, ImageUtils.getPrimitiveArray(dataBuffer)));
+            return ProductData.createInstance(dataType, ImageUtils.getPrimitiveArray(dataBuffer));
         }
-        return true;
     }
 
+    /**
+     * Thrown if the data of a referred raster is required for a tile, but the raster has no data for this tile.
+     */
+    private static class NoDataException extends RuntimeException {
+
+        private NoDataException() {
+            super(null, null, false, false);
+        }
+    }
 }
@@ -16,6 +16,7 @@
 
 package org.esa.snap.core.jexp;
 
+import java.util.Arrays;
 
 /**
  * A representation of a function. A function has a name, a return type
@@ -91,6 +92,66 @@ public interface Function {
      */
     double evalD(EvalEnv env, Term[] args) throws EvalException;
 
+    /**
+     * Evaluates this function to <code>boolean</code> values for <code>count</code> consecutive data elements,
+     * starting at the current element index of the given {@link IndexedEvalEnv}.
+     * The default implementation calls {@link #evalB(EvalEnv, Term[])} for each element.
+     *
+     * @param env    the application dependant environment.
+     * @param args   the (un-evaluated) arguments passed to the function
+     * @param out    the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count  the number of values
+     * @throws EvalException if the evaluation fails
+     * @see Term#evalB(EvalEnv, boolean[], int, int)
+     */
+    default void evalB(EvalEnv env, Term[] args, boolean[] out, int offset, int count) throws EvalException {
+        if (env instanceof IndexedEvalEnv) {
+            final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+            final int elemIndex = indexedEnv.getElemIndex();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    out[offset + i] = evalB(env, args);
+                }
+            } finally {
+                indexedEnv.setElemIndex(elemIndex);
+            }
+        } else {
+            Arrays.fill(out, offset, offset + count, evalB(env, args));
+        }
+    }
+
+    /**
+     * Evaluates this function to <code>double</code> values for <code>count</code> consecutive data elements,
+     * starting at the current element index of the given {@link IndexedEvalEnv}.
+     * The default implementation calls {@link #evalD(EvalEnv, Term[])} for each element.
+     *
+     * @param env    the application dependant environment.
+     * @param args   the (un-evaluated) arguments passed to the function
+     * @param out    the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count  the number of values
+     * @throws EvalException if the evaluation fails
+     * @see Term#evalD(EvalEnv, double[], int, int)
+     */
+    default void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+        if (env instanceof IndexedEvalEnv) {
+            final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+            final int elemIndex = indexedEnv.getElemIndex();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    out[offset + i] = evalD(env, args);
+                }
+            } finally {
+                indexedEnv.setElemIndex(elemIndex);
+            }
+        } else {
+            Arrays.fill(out, offset, offset + count, evalD(env, args));
+        }
+    }
+
     /**
      * @return {@code true}, if this symbol has a constant value with respect to the given arguments and
      * to any {@link EvalEnv}, including {@code null}.
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.jexp;
+
+/**
+ * An evaluation environment which refers to the current element of an array of data elements.
+ * <p>Environments of this type are required by the array versions of the <code>eval</code>X methods
+ * of the <code>{@link Term}</code> class, e.g. {@link Term#evalD(EvalEnv, double[], int, int)}.
+ * These methods evaluate a term for a number of consecutive data elements, starting at the current element index.
+ *
+ * @since SNAP 2.0
+ */
+public interface IndexedEvalEnv extends EvalEnv {
+
+    /**
+     * Gets the index of the current data element.
+     *
+     * @return the index of the current data element
+     */
+    int getElemIndex();
+
+    /**
+     * Sets the index of the current data element.
+     *
+     * @param elemIndex the index of the current data element
+     */
+    void setElemIndex(int elemIndex);
+}
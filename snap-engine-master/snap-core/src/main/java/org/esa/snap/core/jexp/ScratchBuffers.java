@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.jexp;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch arrays for the array versions of the <code>eval</code>X methods of the
+ * <code>{@link Term}</code> class, e.g. {@link Term#evalD(EvalEnv, double[], int, int)}.
+ * <p>Terms are evaluated recursively, so the arrays are handed out as a stack. A caller marks the stack,
+ * takes the arrays it needs and resets the stack to the mark when done:
+ * <pre>
+ *     final ScratchBuffers buffers = ScratchBuffers.get();
+ *     final int mark = buffers.mark();
+ *     try {
+ *         final double[] values = buffers.doubles(count);
+ *         ...
+ *     } finally {
+ *         buffers.reset(mark);
+ *     }
+ * </pre>
+ * The returned arrays may be longer than requested and their contents are undefined.
+ * <p>Terms and functions usually do not use this class directly but the helpers of the {@link Term} class,
+ * e.g. {@link Term#evalBFromD} or {@link Term#evalArgsD}.
+ *
+ * @since SNAP 2.0
+ */
+public final class ScratchBuffers {
+
+    private static final ThreadLocal<ScratchBuffers> BUFFERS = ThreadLocal.withInitial(ScratchBuffers::new);
+
+    private double[][] doubleArrays = new double[8][];
+    private boolean[][] booleanArrays = new boolean[8][];
+    private int depth;
+
+    private ScratchBuffers() {
+    }
+
+    /**
+     * @return the scratch buffers of the current thread
+     */
+    public static ScratchBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * @return the current stack position, to be passed to {@link #reset(int)}
+     */
+    public int mark() {
+        return depth;
+    }
+
+    /**
+     * Releases all arrays taken since the given stack position was marked.
+     *
+     * @param mark a stack position returned by {@link #mark()}
+     */
+    public void reset(int mark) {
+        depth = mark;
+    }
+
+    /**
+     * Takes a <code>double</code> array from the stack.
+     *
+     * @param count the minimum length of the array
+     * @return an array with at least <code>count</code> elements
+     */
+    public double[] doubles(int count) {
+        ensureDepth();
+        double[] array = doubleArrays[depth];
+        if (array == null || array.length < count) {
+            array = new double[count];
+            doubleArrays[depth] = array;
+        }
+        depth++;
+        return array;
+    }
+
+    /**
+     * Takes a <code>boolean</code> array from the stack.
+     *
+     * @param count the minimum length of the array
+     * @return an array with at least <code>count</code> elements
+     */
+    public boolean[] booleans(int count) {
+        ensureDepth();
+        boolean[] array = booleanArrays[depth];
+        if (array == null || array.length < count) {
+            array = new boolean[count];
+            booleanArrays[depth] = array;
+        }
+        depth++;
+        return array;
+    }
+
+    private void ensureDepth() {
+        if (depth == doubleArrays.length) {
+            doubleArrays = Arrays.copyOf(doubleArrays, 2 * depth);
+            booleanArrays = Arrays.copyOf(booleanArrays, 2 * depth);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.esa.snap.core.jexp;
 
+import java.util.Arrays;
 
 /**
  * Represents a read-only symbol. A symbol can be a named constant or variable.
@@ -66,6 +67,62 @@ public interface Symbol {
      */
     double evalD(EvalEnv env) throws EvalException;
 
+    /**
+     * Evaluates this symbol to <code>boolean</code> values for <code>count</code> consecutive data elements,
+     * starting at the current element index of the given {@link IndexedEvalEnv}.
+     * The default implementation calls {@link #evalB(EvalEnv)} for each element.
+     * @param env the application dependant environment.
+     * @param out the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count the number of values
+     * @throws EvalException if the evaluation fails
+     * @see Term#evalB(EvalEnv, boolean[], int, int)
+     */
+    default void evalB(EvalEnv env, boolean[] out, int offset, int count) throws EvalException {
+        if (env instanceof IndexedEvalEnv) {
+            final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+            final int elemIndex = indexedEnv.getElemIndex();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    out[offset + i] = evalB(env);
+                }
+            } finally {
+                indexedEnv.setElemIndex(elemIndex);
+            }
+        } else {
+            Arrays.fill(out, offset, offset + count, evalB(env));
+        }
+    }
+
+    /**
+     * Evaluates this symbol to <code>double</code> values for <code>count</code> consecutive data elements,
+     * starting at the current element index of the given {@link IndexedEvalEnv}.
+     * The default implementation calls {@link #evalD(EvalEnv)} for each element.
+     * @param env the application dependant environment.
+     * @param out the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count the number of values
+     * @throws EvalException if the evaluation fails
+     * @see Term#evalD(EvalEnv, double[], int, int)
+     */
+    default void evalD(EvalEnv env, double[] out, int offset, int count) throws EvalException {
+        if (env instanceof IndexedEvalEnv) {
+            final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+            final int elemIndex = indexedEnv.getElemIndex();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    out[offset + i] = evalD(env);
+                }
+            } finally {
+                indexedEnv.setElemIndex(elemIndex);
+            }
+        } else {
+            Arrays.fill(out, offset, offset + count, evalD(env));
+        }
+    }
+
     /**
      * Evaluates this symbol to a <code>String</code> value.
      * @param env the application dependant environment.
@@ -16,6 +16,9 @@
 
 package org.esa.snap.core.jexp;
 
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * The abstract <code>Term</code> class is an in-memory representation of an
@@ -104,6 +107,66 @@ public abstract class Term {
      */
     public abstract double evalD(EvalEnv env);
 
+    /**
+     * Evaluates this term to <code>boolean</code> values for <code>count</code> consecutive data elements.
+     * The first element is given by the current element index of the environment, which must be an
+     * {@link IndexedEvalEnv} for terms which are not constant. The element index is unchanged on return.
+     * <p>The default implementation calls {@link #evalB(EvalEnv)} for each element. Subclasses override
+     * this method in order to evaluate all elements within a single loop.
+     *
+     * @param env    the application dependant environment.
+     * @param out    the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count  the number of values
+     * @throws EvalException if the evaluation fails
+     */
+    public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+        if (env instanceof IndexedEvalEnv) {
+            final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+            final int elemIndex = indexedEnv.getElemIndex();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    out[offset + i] = evalB(env);
+                }
+            } finally {
+                indexedEnv.setElemIndex(elemIndex);
+            }
+        } else {
+            Arrays.fill(out, offset, offset + count, evalB(env));
+        }
+    }
+
+    /**
+     * Evaluates this term to <code>double</code> values for <code>count</code> consecutive data elements.
+     * The first element is given by the current element index of the environment, which must be an
+     * {@link IndexedEvalEnv} for terms which are not constant. The element index is unchanged on return.
+     * <p>The default implementation calls {@link #evalD(EvalEnv)} for each element. Subclasses override
+     * this method in order to evaluate all elements within a single loop.
+     *
+     * @param env    the application dependant environment.
+     * @param out    the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count  the number of values
+     * @throws EvalException if the evaluation fails
+     */
+    public void evalD(EvalEnv env, double[] out, int offset, int count) {
+        if (env instanceof IndexedEvalEnv) {
+            final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+            final int elemIndex = indexedEnv.getElemIndex();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    out[offset + i] = evalD(env);
+                }
+            } finally {
+                indexedEnv.setElemIndex(elemIndex);
+            }
+        } else {
+            Arrays.fill(out, offset, offset + count, evalD(env));
+        }
+    }
+
     /**
      * Visitor support.
      *
@@ -297,6 +360,148 @@ public abstract class Term {
         return t1.isD() || t2.isD() ? TYPE_D : TYPE_I;
     }
 
+    /**
+     * Implements an array version of <code>evalB</code> by means of an array version of <code>evalD</code>.
+     *
+     * @param evalD  evaluates the first <code>count</code> elements of a given array
+     * @param out    the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count  the number of values
+     */
+    public static void evalBFromD(Consumer<double[]> evalD, boolean[] out, int offset, int count) {
+        withDoubles(count, evalD, values -> {
+            for (int i = 0; i < count; i++) {
+                out[offset + i] = toB(values[i]);
+            }
+        });
+    }
+
+    /**
+     * Implements an array version of <code>evalD</code> by means of an array version of <code>evalB</code>.
+     *
+     * @param evalB  evaluates the first <code>count</code> elements of a given array
+     * @param out    the array which receives the values
+     * @param offset the index of the first value in <code>out</code>
+     * @param count  the number of values
+     */
+    public static void evalDFromB(Consumer<boolean[]> evalB, double[] out, int offset, int count) {
+        withBooleans(count, evalB, values -> {
+            for (int i = 0; i < count; i++) {
+                out[offset + i] = toD(values[i]);
+            }
+        });
+    }
+
+    /**
+     * Evaluates the given argument to <code>count</code> <code>double</code> values and passes them to
+     * <code>action</code>. The array passed is a scratch array which may be longer than <code>count</code>.
+     */
+    public static void evalArgD(EvalEnv env, Term arg, int count, Consumer<double[]> action) {
+        withDoubles(count, values -> arg.evalD(env, values, 0, count), action);
+    }
+
+    /**
+     * Evaluates the given argument to <code>count</code> <code>boolean</code> values and passes them to
+     * <code>action</code>. The array passed is a scratch array which may be longer than <code>count</code>.
+     */
+    public static void evalArgB(EvalEnv env, Term arg, int count, Consumer<boolean[]> action) {
+        withBooleans(count, values -> arg.evalB(env, values, 0, count), action);
+    }
+
+    /**
+     * Evaluates the given arguments to <code>count</code> <code>double</code> values each and passes them to
+     * <code>action</code>. The arrays passed are scratch arrays which may be longer than <code>count</code>.
+     */
+    public static void evalArgsD(EvalEnv env, Term arg1, Term arg2, int count, BiConsumer<double[], double[]> action) {
+        final ScratchBuffers buffers = ScratchBuffers.get();
+        final int mark = buffers.mark();
+        try {
+            final double[] values1 = buffers.doubles(count);
+            final double[] values2 = buffers.doubles(count);
+            arg1.evalD(env, values1, 0, count);
+            arg2.evalD(env, values2, 0, count);
+            action.accept(values1, values2);
+        } finally {
+            buffers.reset(mark);
+        }
+    }
+
+    private static void withDoubles(int count, Consumer<double[]> evalD, Consumer<double[]> action) {
+        final ScratchBuffers buffers = ScratchBuffers.get();
+        final int mark = buffers.mark();
+        try {
+            final double[] values = buffers.doubles(count);
+            evalD.accept(values);
+            action.accept(values);
+        } finally {
+            buffers.reset(mark);
+        }
+    }
+
+    private static void withBooleans(int count, Consumer<boolean[]> evalB, Consumer<boolean[]> action) {
+        final ScratchBuffers buffers = ScratchBuffers.get();
+        final int mark = buffers.mark();
+        try {
+            final boolean[] values = buffers.booleans(count);
+            evalB.accept(values);
+            action.accept(values);
+        } finally {
+            buffers.reset(mark);
+        }
+    }
+
+    /**
+     * Evaluates the terms <code>t</code> and <code>f</code> for the runs of consecutive elements
+     * for which the given condition values are <code>true</code> and <code>false</code> respectively.
+     * Either term may be <code>null</code>, in which case the corresponding runs are skipped.
+     */
+    private static void evalRunsB(EvalEnv env, boolean[] cond, Term t, Term f, boolean[] out, int offset, int count) {
+        final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+        final int elemIndex = indexedEnv.getElemIndex();
+        try {
+            int i = 0;
+            while (i < count) {
+                final boolean c = cond[i];
+                int j = i + 1;
+                while (j < count && cond[j] == c) {
+                    j++;
+                }
+                final Term term = c ? t : f;
+                if (term != null) {
+                    indexedEnv.setElemIndex(elemIndex + i);
+                    term.evalB(env, out, offset + i, j - i);
+                }
+                i = j;
+            }
+        } finally {
+            indexedEnv.setElemIndex(elemIndex);
+        }
+    }
+
+    /**
+     * Evaluates the terms <code>t</code> and <code>f</code> for the runs of consecutive elements
+     * for which the given condition values are <code>true</code> and <code>false</code> respectively.
+     */
+    private static void evalRunsD(EvalEnv env, boolean[] cond, Term t, Term f, double[] out, int offset, int count) {
+        final IndexedEvalEnv indexedEnv = (IndexedEvalEnv) env;
+        final int elemIndex = indexedEnv.getElemIndex();
+        try {
+            int i = 0;
+            while (i < count) {
+                final boolean c = cond[i];
+                int j = i + 1;
+                while (j < count && cond[j] == c) {
+                    j++;
+                }
+                indexedEnv.setElemIndex(elemIndex + i);
+                (c ? t : f).evalD(env, out, offset + i, j - i);
+                i = j;
+            }
+        } finally {
+            indexedEnv.setElemIndex(elemIndex);
+        }
+    }
+
     /////////////////////////////////////////////////////////////////////////
 
     /**
@@ -323,6 +528,16 @@ public abstract class Term {
             return toD();
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            Arrays.fill(out, offset, offset + count, toB());
+        }
+
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            Arrays.fill(out, offset, offset + count, toD());
+        }
+
         protected abstract double toD();
 
         @Override
@@ -672,6 +887,16 @@ public abstract class Term {
             return symbol.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            symbol.evalB(env, out, offset, count);
+        }
+
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            symbol.evalD(env, out, offset, count);
+        }
+
         @Override
         public String evalS(EvalEnv env) {
             return symbol.evalS(env);
@@ -764,6 +989,16 @@ public abstract class Term {
             return function.evalD(env, args);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            function.evalB(env, args, out, offset, count);
+        }
+
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            function.evalD(env, args, out, offset, count);
+        }
+
         @Override
         public Term[] getChildren() {
             return getArgs();
@@ -955,6 +1190,11 @@ public abstract class Term {
         public double evalD(final EvalEnv env) {
             return evalB(env) ? 1.0 : 0.0;
         }
+
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalDFromB(values -> evalB(env, values, 0, count), out, offset, count);
+        }
     }
 
     /////////////////////////////////////////////////////////////////////////
@@ -1034,6 +1274,11 @@ public abstract class Term {
             //throw new EvalException("illegal operation");
             return evalB(env) ? 1.0 : 0.0;
         }
+
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalDFromB(values -> evalB(env, values, 0, count), out, offset, count);
+        }
     }
 
     /////////////////////////////////////////////////////////////////////////
@@ -1075,6 +1320,15 @@ public abstract class Term {
         public boolean evalB(final EvalEnv env) {
             return type == TYPE_I ? toB(evalI(env)) : toB(evalD(env));
         }
+
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            if (type == TYPE_I) {
+                super.evalB(env, out, offset, count);
+            } else {
+                evalBFromD(values -> evalD(env, values, 0, count), out, offset, count);
+            }
+        }
     }
 
     /////////////////////////////////////////////////////////////////////////
@@ -1113,6 +1367,24 @@ public abstract class Term {
             return arg1.evalB(env) ? arg2.evalD(env) : arg3.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            if (!(env instanceof IndexedEvalEnv)) {
+                super.evalB(env, out, offset, count);
+                return;
+            }
+            evalArgB(env, arg1, count, cond -> evalRunsB(env, cond, arg2, arg3, out, offset, count));
+        }
+
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            if (!(env instanceof IndexedEvalEnv)) {
+                super.evalD(env, out, offset, count);
+                return;
+            }
+            evalArgB(env, arg1, count, cond -> evalRunsD(env, cond, arg2, arg3, out, offset, count));
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1183,6 +1455,14 @@ public abstract class Term {
             return !arg.evalB(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            arg.evalB(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = !out[i];
+            }
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1209,6 +1489,18 @@ public abstract class Term {
             return arg1.evalB(env) && arg2.evalB(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            if (!(env instanceof IndexedEvalEnv)) {
+                super.evalB(env, out, offset, count);
+                return;
+            }
+            evalArgB(env, arg1, count, cond -> {
+                System.arraycopy(cond, 0, out, offset, count);
+                evalRunsB(env, cond, arg2, null, out, offset, count);
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1239,6 +1531,18 @@ public abstract class Term {
             return arg1.evalB(env) || arg2.evalB(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            if (!(env instanceof IndexedEvalEnv)) {
+                super.evalB(env, out, offset, count);
+                return;
+            }
+            evalArgB(env, arg1, count, cond -> {
+                System.arraycopy(cond, 0, out, offset, count);
+                evalRunsB(env, cond, null, arg2, out, offset, count);
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1393,6 +1697,14 @@ public abstract class Term {
             return -arg.evalD(env);
         }
 
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            arg.evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = -out[i];
+            }
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1429,6 +1741,15 @@ public abstract class Term {
             return arg1.evalD(env) + arg2.evalD(env);
         }
 
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] + values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1468,6 +1789,15 @@ public abstract class Term {
             return arg1.evalD(env) - arg2.evalD(env);
         }
 
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] - values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1507,6 +1837,15 @@ public abstract class Term {
             return arg1.evalD(env) * arg2.evalD(env);
         }
 
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] * values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1546,6 +1885,15 @@ public abstract class Term {
             return arg1.evalD(env) / arg2.evalD(env);
         }
 
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] / values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1585,6 +1933,15 @@ public abstract class Term {
             return arg1.evalD(env) % arg2.evalD(env);
         }
 
+        @Override
+        public void evalD(EvalEnv env, double[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] % values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1675,6 +2032,15 @@ public abstract class Term {
             return arg1.evalD(env) == arg2.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] == values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1765,6 +2131,15 @@ public abstract class Term {
             return arg1.evalD(env) != arg2.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] != values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1825,6 +2200,15 @@ public abstract class Term {
             return arg1.evalD(env) < arg2.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] < values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1885,6 +2269,15 @@ public abstract class Term {
             return arg1.evalD(env) <= arg2.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] <= values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -1945,6 +2338,15 @@ public abstract class Term {
             return arg1.evalD(env) > arg2.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] > values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -2005,6 +2407,15 @@ public abstract class Term {
             return arg1.evalD(env) >= arg2.evalD(env);
         }
 
+        @Override
+        public void evalB(EvalEnv env, boolean[] out, int offset, int count) {
+            evalArgsD(env, arg1, arg2, count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = values1[i] >= values2[i];
+                }
+            });
+        }
+
         @Override
         public <T> T accept(TermVisitor<T> visitor) {
             return visitor.visit(this);
@@ -93,6 +93,11 @@ public abstract class AbstractFunction implements Function {
         public double evalD(final EvalEnv env, final Term[] args) throws EvalException {
             return Term.toD(evalB(env, args));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            Term.evalDFromB(values -> evalB(env, args, values, 0, count), out, offset, count);
+        }
     }
 
     public static abstract class I extends AbstractFunction {
@@ -132,5 +137,10 @@ public abstract class AbstractFunction implements Function {
             return Term.toI(evalD(env, args));
         }
 
+        @Override
+        public void evalB(EvalEnv env, Term[] args, boolean[] out, int offset, int count) throws EvalException {
+            Term.evalBFromD(values -> evalD(env, args, values, 0, count), out, offset, count);
+        }
+
     }
 }
@@ -31,6 +31,15 @@ public class Functions {
             final double x2 = args[1].evalD(env);
             return ExtMath.fneq(x1, x2, 1e-6);
         }
+
+        @Override
+        public void evalB(EvalEnv env, Term[] args, boolean[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = ExtMath.fneq(values1[i], values2[i], 1e-6);
+                }
+            });
+        }
     };
 
     public static final Function FEQ = new AbstractFunction.B("feq", 2) {
@@ -39,6 +48,15 @@ public class Functions {
             final double x2 = args[1].evalD(env);
             return ExtMath.feq(x1, x2, 1e-6);
         }
+
+        @Override
+        public void evalB(EvalEnv env, Term[] args, boolean[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = ExtMath.feq(values1[i], values2[i], 1e-6);
+                }
+            });
+        }
     };
 
     public static final Function SIN = new AbstractFunction.D("sin", 1) {
@@ -46,6 +64,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return FastMath.sin(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = FastMath.sin(out[i]);
+            }
+        }
     };
 
     public static final Function COS = new AbstractFunction.D("cos", 1) {
@@ -53,6 +79,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return FastMath.cos(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = FastMath.cos(out[i]);
+            }
+        }
     };
 
     public static final Function TAN = new AbstractFunction.D("tan", 1) {
@@ -60,6 +94,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return FastMath.tan(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = FastMath.tan(out[i]);
+            }
+        }
     };
 
     public static final Function ASIN = new AbstractFunction.D("asin", 1) {
@@ -88,6 +130,15 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.atan2(args[0].evalD(env), args[1].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = Math.atan2(values1[i], values2[i]);
+                }
+            });
+        }
     };
 
     public static final Function LOG = new AbstractFunction.D("log", 1) {
@@ -95,12 +146,28 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.log(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.log(out[i]);
+            }
+        }
     };
 
     public static final Function LOG10 = new AbstractFunction.D("log10", 1) {
         public double evalD(EvalEnv env, Term[] args) throws EvalException {
             return Math.log10(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.log10(out[i]);
+            }
+        }
     };
 
     public static final Function EXP = new AbstractFunction.D("exp", 1) {
@@ -108,6 +175,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return FastMath.exp(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = FastMath.exp(out[i]);
+            }
+        }
     };
 
     public static final Function EXP10 = new AbstractFunction.D("exp10", 1) {
@@ -123,6 +198,14 @@ public class Functions {
             double v = args[0].evalD(env);
             return v * v;
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = out[i] * out[i];
+            }
+        }
     };
 
     public static final Function SQRT = new AbstractFunction.D("sqrt", 1) {
@@ -130,6 +213,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.sqrt(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.sqrt(out[i]);
+            }
+        }
     };
 
     public static final Function POW = new AbstractFunction.D("pow", 2) {
@@ -137,6 +228,15 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return FastMath.pow(args[0].evalD(env), args[1].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = FastMath.pow(values1[i], values2[i]);
+                }
+            });
+        }
     };
 
     public static final Function MIN_I = new AbstractFunction.I("min", 2) {
@@ -151,6 +251,15 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.min(args[0].evalD(env), args[1].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = Math.min(values1[i], values2[i]);
+                }
+            });
+        }
     };
 
     public static final Function MAX_I = new AbstractFunction.I("max", 2) {
@@ -165,12 +274,29 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.max(args[0].evalD(env), args[1].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = Math.max(values1[i], values2[i]);
+                }
+            });
+        }
     };
 
     public static final Function FLOOR = new AbstractFunction.D("floor", 1) {
         public double evalD(EvalEnv env, Term[] args) throws EvalException {
             return Math.floor(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.floor(out[i]);
+            }
+        }
     };
 
     public static final Function ROUND = new AbstractFunction.D("round", 1) {
@@ -183,6 +309,14 @@ public class Functions {
         public double evalD(EvalEnv env, Term[] args) throws EvalException {
             return Math.ceil(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.ceil(out[i]);
+            }
+        }
     };
 
     public static final Function RÌNT = new AbstractFunction.D("rint", 1) {
@@ -217,6 +351,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.abs(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.abs(out[i]);
+            }
+        }
     };
 
     public static final Function DEG = new AbstractFunction.D("deg", 1) {
@@ -224,6 +366,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.toDegrees(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.toDegrees(out[i]);
+            }
+        }
     };
 
     public static final Function RAD = new AbstractFunction.D("rad", 1) {
@@ -231,6 +381,14 @@ public class Functions {
         public double evalD(final EvalEnv env, final Term[] args) {
             return Math.toRadians(args[0].evalD(env));
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            args[0].evalD(env, out, offset, count);
+            for (int i = offset; i < offset + count; i++) {
+                out[i] = Math.toRadians(out[i]);
+            }
+        }
     };
 
     public static final Function AMPL = new AbstractFunction.D("ampl", 2) {
@@ -240,6 +398,15 @@ public class Functions {
             final double b = args[1].evalD(env);
             return Math.sqrt(a * a + b * b);
         }
+
+        @Override
+        public void evalD(EvalEnv env, Term[] args, double[] out, int offset, int count) throws EvalException {
+            Term.evalArgsD(env, args[0], args[1], count, (values1, values2) -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = Math.sqrt(values1[i] * values1[i] + values2[i] * values2[i]);
+                }
+            });
+        }
     };
 
     public static final Function PHASE = new AbstractFunction.D("phase", 2) {
@@ -264,12 +431,30 @@ public class Functions {
         public boolean evalB(EvalEnv env, Term[] args) throws EvalException {
             return Double.isInfinite(args[0].evalD(env));
         }
+
+        @Override
+        public void evalB(EvalEnv env, Term[] args, boolean[] out, int offset, int count) throws EvalException {
+            Term.evalArgD(env, args[0], count, values -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = Double.isInfinite(values[i]);
+                }
+            });
+        }
     };
 
     public static final Function NAN = new AbstractFunction.B("nan", 1) {
         public boolean evalB(EvalEnv env, Term[] args) throws EvalException {
             return Double.isNaN(args[0].evalD(env));
         }
+
+        @Override
+        public void evalB(EvalEnv env, Term[] args, boolean[] out, int offset, int count) throws EvalException {
+            Term.evalArgD(env, args[0], count, values -> {
+                for (int i = 0; i < count; i++) {
+                    out[offset + i] = Double.isNaN(values[i]);
+                }
+            });
+        }
     };
 
     public static final Function DISTANCE = new AbstractFunction.D("distance", -1) {
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrentBandWriterTest {
+
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 8;
+
+    private Product product;
+    private RecordingProductWriter productWriter;
+
+    @Before
+    public void setUp() throws Exception {
+        product = new Product("test", "test", WIDTH, HEIGHT);
+        product.setPreferredTileSize(4, 4);
+        final Band band = product.addBand("a", ProductData.TYPE_FLOAT32);
+        final float[] data = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        band.setRasterData(ProductData.createInstance(data));
+        product.addBand(new VirtualBand("b", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT, "a * 2"));
+        productWriter = new RecordingProductWriter(mock(ProductWriterPlugIn.class));
+        product.setProductWriter(productWriter);
+    }
+
+    @Test
+    public void testWriteInBandOrder() throws Exception {
+        final ConcurrentBandWriter bandWriter = new ConcurrentBandWriter(productWriter, false, 3, 3);
+        bandWriter.writeBands(Arrays.asList(product.getBands()), ProgressMonitor.NULL);
+
+        assertEquals(getExpectedWrites(), productWriter.writes);
+    }
+
+    @Test
+    public void testWriteConcurrently() throws Exception {
+        final ConcurrentBandWriter bandWriter = new ConcurrentBandWriter(productWriter, true, 3, 3);
+        bandWriter.writeBands(Arrays.asList(product.getBands()), ProgressMonitor.NULL);
+
+        final List<String> expectedWrites = getExpectedWrites();
+        final List<String> actualWrites = new ArrayList<>(productWriter.writes);
+        Collections.sort(expectedWrites);
+        Collections.sort(actualWrites);
+        assertEquals(expectedWrites, actualWrites);
+    }
+
+    private static List<String> getExpectedWrites() {
+        final List<String> writes = new ArrayList<>();
+        writes.add(toString("a", new Rectangle(0, 0, WIDTH, HEIGHT)));
+        for (int y = 0; y < HEIGHT; y += 4) {
+            for (int x = 0; x < WIDTH; x += 4) {
+                writes.add(toString("b", new Rectangle(x, y, Math.min(4, WIDTH - x), 4)));
+            }
+        }
+        return writes;
+    }
+
+    private static String toString(String bandName, Rectangle rect) {
+        return bandName + "[" + rect.x + "," + rect.y + "," + rect.width + "," + rect.height + "]";
+    }
+
+    private static class RecordingProductWriter extends AbstractProductWriter {
+
+        private final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+
+        private RecordingProductWriter(ProductWriterPlugIn writerPlugIn) {
+            super(writerPlugIn);
+        }
+
+        @Override
+        protected void writeProductNodesImpl() throws IOException {
+        }
+
+        @Override
+        public void writeBandRasterData(Band sourceBand, int sourceOffsetX, int sourceOffsetY,
+                                        int sourceWidth, int sourceHeight, ProductData sourceBuffer,
+                                        ProgressMonitor pm) throws IOException {
+            final float factor = sourceBand.getName().equals("b") ? 2.0f : 1.0f;
+            for (int y = 0; y < sourceHeight; y++) {
+                for (int x = 0; x < sourceWidth; x++) {
+                    final float expected = factor * ((sourceOffsetY + y) * WIDTH + sourceOffsetX + x);
+                    assertEquals(expected, sourceBuffer.getElemFloatAt(y * sourceWidth + x), 0.0f);
+                }
+            }
+            writes.add(ConcurrentBandWriterTest.toString(sourceBand.getName(),
+                                                         new Rectangle(sourceOffsetX, sourceOffsetY,
+                                                                       sourceWidth, sourceHeight)));
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public void deleteOutput() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class ReaderPlugInCacheTest {
+
+    private File cacheFile;
+    private File productFile;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("reader-plugins", ".properties");
+        cacheFile.delete();
+        productFile = File.createTempFile("product", ".dim");
+        writeBytes(productFile, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cacheFile.delete();
+        productFile.delete();
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFile, 10);
+        assertNull(cache.get(productFile));
+        cache.put(productFile, "org.esa.snap.XReaderPlugIn");
+        assertEquals("org.esa.snap.XReaderPlugIn", cache.get(productFile));
+        cache.remove(productFile);
+        assertNull(cache.get(productFile));
+    }
+
+    @Test
+    public void testModifiedFileIsNotFound() throws Exception {
+        final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFile, 10);
+        cache.put(productFile, "org.esa.snap.XReaderPlugIn");
+        writeBytes(productFile, 20);
+        assertNull(cache.get(productFile));
+    }
+
+    @Test
+    public void testDirectoryIsNotCached() throws Exception {
+        final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFile, 10);
+        final File productDir = productFile.getParentFile();
+        cache.put(productDir, "org.esa.snap.XReaderPlugIn");
+        assertNull(cache.get(productDir));
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFile, 10);
+        cache.put(productFile, "org.esa.snap.XReaderPlugIn");
+        cache.save();
+        assertTrue(cacheFile.isFile());
+
+        final ReaderPlugInCache reloadedCache = new ReaderPlugInCache(cacheFile, 10);
+        assertEquals("org.esa.snap.XReaderPlugIn", reloadedCache.get(productFile));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsRemoved() throws Exception {
+        final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFile, 2);
+        final File file1 = new File(productFile.getParentFile(), "p1.dim");
+        final File file2 = new File(productFile.getParentFile(), "p2.dim");
+        cache.put(file1, "A");
+        cache.put(file2, "B");
+        cache.get(file1);
+        cache.put(productFile, "C");
+        assertEquals("A", cache.get(file1));
+        assertNull(cache.get(file2));
+        assertEquals("C", cache.get(productFile));
+    }
+
+    @Test
+    public void testAccessOrderIsPersisted() throws Exception {
+        final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFile, 2);
+        final File file1 = new File(productFile.getParentFile(), "p1.dim");
+        final File file2 = new File(productFile.getParentFile(), "p2.dim");
+        cache.put(file1, "A");
+        cache.put(file2, "B");
+        cache.get(file1);
+        cache.save();
+
+        final ReaderPlugInCache reloadedCache = new ReaderPlugInCache(cacheFile, 2);
+        reloadedCache.put(productFile, "C");
+        assertEquals("A", reloadedCache.get(file1));
+        assertNull(reloadedCache.get(file2));
+        assertEquals("C", reloadedCache.get(productFile));
+    }
+
+    @Test
+    public void testSaveReplacesCacheFile() throws Exception {
+        final File cacheDir = new File(productFile.getParentFile(), "reader-plugins-" + System.nanoTime());
+        final File cacheFileInDir = new File(cacheDir, "reader-plugins.properties");
+        try {
+            final ReaderPlugInCache cache = new ReaderPlugInCache(cacheFileInDir, 10);
+            cache.put(productFile, "org.esa.snap.XReaderPlugIn");
+            cache.save();
+            cache.put(productFile, "org.esa.snap.YReaderPlugIn");
+            cache.save();
+            final File[] files = cacheDir.listFiles();
+            assertNotNull(files);
+            assertEquals(1, files.length);
+            assertEquals(cacheFileInDir, files[0]);
+            assertEquals("org.esa.snap.YReaderPlugIn", new ReaderPlugInCache(cacheFileInDir, 10).get(productFile));
+        } finally {
+            cacheFileInDir.delete();
+            cacheDir.delete();
+        }
+    }
+
+    private static void writeBytes(File file, int count) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(new byte[count]);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio.dimap;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class AsyncBandWriterTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private File file;
+    private Band band;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("band", ".img");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(WIDTH * HEIGHT * 4L);
+        }
+        band = new Band("b", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testTilesAreCoalescedIntoStripes() throws Exception {
+        final AsyncBandWriter writer = new AsyncBandWriter(b -> file, 64 * 1024 * 1024);
+        final List<int[]> tiles = new ArrayList<>();
+        for (int y = 0; y < HEIGHT; y += 50) {
+            for (int x = 0; x < WIDTH; x += 100) {
+                tiles.add(new int[]{x, y});
+            }
+        }
+        Collections.shuffle(tiles);
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (final int[] tile : tiles) {
+                results.add(executorService.submit(() -> {
+                    writer.write(band, tile[0], tile[1], 100, 50, createTileData(tile[0], tile[1], 100, 50));
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        writer.close();
+
+        assertFileContent();
+        final BandWriteMetrics metrics = writer.getMetrics().get(band);
+        assertEquals(12, metrics.getTileCount());
+        assertEquals(4, metrics.getStripeCount());
+        assertEquals(WIDTH * HEIGHT * 4L, metrics.getByteCount());
+    }
+
+    @Test
+    public void testIncompleteStripesAreWrittenOnFlush() throws Exception {
+        final AsyncBandWriter writer = new AsyncBandWriter(b -> file, 64 * 1024 * 1024);
+        try {
+            writer.write(band, 100, 10, 20, 5, createTileData(100, 10, 20, 5));
+            writer.flush();
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+                randomAccessFile.seek((14L * WIDTH + 119) * 4);
+                assertEquals(14 * WIDTH + 119, randomAccessFile.readFloat(), 0.0f);
+                randomAccessFile.seek((14L * WIDTH + 120) * 4);
+                assertEquals(0.0f, randomAccessFile.readFloat(), 0.0f);
+            }
+            final BandWriteMetrics metrics = writer.getMetrics().get(band);
+            assertEquals(1, metrics.getTileCount());
+            assertEquals(0, metrics.getStripeCount());
+            assertEquals(20 * 5 * 4L, metrics.getByteCount());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testMemoryLimitIsRespected() throws Exception {
+        // the limit only allows a single queued tile, so incomplete stripes must be written early
+        final AsyncBandWriter writer = new AsyncBandWriter(b -> file, 100 * 50 * 4);
+        for (int y = HEIGHT - 50; y >= 0; y -= 50) {
+            for (int x = WIDTH - 100; x >= 0; x -= 100) {
+                writer.write(band, x, y, 100, 50, createTileData(x, y, 100, 50));
+            }
+        }
+        writer.close();
+
+        assertFileContent();
+    }
+
+    @Test
+    public void testPendingTilesAreWrittenBeforeOverlappingTiles() throws Exception {
+        final AsyncBandWriter writer = new AsyncBandWriter(b -> file, 64 * 1024 * 1024);
+        // pending tiles, overwritten by a full-width stripe and a tile of another stripe
+        writer.write(band, 0, 0, 100, 50, createConstantData(100, 50, -1.0f));
+        writer.write(band, 100, 20, 100, 50, createConstantData(100, 50, -2.0f));
+        writer.write(band, 0, 0, WIDTH, 50, createTileData(0, 0, WIDTH, 50));
+        writer.write(band, 100, 50, 100, 20, createTileData(100, 50, 100, 20));
+        for (int y = 50; y < HEIGHT; y += 50) {
+            writer.write(band, 0, y, WIDTH, 50, createTileData(0, y, WIDTH, 50));
+        }
+        writer.close();
+
+        assertFileContent();
+    }
+
+    @Test(timeout = 10000)
+    public void testRuntimeFailureIsReportedOnFlush() throws Exception {
+        final AsyncBandWriter writer = new AsyncBandWriter(b -> {
+            throw new IllegalStateException("no image file");
+        }, 64 * 1024 * 1024);
+        writer.write(band, 0, 0, 100, 50, createTileData(0, 0, 100, 50));
+        try {
+            writer.flush();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            writer.close();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testEncodeShorts() throws Exception {
+        final ByteBuffer bytes = AsyncBandWriter.encode(new short[]{1, -2, 3, 4}, 3, 2);
+        assertEquals(6, bytes.capacity());
+        assertEquals(1, bytes.getShort());
+        assertEquals(-2, bytes.getShort());
+        assertEquals(3, bytes.getShort());
+    }
+
+    private static ProductData createTileData(int x0, int y0, int width, int height) {
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data.setElemFloatAt(y * width + x, (y0 + y) * WIDTH + x0 + x);
+            }
+        }
+        return data;
+    }
+
+    private static ProductData createConstantData(int width, int height, float value) {
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, width * height);
+        for (int i = 0; i < width * height; i++) {
+            data.setElemFloatAt(i, value);
+        }
+        return data;
+    }
+
+    private void assertFileContent() throws Exception {
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(file))) {
+            for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                assertEquals(i, inputStream.readFloat(), 0.0f);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataio.dimap;
+
+import org.esa.snap.core.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class BandFileChannelTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private File file;
+    private BandFileChannel bandChannel;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("band", ".img");
+        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                outputStream.writeFloat(i);
+            }
+        }
+        bandChannel = new BandFileChannel(file, WIDTH, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bandChannel.close();
+        file.delete();
+    }
+
+    @Test
+    public void testReadFullWidth() throws Exception {
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, WIDTH * 10);
+        bandChannel.read(0, 5, WIDTH - 1, 14, 1, 1, data);
+        for (int i = 0; i < WIDTH * 10; i++) {
+            assertEquals(5 * WIDTH + i, data.getElemFloatAt(i), 0.0f);
+        }
+    }
+
+    @Test
+    public void testReadRegion() throws Exception {
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, 4 * 3);
+        bandChannel.read(10, 20, 13, 22, 1, 1, data);
+        assertEquals(20 * WIDTH + 10, data.getElemFloatAt(0), 0.0f);
+        assertEquals(20 * WIDTH + 13, data.getElemFloatAt(3), 0.0f);
+        assertEquals(22 * WIDTH + 13, data.getElemFloatAt(11), 0.0f);
+    }
+
+    @Test
+    public void testReadSubsampled() throws Exception {
+        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, 3 * 2);
+        bandChannel.read(10, 20, 14, 23, 2, 3, data);
+        assertEquals(20 * WIDTH + 10, data.getElemFloatAt(0), 0.0f);
+        assertEquals(20 * WIDTH + 12, data.getElemFloatAt(1), 0.0f);
+        assertEquals(20 * WIDTH + 14, data.getElemFloatAt(2), 0.0f);
+        assertEquals(23 * WIDTH + 10, data.getElemFloatAt(3), 0.0f);
+        assertEquals(23 * WIDTH + 14, data.getElemFloatAt(5), 0.0f);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<ProductData>> results = new ArrayList<>();
+            for (int y = 0; y < HEIGHT; y += 10) {
+                final int minY = y;
+                results.add(executorService.submit(new Callable<ProductData>() {
+                    @Override
+                    public ProductData call() throws Exception {
+                        final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, 100 * 10);
+                        bandChannel.read(100, minY, 199, minY + 9, 1, 1, data);
+                        return data;
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                final ProductData data = results.get(i).get();
+                assertEquals(i * 10 * WIDTH + 100, data.getElemFloatAt(0), 0.0f);
+                assertEquals((i * 10 + 9) * WIDTH + 199, data.getElemFloatAt(999), 0.0f);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testCopySubsampledShorts() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putShort((short) 1).putShort((short) -2).putShort((short) 3).putShort((short) 4);
+        buffer.flip();
+        final short[] shorts = new short[3];
+        BandFileChannel.copyElems(buffer, shorts, 1, 2, 2);
+        assertArrayEquals(new short[]{0, 1, 3}, shorts);
+    }
+}
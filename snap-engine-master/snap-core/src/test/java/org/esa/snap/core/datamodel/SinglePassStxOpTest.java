@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.datamodel;
+
+import org.junit.Test;
+
+import javax.media.jai.Histogram;
+import javax.media.jai.UnpackedImageData;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SinglePassStxOpTest {
+
+    private static final int BIN_COUNT = 100;
+
+    @Test
+    public void testIntHistogramEqualsTwoPassHistogram() throws Exception {
+        final Random random = new Random(5);
+        final int[][] tiles = new int[4][];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new int[1000];
+            for (int j = 0; j < tiles[i].length; j++) {
+                // tiles have increasing ranges, so that the fine bins must be adapted
+                tiles[i][j] = random.nextInt(500 * (i + 1)) - 100 * i;
+            }
+        }
+
+        final SinglePassStxOp singlePassOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), true, false);
+        final SummaryStxOp summaryOp = new SummaryStxOp();
+        for (int[] tile : tiles) {
+            singlePassOp.accumulateData(getPixels(tile), null);
+            summaryOp.accumulateData(getPixels(tile), null);
+        }
+        final HistogramStxOp histogramOp = new HistogramStxOp(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum(), true, false);
+        for (int[] tile : tiles) {
+            histogramOp.accumulateData(getPixels(tile), null);
+        }
+
+        assertSummaryEquals(summaryOp, singlePassOp.getSummaryOp());
+        final Histogram histogram = singlePassOp.createHistogram(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum());
+        assertEquals(histogramOp.getHistogram().getLowValue(0), histogram.getLowValue(0), 0.0);
+        assertEquals(histogramOp.getHistogram().getHighValue(0), histogram.getHighValue(0), 0.0);
+        assertArrayEquals(histogramOp.getHistogram().getBins(0), histogram.getBins(0));
+    }
+
+    @Test
+    public void testFloatHistogramIsWithinErrorBound() throws Exception {
+        final Random random = new Random(7);
+        final float[][] tiles = new float[8][];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new float[2000];
+            for (int j = 0; j < tiles[i].length; j++) {
+                tiles[i][j] = (float) (random.nextGaussian() * (i + 1) + 0.3 * i);
+            }
+        }
+
+        final SinglePassStxOp singlePassOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+        final SummaryStxOp summaryOp = new SummaryStxOp();
+        for (float[] tile : tiles) {
+            singlePassOp.accumulateData(getPixels(tile), null);
+            summaryOp.accumulateData(getPixels(tile), null);
+        }
+        final HistogramStxOp histogramOp = new HistogramStxOp(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum(), false, false);
+        for (float[] tile : tiles) {
+            histogramOp.accumulateData(getPixels(tile), null);
+        }
+
+        assertSummaryEquals(summaryOp, singlePassOp.getSummaryOp());
+        final double[] values = new double[tiles.length * 2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tiles[i / 2000][i % 2000];
+        }
+        assertHistogramWithinErrorBound(histogramOp.getHistogram(), singlePassOp, values);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        final Random random = new Random(11);
+        final double[][] tiles = new double[6][];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new double[500];
+            for (int j = 0; j < tiles[i].length; j++) {
+                tiles[i][j] = i % 2 == 0 ? random.nextDouble() : 1000.0 * random.nextDouble() - 10.0 * i;
+            }
+        }
+
+        final SummaryStxOp summaryOp = new SummaryStxOp();
+        final SinglePassStxOp mergedOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+        for (double[] tile : tiles) {
+            summaryOp.accumulateData(getPixels(tile), null);
+            final SinglePassStxOp tileOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+            tileOp.accumulateData(getPixels(tile), null);
+            mergedOp.merge(tileOp);
+        }
+        mergedOp.merge(new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false));
+
+        assertSummaryEquals(summaryOp, mergedOp.getSummaryOp());
+        final HistogramStxOp histogramOp = new HistogramStxOp(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum(), false, false);
+        final double[] values = new double[tiles.length * 500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tiles[i / 500][i % 500];
+        }
+        histogramOp.accumulateData(getPixels(values), null);
+        assertHistogramWithinErrorBound(histogramOp.getHistogram(), mergedOp, values);
+    }
+
+    @Test
+    public void testNaNAndInfiniteValuesAreIgnored() throws Exception {
+        final SinglePassStxOp op = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+        op.accumulateData(getPixels(new float[]{Float.NaN, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY}), null);
+        assertTrue(Double.isNaN(op.getFineBinWidth()));
+        assertTrue(Double.isNaN(op.getSummaryOp().getMinimum()));
+
+        op.accumulateData(getPixels(new float[]{Float.NaN, 2.0F, Float.POSITIVE_INFINITY, 2.0F}), null);
+        assertEquals(2.0, op.getSummaryOp().getMinimum(), 0.0);
+        assertEquals(2.0, op.getSummaryOp().getMaximum(), 0.0);
+        final Histogram histogram = op.createHistogram(BIN_COUNT, 2.0, 2.0);
+        assertEquals(2, histogram.getBins(0)[0]);
+        assertEquals(2, StxFactory.computeSum(histogram.getBins(0)));
+    }
+
+    @Test
+    public void testFewSamplesAreCountedExactly() throws Exception {
+        final Random random = new Random(13);
+        final SinglePassStxOp mergedOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+        final SummaryStxOp summaryOp = new SummaryStxOp();
+        final double[][] tiles = new double[3][];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new double[200];
+            for (int j = 0; j < tiles[i].length; j++) {
+                tiles[i][j] = random.nextGaussian() * (i + 1);
+            }
+            summaryOp.accumulateData(getPixels(tiles[i]), null);
+            final SinglePassStxOp tileOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+            tileOp.accumulateData(getPixels(tiles[i]), null);
+            mergedOp.merge(tileOp);
+        }
+        // 600 samples need less memory than the fine bins
+        assertTrue(Double.isNaN(mergedOp.getFineBinWidth()));
+
+        final HistogramStxOp histogramOp = new HistogramStxOp(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum(), false, false);
+        for (double[] tile : tiles) {
+            histogramOp.accumulateData(getPixels(tile), null);
+        }
+        final Histogram histogram = mergedOp.createHistogram(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum());
+        assertArrayEquals(histogramOp.getHistogram().getBins(0), histogram.getBins(0));
+    }
+
+    @Test
+    public void testSamplesAreMovedToFineBins() throws Exception {
+        final Random random = new Random(17);
+        final float[][] tiles = new float[5][];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new float[300];
+            for (int j = 0; j < tiles[i].length; j++) {
+                tiles[i][j] = (float) (random.nextGaussian() * (i + 1));
+            }
+        }
+
+        final SinglePassStxOp singlePassOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(BIN_COUNT), false, false);
+        final SummaryStxOp summaryOp = new SummaryStxOp();
+        for (int i = 0; i < tiles.length; i++) {
+            singlePassOp.accumulateData(getPixels(tiles[i]), null);
+            summaryOp.accumulateData(getPixels(tiles[i]), null);
+            assertEquals(300 * (i + 1) > SinglePassStxOp.getFineBinCount(BIN_COUNT) / 2, !Double.isNaN(singlePassOp.getFineBinWidth()));
+        }
+        final HistogramStxOp histogramOp = new HistogramStxOp(BIN_COUNT, summaryOp.getMinimum(), summaryOp.getMaximum(), false, false);
+        for (float[] tile : tiles) {
+            histogramOp.accumulateData(getPixels(tile), null);
+        }
+
+        assertSummaryEquals(summaryOp, singlePassOp.getSummaryOp());
+        final double[] values = new double[tiles.length * 300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tiles[i / 300][i % 300];
+        }
+        assertHistogramWithinErrorBound(histogramOp.getHistogram(), singlePassOp, values);
+    }
+
+    private static void assertHistogramWithinErrorBound(Histogram expected, SinglePassStxOp singlePassOp, double[] values) {
+        final Histogram actual = singlePassOp.createHistogram(BIN_COUNT, expected.getLowValue(0), expected.getHighValue(0));
+        final double binWidth = (expected.getHighValue(0) - expected.getLowValue(0)) / BIN_COUNT;
+        final double fineBinWidth = singlePassOp.getFineBinWidth();
+        assertTrue(fineBinWidth <= binWidth / 8);
+
+        // the cumulative counts may only differ by the number of samples close to the bin boundaries
+        long expectedCount = 0;
+        long actualCount = 0;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            expectedCount += expected.getBins(0)[i];
+            actualCount += actual.getBins(0)[i];
+            final double boundary = expected.getLowValue(0) + (i + 1) * binWidth;
+            int closeCount = 0;
+            for (double value : values) {
+                if (Math.abs(value - boundary) < fineBinWidth) {
+                    closeCount++;
+                }
+            }
+            assertTrue("bin " + i, Math.abs(expectedCount - actualCount) <= closeCount);
+        }
+        assertEquals(values.length, expectedCount);
+        assertEquals(values.length, actualCount);
+    }
+
+    private static void assertSummaryEquals(SummaryStxOp expected, SummaryStxOp actual) {
+        assertEquals(expected.getMinimum(), actual.getMinimum(), 0.0);
+        assertEquals(expected.getMaximum(), actual.getMaximum(), 0.0);
+        assertEquals(expected.getMean(), actual.getMean(), 1.0e-10 * Math.abs(expected.getMean()));
+        assertEquals(expected.getVariance(), actual.getVariance(), 1.0e-10 * expected.getVariance());
+    }
+
+    private static UnpackedImageData getPixels(int[] data) {
+        return new UnpackedImageData(null, new Rectangle(data.length, 1), DataBuffer.TYPE_INT, new int[][]{data},
+                                     1, data.length, new int[]{0}, false);
+    }
+
+    private static UnpackedImageData getPixels(float[] data) {
+        return new UnpackedImageData(null, new Rectangle(data.length, 1), DataBuffer.TYPE_FLOAT, new float[][]{data},
+                                     1, data.length, new int[]{0}, false);
+    }
+
+    private static UnpackedImageData getPixels(double[] data) {
+        return new UnpackedImageData(null, new Rectangle(data.length, 1), DataBuffer.TYPE_DOUBLE, new double[][]{data},
+                                     1, data.length, new int[]{0}, false);
+    }
+}
@@ -4,6 +4,7 @@ import com.bc.ceres.core.ProgressMonitor;
 import org.junit.Test;
 
 import java.awt.Color;
+import java.awt.image.RenderedImage;
 
 import static org.junit.Assert.*;
 
@@ -266,6 +267,60 @@ public class StxFactoryTest {
         assertEquals(114, stx.getHistogram().getPTileThreshold(0.1)[0], 1E-3);
     }
 
+    @Test
+    public void testSinglePassStatistics() throws Exception {
+        final Band band = createTestBand(ProductData.TYPE_FLOAT32, 100, 120);
+        final Stx expected = new StxFactory().create(band, ProgressMonitor.NULL);
+        final Stx actual = new StxFactory().withSinglePass(true).withParallelism(4).create(band, ProgressMonitor.NULL);
+        assertEquals(expected.getMinimum(), actual.getMinimum(), 0.0);
+        assertEquals(expected.getMaximum(), actual.getMaximum(), 0.0);
+        assertEquals(expected.getMean(), actual.getMean(), 1.0e-6);
+        assertEquals(expected.getStandardDeviation(), actual.getStandardDeviation(), 1.0e-6);
+        assertEquals(expected.getSampleCount(), actual.getSampleCount());
+        assertEquals(expected.getHistogramBinCount(), actual.getHistogramBinCount());
+        assertEquals(expected.getMedian(), actual.getMedian(), expected.getHistogramBinWidth());
+    }
+
+    @Test
+    public void testSinglePassStatisticsOfIntBandAreExact() throws Exception {
+        final Band band = createTestBand(ProductData.TYPE_INT16, 40, 50);
+        final Stx expected = new StxFactory().create(band, ProgressMonitor.NULL);
+        final Stx actual = new StxFactory().withSinglePass(true).withParallelism(4).create(band, ProgressMonitor.NULL);
+        assertEquals(expected.getMinimum(), actual.getMinimum(), 0.0);
+        assertEquals(expected.getMaximum(), actual.getMaximum(), 0.0);
+        assertEquals(expected.getMean(), actual.getMean(), 1.0e-6);
+        assertArrayEquals(expected.getHistogramBins(), actual.getHistogramBins());
+    }
+
+    @Test
+    public void testAccumulateRegionsOfLabelImages() throws Exception {
+        final Band band = createTestBand(ProductData.TYPE_FLOAT32, 100, 120);
+        final Product product = band.getProduct();
+        product.setPreferredTileSize(32, 32);
+        band.setNoDataValue(-0.5);
+        band.setNoDataValueUsed(true);
+        final Band labels1 = new VirtualBand("labels1", ProductData.TYPE_INT32, 100, 120, "Y < 10 ? 0 : X < 37 ? 1 : 2");
+        final Band labels2 = new VirtualBand("labels2", ProductData.TYPE_INT32, 100, 120, "sq(X - 50) + sq(Y - 60) < 900 ? 1 : 0");
+        product.addBand(labels1);
+        product.addBand(labels2);
+
+        final SummaryStxOp[][] ops = {{new SummaryStxOp(), new SummaryStxOp()}, {new SummaryStxOp()}};
+        StxFactory.accumulate(band, 0, new RenderedImage[]{labels1.getSourceImage(), labels2.getSourceImage()}, ops, ProgressMonitor.NULL);
+
+        final String[][] expressions = {{"labels1 == 1", "labels1 == 2"}, {"labels2 == 1"}};
+        for (int k = 0; k < ops.length; k++) {
+            for (int i = 0; i < ops[k].length; i++) {
+                final Mask mask = product.addMask("mask_" + k + "_" + i, expressions[k][i], "", Color.gray, Double.NaN);
+                final SummaryStxOp expected = new SummaryStxOp();
+                StxFactory.accumulate(band, 0, mask.getSourceImage(), null, expected, ProgressMonitor.NULL);
+                assertEquals(expected.getMinimum(), ops[k][i].getMinimum(), 0.0);
+                assertEquals(expected.getMaximum(), ops[k][i].getMaximum(), 0.0);
+                assertEquals(expected.getMean(), ops[k][i].getMean(), 0.0);
+                assertEquals(expected.getVariance(), ops[k][i].getVariance(), 0.0);
+            }
+        }
+    }
+
     @Test
     public void testThatAccumulateWithSummaryStxOpGetsTheRightMinMax() {
         //preparation
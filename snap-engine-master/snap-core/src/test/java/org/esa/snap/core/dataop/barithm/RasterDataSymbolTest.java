@@ -20,9 +20,14 @@ import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.datamodel.RasterDataNode;
 import org.esa.snap.core.jexp.Term;
+import org.esa.snap.core.jexp.impl.DefaultNamespace;
+import org.esa.snap.core.jexp.impl.ParserImpl;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /**
@@ -65,6 +70,37 @@ public class RasterDataSymbolTest {
         test(siraw.clone(), "siraw", Term.TYPE_I, scaledIntBand, RasterDataSymbol.Source.RAW);
     }
 
+    @Test
+    public void testDataLoaderIsCalledOnDemand() throws Exception {
+        final Band a = new Band("A", ProductData.TYPE_INT32, 4, 1);
+        final Band b = new Band("B", ProductData.TYPE_FLOAT32, 4, 1);
+        final Band c = new Band("C", ProductData.TYPE_FLOAT32, 4, 1);
+        final List<String> loadedSymbols = new ArrayList<>();
+        final RasterDataSymbol.DataLoader dataLoader = symbol -> {
+            loadedSymbols.add(symbol.getName());
+            if (symbol.getName().equals("A")) {
+                return new int[]{0, 1, 2, 3};
+            }
+            return new float[]{0.5F, 1.5F, 2.5F, 3.5F};
+        };
+        final DefaultNamespace namespace = new DefaultNamespace();
+        for (Band band : new Band[]{a, b, c}) {
+            final RasterDataSymbol symbol = new RasterDataSymbol(band.getName(), band, RasterDataSymbol.RAW);
+            symbol.setDataLoader(dataLoader);
+            namespace.registerSymbol(symbol);
+        }
+        final Term term = new ParserImpl(namespace, false).parse("A < 0 ? B : C");
+        assertEquals(0, loadedSymbols.size());
+
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, 4, 1);
+        final double[] values = new double[4];
+        term.evalD(env, values, 0, 4);
+        assertArrayEquals(new double[]{0.5, 1.5, 2.5, 3.5}, values, 1e-6);
+        env.setElemIndex(2);
+        assertEquals(2.5, term.evalD(env), 1e-6);
+        assertEquals("[A, C]", loadedSymbols.toString());
+    }
+
     static void test(RasterDataSymbol sym,
                      String expName,
                      int expType,
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.dataop.barithm;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.jexp.ScratchBuffers;
+import org.esa.snap.core.jexp.Term;
+import org.esa.snap.core.jexp.impl.DefaultNamespace;
+import org.esa.snap.core.jexp.impl.ParserImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the array versions of {@code Term.evalB()} and {@code Term.evalD()} yield the same
+ * values as the per-element versions.
+ */
+public class TermArrayEvalTest {
+
+    private static final int N = 16;
+
+    private DefaultNamespace namespace;
+
+    @Before
+    public void setUp() throws Exception {
+        final Band flags = new Band("flags", ProductData.TYPE_UINT8, N, 1);
+        final Band red = new Band("red", ProductData.TYPE_FLOAT32, N, 1);
+        final Band nir = new Band("nir", ProductData.TYPE_FLOAT32, N, 1);
+        final Band counts = new Band("counts", ProductData.TYPE_UINT16, N, 1);
+        final Band index = new Band("index", ProductData.TYPE_INT32, N, 1);
+
+        final byte[] flagsData = new byte[N];
+        final float[] redData = new float[N];
+        final float[] nirData = new float[N];
+        final short[] countsData = new short[N];
+        final int[] indexData = new int[N];
+        for (int i = 0; i < N; i++) {
+            flagsData[i] = (byte) (i * 17);
+            redData[i] = i == 3 ? Float.NaN : 0.05f * i;
+            nirData[i] = 0.8f - 0.04f * i;
+            countsData[i] = (short) (i * 4321);
+            indexData[i] = i - N / 2;
+        }
+
+        namespace = new DefaultNamespace();
+        registerSymbol(new SingleFlagSymbol("flags.WATER", flags, 0x01), flagsData, ProductData.TYPE_UINT8);
+        registerSymbol(new SingleFlagSymbol("flags.CLOUD", flags, 0x06, 0x02), flagsData, ProductData.TYPE_UINT8);
+        registerSymbol(new RasterDataSymbol("flags", flags, RasterDataSymbol.RAW), flagsData, ProductData.TYPE_UINT8);
+        registerSymbol(new RasterDataSymbol("red", red, RasterDataSymbol.GEOPHYSICAL), redData, ProductData.TYPE_FLOAT32);
+        registerSymbol(new RasterDataSymbol("nir", nir, RasterDataSymbol.GEOPHYSICAL), nirData, ProductData.TYPE_FLOAT32);
+        registerSymbol(new RasterDataSymbol("counts", counts, RasterDataSymbol.RAW), countsData, ProductData.TYPE_UINT16);
+        registerSymbol(new RasterDataSymbol("index", index, RasterDataSymbol.RAW), indexData, ProductData.TYPE_INT32);
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        assertArrayEvalEqualsEval("(nir - red) / (nir + red)");
+        assertArrayEvalEqualsEval("-red * 2 + counts % 7 - index");
+        assertArrayEvalEqualsEval("counts / 7 + index % 3");
+        assertArrayEvalEqualsEval("42.5");
+    }
+
+    @Test
+    public void testLogicalAndComparison() throws Exception {
+        assertArrayEvalEqualsEval("flags.WATER && !flags.CLOUD");
+        assertArrayEvalEqualsEval("(flags & 0x0F) == 3 || flags.CLOUD");
+        assertArrayEvalEqualsEval("red < nir && nir >= 0.5 || red != red");
+        assertArrayEvalEqualsEval("red > 0.2 ? red : -red");
+    }
+
+    @Test
+    public void testConditionalsAreShortCircuited() throws Exception {
+        // integer division by zero must not be evaluated for index == 0
+        assertArrayEvalEqualsEval("index != 0 ? 100 / index : -1");
+        assertArrayEvalEqualsEval("index == 0 || 100 / index > 10");
+        assertArrayEvalEqualsEval("index != 0 && 100 / index > 10");
+        assertArrayEvalEqualsEval("index < 0 ? (red > 0.2 ? red : -red) : (index > 4 ? nir : counts * 0.01)");
+    }
+
+    @Test
+    public void testFunctions() throws Exception {
+        assertArrayEvalEqualsEval("sqrt(abs(nir)) + pow(red, 2) - log(nir + 1) + exp(-red)");
+        assertArrayEvalEqualsEval("sin(red) * cos(nir) + atan2(red, nir) + tan(0.3) + sq(nir)");
+        assertArrayEvalEqualsEval("floor(nir * 10) + ceil(red * 10) + round(nir * 3.3) + rint(red)");
+        assertArrayEvalEqualsEval("nan(red) || inf(1 / index) ? deg(PI) : rad(180)");
+        assertArrayEvalEqualsEval("ampl(red, nir) + phase(red, nir) + min(red, nir) + max(red, nir)");
+        assertArrayEvalEqualsEval("feq(red, 0.25) ? 1 : fneq(nir, 0.4) ? avg(red, nir) : 3");
+    }
+
+    @Test
+    public void testElemIndexIsRestored() throws Exception {
+        final Term term = parse("index > 0 ? red : nir");
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, N, 1);
+        env.setElemIndex(2);
+        term.evalD(env, new double[N], 0, N - 2);
+        assertEquals(2, env.getElemIndex());
+        term.evalB(env, new boolean[N], 0, N - 2);
+        assertEquals(2, env.getElemIndex());
+    }
+
+    @Test
+    public void testScratchBuffersAreReleased() throws Exception {
+        final ScratchBuffers buffers = ScratchBuffers.get();
+        final int mark = buffers.mark();
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, N, 1);
+        parse("red > 0.2 ? atan2(red, nir) : (nir - red) / (nir + red)").evalD(env, new double[N], 0, N);
+        assertEquals(mark, buffers.mark());
+        try {
+            parse("red < nir && 100 / index > 10").evalB(env, new boolean[N], 0, N);
+            fail("ArithmeticException expected");
+        } catch (ArithmeticException e) {
+            // ok
+        }
+        assertEquals(mark, buffers.mark());
+    }
+
+    @Test
+    public void testScratchBuffersLongerThanCount() throws Exception {
+        final Term term = parse("(nir - red) / (nir + red) > 0.5 ? sqrt(nir) : feq(red, 0.25)");
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, N, 1);
+        term.evalD(env, new double[N], 0, N);
+        assertArrayEvalEqualsEval("(nir - red) / (nir + red) > 0.5 ? sqrt(nir) : feq(red, 0.25)");
+    }
+
+    private void assertArrayEvalEqualsEval(String code) throws Exception {
+        final Term term = parse(code);
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, N, 1);
+
+        final double[] actualD = new double[N];
+        final boolean[] actualB = new boolean[N];
+        env.setElemIndex(2);
+        term.evalD(env, actualD, 1, N - 2);
+        term.evalB(env, actualB, 1, N - 2);
+
+        for (int i = 0; i < N - 2; i++) {
+            env.setElemIndex(i + 2);
+            final String message = code + " at " + (i + 2);
+            assertEquals(message, term.evalD(env), actualD[i + 1], 1e-10);
+            assertEquals(message, term.evalB(env), actualB[i + 1]);
+        }
+    }
+
+    private Term parse(String code) throws Exception {
+        return new ParserImpl(namespace, false).parse(code);
+    }
+
+    private void registerSymbol(RasterDataSymbol symbol, Object data, int dataType) {
+        symbol.setData(ProductData.createInstance(dataType, data));
+        namespace.registerSymbol(symbol);
+    }
+}
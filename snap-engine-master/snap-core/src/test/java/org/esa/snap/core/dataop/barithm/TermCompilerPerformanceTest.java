@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.dataop.barithm;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.jexp.Term;
+import org.esa.snap.core.jexp.impl.DefaultNamespace;
+import org.esa.snap.core.jexp.impl.ParserImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the interpreted and the compiled evaluation of typical band maths expressions
+ * on tiles of 512 x 512 pixels.
+ */
+public class TermCompilerPerformanceTest {
+
+    private static final int W = 512;
+    private static final int H = 512;
+    private static final int NUM_TILES = 20;
+
+    @Test
+    public void testPerformance() throws Exception {
+        final DefaultNamespace namespace = createNamespace();
+        measure(namespace, "ndvi", "(nir - red) / (nir + red)");
+        measure(namespace, "flags", "(flags.WATER || flags.LAND) && !flags.CLOUD");
+        measure(namespace, "nested", "flags.CLOUD ? NaN : red < 0.1 ? (nir > 0.5 ? 1 : 2) : sq(nir - 0.2 * red) / sq(nir + 0.4 * red)");
+    }
+
+    private static void measure(DefaultNamespace namespace, String name, String code) throws Exception {
+        final Term term = new ParserImpl(namespace, false).parse(code);
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(term);
+        final CompiledTerm compiledTerm = TermCompiler.compile(term);
+        assertNotNull(code, compiledTerm);
+
+        final double[] expected = new double[W];
+        final double[] actual = new double[W];
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, W, H);
+
+        // warm-up and result check
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                env.setElemIndex(y * W + x);
+                expected[x] = term.evalD(env);
+            }
+            compiledTerm.evalD(symbols, actual, y * W, W);
+            assertArrayEquals(code, expected, actual, 1e-10);
+        }
+
+        long t0 = System.nanoTime();
+        for (int n = 0; n < NUM_TILES; n++) {
+            for (int i = 0; i < W * H; i++) {
+                env.setElemIndex(i);
+                expected[i % W] = term.evalD(env);
+            }
+        }
+        long t1 = System.nanoTime();
+        for (int n = 0; n < NUM_TILES; n++) {
+            for (int y = 0; y < H; y++) {
+                compiledTerm.evalD(symbols, actual, y * W, W);
+            }
+        }
+        long t2 = System.nanoTime();
+
+        final double interpreted = (t1 - t0) / 1.0e6 / NUM_TILES;
+        final double compiled = (t2 - t1) / 1.0e6 / NUM_TILES;
+        System.out.printf("TermCompilerPerformanceTest: %s: interpreted %.2f ms/tile, compiled %.2f ms/tile, speed-up %.1f%n",
+                          name, interpreted, compiled, interpreted / compiled);
+    }
+
+    private static void assertArrayEquals(String message, double[] expected, double[] actual, double eps) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(message, expected[i], actual[i], eps);
+        }
+    }
+
+    private static DefaultNamespace createNamespace() {
+        final Band flags = new Band("flags", ProductData.TYPE_UINT8, W, H);
+        final Band red = new Band("red", ProductData.TYPE_FLOAT32, W, H);
+        final Band nir = new Band("nir", ProductData.TYPE_FLOAT32, W, H);
+        final byte[] flagsData = new byte[W * H];
+        final float[] redData = new float[W * H];
+        final float[] nirData = new float[W * H];
+        for (int i = 0; i < W * H; i++) {
+            flagsData[i] = (byte) (i % 7);
+            redData[i] = 0.01f * (i % 31);
+            nirData[i] = 0.02f * (i % 47);
+        }
+        final DefaultNamespace namespace = new DefaultNamespace();
+        registerSymbol(namespace, new SingleFlagSymbol("flags.WATER", flags, 0x01), ProductData.createInstance(ProductData.TYPE_UINT8, flagsData));
+        registerSymbol(namespace, new SingleFlagSymbol("flags.LAND", flags, 0x02), ProductData.createInstance(ProductData.TYPE_UINT8, flagsData));
+        registerSymbol(namespace, new SingleFlagSymbol("flags.CLOUD", flags, 0x04), ProductData.createInstance(ProductData.TYPE_UINT8, flagsData));
+        registerSymbol(namespace, new RasterDataSymbol("red", red, RasterDataSymbol.GEOPHYSICAL), ProductData.createInstance(redData));
+        registerSymbol(namespace, new RasterDataSymbol("nir", nir, RasterDataSymbol.GEOPHYSICAL), ProductData.createInstance(nirData));
+        return namespace;
+    }
+
+    private static void registerSymbol(DefaultNamespace namespace, RasterDataSymbol symbol, ProductData data) {
+        symbol.setData(data);
+        namespace.registerSymbol(symbol);
+    }
+}
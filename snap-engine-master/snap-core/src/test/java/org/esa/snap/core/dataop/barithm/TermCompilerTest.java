@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.dataop.barithm;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.jexp.Term;
+import org.esa.snap.core.jexp.impl.DefaultNamespace;
+import org.esa.snap.core.jexp.impl.ParserImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TermCompilerTest {
+
+    private static final int N = 16;
+
+    private DefaultNamespace namespace;
+
+    @Before
+    public void setUp() throws Exception {
+        final Band flags = new Band("flags", ProductData.TYPE_UINT8, N, 1);
+        final Band red = new Band("red", ProductData.TYPE_FLOAT32, N, 1);
+        final Band nir = new Band("nir", ProductData.TYPE_FLOAT32, N, 1);
+        final Band counts = new Band("counts", ProductData.TYPE_UINT16, N, 1);
+        final Band index = new Band("index", ProductData.TYPE_INT32, N, 1);
+
+        final byte[] flagsData = new byte[N];
+        final float[] redData = new float[N];
+        final float[] nirData = new float[N];
+        final short[] countsData = new short[N];
+        final int[] indexData = new int[N];
+        for (int i = 0; i < N; i++) {
+            flagsData[i] = (byte) (i * 17);
+            redData[i] = i == 3 ? Float.NaN : 0.05f * i;
+            nirData[i] = 0.8f - 0.04f * i;
+            countsData[i] = (short) (i * 4321);
+            indexData[i] = i - N / 2;
+        }
+
+        namespace = new DefaultNamespace();
+        registerSymbol(new SingleFlagSymbol("flags.WATER", flags, 0x01), flagsData, ProductData.TYPE_UINT8);
+        registerSymbol(new SingleFlagSymbol("flags.CLOUD", flags, 0x06, 0x02), flagsData, ProductData.TYPE_UINT8);
+        registerSymbol(new RasterDataSymbol("flags", flags, RasterDataSymbol.RAW), flagsData, ProductData.TYPE_UINT8);
+        registerSymbol(new RasterDataSymbol("red", red, RasterDataSymbol.GEOPHYSICAL), redData, ProductData.TYPE_FLOAT32);
+        registerSymbol(new RasterDataSymbol("nir", nir, RasterDataSymbol.GEOPHYSICAL), nirData, ProductData.TYPE_FLOAT32);
+        registerSymbol(new RasterDataSymbol("counts", counts, RasterDataSymbol.RAW), countsData, ProductData.TYPE_UINT16);
+        registerSymbol(new RasterDataSymbol("index", index, RasterDataSymbol.RAW), indexData, ProductData.TYPE_INT32);
+    }
+
+    @Test
+    public void testNdvi() throws Exception {
+        assertCompiledTermEqualsTerm("(nir - red) / (nir + red)");
+    }
+
+    @Test
+    public void testFlagTests() throws Exception {
+        assertCompiledTermEqualsTerm("flags.WATER && !flags.CLOUD");
+        assertCompiledTermEqualsTerm("(flags & 0x0F) == 3 || flags.CLOUD");
+        assertCompiledTermEqualsTerm("(flags.WATER OR flags.CLOUD) AND NOT nan(red) ? sq(nir - 0.2 * red) : NaN");
+    }
+
+    @Test
+    public void testNestedConditionals() throws Exception {
+        assertCompiledTermEqualsTerm("index < 0 ? (red > 0.2 ? red : -red) : (index > 4 ? nir : counts * 0.01)");
+        assertCompiledTermEqualsTerm("feq(red, 0.25) ? 1 : fneq(nir, 0.4, 0.1) ? 2 : 3");
+    }
+
+    @Test
+    public void testIntegerArithmetic() throws Exception {
+        assertCompiledTermEqualsTerm("counts / 7 + index % 3");
+        assertCompiledTermEqualsTerm("~index ^ (counts | 5)");
+        assertCompiledTermEqualsTerm("max(index, 2) * sign(index) + abs(index)");
+        assertCompiledTermEqualsTerm("-index");
+    }
+
+    @Test
+    public void testFunctions() throws Exception {
+        assertCompiledTermEqualsTerm("sqrt(abs(nir)) + pow(red, 2) - log(nir + 1) + exp(-red)");
+        assertCompiledTermEqualsTerm("sin(red) * cos(nir) + atan2(red, nir) + tan(0.3)");
+        assertCompiledTermEqualsTerm("floor(nir * 10) + ceil(red * 10) + round(nir * 3.3) + rint(red)");
+        assertCompiledTermEqualsTerm("inf(1 / index) ? deg(PI) : rad(180)");
+        assertCompiledTermEqualsTerm("ampl(red, nir) + phase(red, nir) + min(red, nir) + max(red, nir)");
+    }
+
+    @Test
+    public void testThatUnsupportedTermsAreNotCompiled() throws Exception {
+        assertNull(TermCompiler.compile(parse("random_uniform() > 0.5")));
+        assertNull(TermCompiler.compile(parse("avg(red, nir)")));
+    }
+
+    @Test
+    public void testIsApplicable() throws Exception {
+        final Term term = parse("red + index");
+        final CompiledTerm compiledTerm = TermCompiler.compile(term);
+        assertNotNull(compiledTerm);
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(term);
+        assertTrue(compiledTerm.isApplicable(symbols));
+        assertFalse(compiledTerm.isApplicable(new RasterDataSymbol[]{symbols[0]}));
+
+        final RasterDataSymbol redClone = symbols[0].clone();
+        redClone.setData(ProductData.createInstance(new double[N]));
+        assertFalse(compiledTerm.isApplicable(new RasterDataSymbol[]{redClone, symbols[1]}));
+    }
+
+    @Test
+    public void testDataOfSymbolsInBranchesNotTakenIsNotLoaded() throws Exception {
+        final Term term = parse("index < 100 ? red : counts");
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(term);
+        final RasterDataSymbol counts = symbols[2];
+        assertEquals("counts", counts.getName());
+        counts.setDataLoader(symbol -> {
+            fail("data of " + symbol.getName() + " loaded");
+            return null;
+        });
+
+        final CompiledTerm compiledTerm = TermCompiler.compile(term);
+        assertNotNull(compiledTerm);
+        assertTrue(compiledTerm.isApplicable(symbols));
+        final double[] actualD = new double[N];
+        compiledTerm.evalD(symbols, actualD, 0, N);
+        assertEquals(0.05 * 4, actualD[4], 1e-6);
+    }
+
+    private void assertCompiledTermEqualsTerm(String code) throws Exception {
+        final Term term = parse(code);
+        final CompiledTerm compiledTerm = TermCompiler.compile(term);
+        assertNotNull(code, compiledTerm);
+
+        final RasterDataSymbol[] symbols = BandArithmetic.getRefRasterDataSymbols(term);
+        final double[] actualD = new double[N - 2];
+        final boolean[] actualB = new boolean[N - 2];
+        compiledTerm.evalD(symbols, actualD, 2, N - 2);
+        compiledTerm.evalB(symbols, actualB, 2, N - 2);
+
+        final RasterDataEvalEnv env = new RasterDataEvalEnv(0, 0, N, 1);
+        for (int i = 0; i < N - 2; i++) {
+            env.setElemIndex(i + 2);
+            final String message = code + " at " + (i + 2);
+            assertEquals(message, term.evalD(env), actualD[i], 1e-10);
+            assertEquals(message, term.evalB(env), actualB[i]);
+        }
+    }
+
+    private Term parse(String code) throws Exception {
+        return new ParserImpl(namespace, false).parse(code);
+    }
+
+    private void registerSymbol(RasterDataSymbol symbol, Object data, int dataType) {
+        symbol.setData(ProductData.createInstance(dataType, data));
+        namespace.registerSymbol(symbol);
+    }
+}
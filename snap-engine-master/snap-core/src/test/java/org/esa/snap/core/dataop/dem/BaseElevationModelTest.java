@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.dataop.dem;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.dataop.resamp.Resampling;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BaseElevationModelTest {
+
+    @Test
+    public void testLeastRecentlyUsedTileIsCleared() throws Exception {
+        final TestElevationModel model = new TestElevationModel();
+        final BaseElevationTile tile1 = createTile(model, 1.0f);
+        final BaseElevationTile tile2 = createTile(model, 2.0f);
+        final BaseElevationTile tile3 = createTile(model, 3.0f);
+
+        assertEquals(1.0f, tile1.getSample(0, 0), 0.0f);
+        assertEquals(2.0f, tile2.getSample(0, 0), 0.0f);
+        // tile1 used again
+        model.updateCache(tile1);
+        assertEquals(3.0f, tile3.getSample(0, 0), 0.0f);
+
+        assertTrue(tile1.getCachedSize() > 0);
+        assertEquals(0, tile2.getCachedSize());
+        assertTrue(tile3.getCachedSize() > 0);
+
+        // cleared tiles read their data again
+        assertEquals(2.0f, tile2.getSample(1, 1), 0.0f);
+        assertTrue(tile2.getCachedSize() > 0);
+    }
+
+    @Test
+    public void testCachedSize() throws Exception {
+        final TestElevationModel model = new TestElevationModel();
+        final BaseElevationTile tile = createTile(model, 1.0f);
+        assertEquals(0, tile.getCachedSize());
+        tile.getSample(0, 0);
+        tile.getSample(3, 0);
+        assertEquals(4 * 4, tile.getCachedSize());
+        tile.getSample(0, 2);
+        assertEquals(2 * 4 * 4, tile.getCachedSize());
+        tile.clearCache();
+        assertEquals(0, tile.getCachedSize());
+    }
+
+    private static BaseElevationTile createTile(BaseElevationModel model, float value) {
+        final Product product = new Product("tile", "DEM", 4, 4);
+        final Band band = product.addBand("elevation", ProductData.TYPE_FLOAT32);
+        final float[] data = new float[16];
+        Arrays.fill(data, value);
+        band.setRasterData(ProductData.createInstance(data));
+        return new BaseElevationTile(model, product) {
+            @Override
+            protected void addGravitationalModel(int index, float[] line) {
+            }
+        };
+    }
+
+    private static class TestElevationModel extends BaseElevationModel {
+
+        TestElevationModel() {
+            super(new TestDescriptor(), Resampling.NEAREST_NEIGHBOUR);
+            setMaxCacheSize(2);
+        }
+
+        @Override
+        public double getIndexX(GeoPos geoPos) {
+            return geoPos.lon + 180.0;
+        }
+
+        @Override
+        public double getIndexY(GeoPos geoPos) {
+            return 90.0 - geoPos.lat;
+        }
+
+        @Override
+        public GeoPos getGeoPos(PixelPos pixelPos) {
+            return new GeoPos(90.0 - pixelPos.y, pixelPos.x - 180.0);
+        }
+
+        @Override
+        protected void createElevationFile(ElevationFile[][] elevationFiles, int x, int y, File demInstallDir) {
+        }
+    }
+
+    private static class TestDescriptor implements ElevationModelDescriptor {
+
+        @Override
+        public String getName() {
+            return "Test";
+        }
+
+        @Override
+        public float getNoDataValue() {
+            return -9999.0f;
+        }
+
+        @Override
+        public int getRasterWidth() {
+            return 360;
+        }
+
+        @Override
+        public int getRasterHeight() {
+            return 180;
+        }
+
+        @Override
+        public int getTileWidthInDegrees() {
+            return 180;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return 180;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 2;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return 1;
+        }
+
+        @Override
+        public ElevationModel createDem(Resampling resampling) {
+            return null;
+        }
+
+        @Override
+        public boolean canBeDownloaded() {
+            return false;
+        }
+
+        @Override
+        public File getDemInstallDir() {
+            return null;
+        }
+    }
+}
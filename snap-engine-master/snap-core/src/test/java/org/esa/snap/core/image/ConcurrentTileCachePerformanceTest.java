@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.image;
+
+import org.junit.Test;
+
+import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the throughput of concurrent tile cache accesses for JAI's default tile cache,
+ * the {@link FileTileCache} and the {@link ConcurrentTileCache} (without and with swapping).
+ * Each thread requests random tiles of a set of images and adds missing tiles to the cache.
+ * The cache can hold about half of the tiles.
+ * <p>
+ * The test asserts that the {@link ConcurrentTileCache} keeps up with JAI's default tile cache and stays
+ * within its memory capacity. For longer runs use
+ * {@code ConcurrentTileCachePerformanceTest [<numThreads> [<numOps>]]}
+ */
+public class ConcurrentTileCachePerformanceTest {
+
+    private static final int TILE_SIZE = 128;
+    private static final int NUM_IMAGES = 8;
+    private static final int NUM_TILES_X = 8;
+    private static final int NUM_TILES_Y = 8;
+    private static final long TILE_MEMORY = TILE_SIZE * TILE_SIZE * 4;
+    private static final long MEMORY_CAPACITY = NUM_IMAGES * NUM_TILES_X * NUM_TILES_Y * TILE_MEMORY / 2;
+
+    @Test
+    public void testThroughput() throws Exception {
+        int numThreads = 2 * Runtime.getRuntime().availableProcessors();
+        int numOps = 20000;
+        RenderedImage[] images = createImages();
+
+        // warm up
+        measure("SunTileCache", JAI.createTileCache(MEMORY_CAPACITY), images, numThreads, numOps);
+        measure("ConcurrentTileCache", new ConcurrentTileCache(MEMORY_CAPACITY, null), images, numThreads, numOps);
+
+        double sunOpsPerSecond = measure("SunTileCache", JAI.createTileCache(MEMORY_CAPACITY), images, numThreads, numOps);
+        ConcurrentTileCache tileCache = new ConcurrentTileCache(MEMORY_CAPACITY, null);
+        double opsPerSecond = measure("ConcurrentTileCache", tileCache, images, numThreads, numOps);
+        assertTrue(String.format("%.0f ops/s, SunTileCache: %.0f ops/s", opsPerSecond, sunOpsPerSecond),
+                   opsPerSecond > 0.5 * sunOpsPerSecond);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4 * Runtime.getRuntime().availableProcessors();
+        int numOps = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        File swapDir = Files.createTempDirectory("ConcurrentTileCachePerformanceTest").toFile();
+        swapDir.deleteOnExit();
+
+        RenderedImage[] images = createImages();
+        System.out.printf("threads = %d, operations per thread = %d%n", numThreads, numOps);
+        for (int i = 0; i < 3; i++) {
+            measure("SunTileCache", JAI.createTileCache(MEMORY_CAPACITY), images, numThreads, numOps);
+            measure("FileTileCache", new FileTileCache(swapDir), images, numThreads, numOps / 10);
+            measure("ConcurrentTileCache", new ConcurrentTileCache(MEMORY_CAPACITY, null), images, numThreads, numOps);
+            measure("ConcurrentTileCache (swapping)", new ConcurrentTileCache(MEMORY_CAPACITY, swapDir), images, numThreads, numOps);
+        }
+    }
+
+    private static RenderedImage[] createImages() {
+        RenderedImage[] images = new RenderedImage[NUM_IMAGES];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new BufferedImage(NUM_TILES_X * TILE_SIZE, NUM_TILES_Y * TILE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        }
+        return images;
+    }
+
+    private static double measure(String name, final TileCache tileCache, final RenderedImage[] images,
+                                int numThreads, final int numOps) throws Exception {
+        tileCache.setMemoryCapacity(MEMORY_CAPACITY);
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            final long seed = t;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Random random = new Random(seed);
+                    int misses = 0;
+                    for (int i = 0; i < numOps; i++) {
+                        RenderedImage image = images[random.nextInt(NUM_IMAGES)];
+                        int tileX = random.nextInt(NUM_TILES_X);
+                        int tileY = random.nextInt(NUM_TILES_Y);
+                        if (tileCache.getTile(image, tileX, tileY) == null) {
+                            tileCache.add(image, tileX, tileY, createTile(tileX, tileY));
+                            misses++;
+                        }
+                    }
+                    return misses;
+                }
+            });
+        }
+        long t0 = System.nanoTime();
+        List<Future<Integer>> futures = executorService.invokeAll(tasks);
+        long t1 = System.nanoTime();
+        executorService.shutdown();
+        long misses = 0;
+        for (Future<Integer> future : futures) {
+            misses += future.get();
+        }
+        long totalOps = (long) numThreads * numOps;
+        double opsPerSecond = totalOps / ((t1 - t0) / 1.0e9);
+        System.out.printf("%s: %.0f ops/s, %.1f%% misses%n", name, opsPerSecond, 100.0 * misses / totalOps);
+        if (tileCache instanceof ConcurrentTileCache) {
+            long memoryInUse = ((ConcurrentTileCache) tileCache).getMemoryInUse();
+            // tiles added concurrently may exceed the capacity until they are removed
+            assertTrue(name + ": " + memoryInUse + " bytes in use", memoryInUse <= MEMORY_CAPACITY + numThreads * TILE_MEMORY);
+        }
+        tileCache.flush();
+        return opsPerSecond;
+    }
+
+    private static Raster createTile(int tileX, int tileY) {
+        return Raster.createWritableRaster(new BandedSampleModel(DataBuffer.TYPE_FLOAT, TILE_SIZE, TILE_SIZE, 1),
+                                           new Point(tileX * TILE_SIZE, tileY * TILE_SIZE));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.image;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.media.jai.CachedTile;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentTileCacheTest {
+
+    private static final int TILE_SIZE = 16;
+    // memory size of a float tile
+    private static final long TILE_MEMORY = TILE_SIZE * TILE_SIZE * 4;
+
+    private File swapDir;
+
+    @Before
+    public void setUp() throws Exception {
+        swapDir = Files.createTempDirectory("ConcurrentTileCacheTest").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = swapDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        swapDir.delete();
+    }
+
+    @Test
+    public void testAddGetRemove() throws Exception {
+        ConcurrentTileCache cache = new ConcurrentTileCache(10 * TILE_MEMORY, null);
+        RenderedImage image1 = createImage();
+        RenderedImage image2 = createImage();
+        Raster tile11 = createTile(1, 1, 1.0f);
+        Raster tile12 = createTile(1, 2, 2.0f);
+        Raster tile21 = createTile(1, 1, 3.0f);
+
+        cache.add(image1, 1, 1, tile11);
+        cache.add(image1, 1, 2, tile12);
+        cache.add(image2, 1, 1, tile21);
+        assertEquals(3 * TILE_MEMORY, cache.getMemoryInUse());
+        assertSame(tile11, cache.getTile(image1, 1, 1));
+        assertSame(tile12, cache.getTile(image1, 1, 2));
+        assertSame(tile21, cache.getTile(image2, 1, 1));
+        assertNull(cache.getTile(image2, 1, 2));
+        assertEquals(2, cache.getTiles(image1).length);
+
+        Raster tile11b = createTile(1, 1, 4.0f);
+        cache.add(image1, 1, 1, tile11b);
+        assertSame(tile11b, cache.getTile(image1, 1, 1));
+        assertEquals(3 * TILE_MEMORY, cache.getMemoryInUse());
+
+        cache.remove(image1, 1, 1);
+        assertNull(cache.getTile(image1, 1, 1));
+        assertEquals(2 * TILE_MEMORY, cache.getMemoryInUse());
+
+        cache.removeTiles(image1);
+        assertNull(cache.getTiles(image1));
+        assertSame(tile21, cache.getTile(image2, 1, 1));
+        assertEquals(TILE_MEMORY, cache.getMemoryInUse());
+
+        cache.flush();
+        assertNull(cache.getTile(image2, 1, 1));
+        assertEquals(0, cache.getMemoryInUse());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTilesAreRemoved() throws Exception {
+        ConcurrentTileCache cache = new ConcurrentTileCache(4 * TILE_MEMORY, null);
+        cache.setMemoryThreshold(0.5f);
+        RenderedImage image = createImage();
+        for (int i = 0; i < 4; i++) {
+            cache.add(image, i, 0, createTile(i, 0, i));
+            Thread.sleep(1);
+        }
+        assertNotNull(cache.getTile(image, 0, 0));
+        Thread.sleep(1);
+
+        cache.add(image, 4, 0, createTile(4, 0, 4));
+        assertEquals(2 * TILE_MEMORY, cache.getMemoryInUse());
+        assertNotNull(cache.getTile(image, 0, 0));
+        assertNull(cache.getTile(image, 1, 0));
+        assertNull(cache.getTile(image, 2, 0));
+        assertNull(cache.getTile(image, 3, 0));
+        assertNotNull(cache.getTile(image, 4, 0));
+    }
+
+    @Test
+    public void testTilesOrderedFirstByTileComparatorAreRemoved() throws Exception {
+        ConcurrentTileCache cache = new ConcurrentTileCache(4 * TILE_MEMORY, null);
+        cache.setMemoryThreshold(0.5f);
+        cache.setTileComparator(new Comparator<CachedTile>() {
+            @Override
+            public int compare(CachedTile t1, CachedTile t2) {
+                // remove the tiles with the highest x first
+                return Integer.compare(t2.getTile().getMinX(), t1.getTile().getMinX());
+            }
+        });
+        RenderedImage image = createImage();
+        for (int i = 4; i >= 0; i--) {
+            cache.add(image, i, 0, createTile(i, 0, i));
+        }
+        assertEquals(2 * TILE_MEMORY, cache.getMemoryInUse());
+        assertNotNull(cache.getTile(image, 0, 0));
+        assertNotNull(cache.getTile(image, 1, 0));
+        assertNull(cache.getTile(image, 2, 0));
+        assertNull(cache.getTile(image, 3, 0));
+        assertNull(cache.getTile(image, 4, 0));
+    }
+
+    @Test
+    public void testInconsistentTileComparatorDoesNotBreakRemoval() throws Exception {
+        ConcurrentTileCache cache = new ConcurrentTileCache(100 * TILE_MEMORY, null);
+        cache.setMemoryThreshold(0.5f);
+        final Random random = new Random(42);
+        cache.setTileComparator(new Comparator<CachedTile>() {
+            @Override
+            public int compare(CachedTile t1, CachedTile t2) {
+                return random.nextInt(3) - 1;
+            }
+        });
+        RenderedImage image = createImage();
+        for (int i = 0; i < 1000; i++) {
+            cache.add(image, i % 50, i / 50, createTile(i % 50, i / 50, i));
+        }
+        assertTrue(cache.getMemoryInUse() <= 100 * TILE_MEMORY);
+    }
+
+    @Test
+    public void testRemovedTilesAreSwapped() throws Exception {
+        ConcurrentTileCache cache = new ConcurrentTileCache(4 * TILE_MEMORY, swapDir);
+        RenderedImage image = createImage();
+        for (int i = 0; i < 20; i++) {
+            cache.add(image, i % 5, i / 5, createTile(i % 5, i / 5, i));
+        }
+        assertTrue(cache.getMemoryInUse() <= 4 * TILE_MEMORY);
+        for (int i = 0; i < 20; i++) {
+            Raster tile = cache.getTile(image, i % 5, i / 5);
+            assertNotNull("tile " + i, tile);
+            assertTile(tile, i % 5, i / 5, i);
+        }
+        cache.flush();
+        assertEquals(0, cache.getMemoryInUse());
+    }
+
+    @Test
+    public void testSwappedTileData() throws Exception {
+        File file = new File(swapDir, "tile.raw");
+        assertTrue(file.createNewFile());
+        WritableRaster tile = Raster.createBandedRaster(DataBuffer.TYPE_USHORT, TILE_SIZE, TILE_SIZE, 2, new Point(0, 0));
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                tile.setSample(x, y, 0, 60000 + x);
+                tile.setSample(x, y, 1, y);
+            }
+        }
+        ConcurrentTileCache.writeTile(file.toPath(), tile);
+        assertEquals(2 * 2 * TILE_SIZE * TILE_SIZE, file.length());
+
+        DataBuffer dataBuffer = ConcurrentTileCache.readTileData(file.toPath(), DataBuffer.TYPE_USHORT, TILE_SIZE * TILE_SIZE, 2);
+        Raster copy = Raster.createRaster(tile.getSampleModel(), dataBuffer, new Point(0, 0));
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                assertEquals(60000 + x, copy.getSample(x, y, 0));
+                assertEquals(y, copy.getSample(x, y, 1));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentTileCache cache = new ConcurrentTileCache(50 * TILE_MEMORY, swapDir);
+        final RenderedImage image = createImage();
+        final int numThreads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int offset = t;
+                futures.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 2000; i++) {
+                            int tileX = (i * 7 + offset) % 20;
+                            int tileY = (i * 3 + offset) % 10;
+                            Raster tile = cache.getTile(image, tileX, tileY);
+                            if (tile == null) {
+                                cache.add(image, tileX, tileY, createTile(tileX, tileY, tileX * 100 + tileY));
+                            } else {
+                                assertTile(tile, tileX, tileY, tileX * 100 + tileY);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertTrue(cache.getMemoryInUse() <= 50 * TILE_MEMORY + numThreads * TILE_MEMORY);
+        cache.flush();
+        assertEquals(0, cache.getMemoryInUse());
+    }
+
+    private static void assertTile(Raster tile, int tileX, int tileY, float value) {
+        assertEquals(tileX * TILE_SIZE, tile.getMinX());
+        assertEquals(tileY * TILE_SIZE, tile.getMinY());
+        assertEquals(value, tile.getSampleFloat(tile.getMinX() + 3, tile.getMinY() + 5, 0), 0.0f);
+    }
+
+    private static WritableRaster createTile(int tileX, int tileY, float value) {
+        WritableRaster tile = Raster.createWritableRaster(new BandedSampleModel(DataBuffer.TYPE_FLOAT, TILE_SIZE, TILE_SIZE, 1),
+                                                          new Point(tileX * TILE_SIZE, tileY * TILE_SIZE));
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                tile.setSample(tile.getMinX() + x, tile.getMinY() + y, 0, value);
+            }
+        }
+        return tile;
+    }
+
+    private static RenderedImage createImage() {
+        return new BufferedImage(20 * TILE_SIZE, 10 * TILE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+    }
+}
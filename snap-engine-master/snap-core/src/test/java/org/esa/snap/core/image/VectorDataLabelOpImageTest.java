@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.image;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import org.esa.snap.core.datamodel.PlainFeatureFactory;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.VectorDataNode;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.awt.image.Raster;
+
+import static org.junit.Assert.*;
+
+public class VectorDataLabelOpImageTest {
+
+    private Product product;
+    private SimpleFeatureType featureType;
+
+    @Before
+    public void setUp() throws Exception {
+        product = new Product("P", "T", 40, 30);
+        product.setPreferredTileSize(16, 16);
+        featureType = PlainFeatureFactory.createPlainFeatureType("Region", Polygon.class, DefaultGeographicCRS.WGS84);
+    }
+
+    @Test
+    public void testDisjointRegionsShareOneImage() throws Exception {
+        final VectorDataNode a = createRegion("a", 2, 2, 12, 9);
+        final VectorDataNode b = createRegion("b", 20, 5, 37, 27);
+        final VectorDataNode c = createRegion("c", 3, 15, 14, 25.5);
+
+        final VectorDataLabelOpImage[] images = VectorDataLabelOpImage.createDisjointImages(new VectorDataNode[]{a, b, c},
+                                                                                            ResolutionLevel.MAXRES);
+        assertEquals(1, images.length);
+        assertArrayEquals(new VectorDataNode[]{a, b, c}, images[0].getVectorDataNodes());
+        assertLabelsEqualMasks(images[0]);
+    }
+
+    @Test
+    public void testOverlappingRegionsAreDistributedOverImages() throws Exception {
+        final VectorDataNode a = createRegion("a", 2, 2, 22, 19);
+        final VectorDataNode b = createRegion("b", 10, 5, 37, 27);
+        final VectorDataNode c = createRegion("c", 30, 0.5, 39, 2);
+        final VectorDataNode d = createRegion("d", 12.5, 12.5, 14.5, 14.5);
+
+        final VectorDataLabelOpImage[] images = VectorDataLabelOpImage.createDisjointImages(new VectorDataNode[]{a, b, c, d},
+                                                                                            ResolutionLevel.MAXRES);
+        assertEquals(3, images.length);
+        assertArrayEquals(new VectorDataNode[]{a, c}, images[0].getVectorDataNodes());
+        assertArrayEquals(new VectorDataNode[]{b}, images[1].getVectorDataNodes());
+        assertArrayEquals(new VectorDataNode[]{d}, images[2].getVectorDataNodes());
+        for (VectorDataLabelOpImage image : images) {
+            assertLabelsEqualMasks(image);
+        }
+    }
+
+    private void assertLabelsEqualMasks(VectorDataLabelOpImage image) {
+        final Raster labels = image.getData();
+        final VectorDataNode[] nodes = image.getVectorDataNodes();
+        for (int i = 0; i < nodes.length; i++) {
+            final Raster mask = product.getMaskGroup().get(nodes[i].getName()).getSourceImage().getData();
+            int count = 0;
+            for (int y = 0; y < product.getSceneRasterHeight(); y++) {
+                for (int x = 0; x < product.getSceneRasterWidth(); x++) {
+                    final boolean inMask = mask.getSample(x, y, 0) != 0;
+                    assertEquals(nodes[i].getName() + " at " + x + "," + y, inMask, labels.getSample(x, y, 0) == i + 1);
+                    if (inMask) {
+                        count++;
+                    }
+                }
+            }
+            assertTrue(count > 0);
+        }
+    }
+
+    private VectorDataNode createRegion(String name, double x1, double y1, double x2, double y2) {
+        final GeometryFactory gf = new GeometryFactory();
+        final Polygon polygon = gf.createPolygon(gf.createLinearRing(new Coordinate[]{
+                new Coordinate(x1, y1), new Coordinate(x2, y1), new Coordinate(x2, y2),
+                new Coordinate(x1, y2), new Coordinate(x1, y1)
+        }), null);
+        final VectorDataNode node = new VectorDataNode(name, featureType);
+        node.getFeatureCollection().add(PlainFeatureFactory.createPlainFeature(featureType, name + "_1", polygon, null));
+        product.getVectorDataGroup().add(node);
+        return node;
+    }
+}
@@ -18,11 +18,18 @@ package org.esa.snap.core.image;
 
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.media.jai.PlanarImage;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -59,5 +66,39 @@ public class VirtualBandOpImageTest {
         assertEquals(1047550, sample);     // (511*2) * 1024 + (511*2)
     }
 
+    @Test
+    public void testRasterReferredOnlyInUntakenBranchIsNotRead() {
+        final Product product = band.getProduct();
+        final CountingOpImage sourceImage = new CountingOpImage(1024, 1024, new Dimension(512, 512));
+        product.addBand("B", ProductData.TYPE_FLOAT32).setSourceImage(sourceImage);
+
+        final RenderedImage neverImage = product.addBand("never", "X < 0 ? B : 1.0").getSourceImage().getImage(0);
+        assertEquals(1.0, neverImage.getData().getSampleDouble(0, 0, 0), 0.0);
+        assertEquals(0, sourceImage.computeCount.get());
+
+        final RenderedImage leftImage = product.addBand("left", "X < 512 ? B : 1.0").getSourceImage().getImage(0);
+        assertEquals(1.0, leftImage.getTile(1, 0).getSampleDouble(512, 0, 0), 0.0);
+        assertEquals(0, sourceImage.computeCount.get());
+        assertEquals(2.0, leftImage.getTile(0, 0).getSampleDouble(0, 0, 0), 0.0);
+        assertTrue(sourceImage.computeCount.get() > 0);
+    }
 
+    private static class CountingOpImage extends SingleBandedOpImage {
+
+        private final AtomicInteger computeCount = new AtomicInteger();
+
+        private CountingOpImage(int width, int height, Dimension tileSize) {
+            super(DataBuffer.TYPE_FLOAT, width, height, tileSize, null, ResolutionLevel.MAXRES);
+        }
+
+        @Override
+        protected void computeRect(PlanarImage[] sources, WritableRaster dest, Rectangle destRect) {
+            computeCount.incrementAndGet();
+            for (int y = destRect.y; y < destRect.y + destRect.height; y++) {
+                for (int x = destRect.x; x < destRect.x + destRect.width; x++) {
+                    dest.setSample(x, y, 0, 2.0f);
+                }
+            }
+        }
+    }
 }
@@ -32,7 +32,6 @@ import java.io.IOException;
 public class FileElevationModel implements ElevationModel, Resampling.Raster {
 
     private Resampling resampling;
-    private Resampling.Index resamplingIndex;
     private Resampling.Raster resamplingRaster;
     private GeoCoding tileGeocoding;
 
@@ -79,7 +78,6 @@ public class FileElevationModel implements ElevationModel, Resampling.Raster {
             noDataValue = demNoDataValue;
 
         resampling = resamplingMethod;
-        resamplingIndex = resampling.createIndex();
         resamplingRaster = this;
     }
 
@@ -99,9 +97,24 @@ public class FileElevationModel implements ElevationModel, Resampling.Raster {
         return resampling;
     }
 
-    public synchronized double getElevation(final GeoPos geoPos) throws Exception {
+    public double getElevation(final GeoPos geoPos) throws Exception {
+        return getElevation(geoPos, resampling.createIndex(), new PixelPos());
+    }
+
+    @Override
+    public void getElevations(final double[] lat, final double[] lon, final double[] elevations) throws Exception {
+        final Resampling.Index resamplingIndex = resampling.createIndex();
+        final PixelPos pixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int i = 0; i < elevations.length; i++) {
+            geoPos.setLocation(lat[i], lon[i]);
+            elevations[i] = getElevation(geoPos, resamplingIndex, pixelPos);
+        }
+    }
+
+    private double getElevation(final GeoPos geoPos, final Resampling.Index resamplingIndex, final PixelPos pixelPos) throws Exception {
         try {
-            final PixelPos pix = tileGeocoding.getPixelPos(geoPos, null);
+            final PixelPos pix = tileGeocoding.getPixelPos(geoPos, pixelPos);
             if (!pix.isValid() || pix.x < 0 || pix.y < 0 || pix.x >= RASTER_WIDTH || pix.y >= RASTER_HEIGHT)
                 return noDataValue;
 
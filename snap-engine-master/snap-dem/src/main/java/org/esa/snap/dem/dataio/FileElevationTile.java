@@ -18,78 +18,70 @@ package org.esa.snap.dem.dataio;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.Product;
-import org.esa.snap.core.util.CachingObjectArray;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Caches the lines of an elevation file. Cached lines are accessed without locking, missing lines are read
+ * synchronized. If more than {@code maxLines} lines are cached, the line read first is released.
+ */
 class FileElevationTile {
 
-    private CachingObjectArray linesCache;
-    private Product product;
     private static final int maxLines = 500;
-    private final List<Integer> indexList = new ArrayList<Integer>(maxLines);
+    private final AtomicReferenceArray<float[]> lines;
+    private final int[] cachedLineIndexes = new int[maxLines];
+    private int numCachedLines;
+    private int oldestCachedLine;
+    private Product product;
+    private final Band band;
+    private final int width;
 
     public FileElevationTile(final Product product) {
         this.product = product;
-
-        linesCache = new CachingObjectArray(getLineFactory());
-        linesCache.setCachedRange(0, product.getBandAt(0).getSceneRasterHeight());
+        this.band = product.getBandAt(0);
+        this.width = product.getSceneRasterWidth();
+        lines = new AtomicReferenceArray<>(band.getSceneRasterHeight());
     }
 
     public float getSample(int pixelX, int pixelY) throws IOException {
-        final float[] line;
-        try {
-            line = (float[]) linesCache.getObject(pixelY);
-        } catch (Exception e) {
-            throw convertLineCacheException(e);
+        float[] line = lines.get(pixelY);
+        if (line == null) {
+            line = readLine(pixelY);
         }
         return line[pixelX];
     }
 
     public void dispose() {
         clearCache();
-        linesCache = null;
         if (product != null) {
             product.dispose();
             product = null;
         }
     }
 
-    public void clearCache() {
-        linesCache.clear();
-    }
-
-    private CachingObjectArray.ObjectFactory getLineFactory() {
-        final Band band = product.getBandAt(0);
-        final int width = product.getSceneRasterWidth();
-        return new CachingObjectArray.ObjectFactory() {
-            public Object createObject(final int index) throws Exception {
-                updateCache(index);
-                return band.readPixels(0, index, width, 1, new float[width], ProgressMonitor.NULL);
-            }
-        };
-    }
-
-    private void updateCache(int index) {
-        indexList.remove((Object) index);
-        indexList.add(0, index);
-        if (indexList.size() > maxLines) {
-            final int i = indexList.size() - 1;
-            linesCache.setObject(i, null);
-            indexList.remove(i);
+    public synchronized void clearCache() {
+        for (int i = 0; i < lines.length(); i++) {
+            lines.set(i, null);
         }
+        numCachedLines = 0;
+        oldestCachedLine = 0;
     }
 
-    private static IOException convertLineCacheException(Exception e) {
-        IOException ioe;
-        if (e instanceof IOException) {
-            ioe = (IOException) e;
+    private synchronized float[] readLine(int pixelY) throws IOException {
+        float[] line = lines.get(pixelY);
+        if (line != null) {
+            return line;
+        }
+        line = band.readPixels(0, pixelY, width, 1, new float[width], ProgressMonitor.NULL);
+        if (numCachedLines < maxLines) {
+            cachedLineIndexes[numCachedLines++] = pixelY;
         } else {
-            ioe = new IOException();
-            ioe.setStackTrace(e.getStackTrace());
+            lines.set(cachedLineIndexes[oldestCachedLine], null);
+            cachedLineIndexes[oldestCachedLine] = pixelY;
+            oldestCachedLine = (oldestCachedLine + 1) % maxLines;
         }
-        return ioe;
+        lines.set(pixelY, line);
+        return line;
     }
 }
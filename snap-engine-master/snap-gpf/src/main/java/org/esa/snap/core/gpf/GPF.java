@@ -50,6 +50,8 @@ public class GPF {
 
     public static final String DISABLE_TILE_CACHE_PROPERTY = "snap.gpf.disableTileCache";
     public static final String USE_FILE_TILE_CACHE_PROPERTY = "snap.gpf.useFileTileCache";
+    public static final String USE_CONCURRENT_TILE_CACHE_PROPERTY = "snap.gpf.useConcurrentTileCache";
+    public static final String COMPRESS_SWAPPED_TILES_PROPERTY = "snap.gpf.compressSwappedTiles";
     public static final String TILE_COMPUTATION_OBSERVER_PROPERTY = "snap.gpf.tileComputationObserver";
 
     public static final String SOURCE_PRODUCT_FIELD_NAME = "sourceProduct";
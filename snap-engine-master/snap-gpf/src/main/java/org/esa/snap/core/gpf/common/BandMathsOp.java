@@ -25,9 +25,11 @@ import org.esa.snap.core.datamodel.RasterDataNode;
 import org.esa.snap.core.datamodel.Scene;
 import org.esa.snap.core.datamodel.SceneFactory;
 import org.esa.snap.core.dataop.barithm.BandArithmetic;
+import org.esa.snap.core.dataop.barithm.CompiledTerm;
 import org.esa.snap.core.dataop.barithm.ProductNamespacePrefixProvider;
 import org.esa.snap.core.dataop.barithm.RasterDataEvalEnv;
 import org.esa.snap.core.dataop.barithm.RasterDataSymbol;
+import org.esa.snap.core.dataop.barithm.TermCompiler;
 import org.esa.snap.core.gpf.Operator;
 import org.esa.snap.core.gpf.OperatorException;
 import org.esa.snap.core.gpf.OperatorSpi;
@@ -231,6 +233,7 @@ public class BandMathsOp extends Operator {
     private Variable[] variables;
 
     private Map<Band, BandDescriptor> descriptorMap;
+    private Map<Band, CompiledTerm> compiledTermMap;
 
 
     public BandMathsOp() {
@@ -265,6 +268,7 @@ public class BandMathsOp extends Operator {
         int height = sourceProducts[0].getSceneRasterHeight();
         targetProduct = new Product(sourceProducts[0].getName() + "BandMath", "BandMath", width, height);
         descriptorMap = new HashMap<>(targetBandDescriptors.length);
+        compiledTermMap = TermCompiler.isEnabled() ? new HashMap<>(targetBandDescriptors.length) : null;
         for (BandDescriptor bandDescriptor : targetBandDescriptors) {
             Term targetTerm = createTerm(bandDescriptor.expression, true);
             if (!BandArithmetic.areRastersEqualInSize(targetTerm)) {
@@ -343,6 +347,8 @@ public class BandMathsOp extends Operator {
             fillSymbolWithData(symbol, rect);
         }
 
+        final CompiledTerm compiledTerm = getCompiledTerm(band, term, refRasterDataSymbols);
+        final double[] values = new double[rect.width];
         final RasterDataEvalEnv env = new RasterDataEvalEnv(rect.x, rect.y, rect.width, rect.height);
         pm.beginTask("Evaluating expression", rect.height);
         try {
@@ -355,9 +361,14 @@ public class BandMathsOp extends Operator {
                 if (pm.isCanceled()) {
                     break;
                 }
-                for (int x = rect.x; x < rect.x + rect.width; x++) {
+                if (compiledTerm != null) {
+                    compiledTerm.evalD(refRasterDataSymbols, values, pixelIndex, rect.width);
+                } else {
                     env.setElemIndex(pixelIndex);
-                    final double v = term.evalD(env);
+                    term.evalD(env, values, 0, rect.width);
+                }
+                for (int x = rect.x; x < rect.x + rect.width; x++) {
+                    final double v = values[x - rect.x];
                     if (Double.isNaN(v) || Double.isInfinite(v)) {
                         targetTile.setSample(x, y, fv);
                     } else {
@@ -372,6 +383,20 @@ public class BandMathsOp extends Operator {
         }
     }
 
+    private CompiledTerm getCompiledTerm(Band band, Term term, RasterDataSymbol[] refRasterDataSymbols) {
+        if (compiledTermMap == null) {
+            return null;
+        }
+        final CompiledTerm compiledTerm;
+        synchronized (compiledTermMap) {
+            if (!compiledTermMap.containsKey(band)) {
+                compiledTermMap.put(band, TermCompiler.compile(term));
+            }
+            compiledTerm = compiledTermMap.get(band);
+        }
+        return compiledTerm != null && compiledTerm.isApplicable(refRasterDataSymbols) ? compiledTerm : null;
+    }
+
     private void fillSymbolWithData(RasterDataSymbol symbol, Rectangle rect) {
         Tile tile = getSourceTile(symbol.getRaster(), rect);
         if (tile.getRasterDataNode().isScalingApplied()) {
@@ -18,18 +18,25 @@ package org.esa.snap.core.gpf.common;
 
 import com.bc.ceres.binding.Converter;
 import com.bc.ceres.binding.ConverterRegistry;
+import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.CrsGeoCoding;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
 import org.esa.snap.core.datamodel.MetadataAttribute;
 import org.esa.snap.core.datamodel.MetadataElement;
+import org.esa.snap.core.datamodel.PixelPos;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.dataop.barithm.BandArithmetic;
+import org.esa.snap.core.dataop.resamp.Resampling;
+import org.esa.snap.core.dataop.resamp.ResamplingFactory;
 import org.esa.snap.core.gpf.GPF;
 import org.esa.snap.core.gpf.Operator;
 import org.esa.snap.core.gpf.OperatorException;
 import org.esa.snap.core.gpf.OperatorSpi;
+import org.esa.snap.core.gpf.Tile;
 import org.esa.snap.core.gpf.annotations.OperatorMetadata;
 import org.esa.snap.core.gpf.annotations.Parameter;
 import org.esa.snap.core.gpf.annotations.SourceProduct;
@@ -56,19 +63,27 @@ import javax.media.jai.operator.AddDescriptor;
 import javax.media.jai.operator.FormatDescriptor;
 import javax.media.jai.operator.MosaicDescriptor;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Creates a mosaic out of a set of source products.
+ * <p>
+ * By default, all source products are reprojected onto the target grid and combined by JAI image operations.
+ * If {@code tileDriven} is set, the mosaic is computed tile by tile instead: for each target tile, the source
+ * products intersecting it are looked up in a {@link MosaicSourceIndex}, only the required source windows are
+ * reprojected and the variables and conditions are accumulated directly into the target tiles.
  *
  * @author Marco Peters
  * @since BEAM 4.7
@@ -129,7 +144,18 @@ public class MosaicOp extends Operator {
     @Parameter(description = "Size of a pixel in Y-direction in map units.", defaultValue = "0.05")
     double pixelSizeY;
 
+    @Parameter(description = "Whether the mosaic is computed tile by tile, reprojecting only the source products\n" +
+                             "intersecting a tile on demand. Needs much less memory and initialisation time for many\n" +
+                             "source products. Not supported in update mode and for orthorectification.",
+               defaultValue = "false")
+    boolean tileDriven;
+
     private Product[] reprojectedProducts;
+    private MosaicSource[] mosaicSources;
+    private MosaicSourceIndex mosaicSourceIndex;
+    // the images of the most recently used sources of the tile-driven mosaicking
+    private Map<MosaicSource, SourceImages> sourceImagesCache;
+    private Resampling resampling;
 
 
     @Override
@@ -141,6 +167,15 @@ public class MosaicOp extends Operator {
         } else {
             targetProduct = createTargetProduct();
         }
+        if (tileDriven) {
+            if (isUpdateMode() || orthorectify) {
+                getLogger().warning("Tile-driven mosaicking is not supported in update mode and for orthorectification. " +
+                                    "All source products are reprojected.");
+            } else {
+                initTileDrivenMosaicking();
+                return;
+            }
+        }
         reprojectedProducts = createReprojectedProducts();
 
         // for each variable and each product one 'alpha' image is created.
@@ -157,6 +192,161 @@ public class MosaicOp extends Operator {
         reprojectedProducts = null;
     }
 
+    @Override
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm) throws OperatorException {
+        if (mosaicSources == null) {
+            // the images of the target bands have been set in initialize()
+            for (Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+                copySourceImageData(entry.getKey(), entry.getValue(), targetRectangle);
+            }
+            return;
+        }
+        final int numPixels = targetRectangle.width * targetRectangle.height;
+        final Condition[] outputConditions = getOutputConditions();
+        final double[][] variableSums = new double[variables.length][numPixels];
+        final int[][] variableCounts = new int[variables.length][numPixels];
+        final int[][] conditionCounts = new int[outputConditions.length][numPixels];
+        final int[] sourceIndices = mosaicSourceIndex.getSourceIndices(targetRectangle);
+        pm.beginTask("Mosaicking source products...", sourceIndices.length + 1);
+        try {
+            if (sourceIndices.length > 0) {
+                final GeoPos[] targetGeoPositions = computeTargetGeoPositions(targetRectangle);
+                for (int sourceIndex : sourceIndices) {
+                    checkForCancellation();
+                    mosaicSources[sourceIndex].accumulate(targetGeoPositions, variableSums, variableCounts, conditionCounts);
+                    pm.worked(1);
+                }
+            }
+            for (int i = 0; i < variables.length; i++) {
+                final Tile variableTile = targetTiles.get(targetProduct.getBand(variables[i].getName()));
+                final Tile countTile = targetTiles.get(targetProduct.getBand(getCountBandName(variables[i])));
+                for (int y = targetRectangle.y, index = 0; y < targetRectangle.y + targetRectangle.height; y++) {
+                    for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++, index++) {
+                        final int count = variableCounts[i][index];
+                        if (variableTile != null) {
+                            variableTile.setSample(x, y, count > 0 ? variableSums[i][index] / count : 0.0);
+                        }
+                        if (countTile != null) {
+                            countTile.setSample(x, y, count);
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < outputConditions.length; i++) {
+                final Tile conditionTile = targetTiles.get(targetProduct.getBand(outputConditions[i].getName()));
+                if (conditionTile != null) {
+                    for (int y = targetRectangle.y, index = 0; y < targetRectangle.y + targetRectangle.height; y++) {
+                        for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++, index++) {
+                            conditionTile.setSample(x, y, conditionCounts[i][index]);
+                        }
+                    }
+                }
+            }
+            pm.worked(1);
+        } finally {
+            pm.done();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (sourceImagesCache != null) {
+            synchronized (sourceImagesCache) {
+                for (SourceImages sourceImages : sourceImagesCache.values()) {
+                    sourceImages.dispose();
+                }
+                sourceImagesCache.clear();
+            }
+            sourceImagesCache = null;
+        }
+        mosaicSources = null;
+        mosaicSourceIndex = null;
+        super.dispose();
+    }
+
+    private void initTileDrivenMosaicking() {
+        final GeoCoding targetGeoCoding = targetProduct.getSceneGeoCoding();
+        final int width = targetProduct.getSceneRasterWidth();
+        final int height = targetProduct.getSceneRasterHeight();
+        final List<MosaicSource> sourceList = new ArrayList<MosaicSource>(sourceProducts.length);
+        final List<Rectangle> footprintList = new ArrayList<Rectangle>(sourceProducts.length);
+        for (Product sourceProduct : sourceProducts) {
+            final GeoCoding sourceGeoCoding = sourceProduct.getSceneGeoCoding();
+            if (sourceGeoCoding == null) {
+                String msg = "Source product: '" + sourceProduct.getName() + "' contains no geo-coding. Skipped for further processing.";
+                getLogger().warning(msg);
+                continue;
+            }
+            sourceList.add(new MosaicSource(sourceProduct));
+            footprintList.add(MosaicSourceIndex.computeFootprint(sourceGeoCoding,
+                                                                 sourceProduct.getSceneRasterWidth(),
+                                                                 sourceProduct.getSceneRasterHeight(),
+                                                                 targetGeoCoding, width, height));
+        }
+        mosaicSources = sourceList.toArray(new MosaicSource[sourceList.size()]);
+        mosaicSourceIndex = new MosaicSourceIndex(footprintList.toArray(new Rectangle[footprintList.size()]),
+                                                  width, height, targetProduct.getPreferredTileSize());
+        final int maxCachedSourceCount = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        sourceImagesCache = new LinkedHashMap<MosaicSource, SourceImages>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MosaicSource, SourceImages> eldest) {
+                if (size() > maxCachedSourceCount) {
+                    eldest.getValue().dispose();
+                    return true;
+                }
+                return false;
+            }
+        };
+        resampling = createResampling();
+    }
+
+    private Resampling createResampling() {
+        if ("Bilinear".equalsIgnoreCase(resamplingName)) {
+            return ResamplingFactory.createResampling(ResamplingFactory.BILINEAR_INTERPOLATION_NAME);
+        } else if ("Bicubic".equalsIgnoreCase(resamplingName)) {
+            return ResamplingFactory.createResampling(ResamplingFactory.BICUBIC_INTERPOLATION_NAME);
+        }
+        // nearest neighbour is done directly
+        return null;
+    }
+
+    private Condition[] getOutputConditions() {
+        final List<Condition> outputConditions = new ArrayList<Condition>();
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                if (condition.isOutput()) {
+                    outputConditions.add(condition);
+                }
+            }
+        }
+        return outputConditions.toArray(new Condition[outputConditions.size()]);
+    }
+
+    private GeoPos[] computeTargetGeoPositions(Rectangle targetRectangle) {
+        final GeoCoding targetGeoCoding = targetProduct.getSceneGeoCoding();
+        final GeoPos[] geoPositions = new GeoPos[targetRectangle.width * targetRectangle.height];
+        final PixelPos pixelPos = new PixelPos();
+        for (int y = targetRectangle.y, index = 0; y < targetRectangle.y + targetRectangle.height; y++) {
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++, index++) {
+                pixelPos.setLocation(x + 0.5, y + 0.5);
+                final GeoPos geoPos = targetGeoCoding.getGeoPos(pixelPos, null);
+                if (geoPos.isValid()) {
+                    geoPositions[index] = geoPos;
+                }
+            }
+        }
+        return geoPositions;
+    }
+
+    private static void copySourceImageData(Band band, Tile tile, Rectangle rectangle) {
+        final Raster data = band.getSourceImage().getData(rectangle);
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                tile.setSample(x, y, data.getSampleDouble(x, y, 0));
+            }
+        }
+    }
+
 
     private void updateMetadata(Product product) {
         final MetadataElement graphElement = product.getMetadataRoot().getElement("Processing_Graph");
@@ -202,25 +392,7 @@ public class MosaicOp extends Operator {
             final ArrayList<PlanarImage> list = new ArrayList<PlanarImage>(reprojectedProducts.length);
             alphaImageList.add(list);
             for (final Product product : reprojectedProducts) {
-                final String validMaskExpression;
-                try {
-                    validMaskExpression = createValidMaskExpression(product, variable.getExpression());
-                } catch (ParseException e) {
-                    throw new OperatorException(e);
-                }
-                final StringBuilder combinedExpression = new StringBuilder(validMaskExpression);
-                if (conditions != null && conditions.length > 0) {
-                    combinedExpression.append(" && (");
-                    for (int i = 0; i < conditions.length; i++) {
-                        Condition condition = conditions[i];
-                        if (i != 0) {
-                            combinedExpression.append(" ").append(combine).append(" ");
-                        }
-                        combinedExpression.append(condition.getExpression());
-                    }
-                    combinedExpression.append(")");
-                }
-                list.add(createExpressionImage(combinedExpression.toString(), product));
+                list.add(createExpressionImage(createAlphaExpression(variable, product), product));
             }
             if (isUpdateMode()) {
                 final RenderedImage updateImage = updateProduct.getBand(getCountBandName(variable)).getSourceImage();
@@ -230,6 +402,28 @@ public class MosaicOp extends Operator {
         return alphaImageList;
     }
 
+    private String createAlphaExpression(Variable variable, Product product) {
+        final String validMaskExpression;
+        try {
+            validMaskExpression = createValidMaskExpression(product, variable.getExpression());
+        } catch (ParseException e) {
+            throw new OperatorException(e);
+        }
+        final StringBuilder combinedExpression = new StringBuilder(validMaskExpression);
+        if (conditions != null && conditions.length > 0) {
+            combinedExpression.append(" && (");
+            for (int i = 0; i < conditions.length; i++) {
+                Condition condition = conditions[i];
+                if (i != 0) {
+                    combinedExpression.append(" ").append(combine).append(" ");
+                }
+                combinedExpression.append(condition.getExpression());
+            }
+            combinedExpression.append(")");
+        }
+        return combinedExpression.toString();
+    }
+
     private static String createValidMaskExpression(Product product, final String expression) throws ParseException {
         return BandArithmetic.getValidMaskExpression(expression, product, null);
     }
@@ -299,16 +493,19 @@ public class MosaicOp extends Operator {
     }
 
     private PlanarImage createConditionImage(Condition condition, Product reprojectedProduct) {
+        // the condition images are used as sourceAlpha parameter for MosaicOpImage, they have to have the same
+        // data type as the source images. That's why we use normal expression images with data type FLOAT32.
+        return createExpressionImage(createConditionExpression(condition, reprojectedProduct), reprojectedProduct);
+    }
+
+    private static String createConditionExpression(Condition condition, Product product) {
         String validMaskExpression;
         try {
-            validMaskExpression = createValidMaskExpression(reprojectedProduct, condition.getExpression());
+            validMaskExpression = createValidMaskExpression(product, condition.getExpression());
         } catch (ParseException e) {
             throw new OperatorException(e);
         }
-        String expression = validMaskExpression + " && (" + condition.getExpression() + ")";
-        // the condition images are used as sourceAlpha parameter for MosaicOpImage, they have to have the same
-        // data type as the source images. That's why we use normal expression images with data type FLOAT32.
-        return createExpressionImage(expression, reprojectedProduct);
+        return validMaskExpression + " && (" + condition.getExpression() + ")";
     }
 
     private RenderedImage createImageSum(List<? extends RenderedImage> renderedImageList) {
@@ -609,8 +806,13 @@ public class MosaicOp extends Operator {
                 if (name.isEmpty()) {
                     name = field.getName();
                 }
+                final Object value = params.get(name);
+                if (value == null && field.getType().isPrimitive()) {
+                    // not contained in the metadata, e.g. a parameter added later, keep the default
+                    continue;
+                }
                 try {
-                    field.set(object, params.get(name));
+                    field.set(object, value);
                 } catch (Exception e) {
                     final String msg = String.format("Cannot initialise operator parameter '%s'", name);
                     throw new OperatorException(msg, e);
@@ -633,6 +835,211 @@ public class MosaicOp extends Operator {
         }
     }
 
+    /**
+     * A source product of the tile-driven mosaicking. The expression images of the variables and conditions are
+     * created on demand and only the data of the source window needed for a target tile is computed. The images
+     * are kept for the most recently used sources only, see {@link #sourceImagesCache}.
+     */
+    private final class MosaicSource {
+
+        private final Product product;
+
+        private MosaicSource(Product product) {
+            this.product = product;
+        }
+
+        private void accumulate(GeoPos[] targetGeoPositions, double[][] variableSums, int[][] variableCounts,
+                                int[][] conditionCounts) {
+            final GeoCoding geoCoding = product.getSceneGeoCoding();
+            final int width = product.getSceneRasterWidth();
+            final int height = product.getSceneRasterHeight();
+            final PixelPos[] pixelPositions = new PixelPos[targetGeoPositions.length];
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = -1;
+            int maxY = -1;
+            for (int i = 0; i < targetGeoPositions.length; i++) {
+                if (targetGeoPositions[i] == null) {
+                    continue;
+                }
+                final PixelPos pixelPos = geoCoding.getPixelPos(targetGeoPositions[i], null);
+                if (pixelPos.isValid() && pixelPos.x >= 0 && pixelPos.x < width && pixelPos.y >= 0 && pixelPos.y < height) {
+                    pixelPositions[i] = pixelPos;
+                    minX = Math.min(minX, (int) pixelPos.x);
+                    minY = Math.min(minY, (int) pixelPos.y);
+                    maxX = Math.max(maxX, (int) pixelPos.x);
+                    maxY = Math.max(maxY, (int) pixelPos.y);
+                }
+            }
+            if (maxX < 0) {
+                return;
+            }
+            // the margin is large enough for the resampling kernels
+            final Rectangle window = new Rectangle(minX - 2, minY - 2, maxX - minX + 5, maxY - minY + 5)
+                    .intersection(new Rectangle(width, height));
+
+            final SourceImages sourceImages = getImages();
+            for (int v = 0; v < variables.length; v++) {
+                final float[] alphas = getData(sourceImages.alphaImages[v], window);
+                final float[] values = getData(sourceImages.variableImages[v], window);
+                final WindowRaster windowRaster = resampling != null ? new WindowRaster(window, values, alphas) : null;
+                final Resampling.Index index = resampling != null ? resampling.createIndex() : null;
+                for (int i = 0; i < pixelPositions.length; i++) {
+                    final PixelPos pixelPos = pixelPositions[i];
+                    if (pixelPos == null) {
+                        continue;
+                    }
+                    final int k = ((int) pixelPos.y - window.y) * window.width + ((int) pixelPos.x - window.x);
+                    if (alphas[k] != 0.0f) {
+                        final double value;
+                        if (windowRaster == null) {
+                            value = values[k];
+                        } else {
+                            resampling.computeIndex(pixelPos.x - window.x, pixelPos.y - window.y,
+                                                    window.width, window.height, index);
+                            value = windowRaster.resample(index, values[k]);
+                        }
+                        variableSums[v][i] += value;
+                        variableCounts[v][i]++;
+                    }
+                }
+            }
+            for (int c = 0; c < sourceImages.conditionImages.length; c++) {
+                final float[] conditionValues = getData(sourceImages.conditionImages[c], window);
+                for (int i = 0; i < pixelPositions.length; i++) {
+                    final PixelPos pixelPos = pixelPositions[i];
+                    if (pixelPos != null) {
+                        final int k = ((int) pixelPos.y - window.y) * window.width + ((int) pixelPos.x - window.x);
+                        if (conditionValues[k] != 0.0f) {
+                            conditionCounts[c][i]++;
+                        }
+                    }
+                }
+            }
+        }
+
+        private SourceImages getImages() {
+            synchronized (sourceImagesCache) {
+                final SourceImages sourceImages = sourceImagesCache.get(this);
+                if (sourceImages != null) {
+                    return sourceImages;
+                }
+            }
+            // created outside of the lock, the expressions of all variables and conditions are parsed
+            final Condition[] outputConditions = getOutputConditions();
+            final PlanarImage[] alphas = new PlanarImage[variables.length];
+            final PlanarImage[] values = new PlanarImage[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                alphas[i] = createExpressionImage(createAlphaExpression(variables[i], product), product);
+                values[i] = createExpressionImage(variables[i].getExpression(), product);
+            }
+            final PlanarImage[] conditions = new PlanarImage[outputConditions.length];
+            for (int i = 0; i < outputConditions.length; i++) {
+                conditions[i] = createExpressionImage(createConditionExpression(outputConditions[i], product), product);
+            }
+            final SourceImages newSourceImages = new SourceImages(values, alphas, conditions);
+            synchronized (sourceImagesCache) {
+                final SourceImages sourceImages = sourceImagesCache.get(this);
+                if (sourceImages != null) {
+                    newSourceImages.dispose();
+                    return sourceImages;
+                }
+                sourceImagesCache.put(this, newSourceImages);
+            }
+            return newSourceImages;
+        }
+
+        private float[] getData(PlanarImage image, Rectangle window) {
+            return image.getData(window).getSamples(window.x, window.y, window.width, window.height, 0, (float[]) null);
+        }
+    }
+
+    /**
+     * The expression images of a source product. Disposing them only releases their cached tiles, so that
+     * images still in use by another thread when they are removed from the cache can be used further.
+     */
+    private static final class SourceImages {
+
+        private final PlanarImage[] variableImages;
+        private final PlanarImage[] alphaImages;
+        private final PlanarImage[] conditionImages;
+
+        private SourceImages(PlanarImage[] variableImages, PlanarImage[] alphaImages, PlanarImage[] conditionImages) {
+            this.variableImages = variableImages;
+            this.alphaImages = alphaImages;
+            this.conditionImages = conditionImages;
+        }
+
+        private void dispose() {
+            for (PlanarImage image : variableImages) {
+                image.dispose();
+            }
+            for (PlanarImage image : alphaImages) {
+                image.dispose();
+            }
+            for (PlanarImage image : conditionImages) {
+                image.dispose();
+            }
+        }
+    }
+
+    /**
+     * Provides the values of a source window to a resampling. A window pixel is valid if its alpha is not zero.
+     */
+    private final class WindowRaster implements Resampling.Raster {
+
+        private final Rectangle window;
+        private final float[] values;
+        private final float[] alphas;
+        // whether all samples requested by the current resampling are valid
+        private boolean allValid;
+
+        private WindowRaster(Rectangle window, float[] values, float[] alphas) {
+            this.window = window;
+            this.values = values;
+            this.alphas = alphas;
+        }
+
+        @Override
+        public int getWidth() {
+            return window.width;
+        }
+
+        @Override
+        public int getHeight() {
+            return window.height;
+        }
+
+        @Override
+        public boolean getSamples(int[] x, int[] y, double[][] samples) {
+            boolean valid = true;
+            for (int j = 0; j < y.length; j++) {
+                for (int i = 0; i < x.length; i++) {
+                    final int k = y[j] * window.width + x[i];
+                    samples[j][i] = values[k];
+                    valid &= alphas[k] != 0.0f;
+                }
+            }
+            allValid &= valid;
+            return valid;
+        }
+
+        /**
+         * Resamples at the given index. If the kernel touches invalid pixels, the value of the nearest pixel is
+         * returned instead, so that masked values never leak into the mosaic.
+         */
+        private double resample(Resampling.Index index, double nearestValue) {
+            allValid = true;
+            final double value;
+            try {
+                value = resampling.resample(this, index);
+            } catch (Exception e) {
+                throw new OperatorException(e);
+            }
+            return allValid ? value : nearestValue;
+        }
+    }
+
     public static class Spi extends OperatorSpi {
 
         public Spi() {
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.gpf.common;
+
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An index of the footprints of the source products of a mosaic in target pixel coordinates. It is used
+ * to find the source products which intersect a target tile.
+ * <p>
+ * A footprint is the bounding box of a coarse grid of source pixels mapped to the target. The box is enlarged
+ * by the maximum distance of neighbouring grid points, so that it is conservative, e.g. for swaths crossing the
+ * anti-meridian or containing a pole.
+ *
+ * @since SNAP 2.0
+ */
+final class MosaicSourceIndex {
+
+    private static final int NUM_GRID_POINTS = 32;
+    private static final int RESAMPLING_MARGIN = 2;
+
+    private final Rectangle[] footprints;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int numTilesX;
+    private final int[][] tileSourceIndices;
+
+    /**
+     * @param footprints The footprints of the source products in target pixel coordinates,
+     *                   {@code null} for source products not intersecting the target.
+     * @param width      The width of the target.
+     * @param height     The height of the target.
+     * @param tileSize   The tile size of the target.
+     */
+    MosaicSourceIndex(Rectangle[] footprints, int width, int height, Dimension tileSize) {
+        this.footprints = footprints;
+        this.tileWidth = tileSize.width;
+        this.tileHeight = tileSize.height;
+        this.numTilesX = (width + tileWidth - 1) / tileWidth;
+        final int numTilesY = (height + tileHeight - 1) / tileHeight;
+        final List<List<Integer>> tileLists = new ArrayList<>(numTilesX * numTilesY);
+        for (int i = 0; i < numTilesX * numTilesY; i++) {
+            tileLists.add(new ArrayList<>());
+        }
+        for (int sourceIndex = 0; sourceIndex < footprints.length; sourceIndex++) {
+            final Rectangle footprint = footprints[sourceIndex];
+            if (footprint == null || footprint.isEmpty()) {
+                continue;
+            }
+            final int minTileX = footprint.x / tileWidth;
+            final int maxTileX = Math.min((footprint.x + footprint.width - 1) / tileWidth, numTilesX - 1);
+            final int minTileY = footprint.y / tileHeight;
+            final int maxTileY = Math.min((footprint.y + footprint.height - 1) / tileHeight, numTilesY - 1);
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    tileLists.get(tileY * numTilesX + tileX).add(sourceIndex);
+                }
+            }
+        }
+        tileSourceIndices = new int[tileLists.size()][];
+        for (int i = 0; i < tileSourceIndices.length; i++) {
+            final List<Integer> list = tileLists.get(i);
+            tileSourceIndices[i] = new int[list.size()];
+            for (int j = 0; j < list.size(); j++) {
+                tileSourceIndices[i][j] = list.get(j);
+            }
+        }
+    }
+
+    /**
+     * @param targetRectangle A rectangle in target pixel coordinates.
+     *
+     * @return The indices of the source products whose footprints intersect the rectangle, in ascending order.
+     */
+    int[] getSourceIndices(Rectangle targetRectangle) {
+        final int minTileX = targetRectangle.x / tileWidth;
+        final int maxTileX = (targetRectangle.x + targetRectangle.width - 1) / tileWidth;
+        final int minTileY = targetRectangle.y / tileHeight;
+        final int maxTileY = (targetRectangle.y + targetRectangle.height - 1) / tileHeight;
+        final boolean[] found = new boolean[footprints.length];
+        int count = 0;
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                for (int sourceIndex : tileSourceIndices[tileY * numTilesX + tileX]) {
+                    if (!found[sourceIndex] && footprints[sourceIndex].intersects(targetRectangle)) {
+                        found[sourceIndex] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+        final int[] sourceIndices = new int[count];
+        for (int sourceIndex = 0, i = 0; i < count; sourceIndex++) {
+            if (found[sourceIndex]) {
+                sourceIndices[i++] = sourceIndex;
+            }
+        }
+        return sourceIndices;
+    }
+
+    /**
+     * Computes the footprint of a source product in target pixel coordinates.
+     *
+     * @param sourceGeoCoding The geo-coding of the source product.
+     * @param sourceWidth     The width of the source product.
+     * @param sourceHeight    The height of the source product.
+     * @param targetGeoCoding The geo-coding of the target product.
+     * @param targetWidth     The width of the target product.
+     * @param targetHeight    The height of the target product.
+     *
+     * @return The footprint, clipped to the target bounds, or {@code null} if the source product
+     * does not intersect the target.
+     */
+    static Rectangle computeFootprint(GeoCoding sourceGeoCoding, int sourceWidth, int sourceHeight,
+                                      GeoCoding targetGeoCoding, int targetWidth, int targetHeight) {
+        final int numX = Math.min(NUM_GRID_POINTS, sourceWidth) + 1;
+        final int numY = Math.min(NUM_GRID_POINTS, sourceHeight) + 1;
+        final PixelPos[] lastRow = new PixelPos[numX];
+        final PixelPos sourcePixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxDistance = 0.0;
+        for (int j = 0; j < numY; j++) {
+            PixelPos left = null;
+            for (int i = 0; i < numX; i++) {
+                // grid points from the first to the last pixel center
+                sourcePixelPos.x = 0.5 + i * (sourceWidth - 1.0) / (numX - 1);
+                sourcePixelPos.y = 0.5 + j * (sourceHeight - 1.0) / (numY - 1);
+                sourceGeoCoding.getGeoPos(sourcePixelPos, geoPos);
+                PixelPos targetPixelPos = null;
+                if (geoPos.isValid()) {
+                    targetPixelPos = targetGeoCoding.getPixelPos(geoPos, null);
+                    if (!targetPixelPos.isValid() || Double.isInfinite(targetPixelPos.x) || Double.isInfinite(targetPixelPos.y)) {
+                        targetPixelPos = null;
+                    }
+                }
+                if (targetPixelPos != null) {
+                    minX = Math.min(minX, targetPixelPos.x);
+                    minY = Math.min(minY, targetPixelPos.y);
+                    maxX = Math.max(maxX, targetPixelPos.x);
+                    maxY = Math.max(maxY, targetPixelPos.y);
+                    maxDistance = Math.max(maxDistance, getDistance(targetPixelPos, left));
+                    maxDistance = Math.max(maxDistance, getDistance(targetPixelPos, lastRow[i]));
+                }
+                left = targetPixelPos;
+                lastRow[i] = targetPixelPos;
+            }
+        }
+        if (minX > maxX) {
+            return null;
+        }
+        final double margin = Math.ceil(maxDistance) + RESAMPLING_MARGIN;
+        final double x1 = Math.max(Math.floor(minX - margin), 0.0);
+        final double y1 = Math.max(Math.floor(minY - margin), 0.0);
+        final double x2 = Math.min(Math.ceil(maxX + margin), targetWidth);
+        final double y2 = Math.min(Math.ceil(maxY + margin), targetHeight);
+        if (x1 >= x2 || y1 >= y2) {
+            return null;
+        }
+        return new Rectangle((int) x1, (int) y1, (int) (x2 - x1), (int) (y2 - y1));
+    }
+
+    private static double getDistance(PixelPos p1, PixelPos p2) {
+        if (p2 == null) {
+            return 0.0;
+        }
+        return Math.max(Math.abs(p1.x - p2.x), Math.abs(p1.y - p2.y));
+    }
+}
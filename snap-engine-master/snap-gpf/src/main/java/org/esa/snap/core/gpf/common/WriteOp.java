@@ -127,6 +127,7 @@ public class WriteOp extends Operator {
     private int[] tileCountsX;
 
     private ProductWriter productWriter;
+    private boolean writerThreadSafe;
     private List<Band> writableBands;
 
     private boolean outputFileExists = false;
@@ -240,6 +241,7 @@ public class WriteOp extends Operator {
             throw new OperatorException("No data product writer for the '" + formatName + "' format available");
         }
         productWriter.setIncrementalMode(incremental);
+        writerThreadSafe = productWriter.isThreadSafe();
         targetProduct.setProductWriter(productWriter);
 
         final Band[] bands = targetProduct.getBands();
@@ -317,9 +319,14 @@ public class WriteOp extends Operator {
                 }
             } else {
                 final ProductData rawSamples = targetTile.getRawSamples();
-                synchronized (productWriter) {
+                if (writerThreadSafe) {
                     productWriter.writeBandRasterData(targetBand, rect.x, rect.y, rect.width, rect.height, rawSamples,
                                                       pm);
+                } else {
+                    synchronized (productWriter) {
+                        productWriter.writeBandRasterData(targetBand, rect.x, rect.y, rect.width, rect.height,
+                                                          rawSamples, pm);
+                    }
                 }
                 markTileAsHandled(targetBand, tileX, tileY);
             }
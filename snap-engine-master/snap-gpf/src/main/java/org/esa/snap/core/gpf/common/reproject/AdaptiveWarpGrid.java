@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.gpf.common.reproject;
+
+import javax.media.jai.Warp;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Approximates the source coordinates of a {@link Warp} by an adaptive grid of exactly computed coordinates.
+ * <p>
+ * A destination rectangle is divided into cells of {@link #CELL_SIZE} pixels. The source coordinates are computed
+ * exactly at the corners, the edge midpoints and the center of a cell. If bilinear interpolation of the corners
+ * reproduces the other points within the tolerance (in source pixels), the cell is interpolated, otherwise it is
+ * divided further. Cells for which none of these points has valid source coordinates are divided further as well,
+ * down to {@link #MIN_CELL_SIZE} pixels, so that the source coordinates of narrow valid regions, e.g. at swath
+ * edges, are still computed. Only the pixels between the points of such a minimum cell are considered to be
+ * outside of the source without being computed.
+ * <p>
+ * A tolerance of zero disables the approximation, every pixel is computed exactly, so only the cache is used.
+ * <p>
+ * If a cache directory is given, the exactly computed coordinates of a rectangle are written to a file. As the
+ * refinement only depends on these coordinates, it is replayed from the file the next time the same rectangle
+ * is computed, without evaluating the warp again. The directory is identified by a key describing the geo-codings
+ * and by the exact coordinates of a set of destination pixels. If the base cache directory grows larger than its
+ * limit, the least recently used directories are deleted.
+ *
+ * @since SNAP 2.0
+ */
+final class AdaptiveWarpGrid {
+
+    private static final int CELL_SIZE = 16;
+    private static final int MIN_CELL_SIZE = 4;
+    private static final int NUM_FINGERPRINT_POINTS = 9;
+
+    private final Warp warp;
+    private final double tolerance;
+    private final File cacheDir;
+
+    /**
+     * @param warp      The exact warp.
+     * @param tolerance The maximum error of the approximated source coordinates in source pixels.
+     * @param cacheDir  The directory the exactly computed coordinates are persisted to, may be {@code null}.
+     */
+    AdaptiveWarpGrid(Warp warp, double tolerance, File cacheDir) {
+        this.warp = warp;
+        this.tolerance = tolerance;
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Computes the source coordinates for a destination rectangle, in the same layout as
+     * {@link Warp#warpRect(int, int, int, int, float[])}.
+     */
+    void warpRect(int x, int y, int width, int height, float[] destRect) {
+        final File cacheFile = cacheDir != null ? new File(cacheDir, x + "_" + y + "_" + width + "_" + height + ".warp") : null;
+        final float[] replayed = cacheFile != null ? readCoordinates(cacheFile, 2 * width * height) : null;
+        final Refinement refinement = new Refinement(x, y, width, height, destRect, replayed);
+        refinement.run();
+        if (cacheFile != null && refinement.computedCount > 0) {
+            writeCoordinates(cacheFile, refinement.recorded, refinement.recordedCount);
+        }
+    }
+
+    /**
+     * Gets the cache directory for a warp. The name of the directory is derived from the given key and the exact
+     * source coordinates of a set of destination pixels, so different warps do not share a directory.
+     * If the size of the base directory exceeds the given maximum, the least recently used cache directories
+     * are deleted.
+     *
+     * @param baseDir      The base cache directory.
+     * @param key          Identifies the geo-codings and coordinate reference systems the warp is derived from.
+     * @param warp         The exact warp.
+     * @param width        The width of the destination image.
+     * @param height       The height of the destination image.
+     * @param tolerance    The tolerance of the approximation.
+     * @param maxCacheSize The maximum size of the base cache directory in bytes.
+     *
+     * @return The cache directory, {@code null} if it cannot be created.
+     */
+    static File getCacheDir(File baseDir, String key, Warp warp, int width, int height, double tolerance,
+                            long maxCacheSize) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        final StringBuilder fingerprint = new StringBuilder(key);
+        fingerprint.append(' ').append(width).append(' ').append(height).append(' ').append(tolerance);
+        final float[] point = new float[2];
+        for (int j = 0; j < NUM_FINGERPRINT_POINTS; j++) {
+            for (int i = 0; i < NUM_FINGERPRINT_POINTS; i++) {
+                final int px = (int) ((long) i * (width - 1) / (NUM_FINGERPRINT_POINTS - 1));
+                final int py = (int) ((long) j * (height - 1) / (NUM_FINGERPRINT_POINTS - 1));
+                warp.warpSparseRect(px, py, 1, 1, 1, 1, point);
+                fingerprint.append(' ').append(Float.floatToIntBits(point[0]))
+                        .append(' ').append(Float.floatToIntBits(point[1]));
+            }
+        }
+        final StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest(fingerprint.toString().getBytes(StandardCharsets.UTF_8))) {
+            name.append(String.format("%02x", b & 0xff));
+        }
+        final File dir = new File(baseDir, name.toString());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return null;
+        }
+        dir.setLastModified(System.currentTimeMillis());
+        trimCache(baseDir, dir, maxCacheSize);
+        return dir;
+    }
+
+    /**
+     * Deletes the least recently used cache directories until the size of the base directory is within the limit.
+     */
+    static void trimCache(File baseDir, File usedDir, long maxCacheSize) {
+        final File[] dirs = baseDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        long cacheSize = 0;
+        final long[] dirSizes = new long[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            dirSizes[i] = getSize(dirs[i]);
+            cacheSize += dirSizes[i];
+        }
+        if (cacheSize <= maxCacheSize) {
+            return;
+        }
+        final Integer[] order = new Integer[dirs.length];
+        final long[] lastModified = new long[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            order[i] = i;
+            lastModified[i] = dirs[i].lastModified();
+        }
+        Arrays.sort(order, (i1, i2) -> Long.compare(lastModified[i1], lastModified[i2]));
+        for (int i : order) {
+            if (cacheSize <= maxCacheSize) {
+                break;
+            }
+            if (!dirs[i].equals(usedDir) && deleteDir(dirs[i])) {
+                cacheSize -= dirSizes[i];
+            }
+        }
+    }
+
+    private static long getSize(File dir) {
+        long size = 0;
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static boolean deleteDir(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        return dir.delete();
+    }
+
+    private static float[] readCoordinates(File file, int maxLength) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final int length = in.readInt();
+            if (length < 0 || length > maxLength || length % 2 != 0 || file.length() != 4L * (length + 1)) {
+                // not written by this class for a rectangle of this size
+                return null;
+            }
+            final float[] coordinates = new float[length];
+            for (int i = 0; i < coordinates.length; i++) {
+                coordinates[i] = in.readFloat();
+            }
+            return coordinates;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeCoordinates(File file, float[] coordinates, int count) {
+        try {
+            final File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeFloat(coordinates[i]);
+                }
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ignored) {
+            // the cache is optional, the coordinates are computed again next time
+        }
+    }
+
+    private final class Refinement {
+
+        private final int x0;
+        private final int y0;
+        private final int width;
+        private final int height;
+        private final float[] destRect;
+        private final boolean[] exact;
+        private final float[] replayed;
+        private final float[] point;
+        private float[] recorded;
+        private int recordedCount;
+        private int computedCount;
+
+        private Refinement(int x0, int y0, int width, int height, float[] destRect, float[] replayed) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+            this.destRect = destRect;
+            this.exact = new boolean[width * height];
+            this.replayed = replayed;
+            this.point = new float[2];
+            this.recorded = new float[256];
+        }
+
+        private void run() {
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            for (int j0 = 0; ; j0 += CELL_SIZE) {
+                final int j1 = Math.min(j0 + CELL_SIZE, height - 1);
+                for (int i0 = 0; ; i0 += CELL_SIZE) {
+                    final int i1 = Math.min(i0 + CELL_SIZE, width - 1);
+                    refine(i0, j0, i1, j1);
+                    if (i1 >= width - 1) {
+                        break;
+                    }
+                }
+                if (j1 >= height - 1) {
+                    break;
+                }
+            }
+        }
+
+        private void refine(int i0, int j0, int i1, int j1) {
+            evaluate(i0, j0);
+            evaluate(i1, j0);
+            evaluate(i0, j1);
+            evaluate(i1, j1);
+            if (i1 - i0 <= 1 && j1 - j0 <= 1) {
+                return;
+            }
+            final int im = (i0 + i1) / 2;
+            final int jm = (j0 + j1) / 2;
+            evaluate(im, j0);
+            evaluate(im, j1);
+            evaluate(i0, jm);
+            evaluate(i1, jm);
+            evaluate(im, jm);
+
+            final int[] is = {i0, im, i1};
+            final int[] js = {j0, jm, j1};
+            int numValid = 0;
+            for (int j : js) {
+                for (int i : is) {
+                    if (isValid(i, j)) {
+                        numValid++;
+                    }
+                }
+            }
+            if (tolerance > 0.0 && numValid == 0 && i1 - i0 <= MIN_CELL_SIZE && j1 - j0 <= MIN_CELL_SIZE) {
+                fill(i0, j0, i1, j1, Float.NaN);
+                return;
+            }
+            if (tolerance > 0.0 && numValid == 9 && isInterpolatable(i0, j0, i1, j1, is, js)) {
+                interpolate(i0, j0, i1, j1);
+                return;
+            }
+            if (i1 - i0 > 1 && j1 - j0 > 1) {
+                refine(i0, j0, im, jm);
+                refine(im, j0, i1, jm);
+                refine(i0, jm, im, j1);
+                refine(im, jm, i1, j1);
+            } else if (i1 - i0 > 1) {
+                refine(i0, j0, im, j1);
+                refine(im, j0, i1, j1);
+            } else {
+                refine(i0, j0, i1, jm);
+                refine(i0, jm, i1, j1);
+            }
+        }
+
+        private boolean isInterpolatable(int i0, int j0, int i1, int j1, int[] is, int[] js) {
+            for (int j : js) {
+                for (int i : is) {
+                    final int k = 2 * (j * width + i);
+                    final double u = i1 > i0 ? (i - i0) / (double) (i1 - i0) : 0.0;
+                    final double v = j1 > j0 ? (j - j0) / (double) (j1 - j0) : 0.0;
+                    if (Math.abs(interpolate(i0, j0, i1, j1, u, v, 0) - destRect[k]) > tolerance ||
+                        Math.abs(interpolate(i0, j0, i1, j1, u, v, 1) - destRect[k + 1]) > tolerance) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void interpolate(int i0, int j0, int i1, int j1) {
+            for (int j = j0; j <= j1; j++) {
+                final double v = j1 > j0 ? (j - j0) / (double) (j1 - j0) : 0.0;
+                for (int i = i0; i <= i1; i++) {
+                    if (!exact[j * width + i]) {
+                        final double u = i1 > i0 ? (i - i0) / (double) (i1 - i0) : 0.0;
+                        final int k = 2 * (j * width + i);
+                        destRect[k] = (float) interpolate(i0, j0, i1, j1, u, v, 0);
+                        destRect[k + 1] = (float) interpolate(i0, j0, i1, j1, u, v, 1);
+                    }
+                }
+            }
+        }
+
+        private double interpolate(int i0, int j0, int i1, int j1, double u, double v, int b) {
+            final double c00 = destRect[2 * (j0 * width + i0) + b];
+            final double c10 = destRect[2 * (j0 * width + i1) + b];
+            final double c01 = destRect[2 * (j1 * width + i0) + b];
+            final double c11 = destRect[2 * (j1 * width + i1) + b];
+            return (1 - v) * ((1 - u) * c00 + u * c10) + v * ((1 - u) * c01 + u * c11);
+        }
+
+        private void fill(int i0, int j0, int i1, int j1, float value) {
+            for (int j = j0; j <= j1; j++) {
+                for (int i = i0; i <= i1; i++) {
+                    if (!exact[j * width + i]) {
+                        final int k = 2 * (j * width + i);
+                        destRect[k] = value;
+                        destRect[k + 1] = value;
+                    }
+                }
+            }
+        }
+
+        private boolean isValid(int i, int j) {
+            final int k = 2 * (j * width + i);
+            return !Float.isNaN(destRect[k]) && !Float.isNaN(destRect[k + 1]);
+        }
+
+        private void evaluate(int i, int j) {
+            final int index = j * width + i;
+            if (exact[index]) {
+                return;
+            }
+            exact[index] = true;
+            if (replayed != null && recordedCount + 2 <= replayed.length) {
+                point[0] = replayed[recordedCount];
+                point[1] = replayed[recordedCount + 1];
+            } else {
+                warp.warpSparseRect(x0 + i, y0 + j, 1, 1, 1, 1, point);
+                computedCount++;
+            }
+            destRect[2 * index] = point[0];
+            destRect[2 * index + 1] = point[1];
+            if (recordedCount + 2 > recorded.length) {
+                recorded = Arrays.copyOf(recorded, 2 * recorded.length);
+            }
+            recorded[recordedCount++] = point[0];
+            recorded[recordedCount++] = point[1];
+        }
+    }
+}
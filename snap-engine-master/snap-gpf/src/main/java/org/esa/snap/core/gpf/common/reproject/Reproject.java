@@ -52,6 +52,7 @@ import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.RenderedImage;
 import java.awt.image.renderable.ParameterBlock;
+import java.io.File;
 
 
 final class Reproject {
@@ -65,14 +66,51 @@ final class Reproject {
     private static final double EPS = 1.0E-6;
 
     private OpImage[] leveledWarpImages;
+    private final double warpTolerance;
+    private final File warpCacheDir;
+    private final String warpCacheKey;
+    private final long maxWarpCacheSize;
 
     Reproject(int numLevels) {
+        this(numLevels, 0.0, null, null, 0L);
+    }
+
+    /**
+     * @param numLevels        the number of resolution levels
+     * @param warpTolerance    the maximum error in source pixels of the approximated source pixel positions,
+     *                         if zero they are computed exactly
+     * @param warpCacheDir     the directory the source pixel positions are persisted to, may be {@code null}
+     * @param warpCacheKey     identifies the source geo-coding, used to distinguish the persisted source pixel
+     *                         positions of different sources
+     * @param maxWarpCacheSize the maximum size of the warp cache directory in bytes
+     */
+    Reproject(int numLevels, double warpTolerance, File warpCacheDir, String warpCacheKey, long maxWarpCacheSize) {
         leveledWarpImages = new OpImage[numLevels];
+        this.warpTolerance = warpTolerance;
+        this.warpCacheDir = warpCacheDir;
+        this.warpCacheKey = warpCacheKey;
+        this.maxWarpCacheSize = maxWarpCacheSize;
     }
 
-    private synchronized Warp getCachingWarp(Warp warp, int width, int height, Dimension tileSize, int level) {
+    private synchronized Warp getCachingWarp(Warp warp, ImageGeometry sourceGeometry, ImageGeometry targetGeometry,
+                                             Dimension tileSize, int level) {
         if (leveledWarpImages[level] == null) {
-            leveledWarpImages[level] = new WarpSourceCoordinatesOpImage(warp, width, height, tileSize, null);
+            final Rectangle imageRect = targetGeometry.getImageRect();
+            final int width = imageRect.width;
+            final int height = imageRect.height;
+            AdaptiveWarpGrid warpGrid = null;
+            if (warpTolerance > 0.0 || warpCacheDir != null) {
+                File cacheDir = null;
+                if (warpCacheDir != null) {
+                    final String key = warpCacheKey + " " + level
+                                       + " " + sourceGeometry.getMapCrs() + " " + sourceGeometry.getImage2MapTransform()
+                                       + " " + targetGeometry.getMapCrs() + " " + targetGeometry.getImage2MapTransform();
+                    cacheDir = AdaptiveWarpGrid.getCacheDir(warpCacheDir, key, warp, width, height, warpTolerance,
+                                                            maxWarpCacheSize);
+                }
+                warpGrid = new AdaptiveWarpGrid(warp, warpTolerance, cacheDir);
+            }
+            leveledWarpImages[level] = new WarpSourceCoordinatesOpImage(warp, warpGrid, width, height, tileSize, null);
         }
         return new WarpFromSourceCoordinates(leveledWarpImages[level]);
     }
@@ -242,8 +280,7 @@ final class Reproject {
             } else {
                 warp = WarpTransform2D.getWarp(null, allSteps2D);
             }
-            Rectangle imageRect = targetGeometry.getImageRect();
-            warp = getCachingWarp(warp, imageRect.width, imageRect.height, tileSize, targetLevel);
+            warp = getCachingWarp(warp, sourceGeometry, targetGeometry, tileSize, targetLevel);
             paramBlk.add(warp).add(interpolation).add(background);
         }
         return JAI.getDefaultInstance().createNS(operation, paramBlk, targetHints);
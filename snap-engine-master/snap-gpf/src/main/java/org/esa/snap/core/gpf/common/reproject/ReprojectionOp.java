@@ -52,6 +52,7 @@ import org.esa.snap.core.image.ResolutionLevel;
 import org.esa.snap.core.util.Debug;
 import org.esa.snap.core.util.ProductUtils;
 import org.esa.snap.core.util.io.FileUtils;
+import org.esa.snap.runtime.Config;
 import org.geotools.factory.Hints;
 import org.geotools.referencing.CRS;
 import org.opengis.referencing.FactoryException;
@@ -71,6 +72,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.HashMap;
+import java.util.prefs.Preferences;
 
 /**
  * <p>
@@ -141,6 +143,17 @@ import java.util.HashMap;
 @SuppressWarnings({"UnusedDeclaration"})
 public class ReprojectionOp extends Operator {
 
+    /**
+     * Preferences key of the directory the source pixel positions of the target grids are persisted to, so that
+     * repeated reprojections onto the same grid do not compute them again. If not set, they are not persisted.
+     */
+    public static final String WARP_CACHE_DIR_PROPERTY = "snap.gpf.reproject.warpCacheDir";
+
+    /**
+     * Preferences key of the maximum size of the {@link #WARP_CACHE_DIR_PROPERTY warp cache directory} in megabytes.
+     * If it is exceeded, the least recently used source pixel positions are deleted. The default is 1024.
+     */
+    public static final String WARP_CACHE_SIZE_PROPERTY = "snap.gpf.reproject.warpCacheSize";
 
     @SourceProduct(alias = "source", description = "The product which will be reprojected.")
     private Product sourceProduct;
@@ -209,6 +222,11 @@ public class ReprojectionOp extends Operator {
             defaultValue = "false")
     private boolean addDeltaBands;
 
+    @Parameter(description = "The maximum error in source pixels of the source pixel positions, which are approximated\n" +
+            "by an adaptive grid. If 0, the source pixel positions are computed exactly for each target pixel.",
+            defaultValue = "0.0", interval = "[0.0,*]")
+    private double warpTolerance;
+
     private ReprojectionSettingsProvider reprojectionSettingsProvider;
 
     private ElevationModel elevationModel;
@@ -372,7 +390,7 @@ public class ReprojectionOp extends Operator {
         }
         Reproject reprojection = reprojectionSettings.getReprojection();
         if (reprojection == null) {
-            reprojection = new Reproject(targetModel.getLevelCount());
+            reprojection = createReprojection(targetModel.getLevelCount(), sourceRaster);
             reprojectionSettings.setReprojection(reprojection);
         }
         MultiLevelImage projectedImage =
@@ -406,6 +424,32 @@ public class ReprojectionOp extends Operator {
         }
     }
 
+    private Reproject createReprojection(int levelCount, RasterDataNode sourceRaster) {
+        final Preferences preferences = Config.instance().preferences();
+        final String warpCacheDir = preferences.get(WARP_CACHE_DIR_PROPERTY, null);
+        if (warpCacheDir == null) {
+            return new Reproject(levelCount, warpTolerance, null, null, 0L);
+        }
+        final long maxWarpCacheSize = preferences.getLong(WARP_CACHE_SIZE_PROPERTY, 1024L) * 1024L * 1024L;
+        return new Reproject(levelCount, warpTolerance, new File(warpCacheDir),
+                             getWarpCacheKey(sourceRaster), maxWarpCacheSize);
+    }
+
+    /**
+     * The geo-coding objects are not comparable across sessions, so they are identified by the product file,
+     * its modification time and the class and raster size of the geo-coding.
+     */
+    private String getWarpCacheKey(RasterDataNode sourceRaster) {
+        final GeoCoding geoCoding = sourceRaster.getGeoCoding();
+        final File fileLocation = sourceProduct.getFileLocation();
+        return (fileLocation != null ? fileLocation.getAbsolutePath() + " " + fileLocation.lastModified() : "")
+               + " " + sourceProduct.getName()
+               + " " + sourceProduct.getStartTime()
+               + " " + (geoCoding != null ? geoCoding.getClass().getName() : null)
+               + " " + sourceRaster.getRasterWidth() + " " + sourceRaster.getRasterHeight()
+               + " " + (orthorectify ? elevationModelName : "");
+    }
+
     private MultiLevelImage createLog10ScaledImage(final MultiLevelImage projectedImage) {
         return new DefaultMultiLevelImage(new AbstractMultiLevelSource(projectedImage.getModel()) {
             @Override
@@ -755,7 +799,8 @@ public class ReprojectionOp extends Operator {
         DefaultReprojectionSettingsProvider(ImageGeometry imageGeometry) {
             MultiLevelModel sourceModel = ImageManager.getMultiLevelModel(sourceProduct.getBandGroup().get(0));
             MultiLevelModel targetModel = ImageManager.createMultiLevelModel(targetProduct);
-            Reproject reprojection = new Reproject(targetModel.getLevelCount());
+            Reproject reprojection = createReprojection(targetModel.getLevelCount(),
+                                                        sourceProduct.getBandGroup().get(0));
             defaultReprojectionSettings = new ReprojectionSettings(null, sourceModel, imageGeometry);
             defaultReprojectionSettings.setTargetModel(targetModel);
             defaultReprojectionSettings.setReprojection(reprojection);
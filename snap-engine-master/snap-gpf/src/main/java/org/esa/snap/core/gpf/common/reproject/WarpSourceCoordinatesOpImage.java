@@ -44,6 +44,7 @@ import java.util.Map;
 class WarpSourceCoordinatesOpImage extends SourcelessOpImage {
 
     private final Warp warp;
+    private final AdaptiveWarpGrid warpGrid;
     private final RasterFormatTag rasterFormatTag;
 
     private static ImageLayout createTwoBandedImageLayout(int width, int height, Dimension tileSize) {
@@ -79,13 +80,27 @@ class WarpSourceCoordinatesOpImage extends SourcelessOpImage {
      */
     WarpSourceCoordinatesOpImage(Warp warp, int width, int height, Dimension tileSize,
                                  Map configuration) {
-        this(warp, createTwoBandedImageLayout(width, height, tileSize), configuration);
+        this(warp, null, width, height, tileSize, configuration);
     }
 
-    private WarpSourceCoordinatesOpImage(Warp warp, ImageLayout layout, Map configuration) {
+    /**
+     * @param warp          the exact warp
+     * @param warpGrid      the approximation of the warp used to compute the tiles, may be {@code null}
+     * @param width         the image width
+     * @param height        the image height
+     * @param tileSize      the tile size
+     * @param configuration the configuration
+     */
+    WarpSourceCoordinatesOpImage(Warp warp, AdaptiveWarpGrid warpGrid, int width, int height, Dimension tileSize,
+                                 Map configuration) {
+        this(warp, warpGrid, createTwoBandedImageLayout(width, height, tileSize), configuration);
+    }
+
+    private WarpSourceCoordinatesOpImage(Warp warp, AdaptiveWarpGrid warpGrid, ImageLayout layout, Map configuration) {
         super(layout, configuration, layout.getSampleModel(null), layout.getMinX(null), layout.getMinY(null),
               layout.getWidth(null), layout.getHeight(null));
         this.warp = warp;
+        this.warpGrid = warpGrid;
         int compatibleTag = RasterAccessor.findCompatibleTag(null, layout.getSampleModel(null));
         rasterFormatTag = new RasterFormatTag(layout.getSampleModel(null), compatibleTag);
         OperatorContext.setTileCache(this);
@@ -115,7 +130,11 @@ class WarpSourceCoordinatesOpImage extends SourcelessOpImage {
         float[] warpData = new float[2 * dstWidth * dstHeight];
         int lineOffset = 0;
 
-        warp.warpRect(dst.getX(), dst.getY(), dstWidth, dstHeight, warpData);
+        if (warpGrid != null) {
+            warpGrid.warpRect(dst.getX(), dst.getY(), dstWidth, dstHeight, warpData);
+        } else {
+            warp.warpRect(dst.getX(), dst.getY(), dstWidth, dstHeight, warpData);
+        }
         int count = 0;
         for (int h = 0; h < dstHeight; h++) {
             int pixelOffset = lineOffset;
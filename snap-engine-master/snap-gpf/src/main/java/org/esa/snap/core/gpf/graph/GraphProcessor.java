@@ -25,8 +25,10 @@ import org.esa.snap.core.gpf.internal.OperatorContext;
 import org.esa.snap.core.gpf.internal.ProductSetHandler;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.math.MathUtils;
+import org.esa.snap.runtime.Config;
 
 import javax.media.jai.JAI;
+import javax.media.jai.OpImage;
 import javax.media.jai.PlanarImage;
 import javax.media.jai.TileComputationListener;
 import javax.media.jai.TileRequest;
@@ -57,9 +59,16 @@ import java.util.logging.Logger;
  */
 public class GraphProcessor {
 
+    /**
+     * Preferences key which enables the streaming mode by default, see {@link #setStreaming(boolean)}.
+     */
+    public static final String STREAMING_PROPERTY = "snap.gpf.graph.streaming";
+
     private List<GraphProcessingObserver> observerList;
     private Logger logger;
     private volatile OperatorException error = null;
+    private boolean streaming;
+    private int maxReleasedTilesPerImage;
 
 
     /**
@@ -68,6 +77,43 @@ public class GraphProcessor {
     public GraphProcessor() {
         observerList = new ArrayList<GraphProcessingObserver>(3);
         logger = SystemUtils.LOG;
+        streaming = Config.instance().preferences().getBoolean(STREAMING_PROPERTY, false);
+    }
+
+    /**
+     * Enables or disables the streaming mode. In streaming mode, the tiles of intermediate nodes are removed
+     * from the tile cache as soon as all nodes consuming them have obtained them (with some retention, see
+     * {@link #setMaxReleasedTilesPerImage(int)}), and the tiles of output nodes are removed once they are
+     * computed. So the tile memory used by a graph is bounded by the graph's depth and the parallelism,
+     * instead of depending on the scene size and the tile cache's eviction.
+     * <p>
+     * The default is given by the preferences key {@link #STREAMING_PROPERTY}.
+     *
+     * @param streaming {@code true} to enable streaming mode
+     * @since SNAP 2.0
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return {@code true} if the streaming mode is enabled.
+     * @since SNAP 2.0
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets the number of tiles per intermediate image which are kept in the tile cache in streaming mode,
+     * after all consumers have used them. Retaining some tiles avoids recomputation by operators which use a
+     * source tile for several target tiles. The default (zero or less) is the tile scheduler's parallelism.
+     *
+     * @param maxReleasedTilesPerImage the maximum number of retained tiles per image
+     * @since SNAP 2.0
+     */
+    public void setMaxReleasedTilesPerImage(int maxReleasedTilesPerImage) {
+        this.maxReleasedTilesPerImage = maxReleasedTilesPerImage;
     }
 
     /**
@@ -175,6 +221,7 @@ public class GraphProcessor {
         final Semaphore semaphore = new Semaphore(parallelism, true);
         final TileComputationListener tcl = new GraphTileComputationListener(semaphore, parallelism);
         final TileComputationListener[] listeners = new TileComputationListener[]{tcl};
+        final TileReleaser tileReleaser = streaming ? createTileReleaser(graphContext, parallelism) : null;
 
         try {
             pm.beginTask("Computing raster data...", numPmTicks);
@@ -251,12 +298,33 @@ public class GraphProcessor {
             semaphore.release(parallelism);
             pm.done();
             JAI.getDefaultInstance().setImagingListener(imagingListener);
+            if (tileReleaser != null) {
+                removeTileReleaser(graphContext, tileReleaser);
+            }
             fireProcessingStopped(graphContext);
         }
 
         return graphContext.getOutputProducts();
     }
 
+    private TileReleaser createTileReleaser(GraphContext graphContext, int parallelism) {
+        final int maxReleasedTiles = maxReleasedTilesPerImage > 0 ? maxReleasedTilesPerImage : parallelism;
+        final TileReleaser tileReleaser = TileReleaser.create(graphContext, maxReleasedTiles);
+        for (NodeContext nodeContext : graphContext.getInitNodeContextDeque()) {
+            nodeContext.setSourceTileListener(tileReleaser);
+        }
+        return tileReleaser;
+    }
+
+    private void removeTileReleaser(GraphContext graphContext, TileReleaser tileReleaser) {
+        for (NodeContext nodeContext : graphContext.getInitNodeContextDeque()) {
+            nodeContext.setSourceTileListener(null);
+        }
+        logger.fine(String.format("Streaming graph execution removed %d intermediate tiles from tile caches",
+                                  tileReleaser.getRemovedTileCount()));
+        tileReleaser.dispose();
+    }
+
     private Map<Dimension, List<NodeContext>> buildTileDimensionMap(NodeContext[] outputNodeContexts) {
         final int mapSize = outputNodeContexts.length;
         Map<Dimension, List<NodeContext>> tileSizeMap = new HashMap<Dimension, List<NodeContext>>(mapSize);
@@ -342,6 +410,13 @@ public class GraphProcessor {
         public void tileComputed(Object eventSource, TileRequest[] requests, PlanarImage image, int tileX,
                                  int tileY,
                                  Raster raster) {
+            if (streaming && image instanceof OpImage) {
+                // output tiles are not used by any other node
+                final OpImage opImage = (OpImage) image;
+                if (opImage.getTileCache() != null) {
+                    opImage.getTileCache().remove(opImage, tileX, tileY);
+                }
+            }
             semaphore.release();
         }
 
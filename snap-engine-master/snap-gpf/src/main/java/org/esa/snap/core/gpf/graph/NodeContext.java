@@ -26,6 +26,7 @@ import org.esa.snap.core.gpf.OperatorSpi;
 import org.esa.snap.core.gpf.OperatorSpiRegistry;
 import org.esa.snap.core.gpf.internal.OperatorConfiguration;
 import org.esa.snap.core.gpf.internal.OperatorContext;
+import org.esa.snap.core.gpf.internal.SourceTileListener;
 
 import javax.media.jai.PlanarImage;
 import java.lang.reflect.Field;
@@ -86,6 +87,10 @@ public class NodeContext {
         return operatorContext.getTargetImage(band);
     }
 
+    void setSourceTileListener(SourceTileListener sourceTileListener) {
+        operatorContext.setSourceTileListener(sourceTileListener);
+    }
+
     public boolean canComputeTileStack() {
         return operatorContext.isComputeTileStackMethodUsable();
     }
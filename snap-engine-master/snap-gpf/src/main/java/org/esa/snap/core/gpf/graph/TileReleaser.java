@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.gpf.graph;
+
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.RasterDataNode;
+import org.esa.snap.core.gpf.internal.OperatorContext;
+import org.esa.snap.core.gpf.internal.SourceTileListener;
+
+import javax.media.jai.OpImage;
+import javax.media.jai.TileCache;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Releases the tiles of intermediate images of a graph from their tile cache as soon as all
+ * consumers have used them. Used by the {@link GraphProcessor} in streaming mode.
+ * <p>
+ * For each tile of a source image, the operators which obtained the tile are counted. If all operators
+ * which use the raster of the tile have obtained it, the tile is not released immediately but
+ * appended to a queue of released tiles of its image, because operators often use a source tile for
+ * several target tiles (e.g. neighbourhood operators or reprojection). Only if this queue grows beyond
+ * a given limit, the least recently used tile is removed from the tile cache. So the number of retained
+ * tiles per image is bounded, regardless of the scene size.
+ * <p>
+ * Which rasters of a source product an operator reads is only known at runtime. As long as not all operators
+ * which use a source product have obtained a tile of it, every raster of the product is assumed to be read by
+ * all of them. Afterwards, a raster is assumed to be read only by the operators which have obtained tiles of it,
+ * so that the tiles of rasters which are read by some of the consumers only are released as well.
+ * <p>
+ * Source tiles not obtained via {@link OperatorContext#getSourceTile} (e.g. images directly chained by
+ * an operator) are not tracked and remain subject to the tile cache's own memory management.
+ *
+ * @since SNAP 2.0
+ */
+class TileReleaser implements SourceTileListener {
+
+    private final Map<Product, Integer> consumerCounts;
+    private final int maxReleasedTilesPerImage;
+    private final Map<Product, Set<OperatorContext>> activeConsumers;
+    private final Map<RasterDataNode, Set<OperatorContext>> rasterConsumers;
+    private final Map<TileKey, Set<OperatorContext>> tileConsumers;
+    private final Map<OpImage, LinkedHashSet<TileKey>> releasedTiles;
+    private long removedTileCount;
+
+    /**
+     * @param consumerCounts           The number of consuming operators for each source product.
+     * @param maxReleasedTilesPerImage The maximum number of tiles per image which are retained after all
+     *                                 consumers have used them.
+     */
+    TileReleaser(Map<Product, Integer> consumerCounts, int maxReleasedTilesPerImage) {
+        this.consumerCounts = consumerCounts;
+        this.maxReleasedTilesPerImage = maxReleasedTilesPerImage;
+        this.activeConsumers = new HashMap<>();
+        this.rasterConsumers = new HashMap<>();
+        this.tileConsumers = new HashMap<>();
+        this.releasedTiles = new HashMap<>();
+    }
+
+    static TileReleaser create(GraphContext graphContext, int maxReleasedTilesPerImage) {
+        final Map<Product, Integer> consumerCounts = new HashMap<>();
+        for (NodeContext nodeContext : graphContext.getInitNodeContextDeque()) {
+            final Set<Product> sourceProducts = new HashSet<>();
+            for (Product sourceProduct : nodeContext.getSourceProducts()) {
+                if (sourceProducts.add(sourceProduct)) {
+                    final Integer count = consumerCounts.get(sourceProduct);
+                    consumerCounts.put(sourceProduct, count != null ? count + 1 : 1);
+                }
+            }
+        }
+        return new TileReleaser(consumerCounts, maxReleasedTilesPerImage);
+    }
+
+    /**
+     * @return The number of tiles removed from tile caches so far.
+     */
+    synchronized long getRemovedTileCount() {
+        return removedTileCount;
+    }
+
+    /**
+     * @return The number of tiles which have been obtained by some but not yet by all of their consumers.
+     */
+    synchronized int getPendingTileCount() {
+        return tileConsumers.size();
+    }
+
+    /**
+     * Forgets about all tracked tiles. Called at the end of a graph run, the tiles themselves are left to the
+     * tile caches.
+     */
+    synchronized void dispose() {
+        activeConsumers.clear();
+        rasterConsumers.clear();
+        tileConsumers.clear();
+        releasedTiles.clear();
+    }
+
+    @Override
+    public void sourceTileObtained(OperatorContext context, RasterDataNode rasterDataNode, Rectangle region) {
+        final Product product = rasterDataNode.getProduct();
+        final Integer consumerCount = consumerCounts.get(product);
+        if (consumerCount == null || !rasterDataNode.isSourceImageSet()) {
+            return;
+        }
+        final RenderedImage image = rasterDataNode.getSourceImage().getImage(0);
+        if (!(image instanceof OpImage)) {
+            return;
+        }
+        final OpImage opImage = (OpImage) image;
+        final Rectangle bounds = region.intersection(opImage.getBounds());
+        if (bounds.isEmpty()) {
+            return;
+        }
+        final int minTileX = opImage.XToTileX(bounds.x);
+        final int maxTileX = opImage.XToTileX(bounds.x + bounds.width - 1);
+        final int minTileY = opImage.YToTileY(bounds.y);
+        final int maxTileY = opImage.YToTileY(bounds.y + bounds.height - 1);
+        synchronized (this) {
+            Set<OperatorContext> consumersOfRaster = rasterConsumers.get(rasterDataNode);
+            if (consumersOfRaster == null) {
+                consumersOfRaster = new HashSet<>();
+                rasterConsumers.put(rasterDataNode, consumersOfRaster);
+            }
+            consumersOfRaster.add(context);
+            Set<OperatorContext> consumersOfProduct = activeConsumers.get(product);
+            if (consumersOfProduct == null) {
+                consumersOfProduct = new HashSet<>();
+                activeConsumers.put(product, consumersOfProduct);
+            }
+            final boolean wasActive = consumersOfProduct.size() >= consumerCount;
+            consumersOfProduct.add(context);
+            final boolean active = consumersOfProduct.size() >= consumerCount;
+            final int requiredCount = active ? consumersOfRaster.size() : consumerCount;
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    tileUsed(new TileKey(opImage, rasterDataNode, tileX, tileY), context, requiredCount);
+                }
+            }
+            if (active && !wasActive) {
+                releaseCompletedTiles(product);
+            }
+        }
+    }
+
+    /**
+     * Called once all consumers of the product are active, releases the pending tiles of those rasters of the
+     * product which have been obtained by all operators reading the raster.
+     */
+    private void releaseCompletedTiles(Product product) {
+        final Iterator<Map.Entry<TileKey, Set<OperatorContext>>> iterator = tileConsumers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<TileKey, Set<OperatorContext>> entry = iterator.next();
+            final TileKey key = entry.getKey();
+            if (key.raster.getProduct() == product
+                && entry.getValue().size() >= rasterConsumers.get(key.raster).size()) {
+                iterator.remove();
+                release(key);
+            }
+        }
+    }
+
+    private void tileUsed(TileKey key, OperatorContext context, int consumerCount) {
+        final LinkedHashSet<TileKey> released = releasedTiles.get(key.image);
+        if (released != null && released.remove(key)) {
+            // used again, make it the most recently used one
+            released.add(key);
+            return;
+        }
+        Set<OperatorContext> consumers = tileConsumers.get(key);
+        if (consumers == null) {
+            consumers = new HashSet<>();
+            tileConsumers.put(key, consumers);
+        }
+        consumers.add(context);
+        if (consumers.size() >= consumerCount) {
+            tileConsumers.remove(key);
+            release(key);
+        }
+    }
+
+    private void release(TileKey key) {
+        LinkedHashSet<TileKey> released = releasedTiles.get(key.image);
+        if (released == null) {
+            released = new LinkedHashSet<>();
+            releasedTiles.put(key.image, released);
+        }
+        released.add(key);
+        if (released.size() > maxReleasedTilesPerImage) {
+            final Iterator<TileKey> iterator = released.iterator();
+            final TileKey eldestKey = iterator.next();
+            iterator.remove();
+            final TileCache tileCache = eldestKey.image.getTileCache();
+            if (tileCache != null) {
+                tileCache.remove(eldestKey.image, eldestKey.tileX, eldestKey.tileY);
+            }
+            removedTileCount++;
+        }
+    }
+
+    private static final class TileKey {
+
+        private final OpImage image;
+        // not part of the identity, an image is the source image of a single raster
+        private final RasterDataNode raster;
+        private final int tileX;
+        private final int tileY;
+
+        private TileKey(OpImage image, RasterDataNode raster, int tileX, int tileY) {
+            this.image = image;
+            this.raster = raster;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final TileKey tileKey = (TileKey) o;
+            return tileX == tileKey.tileX && tileY == tileKey.tileY && image == tileKey.image;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(image);
+            result = 31 * result + tileX;
+            result = 31 * result + tileY;
+            return result;
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
 import com.bc.ceres.jai.tilecache.DefaultSwapSpace;
 import com.bc.ceres.jai.tilecache.SwappingTileCache;
+import com.bc.ceres.jai.tilecache.TileCompression;
 import org.esa.snap.core.dataio.ProductIO;
 import org.esa.snap.core.dataio.ProductWriter;
 import org.esa.snap.core.datamodel.Band;
@@ -58,6 +59,7 @@ import org.esa.snap.core.gpf.descriptor.PropertySetDescriptorFactory;
 import org.esa.snap.core.gpf.graph.GraphOp;
 import org.esa.snap.core.gpf.monitor.TileComputationEvent;
 import org.esa.snap.core.gpf.monitor.TileComputationObserver;
+import org.esa.snap.core.image.ConcurrentTileCache;
 import org.esa.snap.core.util.ModuleMetadata;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.jai.JAIUtils;
@@ -137,6 +139,7 @@ public class OperatorContext {
     private boolean initialising;
     private boolean requiresAllBands;
     private boolean executed;
+    private volatile SourceTileListener sourceTileListener;
 
     public OperatorContext(Operator operator) {
         if (operator == null) {
@@ -156,7 +159,8 @@ public class OperatorContext {
     }
 
     /**
-     * Makes sure that the given JAI OpImage has a valid tile cache (see System property {@link GPF#USE_FILE_TILE_CACHE_PROPERTY}),
+     * Makes sure that the given JAI OpImage has a valid tile cache (see System properties {@link GPF#USE_FILE_TILE_CACHE_PROPERTY}
+     * and {@link GPF#USE_CONCURRENT_TILE_CACHE_PROPERTY}),
      * or makes sure that it has none (see System property {@link GPF#DISABLE_TILE_CACHE_PROPERTY}).
      *
      * @param image Any JAI OpImage.
@@ -174,10 +178,16 @@ public class OperatorContext {
     private static synchronized TileCache getTileCache() {
         if (tileCache == null) {
             boolean useFileTileCache = Config.instance().preferences().getBoolean(GPF.USE_FILE_TILE_CACHE_PROPERTY, false);
-            if (useFileTileCache) {
+            boolean useConcurrentTileCache = Config.instance().preferences().getBoolean(GPF.USE_CONCURRENT_TILE_CACHE_PROPERTY, false);
+            if (useConcurrentTileCache) {
+                tileCache = new ConcurrentTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(),
+                                                    useFileTileCache ? SwappingTileCache.DEFAULT_SWAP_DIR : null);
+            } else if (useFileTileCache) {
+                boolean compressSwappedTiles = Config.instance().preferences().getBoolean(GPF.COMPRESS_SWAPPED_TILES_PROPERTY, false);
                 tileCache = new SwappingTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(),
                                                   new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR,
-                                                                       SystemUtils.LOG));
+                                                                       SystemUtils.LOG,
+                                                                       compressSwappedTiles ? TileCompression.createDefault() : null));
             } else {
                 tileCache = JAI.getDefaultInstance().getTileCache();
             }
@@ -422,9 +432,22 @@ public class OperatorContext {
         //
         /////////////////////////////////////////////////////////////////////
         resumeWatch();
+        final SourceTileListener sourceTileListener = this.sourceTileListener;
+        if (sourceTileListener != null) {
+            sourceTileListener.sourceTileObtained(this, rasterDataNode, region);
+        }
         return new TileImpl(rasterDataNode, awtRaster);
     }
 
+    /**
+     * Sets a listener which is informed each time the operator has obtained a source tile.
+     *
+     * @param sourceTileListener The listener, may be {@code null}.
+     */
+    public void setSourceTileListener(SourceTileListener sourceTileListener) {
+        this.sourceTileListener = sourceTileListener;
+    }
+
     public OperatorImage getTargetImage(Band band) {
         return targetImageMap.get(band);
     }
@@ -36,13 +36,19 @@ import java.awt.Rectangle;
 import java.awt.image.Raster;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.Semaphore;
 
 /**
  * This executor triggers the computation of all tiles that the bands of the
  * target product of the given operator have. The computation of these tiles is
  * parallelized to use all available CPUs (cores) using the JAI
- * {@link TileScheduler}.
+ * {@link TileScheduler}, or alternatively using a work-stealing {@link ForkJoinPool}
+ * (see {@link ExecutionOrder#WORK_STEALING}).
  *
  * @author Marco Zuehlke
  * @since BEAM 4.7
@@ -79,6 +85,16 @@ public class OperatorExecutor {
          * for debugging purpose
          */
         PULL_ROW_BAND_COLUMN,
+        /**
+         * Computes the tiles using a work-stealing thread pool instead of the JAI tile scheduler,
+         * which keeps all threads busy even if the tiles' computation times differ largely.<br/>
+         * The tiles of all bands at a tile position are computed by the same thread, in the order
+         * of the bands' priorities (see {@link #setPriority(PlanarImage, int)}). Each thread works on
+         * neighbouring tile positions in row-column order and idle threads steal the positions farthest
+         * away, so source tiles computed for a tile are likely still cached when they are required
+         * for the next one.<br/>
+         */
+        WORK_STEALING,
     }
 
     private final int tileCountX;
@@ -86,7 +102,9 @@ public class OperatorExecutor {
     private final PlanarImage[] images;
     private final TileScheduler tileScheduler;
     private final int parallelism;
+    private final Map<PlanarImage, Integer> priorities;
     private volatile OperatorException error = null;
+    private volatile ForkJoinPool forkJoinPool;
     private boolean scheduleRowsSeparate = false;
 
     public OperatorExecutor(PlanarImage[] images, int tileCountX, int tileCountY) {
@@ -99,12 +117,42 @@ public class OperatorExecutor {
         this.tileCountY = tileCountY;
         this.parallelism = parallelism;
         this.tileScheduler = JAI.getDefaultInstance().getTileScheduler();
+        this.priorities = new ConcurrentHashMap<>();
     }
 
     public void setScheduleRowsSeparate(boolean scheduleRowsSeparate) {
         this.scheduleRowsSeparate = scheduleRowsSeparate;
     }
 
+    /**
+     * Sets the priority of an image. Used by {@link ExecutionOrder#WORK_STEALING} only: at each tile position,
+     * the tiles of images with a higher priority are computed first. The default priority is zero.
+     *
+     * @param image    One of the images to be computed.
+     * @param priority The priority.
+     */
+    public void setPriority(PlanarImage image, int priority) {
+        priorities.put(image, priority);
+    }
+
+    /**
+     * @return The number of tasks (tile positions or ranges of them) stolen by idle threads
+     * from the queues of other threads, if {@link ExecutionOrder#WORK_STEALING} is used.
+     */
+    public long getStealCount() {
+        final ForkJoinPool pool = forkJoinPool;
+        return pool != null ? pool.getStealCount() : 0L;
+    }
+
+    /**
+     * @return The current number of tasks (tile positions or ranges of them) queued by the threads,
+     * if {@link ExecutionOrder#WORK_STEALING} is used.
+     */
+    public long getQueuedTaskCount() {
+        final ForkJoinPool pool = forkJoinPool;
+        return pool != null ? pool.getQueuedTaskCount() : 0L;
+    }
+
     public void execute(ProgressMonitor pm) {
         execute(ExecutionOrder.SCHEDULE_ROW_BAND_COLUMN, pm);
     }
@@ -133,6 +181,8 @@ public class OperatorExecutor {
                 scheduleBandRowColumn(semaphore, listeners, pm);
             } else if (effectiveExecutionOrder == ExecutionOrder.PULL_ROW_BAND_COLUMN) {
                 executeRowBandColumn(pm);
+            } else if (effectiveExecutionOrder == ExecutionOrder.WORK_STEALING) {
+                executeWorkStealing(pm);
             } else {
                 throw new IllegalArgumentException("executionOrder");
             }
@@ -208,6 +258,31 @@ public class OperatorExecutor {
         }
     }
 
+    private void executeWorkStealing(ProgressMonitor pm) {
+        final PlanarImage[] prioritisedImages = images.clone();
+        Arrays.sort(prioritisedImages, (image1, image2) -> Integer.compare(getPriority(image2), getPriority(image1)));
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        forkJoinPool = pool;
+        try {
+            if (scheduleRowsSeparate) {
+                for (int tileY = 0; tileY < tileCountY; tileY++) {
+                    pool.invoke(new TileTask(prioritisedImages, tileY * tileCountX, (tileY + 1) * tileCountX, pm));
+                }
+            } else {
+                pool.invoke(new TileTask(prioritisedImages, 0, tileCountX * tileCountY, pm));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        SystemUtils.LOG.fine(String.format("Computed %d tiles using %d threads, %d tasks stolen",
+                                           tileCountX * tileCountY * images.length, parallelism, pool.getStealCount()));
+    }
+
+    private int getPriority(PlanarImage image) {
+        final Integer priority = priorities.get(image);
+        return priority != null ? priority : 0;
+    }
+
     private void scheduleTile(final PlanarImage image, int tileX, int tileY, Semaphore semaphore,
                               TileComputationListener[] listeners, ProgressMonitor pm) {
 
@@ -287,6 +362,53 @@ public class OperatorExecutor {
         }
     }
 
+    /**
+     * Computes the tiles of all images at the tile positions {@code start} (inclusive) to {@code end} (exclusive),
+     * where tile positions are numbered in row-column order. Ranges are split in halves, the first half is computed
+     * by the current thread and the second half may be stolen by other threads.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private final PlanarImage[] images;
+        private final int start;
+        private final int end;
+        private final ProgressMonitor pm;
+
+        TileTask(PlanarImage[] images, int start, int end, ProgressMonitor pm) {
+            this.images = images;
+            this.start = start;
+            this.end = end;
+            this.pm = pm;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                final int mid = (start + end) >>> 1;
+                invokeAll(new TileTask(images, start, mid, pm), new TileTask(images, mid, end, pm));
+            } else if (end > start) {
+                final int tileX = start % tileCountX;
+                final int tileY = start / tileCountX;
+                for (final PlanarImage image : images) {
+                    checkForCancelation(pm);
+                    if (error != null) {
+                        throw error;
+                    }
+                    SystemUtils.LOG.finest(String.format("Computing tile x=%d/%d y=%d/%d for %s",
+                                                         tileX + 1, tileCountX, tileY + 1, tileCountY, image));
+                    /////////////////////////////////////////////////////////////////////
+                    //
+                    // Note: GPF pull-processing is triggered here!!!
+                    //
+                    image.getTile(tileX, tileY);
+                    //
+                    /////////////////////////////////////////////////////////////////////
+                    pm.worked(1);
+                }
+            }
+        }
+    }
+
     private class OperatorTileComputationListenerStack implements TileComputationListener {
 
         private final Semaphore semaphore;
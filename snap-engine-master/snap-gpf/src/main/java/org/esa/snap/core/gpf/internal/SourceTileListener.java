@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.gpf.internal;
+
+import org.esa.snap.core.datamodel.RasterDataNode;
+
+import java.awt.Rectangle;
+
+/**
+ * Informed by an {@link OperatorContext} each time its operator has obtained a source tile.
+ * This method is usually called asynchronously by multiple threads.
+ *
+ * @see OperatorContext#setSourceTileListener(SourceTileListener)
+ * @since SNAP 2.0
+ */
+public interface SourceTileListener {
+
+    /**
+     * Called after an operator has obtained a source tile.
+     *
+     * @param context        The context of the operator which requested the source tile.
+     * @param rasterDataNode The source raster.
+     * @param region         The region of the source tile.
+     */
+    void sourceTileObtained(OperatorContext context, RasterDataNode rasterDataNode, Rectangle region);
+}
@@ -141,6 +141,41 @@ public class MosaicOpTest {
         assertSampleValuesInt(condBand, geoPositions, new int[]{0, 1, 2, 2, 1});
     }
 
+    @Test
+    public void testMosaickingTileDrivenWithConditions() {
+        final MosaicOp op = new MosaicOp();
+        op.setParameterDefaultValues();
+        op.setSourceProducts(new Product[]{product1, product2, product3});
+        op.variables = new MosaicOp.Variable[]{
+                new MosaicOp.Variable("b1", "b1")
+        };
+        op.conditions = new MosaicOp.Condition[]{
+                new MosaicOp.Condition("b1_cond", "b1 != 3", true)
+        };
+        op.westBound = -10.0;
+        op.northBound = 10.0;
+        op.eastBound = 10.0;
+        op.southBound = -10.0;
+        op.pixelSizeX = 1.0;
+        op.pixelSizeY = 1.0;
+        op.tileDriven = true;
+
+        final Product product = op.getTargetProduct();
+
+        final GeoPos[] geoPositions = {
+                new GeoPos(8, -8), new GeoPos(4, -4), new GeoPos(-1, 1), new GeoPos(-4, 4), new GeoPos(-8, 8)
+        };
+
+        Band b1Band = product.getBand("b1");
+        assertSampleValuesFloat(b1Band, geoPositions, new float[]{0.0f, 5.0f, 3.5f, 3.5f, 2.0f});
+
+        Band countBand = product.getBand("b1_count");
+        assertSampleValuesInt(countBand, geoPositions, new int[]{0, 1, 2, 2, 1});
+
+        Band condBand = product.getBand("b1_cond");
+        assertSampleValuesInt(condBand, geoPositions, new int[]{0, 1, 2, 2, 1});
+    }
+
     @Test
     public void testMosaickingWithInvalidSourceSamples() throws IOException {
         final Product product1Copy = ProductSubsetBuilder.createProductSubset(product1, null, "P1", "Descr");
@@ -185,6 +220,53 @@ public class MosaicOpTest {
         assertSampleValuesInt(condBand, geoPositions, new int[]{0, 1, 1, 2, 1});
     }
 
+    @Test
+    public void testTileDrivenResamplingIgnoresInvalidNeighbours() throws Exception {
+        assertInvalidNeighboursIgnored("Bilinear");
+        assertInvalidNeighboursIgnored("Bicubic");
+    }
+
+    private static void assertInvalidNeighboursIgnored(String resamplingName) throws Exception {
+        // the upper three rows are invalid and have values which must not leak into the mosaic
+        final float[] data = new float[WIDTH * HEIGHT];
+        Arrays.fill(data, 2.0f);
+        Arrays.fill(data, 0, 3 * WIDTH, 1000.0f);
+        final Band band = new Band("b1", ProductData.TYPE_FLOAT32, WIDTH, HEIGHT);
+        band.setRasterData(ProductData.createInstance(data));
+        band.setValidPixelExpression("b1 < 100");
+        final Product source = createProduct("P4", 0, 0, band);
+
+        final MosaicOp op = new MosaicOp();
+        op.setParameterDefaultValues();
+        op.setSourceProducts(new Product[]{source});
+        op.variables = new MosaicOp.Variable[]{
+                new MosaicOp.Variable("b1", "b1")
+        };
+        op.westBound = -10.0;
+        op.northBound = 10.0;
+        op.eastBound = 10.0;
+        op.southBound = -10.0;
+        op.pixelSizeX = 1.0;
+        op.pixelSizeY = 1.0;
+        op.tileDriven = true;
+        op.resamplingName = resamplingName;
+
+        final Product product = op.getTargetProduct();
+        final Raster values = product.getBand("b1").getSourceImage().getData();
+        final Raster counts = product.getBand("b1_count").getSourceImage().getData();
+        int numValid = 0;
+        for (int y = 0; y < values.getHeight(); y++) {
+            for (int x = 0; x < values.getWidth(); x++) {
+                if (counts.getSample(x, y, 0) > 0) {
+                    assertEquals(resamplingName + " at " + x + "," + y, 2.0f, values.getSampleFloat(x, y, 0), 1.0e-5);
+                    numValid++;
+                }
+            }
+        }
+        assertTrue(numValid > 0);
+        source.dispose();
+    }
+
     @Test
     public void testMosaickingUpdate() throws IOException {
         final MosaicOp mosaicOp = new MosaicOp();
@@ -294,8 +376,13 @@ public class MosaicOpTest {
 
     private static Product createProduct(final String name, final int easting, final int northing,
                                          final float bandFillValue) throws FactoryException, TransformException {
+        return createProduct(name, easting, northing, createBand(bandFillValue));
+    }
+
+    private static Product createProduct(final String name, final int easting, final int northing,
+                                         final Band band) throws FactoryException, TransformException {
         final Product product = new Product(name, "T", WIDTH, HEIGHT);
-        product.addBand(createBand(bandFillValue));
+        product.addBand(band);
         final AffineTransform transform = new AffineTransform();
         transform.translate(easting, northing);
         transform.scale(1, -1);
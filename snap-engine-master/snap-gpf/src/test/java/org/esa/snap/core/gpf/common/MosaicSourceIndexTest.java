@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.gpf.common;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+
+import static org.junit.Assert.*;
+
+public class MosaicSourceIndexTest {
+
+    @Test
+    public void testGetSourceIndices() {
+        final Rectangle[] footprints = {
+                new Rectangle(0, 0, 30, 30),
+                null,
+                new Rectangle(30, 20, 40, 10),
+                new Rectangle(90, 90, 10, 10),
+        };
+        final MosaicSourceIndex index = new MosaicSourceIndex(footprints, 100, 100, new Dimension(25, 25));
+
+        assertArrayEquals(new int[]{0}, index.getSourceIndices(new Rectangle(0, 0, 25, 25)));
+        assertArrayEquals(new int[]{0, 2}, index.getSourceIndices(new Rectangle(25, 25, 25, 25)));
+        assertArrayEquals(new int[]{2}, index.getSourceIndices(new Rectangle(50, 0, 25, 25)));
+        assertArrayEquals(new int[]{}, index.getSourceIndices(new Rectangle(0, 50, 25, 25)));
+        assertArrayEquals(new int[]{3}, index.getSourceIndices(new Rectangle(75, 75, 25, 25)));
+        assertArrayEquals(new int[]{0, 2, 3}, index.getSourceIndices(new Rectangle(0, 0, 100, 100)));
+    }
+
+    @Test
+    public void testGetSourceIndicesChecksFootprintsWithinTile() {
+        final Rectangle[] footprints = {
+                new Rectangle(0, 0, 10, 10),
+                new Rectangle(15, 15, 10, 10),
+        };
+        final MosaicSourceIndex index = new MosaicSourceIndex(footprints, 50, 50, new Dimension(25, 25));
+
+        assertArrayEquals(new int[]{0, 1}, index.getSourceIndices(new Rectangle(0, 0, 25, 25)));
+        assertArrayEquals(new int[]{0}, index.getSourceIndices(new Rectangle(0, 0, 12, 12)));
+        assertArrayEquals(new int[]{1}, index.getSourceIndices(new Rectangle(12, 12, 13, 13)));
+    }
+
+    @Test
+    public void testGetSourceIndicesForOtherTileSizes() {
+        final Rectangle[] footprints = {
+                new Rectangle(40, 0, 10, 50),
+                new Rectangle(0, 40, 50, 10),
+        };
+        final MosaicSourceIndex index = new MosaicSourceIndex(footprints, 50, 50, new Dimension(16, 16));
+
+        assertArrayEquals(new int[]{}, index.getSourceIndices(new Rectangle(0, 0, 40, 40)));
+        assertArrayEquals(new int[]{0, 1}, index.getSourceIndices(new Rectangle(30, 30, 20, 20)));
+        assertArrayEquals(new int[]{1}, index.getSourceIndices(new Rectangle(0, 45, 5, 5)));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.core.gpf.common.reproject;
+
+import org.junit.Test;
+
+import javax.media.jai.Warp;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveWarpGridTest {
+
+    @Test
+    public void testApproximationIsWithinTolerance() {
+        final CurvedWarp warp = new CurvedWarp();
+        final float[] expected = new float[2 * 100 * 70];
+        final float[] actual = new float[2 * 100 * 70];
+        warp.warpRect(10, 20, 100, 70, expected);
+        final int exactCount = warp.count;
+
+        warp.count = 0;
+        new AdaptiveWarpGrid(warp, 0.05, null).warpRect(10, 20, 100, 70, actual);
+
+        assertTrue(warp.count < exactCount / 4);
+        assertArrayEquals(expected, actual, 0.05f);
+    }
+
+    @Test
+    public void testZeroToleranceIsExact() {
+        final CurvedWarp warp = new CurvedWarp();
+        final float[] expected = new float[2 * 33 * 17];
+        final float[] actual = new float[2 * 33 * 17];
+        warp.warpRect(0, 0, 33, 17, expected);
+
+        new AdaptiveWarpGrid(warp, 0.0, null).warpRect(0, 0, 33, 17, actual);
+
+        assertArrayEquals(expected, actual, 0.0f);
+    }
+
+    @Test
+    public void testZeroToleranceIsExactForNarrowSwath() {
+        final CurvedWarp warp = new CurvedWarp();
+        // the swath lies between the points sampled for the first cell
+        warp.validMinX = 3;
+        warp.validMaxX = 5;
+        final float[] expected = new float[2 * 40 * 40];
+        final float[] actual = new float[2 * 40 * 40];
+        warp.warpRect(0, 0, 40, 40, expected);
+
+        new AdaptiveWarpGrid(warp, 0.0, null).warpRect(0, 0, 40, 40, actual);
+
+        assertArrayEquals(expected, actual, 0.0f);
+        assertFalse(Float.isNaN(actual[2 * (20 * 40 + 4)]));
+    }
+
+    @Test
+    public void testNarrowSwathIsNotDroppedForNonZeroTolerance() {
+        final CurvedWarp warp = new CurvedWarp();
+        warp.validMinX = 3;
+        warp.validMaxX = 5;
+        final float[] expected = new float[2 * 40 * 40];
+        final float[] actual = new float[2 * 40 * 40];
+        warp.warpRect(0, 0, 40, 40, expected);
+
+        new AdaptiveWarpGrid(warp, 0.05, null).warpRect(0, 0, 40, 40, actual);
+
+        assertArrayEquals(expected, actual, 0.05f);
+    }
+
+    @Test
+    public void testPixelsOutsideOfSourceAreInvalid() {
+        final CurvedWarp warp = new CurvedWarp();
+        warp.invalidX = 50;
+        final float[] actual = new float[2 * 64 * 64];
+
+        new AdaptiveWarpGrid(warp, 0.05, null).warpRect(0, 0, 64, 64, actual);
+
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                final int k = 2 * (y * 64 + x);
+                assertEquals("x = " + x, x >= 50, Float.isNaN(actual[k]));
+            }
+        }
+    }
+
+    @Test
+    public void testCoordinatesAreReplayedFromCache() throws Exception {
+        final File baseDir = Files.createTempDirectory("warp").toFile();
+        try {
+            final CurvedWarp warp = new CurvedWarp();
+            final File cacheDir = AdaptiveWarpGrid.getCacheDir(baseDir, "A", warp, 200, 200, 0.05, Long.MAX_VALUE);
+            assertNotNull(cacheDir);
+            assertEquals(cacheDir, AdaptiveWarpGrid.getCacheDir(baseDir, "A", new CurvedWarp(), 200, 200, 0.05, Long.MAX_VALUE));
+            assertNotEquals(cacheDir, AdaptiveWarpGrid.getCacheDir(baseDir, "A", new CurvedWarp(), 200, 200, 0.1, Long.MAX_VALUE));
+            assertNotEquals(cacheDir, AdaptiveWarpGrid.getCacheDir(baseDir, "B", new CurvedWarp(), 200, 200, 0.05, Long.MAX_VALUE));
+
+            final float[] expected = new float[2 * 64 * 64];
+            warp.count = 0;
+            new AdaptiveWarpGrid(warp, 0.05, cacheDir).warpRect(64, 0, 64, 64, expected);
+            assertTrue(warp.count > 0);
+
+            final float[] actual = new float[2 * 64 * 64];
+            warp.count = 0;
+            new AdaptiveWarpGrid(warp, 0.05, cacheDir).warpRect(64, 0, 64, 64, actual);
+            assertEquals(0, warp.count);
+            assertArrayEquals(expected, actual, 0.0f);
+        } finally {
+            deleteTree(baseDir);
+        }
+    }
+
+    @Test
+    public void testInvalidCacheFileIsIgnored() throws Exception {
+        final File baseDir = Files.createTempDirectory("warp").toFile();
+        try {
+            final CurvedWarp warp = new CurvedWarp();
+            final File cacheDir = AdaptiveWarpGrid.getCacheDir(baseDir, "A", warp, 200, 200, 0.05, Long.MAX_VALUE);
+            assertNotNull(cacheDir);
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(cacheDir, "0_0_8_8.warp")))) {
+                out.writeInt(Integer.MAX_VALUE);
+                out.writeFloat(1.0f);
+            }
+
+            final float[] expected = new float[2 * 8 * 8];
+            final float[] actual = new float[2 * 8 * 8];
+            warp.warpRect(0, 0, 8, 8, expected);
+            new AdaptiveWarpGrid(warp, 0.0, cacheDir).warpRect(0, 0, 8, 8, actual);
+
+            assertArrayEquals(expected, actual, 0.0f);
+        } finally {
+            deleteTree(baseDir);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedCacheDirsAreDeleted() throws Exception {
+        final File baseDir = Files.createTempDirectory("warp").toFile();
+        try {
+            final CurvedWarp warp = new CurvedWarp();
+            final File[] cacheDirs = new File[3];
+            for (int i = 0; i < cacheDirs.length; i++) {
+                cacheDirs[i] = AdaptiveWarpGrid.getCacheDir(baseDir, "K" + i, warp, 64, 64, 0.0, Long.MAX_VALUE);
+                assertNotNull(cacheDirs[i]);
+                new AdaptiveWarpGrid(warp, 0.0, cacheDirs[i]).warpRect(0, 0, 64, 64, new float[2 * 64 * 64]);
+                cacheDirs[i].setLastModified(1000000000000L + i * 1000L);
+            }
+            final long dirSize = new File(cacheDirs[0], "0_0_64_64.warp").length();
+            assertTrue(dirSize > 0);
+
+            AdaptiveWarpGrid.trimCache(baseDir, cacheDirs[0], 2 * dirSize);
+
+            assertTrue(cacheDirs[0].exists());
+            assertFalse(cacheDirs[1].exists());
+            assertTrue(cacheDirs[2].exists());
+        } finally {
+            deleteTree(baseDir);
+        }
+    }
+
+    private static void deleteTree(File baseDir) {
+        for (File dir : baseDir.listFiles()) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+        baseDir.delete();
+    }
+
+    private static class CurvedWarp extends Warp {
+
+        int count;
+        int invalidX = Integer.MAX_VALUE;
+        int validMinX = Integer.MIN_VALUE;
+        int validMaxX = Integer.MAX_VALUE;
+
+        @Override
+        public float[] warpSparseRect(int x, int y, int width, int height, int periodX, int periodY, float[] destRect) {
+            if (destRect == null) {
+                destRect = new float[2 * ((width + periodX - 1) / periodX) * ((height + periodY - 1) / periodY)];
+            }
+            int index = 0;
+            for (int j = y; j < y + height; j += periodY) {
+                for (int i = x; i < x + width; i += periodX) {
+                    count++;
+                    if (i >= invalidX || i < validMinX || i > validMaxX) {
+                        destRect[index++] = Float.NaN;
+                        destRect[index++] = Float.NaN;
+                    } else {
+                        destRect[index++] = (float) (0.9 * i + 0.3 * Math.sin(j * 0.02) + 0.0005 * i * j);
+                        destRect[index++] = (float) (1.1 * j + 0.2 * Math.cos(i * 0.03));
+                    }
+                }
+            }
+            return destRect;
+        }
+    }
+}
@@ -128,4 +128,30 @@ public class GraphProcessorTest extends TestCase {
         VerbousTileCache.setVerbous(false);
     }
 
+    public void testThreeOpsExecutionOrderInStreamingMode() throws Exception {
+        Graph graph = new Graph("graph");
+
+        Node node1 = new Node("node1", "Op1");
+        Node node2 = new Node("node2", "Op2");
+        Node node3 = new Node("node3", "Op3");
+
+        node2.addSource(new NodeSource("input", "node1"));
+        node3.addSource(new NodeSource("input1", "node1"));
+        node3.addSource(new NodeSource("input2", "node2"));
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+
+        GraphProcessor processor = new GraphProcessor();
+        processor.setStreaming(true);
+        assertTrue(processor.isStreaming());
+        GraphContext graphContext = new GraphContext(graph);
+        Product chainOut = processor.executeGraph(graphContext, ProgressMonitor.NULL)[0];
+
+        assertNotNull(chainOut);
+        assertEquals("Op3Name", chainOut.getName());
+        assertEquals("Op1;Op2;Op3;", TestOps.getCalls());
+        TestOps.clearCalls();
+    }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.gpf.graph;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.Operator;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.gpf.internal.OperatorContext;
+import org.esa.snap.core.image.ResolutionLevel;
+import org.esa.snap.core.image.SingleBandedOpImage;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.TileCache;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TileReleaserTest {
+
+    private Product product;
+    private TestOpImage image;
+    private Band band;
+    private OperatorContext consumer1;
+    private OperatorContext consumer2;
+    private TileReleaser tileReleaser;
+
+    @Before
+    public void setUp() throws Exception {
+        product = new Product("P", "T", 40, 10);
+        image = new TestOpImage();
+        image.setTileCache(JAI.createTileCache(1024 * 1024));
+        band = product.addBand("b", ProductData.TYPE_UINT8);
+        band.setSourceImage(image);
+
+        consumer1 = new OperatorContext(new NoOp());
+        consumer2 = new OperatorContext(new NoOp());
+        Map<Product, Integer> consumerCounts = new HashMap<>();
+        consumerCounts.put(product, 2);
+        tileReleaser = new TileReleaser(consumerCounts, 1);
+    }
+
+    @Test
+    public void testTilesAreRemovedWhenUsedByAllConsumers() throws Exception {
+        computeTiles();
+        assertCached(true, true, true, true);
+
+        // tiles 0 and 1 used by consumer 1 only
+        tileReleaser.sourceTileObtained(consumer1, band, new Rectangle(0, 0, 20, 10));
+        assertCached(true, true, true, true);
+
+        // tile 0 used by both, but one released tile is retained
+        tileReleaser.sourceTileObtained(consumer2, band, new Rectangle(0, 0, 10, 10));
+        assertCached(true, true, true, true);
+        assertEquals(0, tileReleaser.getRemovedTileCount());
+
+        // tile 1 used by both, tile 0 is removed
+        tileReleaser.sourceTileObtained(consumer2, band, new Rectangle(15, 0, 5, 5));
+        assertCached(false, true, true, true);
+        assertEquals(1, tileReleaser.getRemovedTileCount());
+    }
+
+    @Test
+    public void testRetainedTilesAreKeptWhenUsedAgain() throws Exception {
+        computeTiles();
+        tileReleaser.sourceTileObtained(consumer1, band, new Rectangle(0, 0, 40, 10));
+        tileReleaser.sourceTileObtained(consumer2, band, new Rectangle(0, 0, 10, 10));
+        assertCached(true, true, true, true);
+
+        // tile 1 is released, so tile 0 is removed
+        tileReleaser.sourceTileObtained(consumer2, band, new Rectangle(10, 0, 10, 10));
+        assertCached(false, true, true, true);
+
+        // retained tile 1 is used again, it is removed not before tile 2 is released
+        tileReleaser.sourceTileObtained(consumer1, band, new Rectangle(10, 0, 10, 10));
+        assertCached(false, true, true, true);
+        tileReleaser.sourceTileObtained(consumer2, band, new Rectangle(20, 0, 10, 10));
+        assertCached(false, false, true, true);
+        assertEquals(2, tileReleaser.getRemovedTileCount());
+    }
+
+    @Test
+    public void testTilesOfRasterReadBySomeConsumersAreRemoved() throws Exception {
+        TestOpImage otherImage = new TestOpImage();
+        otherImage.setTileCache(image.getTileCache());
+        Band otherBand = product.addBand("c", ProductData.TYPE_UINT8);
+        otherBand.setSourceImage(otherImage);
+        for (int tileX = 0; tileX < 4; tileX++) {
+            otherImage.getTile(tileX, 0);
+        }
+
+        // only consumer 1 reads the other band, as long as consumer 2 is not active its tiles are pending
+        tileReleaser.sourceTileObtained(consumer1, otherBand, new Rectangle(0, 0, 20, 10));
+        assertEquals(2, tileReleaser.getPendingTileCount());
+
+        // consumer 2 becomes active without reading the other band, so its tiles are released
+        tileReleaser.sourceTileObtained(consumer2, band, new Rectangle(0, 0, 10, 10));
+        assertEquals(0, tileReleaser.getPendingTileCount());
+        assertNull(image.getTileCache().getTile(otherImage, 0, 0));
+        assertNotNull(image.getTileCache().getTile(otherImage, 1, 0));
+        assertEquals(1, tileReleaser.getRemovedTileCount());
+
+        // from now on, tiles of the other band are released as soon as consumer 1 has used them
+        tileReleaser.sourceTileObtained(consumer1, otherBand, new Rectangle(20, 0, 10, 10));
+        assertNull(image.getTileCache().getTile(otherImage, 1, 0));
+        assertNotNull(image.getTileCache().getTile(otherImage, 2, 0));
+        assertEquals(2, tileReleaser.getRemovedTileCount());
+    }
+
+    @Test
+    public void testDisposeForgetsPendingTiles() throws Exception {
+        computeTiles();
+        tileReleaser.sourceTileObtained(consumer1, band, new Rectangle(0, 0, 40, 10));
+        assertEquals(4, tileReleaser.getPendingTileCount());
+
+        tileReleaser.dispose();
+        assertEquals(0, tileReleaser.getPendingTileCount());
+        assertCached(true, true, true, true);
+    }
+
+    @Test
+    public void testUnknownProductsAreIgnored() throws Exception {
+        computeTiles();
+        Product other = new Product("Q", "T", 40, 10);
+        Band otherBand = other.addBand("b", ProductData.TYPE_UINT8);
+        otherBand.setSourceImage(image);
+        tileReleaser.sourceTileObtained(consumer1, otherBand, new Rectangle(0, 0, 40, 10));
+        tileReleaser.sourceTileObtained(consumer2, otherBand, new Rectangle(0, 0, 40, 10));
+        assertCached(true, true, true, true);
+        assertEquals(0, tileReleaser.getRemovedTileCount());
+    }
+
+    private void computeTiles() {
+        for (int tileX = 0; tileX < 4; tileX++) {
+            image.getTile(tileX, 0);
+        }
+    }
+
+    private void assertCached(boolean... expected) {
+        TileCache tileCache = image.getTileCache();
+        for (int tileX = 0; tileX < expected.length; tileX++) {
+            assertEquals("tile " + tileX, expected[tileX], tileCache.getTile(image, tileX, 0) != null);
+        }
+    }
+
+    private static class TestOpImage extends SingleBandedOpImage {
+
+        TestOpImage() {
+            super(DataBuffer.TYPE_BYTE, 40, 10, new Dimension(10, 10), null, ResolutionLevel.MAXRES);
+        }
+
+        @Override
+        protected void computeRect(PlanarImage[] sources, WritableRaster tile, Rectangle destRect) {
+        }
+    }
+
+    private static class NoOp extends Operator {
+
+        @Override
+        public void initialize() throws OperatorException {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.snap.core.gpf.internal;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.image.ResolutionLevel;
+import org.esa.snap.core.image.SingleBandedOpImage;
+
+import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+
+/**
+ * Compares the {@link OperatorExecutor.ExecutionOrder#WORK_STEALING} execution with
+ * {@link OperatorExecutor.ExecutionOrder#SCHEDULE_ROW_BAND_COLUMN} for images whose tiles have
+ * skewed computation costs: tiles in the left- and right-most tile columns (e.g. swath edges)
+ * and a few randomly placed tiles (e.g. cloud-masked) are much more expensive than the others.
+ * <p>
+ * Usage: {@code OperatorExecutorPerformanceTest [<parallelism> [<numBands>]]}
+ */
+public class OperatorExecutorPerformanceTest {
+
+    private static final int TILE_SIZE = 64;
+    private static final int TILE_COUNT_X = 16;
+    private static final int TILE_COUNT_Y = 32;
+
+    public static void main(String[] args) {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int numBands = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        JAI.getDefaultInstance().getTileScheduler().setParallelism(parallelism);
+        System.out.printf("parallelism = %d, bands = %d, tiles = %d x %d%n", parallelism, numBands, TILE_COUNT_X, TILE_COUNT_Y);
+
+        for (int i = 0; i < 3; i++) {
+            measure(OperatorExecutor.ExecutionOrder.SCHEDULE_ROW_BAND_COLUMN, parallelism, numBands);
+            measure(OperatorExecutor.ExecutionOrder.WORK_STEALING, parallelism, numBands);
+        }
+    }
+
+    private static void measure(OperatorExecutor.ExecutionOrder executionOrder, int parallelism, int numBands) {
+        JAI.getDefaultInstance().getTileCache().flush();
+        PlanarImage[] images = new PlanarImage[numBands];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new SkewedCostOpImage();
+        }
+        OperatorExecutor executor = new OperatorExecutor(images, TILE_COUNT_X, TILE_COUNT_Y, parallelism);
+        long t0 = System.nanoTime();
+        executor.execute(executionOrder, ProgressMonitor.NULL);
+        long t1 = System.nanoTime();
+        System.out.printf("%s: %.1f ms, %d tasks stolen%n", executionOrder, (t1 - t0) / 1.0e6, executor.getStealCount());
+    }
+
+    private static class SkewedCostOpImage extends SingleBandedOpImage {
+
+        SkewedCostOpImage() {
+            super(DataBuffer.TYPE_FLOAT, TILE_COUNT_X * TILE_SIZE, TILE_COUNT_Y * TILE_SIZE,
+                  new Dimension(TILE_SIZE, TILE_SIZE), null, ResolutionLevel.MAXRES);
+        }
+
+        @Override
+        protected void computeRect(PlanarImage[] sources, WritableRaster tile, Rectangle destRect) {
+            final int tileX = XToTileX(destRect.x);
+            final int tileY = YToTileY(destRect.y);
+            final boolean expensive = tileX == 0 || tileX == TILE_COUNT_X - 1 || (tileX * 7 + tileY * 13) % 17 == 0;
+            final int iterations = expensive ? 200 : 10;
+            for (int y = destRect.y; y < destRect.y + destRect.height; y++) {
+                for (int x = destRect.x; x < destRect.x + destRect.width; x++) {
+                    double v = 0.0;
+                    for (int i = 0; i < iterations; i++) {
+                        v += Math.sin(x * 0.01 + i) * Math.cos(y * 0.01 - i);
+                    }
+                    tile.setSample(x, y, 0, v);
+                }
+            }
+        }
+    }
+}
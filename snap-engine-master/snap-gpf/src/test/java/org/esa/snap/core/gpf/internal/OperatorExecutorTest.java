@@ -22,6 +22,8 @@ import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.gpf.Operator;
 import org.esa.snap.core.gpf.OperatorException;
 import org.esa.snap.core.gpf.annotations.SourceProduct;
+import org.esa.snap.core.image.ResolutionLevel;
+import org.esa.snap.core.image.SingleBandedOpImage;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,8 +34,12 @@ import javax.media.jai.PlanarImage;
 import javax.media.jai.TileComputationListener;
 import javax.media.jai.TileRequest;
 import javax.media.jai.TileScheduler;
+import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -249,6 +255,51 @@ public class OperatorExecutorTest {
         assertEquals(new Point(1, 1), recordingTileScheduler.requestedTileIndices.get(3));
     }
 
+    @Test
+    public void testWorkStealing() {
+        List<String> computedTiles = Collections.synchronizedList(new ArrayList<String>());
+        RecordingOpImage imageA = new RecordingOpImage("a", computedTiles);
+        RecordingOpImage imageB = new RecordingOpImage("b", computedTiles);
+        OperatorExecutor operatorExecutor = new OperatorExecutor(new PlanarImage[]{imageA, imageB}, 2, 2, 1);
+        operatorExecutor.setPriority(imageB, 1);
+        operatorExecutor.execute(OperatorExecutor.ExecutionOrder.WORK_STEALING, ProgressMonitor.NULL);
+
+        assertFalse(recordingTileScheduler.recordedCalls.contains("scheduleTiles"));
+        assertEquals("[b:0,0, a:0,0, b:1,0, a:1,0, b:0,1, a:0,1, b:1,1, a:1,1]", computedTiles.toString());
+        assertEquals(0, operatorExecutor.getQueuedTaskCount());
+    }
+
+    @Test
+    public void testWorkStealingInParallel() {
+        List<String> computedTiles = Collections.synchronizedList(new ArrayList<String>());
+        RecordingOpImage imageA = new RecordingOpImage("a", computedTiles);
+        RecordingOpImage imageB = new RecordingOpImage("b", computedTiles);
+        OperatorExecutor operatorExecutor = new OperatorExecutor(new PlanarImage[]{imageA, imageB}, 2, 2, 4);
+        operatorExecutor.execute(OperatorExecutor.ExecutionOrder.WORK_STEALING, ProgressMonitor.NULL);
+
+        assertEquals(8, computedTiles.size());
+        for (String tile : new String[]{"a:0,0", "a:1,0", "a:0,1", "a:1,1", "b:0,0", "b:1,0", "b:0,1", "b:1,1"}) {
+            assertTrue(tile, computedTiles.contains(tile));
+        }
+    }
+
+    private static class RecordingOpImage extends SingleBandedOpImage {
+
+        private final String name;
+        private final List<String> computedTiles;
+
+        RecordingOpImage(String name, List<String> computedTiles) {
+            super(DataBuffer.TYPE_BYTE, 100, 100, new Dimension(50, 50), null, ResolutionLevel.MAXRES);
+            this.name = name;
+            this.computedTiles = computedTiles;
+        }
+
+        @Override
+        protected void computeRect(PlanarImage[] sources, WritableRaster tile, Rectangle destRect) {
+            computedTiles.add(name + ":" + XToTileX(destRect.x) + "," + YToTileY(destRect.y));
+        }
+    }
+
     private Product createSourceProduct() {
         Product product = new Product("source", "source", 100, 100);
         Band bandA = product.addBand("a", ProductData.TYPE_INT8);
@@ -89,6 +89,11 @@ public abstract class AbstractNetCdfReaderPlugIn implements ProductReaderPlugIn
         return new DefaultNetCdfReader(this);
     }
 
+    @Override
+    public boolean isDecodeCandidate(File file, byte[] fileHeader) {
+        return NetcdfFileOpener.isCandidate(file, fileHeader);
+    }
+
     @Override
     public SnapFileFilter getProductFileFilter() {
         return new SnapFileFilter(getFormatNames()[0], getDefaultFileExtensions(), getDescription(null));
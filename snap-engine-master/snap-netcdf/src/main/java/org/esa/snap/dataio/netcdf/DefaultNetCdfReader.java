@@ -24,6 +24,7 @@ import org.esa.snap.core.datamodel.ProductData;
 import org.esa.snap.core.util.io.FileUtils;
 import org.esa.snap.dataio.netcdf.util.Constants;
 import org.esa.snap.dataio.netcdf.util.NetcdfFileOpener;
+import org.esa.snap.dataio.netcdf.util.NetcdfFilePool;
 import ucar.nc2.NetcdfFile;
 
 import java.io.File;
@@ -102,6 +103,7 @@ class DefaultNetCdfReader extends AbstractProductReader {
     @Override
     public void close() throws IOException {
         if (netcdfFile != null) {
+            NetcdfFilePool.close(netcdfFile);
             netcdfFile.close();
             netcdfFile = null;
         }
@@ -26,6 +26,7 @@ import org.esa.snap.dataio.netcdf.util.Constants;
 import org.esa.snap.dataio.netcdf.util.NetcdfFileOpener;
 import ucar.nc2.NetcdfFile;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -127,6 +128,11 @@ public class GenericNetCdfReaderPlugIn implements ProductReaderPlugIn {
         return new GenericNetCdfReader(this);
     }
 
+    @Override
+    public boolean isDecodeCandidate(File file, byte[] fileHeader) {
+        return NetcdfFileOpener.isCandidate(file, fileHeader);
+    }
+
     @Override
     public SnapFileFilter getProductFileFilter() {
         return new SnapFileFilter(getFormatNames()[0], getDefaultFileExtensions(), getDescription(null));
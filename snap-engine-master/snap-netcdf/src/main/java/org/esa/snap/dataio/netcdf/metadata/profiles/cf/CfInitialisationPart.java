@@ -24,6 +24,8 @@ import org.esa.snap.dataio.netcdf.ProfileWriteContext;
 import org.esa.snap.dataio.netcdf.metadata.ProfileInitPartIO;
 import org.esa.snap.dataio.netcdf.nc.NFileWriteable;
 import org.esa.snap.dataio.netcdf.util.Constants;
+import org.esa.snap.dataio.netcdf.util.NetcdfFilePool;
+import org.esa.snap.dataio.netcdf.util.ReaderUtils;
 import ucar.nc2.Attribute;
 
 import java.awt.Dimension;
@@ -31,6 +33,9 @@ import java.io.IOException;
 
 public class CfInitialisationPart extends ProfileInitPartIO {
 
+    private static final int MIN_TILE_SIZE = 256;
+    private static final int MAX_TILE_SIZE = 1024;
+
     @Override
     public Product readProductBody(ProfileReadContext ctx) throws ProductIOException {
         Product product = new Product(
@@ -40,7 +45,18 @@ public class CfInitialisationPart extends ProfileInitPartIO {
                 ctx.getRasterDigest().getRasterDim().getDimensionY().getLength()
         );
         Attribute tileSize = ctx.getNetcdfFile().findGlobalAttribute("TileSize");
-        if (tileSize != null) {
+        if (tileSize == null) {
+            // chunk-aligned tiles only pay off if the chunks of a file are decompressed concurrently
+            if (NetcdfFilePool.isEnabled()) {
+                final Dimension chunkTileSize = ReaderUtils.getChunkAlignedTileSize(ctx.getRasterDigest().getRasterVariables(),
+                                                                                    product.getSceneRasterWidth(),
+                                                                                    product.getSceneRasterHeight(),
+                                                                                    MIN_TILE_SIZE, MAX_TILE_SIZE);
+                if (chunkTileSize != null) {
+                    product.setPreferredTileSize(chunkTileSize);
+                }
+            }
+        } else {
             String stringValue = tileSize.getStringValue();
             if (stringValue!= null && stringValue.contains(":")) {
                 String[] tileSizes = stringValue.split(":");
@@ -62,6 +62,7 @@ public class NetcdfFileOpener {
     private static final byte[] NC3_MAGIC_LONG = {0x43, 0x44, 0x46, 0x02}; // 64-bit offset format : only affects the variable offset value
     private static final byte[] H4_MAGIC = {0x0e, 0x03, 0x13, 0x01};
     private static final byte[] H5_MAGIC = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
+    private static final String[] COMPRESSED_FILE_EXTENSIONS = {".z", ".zip", ".bz2", ".gzip", ".gz"};
 
 // currently unused
 //    public static boolean canOpenNetcdf(Object input) throws IOException {
@@ -116,6 +117,48 @@ public class NetcdfFileOpener {
         return null;
     }
 
+    /**
+     * Checks quickly whether the given file may be a netCDF or HDF file which can be opened by {@link #open(Object)}.
+     * Only the magic bytes are tested, compressed files are always accepted.
+     *
+     * @param file       the file
+     * @param fileHeader the first bytes of the file
+     * @return {@code false} if the file can certainly not be opened
+     */
+    public static boolean isCandidate(File file, byte[] fileHeader) {
+        if (!file.exists()) {
+            // may be a path which is resolved by getFile()
+            return true;
+        }
+        if (!file.isFile()) {
+            return false;
+        }
+        final String fileName = file.getName().toLowerCase();
+        for (String extension : COMPRESSED_FILE_EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        if (fileHeader.length >= MAGIC_BUFFER_LENGTH && getIOSpi(fileHeader) != null) {
+            return true;
+        }
+        // The HDF5 superblock may also begin at the offsets 512, 1024, 2048, and multiples of two thereafter.
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "r")) {
+            final byte[] buffer = new byte[MAGIC_BUFFER_LENGTH];
+            final long length = raf.length();
+            for (long offset = 512; offset + MAGIC_BUFFER_LENGTH <= length; offset *= 2) {
+                raf.seek(offset);
+                raf.readFully(buffer);
+                if (testMagicBytes(buffer, H5_MAGIC)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            return true;
+        }
+        return false;
+    }
+
     private static File getFile(Object input) {
         if (input instanceof String) {
             String inputString = (String) input;
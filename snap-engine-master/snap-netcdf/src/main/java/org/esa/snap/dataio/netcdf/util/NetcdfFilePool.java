@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.netcdf.util;
+
+import org.esa.snap.core.util.SystemUtils;
+import org.esa.snap.runtime.Config;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * A pool of additional read-only handles on a netCDF file. Reads through the pool do not
+ * synchronise on the primary {@link NetcdfFile}, hence the tiles of the variables of one file can be
+ * read and decompressed by several threads at the same time.
+ * <p>
+ * The number of handles per file is configured by the {@link #POOL_SIZE_PROPERTY} preference.
+ * If it is zero, or the file cannot be opened a second time, variables are read from the primary
+ * file while holding its lock, as before.
+ *
+ * @since SNAP 2.0
+ */
+public class NetcdfFilePool {
+
+    /**
+     * The name of the preference which gives the maximum number of additional handles opened per netCDF file
+     * for reading raster data concurrently. The default is {@code 0}, which reads all variables of a file
+     * one after another.
+     */
+    public static final String POOL_SIZE_PROPERTY = "snap.dataio.netcdf.readerPoolSize";
+
+    private static final Map<NetcdfFile, NetcdfFilePool> POOLS = new IdentityHashMap<>();
+
+    private final NetcdfFile primaryFile;
+    private final int maxSize;
+    private final BlockingQueue<Handle> idleHandles;
+    private final List<Handle> handles;
+    private boolean openFailed;
+    private boolean closed;
+
+    NetcdfFilePool(NetcdfFile primaryFile, int maxSize) {
+        this.primaryFile = primaryFile;
+        this.maxSize = maxSize;
+        this.idleHandles = new LinkedBlockingQueue<>();
+        this.handles = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Reads a section of the given variable. If the read lock is a {@link NetcdfFile} and pooled reading
+     * is enabled, the section is read from a pooled handle of that file, otherwise the read is guarded by
+     * the read lock.
+     *
+     * @param variable the variable
+     * @param section  the section to be read
+     * @param readLock the lock used for reading, usually the netCDF file that contains the variable
+     * @return the data of the section
+     * @throws IOException           if an I/O error occurs
+     * @throws InvalidRangeException if the section is not valid for the variable
+     */
+    public static Array read(Variable variable, Section section, Object readLock) throws IOException, InvalidRangeException {
+        if (readLock instanceof NetcdfFile) {
+            final NetcdfFilePool pool = getPool((NetcdfFile) readLock);
+            if (pool != null) {
+                return pool.read(variable, section);
+            }
+        }
+        synchronized (readLock) {
+            return variable.read(section);
+        }
+    }
+
+    /**
+     * Closes all pooled handles of the given file. Must be called before the file itself is closed.
+     *
+     * @param primaryFile the netCDF file
+     */
+    public static void close(NetcdfFile primaryFile) {
+        final NetcdfFilePool pool;
+        synchronized (POOLS) {
+            pool = POOLS.remove(primaryFile);
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * @return {@code true} if pooled reading is enabled by the {@link #POOL_SIZE_PROPERTY} preference.
+     */
+    public static boolean isEnabled() {
+        return getPoolSize() > 0;
+    }
+
+    private static int getPoolSize() {
+        return Config.instance().preferences().getInt(POOL_SIZE_PROPERTY, 0);
+    }
+
+    private static NetcdfFilePool getPool(NetcdfFile primaryFile) {
+        synchronized (POOLS) {
+            NetcdfFilePool pool = POOLS.get(primaryFile);
+            if (pool == null) {
+                final int poolSize = getPoolSize();
+                if (poolSize <= 0) {
+                    return null;
+                }
+                pool = new NetcdfFilePool(primaryFile, poolSize);
+                POOLS.put(primaryFile, pool);
+            }
+            return pool;
+        }
+    }
+
+    Array read(Variable variable, Section section) throws IOException, InvalidRangeException {
+        final Handle handle = acquire();
+        if (handle != null) {
+            try {
+                final Variable pooledVariable = handle.getVariable(variable);
+                if (pooledVariable != null) {
+                    return pooledVariable.read(section);
+                }
+            } finally {
+                release(handle);
+            }
+        }
+        synchronized (primaryFile) {
+            return variable.read(section);
+        }
+    }
+
+    synchronized int getHandleCount() {
+        return handles.size();
+    }
+
+    private Handle acquire() {
+        Handle handle = idleHandles.poll();
+        if (handle != null) {
+            return handle;
+        }
+        synchronized (this) {
+            if (closed || openFailed) {
+                return null;
+            }
+            if (handles.size() < maxSize) {
+                handle = openHandle();
+                if (handle == null) {
+                    openFailed = true;
+                } else {
+                    handles.add(handle);
+                }
+                return handle;
+            }
+        }
+        try {
+            while (true) {
+                handle = idleHandles.poll(100, TimeUnit.MILLISECONDS);
+                if (handle != null) {
+                    return handle;
+                }
+                synchronized (this) {
+                    if (closed) {
+                        return null;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void release(Handle handle) {
+        synchronized (this) {
+            if (closed) {
+                handle.close();
+                return;
+            }
+        }
+        idleHandles.offer(handle);
+    }
+
+    private Handle openHandle() {
+        final String location = primaryFile.getLocation();
+        try {
+            final NetcdfFile file = location != null ? NetcdfFileOpener.open(location) : null;
+            if (file != null) {
+                return new Handle(file);
+            }
+            SystemUtils.LOG.warning("Cannot open '" + location + "' for concurrent reading.");
+        } catch (IOException e) {
+            SystemUtils.LOG.log(Level.WARNING, "Cannot open '" + location + "' for concurrent reading.", e);
+        }
+        return null;
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            handles.clear();
+        }
+        Handle handle;
+        while ((handle = idleHandles.poll()) != null) {
+            handle.close();
+        }
+    }
+
+    private static class Handle {
+
+        private final NetcdfFile file;
+        // only accessed by the thread that holds the handle
+        private final Map<String, Variable> variables;
+
+        private Handle(NetcdfFile file) {
+            this.file = file;
+            this.variables = new HashMap<>();
+        }
+
+        private Variable getVariable(Variable variable) {
+            final String name = variable.getFullNameEscaped();
+            if (!variables.containsKey(name)) {
+                variables.put(name, file.findVariable(name));
+            }
+            return variables.get(name);
+        }
+
+        private void close() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, "Failed to close '" + file.getLocation() + "'.", e);
+            }
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.util.List;
 /**
  * An image that renders the data of a netcdf variable. Using the
  * "stride" feature to allow for faster subsetting.
+ * Reading is delegated to {@link NetcdfFilePool}.
  */
 public class NetcdfOpImage extends SingleBandedOpImage {
 
@@ -73,7 +74,8 @@ public class NetcdfOpImage extends SingleBandedOpImage {
      * @param variable       The netCDF variable
      * @param imageOrigin    The index within a multidimensional image dataset
      * @param flipY          The {@code true} if this data should be flipped along the yAxis.
-     * @param readLock       The the lock used for reading, usually the netcdf file that contains the variable
+     * @param readLock       The the lock used for reading, usually the netcdf file that contains the variable.
+     *                       If it is the netcdf file, tiles may be read concurrently, see {@link NetcdfFilePool}.
      * @param dataBufferType The data type.
      * @param sourceWidth    The width of the level 0 image.
      * @param sourceHeight   The height of the level 0 image.
@@ -149,15 +151,13 @@ public class NetcdfOpImage extends SingleBandedOpImage {
         stride[xIndex] = (int) scale;
 
         Array array;
-        synchronized (readLock) {
-            try {
-                final Section section = new Section(origin, shape, stride);
-                array = variable.read(section);
-            } catch (IOException e) {
-                throw new IllegalStateException(e);
-            } catch (InvalidRangeException e) {
-                throw new IllegalArgumentException(e);
-            }
+        try {
+            final Section section = new Section(origin, shape, stride);
+            array = NetcdfFilePool.read(variable, section, readLock);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InvalidRangeException e) {
+            throw new IllegalArgumentException(e);
         }
         if (xIndex < yIndex) {
             array = array.transpose(xIndex, yIndex);
@@ -231,17 +231,15 @@ public class NetcdfOpImage extends SingleBandedOpImage {
 
         Array arrayLeft;
         Array arrayRight;
-        synchronized (readLock) {
-            try {
-                final Section sectionLeft = new Section(originLeft, shapeLeft, stride);
-                final Section sectionRight = new Section(originRight, shapeRight, stride);
-                arrayLeft = variable.read(sectionLeft);
-                arrayRight = variable.read(sectionRight);
-            } catch (IOException e) {
-                throw new IllegalStateException(e);
-            } catch (InvalidRangeException e) {
-                throw new IllegalArgumentException(e);
-            }
+        try {
+            final Section sectionLeft = new Section(originLeft, shapeLeft, stride);
+            final Section sectionRight = new Section(originRight, shapeRight, stride);
+            arrayLeft = NetcdfFilePool.read(variable, sectionLeft, readLock);
+            arrayRight = NetcdfFilePool.read(variable, sectionRight, readLock);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InvalidRangeException e) {
+            throw new IllegalArgumentException(e);
         }
         if (xIndex < yIndex) {
             arrayLeft = arrayLeft.transpose(xIndex, yIndex);
@@ -23,6 +23,7 @@ import ucar.nc2.Attribute;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.netcdf3.N3iosp;
 
+import java.awt.Dimension;
 import java.util.List;
 
 /**
@@ -82,6 +83,66 @@ public class ReaderUtils {
         }
     }
 
+    /**
+     * Gets a tile size which is aligned to the chunk layout of the given raster variables. The tile size is a
+     * multiple of the chunk size of the first chunked variable, at least {@code minTileSize} and at most the
+     * raster size, so that every chunk is decompressed by a single tile. Chunks larger than {@code maxTileSize}
+     * are split, so that the tiles never exceed {@code maxTileSize}.
+     *
+     * @param variables    the raster variables
+     * @param rasterWidth  the width of the raster
+     * @param rasterHeight the height of the raster
+     * @param minTileSize  the minimum tile width and height, if the raster is large enough
+     * @param maxTileSize  the maximum tile width and height
+     * @return the tile size, or {@code null} if none of the variables is chunked
+     */
+    public static Dimension getChunkAlignedTileSize(Variable[] variables, int rasterWidth, int rasterHeight,
+                                                    int minTileSize, int maxTileSize) {
+        for (Variable variable : variables) {
+            final int[] chunkSizes = getChunkSizes(variable);
+            if (chunkSizes == null || chunkSizes.length != variable.getRank()) {
+                continue;
+            }
+            final List<ucar.nc2.Dimension> dimensions = variable.getDimensions();
+            final DimKey dimKey = new DimKey(dimensions.toArray(new ucar.nc2.Dimension[dimensions.size()]));
+            final int chunkWidth = chunkSizes[dimKey.findXDimensionIndex()];
+            final int chunkHeight = chunkSizes[dimKey.findYDimensionIndex()];
+            if (chunkWidth > 0 && chunkHeight > 0) {
+                return new Dimension(getAlignedTileSize(chunkWidth, rasterWidth, minTileSize, maxTileSize),
+                                     getAlignedTileSize(chunkHeight, rasterHeight, minTileSize, maxTileSize));
+            }
+        }
+        return null;
+    }
+
+    static int getAlignedTileSize(int chunkSize, int rasterSize, int minTileSize, int maxTileSize) {
+        int tileSize = Math.max(1, (minTileSize + chunkSize - 1) / chunkSize) * chunkSize;
+        if (tileSize > maxTileSize) {
+            tileSize = chunkSize <= maxTileSize ? maxTileSize / chunkSize * chunkSize : maxTileSize;
+        }
+        return Math.min(tileSize, rasterSize);
+    }
+
+    private static int[] getChunkSizes(Variable variable) {
+        // the attribute name differs between versions of the netCDF library
+        Attribute attribute = variable.findAttribute("_ChunkSizes");
+        if (attribute == null) {
+            attribute = variable.findAttribute("_ChunkSize");
+        }
+        if (attribute == null || attribute.isString()) {
+            return null;
+        }
+        final int[] chunkSizes = new int[attribute.getLength()];
+        for (int i = 0; i < chunkSizes.length; i++) {
+            final Number value = attribute.getNumericValue(i);
+            if (value == null) {
+                return null;
+            }
+            chunkSizes[i] = value.intValue();
+        }
+        return chunkSizes;
+    }
+
     public static String getVariableName(RasterDataNode rasterDataNode) {
         String name = N3iosp.makeValidNetcdfObjectName(rasterDataNode.getName());
         name = name.replace( '.', '_' );
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.netcdf.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the throughput of concurrent tile reads from a netCDF file, once with the reads guarded by the
+ * file's lock and once through a {@link NetcdfFilePool}, and checks that both read the same data.
+ * <p>
+ * The file is a NetCDF3 file, since writing compressed NetCDF4 files requires the native netCDF library.
+ * Hence the measured gain is that of reading in parallel only, without the gain of decompressing in parallel.
+ */
+public class NetcdfFilePoolPerformanceTest {
+
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 1024;
+    private static final int TILE_SIZE = 128;
+    private static final int NUM_RUNS = 4;
+
+    private File file;
+    private NetcdfFile netcdfFile;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("NetcdfFilePoolPerformanceTest", ".nc");
+        NetcdfFileWriteable writeable = NetcdfFileWriteable.createNew(file.getPath(), false);
+        writeable.addDimension("y", HEIGHT);
+        writeable.addDimension("x", WIDTH);
+        writeable.addVariable("radiance", DataType.FLOAT, "y x");
+        writeable.create();
+        final float[] data = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        writeable.write("radiance", Array.factory(DataType.FLOAT, new int[]{HEIGHT, WIDTH}, data));
+        writeable.close();
+        netcdfFile = NetcdfFileOpener.open(file.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (netcdfFile != null) {
+            netcdfFile.close();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testPooledReads() throws Exception {
+        final int numThreads = Runtime.getRuntime().availableProcessors();
+        final Variable variable = netcdfFile.findVariable("radiance");
+        final NetcdfFilePool pool = new NetcdfFilePool(netcdfFile, numThreads);
+        try {
+            // warm up
+            readTiles(variable, null, numThreads);
+            readTiles(variable, pool, numThreads);
+
+            final long t0 = System.nanoTime();
+            final double lockedSum = readTiles(variable, null, numThreads);
+            final long t1 = System.nanoTime();
+            final double pooledSum = readTiles(variable, pool, numThreads);
+            final long t2 = System.nanoTime();
+
+            assertEquals(lockedSum, pooledSum, 0.0);
+            final long numTiles = (long) NUM_RUNS * (WIDTH / TILE_SIZE) * (HEIGHT / TILE_SIZE);
+            System.out.printf("NetcdfFilePool, %d threads: locked %.0f tiles/s, pooled %.0f tiles/s%n",
+                              numThreads, numTiles / ((t1 - t0) / 1.0e9), numTiles / ((t2 - t1) / 1.0e9));
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Reads all tiles {@link #NUM_RUNS} times, through the given pool or, if it is {@code null}, guarded by
+     * the file's lock.
+     *
+     * @return the sum of all samples read
+     */
+    private double readTiles(final Variable variable, final NetcdfFilePool pool, int numThreads) throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Double>> results = new ArrayList<>();
+            for (int run = 0; run < NUM_RUNS; run++) {
+                for (int y = 0; y < HEIGHT; y += TILE_SIZE) {
+                    for (int x = 0; x < WIDTH; x += TILE_SIZE) {
+                        final Section section = new Section(new int[]{y, x}, new int[]{TILE_SIZE, TILE_SIZE});
+                        results.add(executorService.submit(new Callable<Double>() {
+                            @Override
+                            public Double call() throws Exception {
+                                final Array array;
+                                if (pool != null) {
+                                    array = pool.read(variable, section);
+                                } else {
+                                    synchronized (netcdfFile) {
+                                        array = variable.read(section);
+                                    }
+                                }
+                                double sum = 0.0;
+                                while (array.hasNext()) {
+                                    sum += array.nextFloat();
+                                }
+                                return sum;
+                            }
+                        }));
+                    }
+                }
+            }
+            double sum = 0.0;
+            for (Future<Double> result : results) {
+                sum += result.get();
+            }
+            return sum;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.netcdf.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class NetcdfFilePoolTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private File file;
+    private NetcdfFile netcdfFile;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("NetcdfFilePoolTest", ".nc");
+        NetcdfFileWriteable writeable = NetcdfFileWriteable.createNew(file.getPath(), false);
+        writeable.addDimension("y", HEIGHT);
+        writeable.addDimension("x", WIDTH);
+        writeable.addVariable("radiance", DataType.FLOAT, "y x");
+        writeable.create();
+        final float[] data = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        writeable.write("radiance", Array.factory(DataType.FLOAT, new int[]{HEIGHT, WIDTH}, data));
+        writeable.close();
+        netcdfFile = NetcdfFileOpener.open(file.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (netcdfFile != null) {
+            netcdfFile.close();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final Variable variable = netcdfFile.findVariable("radiance");
+        final NetcdfFilePool pool = new NetcdfFilePool(netcdfFile, 2);
+        final ExecutorService executorService = Executors.newFixedThreadPool(6);
+        try {
+            final List<Future<Array>> results = new ArrayList<>();
+            for (int y = 0; y < HEIGHT; y += 8) {
+                final Section section = new Section(new int[]{y, 0}, new int[]{8, WIDTH});
+                results.add(executorService.submit(new Callable<Array>() {
+                    @Override
+                    public Array call() throws Exception {
+                        return pool.read(variable, section);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                final float[] values = (float[]) results.get(i).get().copyTo1DJavaArray();
+                assertEquals(8 * WIDTH, values.length);
+                for (int j = 0; j < values.length; j++) {
+                    assertEquals(i * 8 * WIDTH + j, values[j], 0.0f);
+                }
+            }
+            assertTrue(pool.getHandleCount() >= 1);
+            assertTrue(pool.getHandleCount() <= 2);
+        } finally {
+            executorService.shutdown();
+            pool.close();
+        }
+        assertEquals(0, pool.getHandleCount());
+    }
+
+    @Test
+    public void testReadWithoutPool() throws Exception {
+        final Variable variable = netcdfFile.findVariable("radiance");
+        final Section section = new Section(new int[]{1, 2}, new int[]{1, 3});
+        final float[] values = (float[]) NetcdfFilePool.read(variable, section, new Object()).copyTo1DJavaArray();
+        assertArrayEquals(new float[]{WIDTH + 2, WIDTH + 3, WIDTH + 4}, values, 0.0f);
+    }
+}
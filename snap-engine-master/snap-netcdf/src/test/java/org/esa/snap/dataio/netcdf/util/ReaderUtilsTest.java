@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.dataio.netcdf.util;
+
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.Variable;
+
+import java.awt.Dimension;
+
+import static org.junit.Assert.*;
+
+public class ReaderUtilsTest {
+
+    @Test
+    public void testGetAlignedTileSize() throws Exception {
+        assertEquals(256, ReaderUtils.getAlignedTileSize(64, 1000, 256, 1024));
+        assertEquals(300, ReaderUtils.getAlignedTileSize(100, 1000, 256, 1024));
+        assertEquals(512, ReaderUtils.getAlignedTileSize(512, 1000, 256, 1024));
+        assertEquals(1000, ReaderUtils.getAlignedTileSize(4096, 1000, 256, 1024));
+        assertEquals(200, ReaderUtils.getAlignedTileSize(64, 200, 256, 1024));
+        // larger than the maximum
+        assertEquals(900, ReaderUtils.getAlignedTileSize(300, 5000, 1000, 1024));
+        assertEquals(1024, ReaderUtils.getAlignedTileSize(4096, 5000, 256, 1024));
+    }
+
+    @Test
+    public void testGetChunkAlignedTileSize() throws Exception {
+        NetcdfFileWriteable writeable = NetcdfFileWriteable.createNew("not stored");
+        writeable.addDimension("y", 1000);
+        writeable.addDimension("x", 1200);
+        Variable unchunked = writeable.addVariable("unchunked", DataType.FLOAT, "y x");
+        Variable chunked = writeable.addVariable("chunked", DataType.FLOAT, "y x");
+        chunked.addAttribute(new Attribute("_ChunkSize", Array.factory(new int[]{100, 1200})));
+
+        assertNull(ReaderUtils.getChunkAlignedTileSize(new Variable[]{unchunked}, 1200, 1000, 256, 2048));
+        assertEquals(new Dimension(1200, 300),
+                     ReaderUtils.getChunkAlignedTileSize(new Variable[]{unchunked, chunked}, 1200, 1000, 256, 2048));
+        // full-width chunks are split
+        assertEquals(new Dimension(1024, 300),
+                     ReaderUtils.getChunkAlignedTileSize(new Variable[]{unchunked, chunked}, 1200, 1000, 256, 1024));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.pixex;
+
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.util.ProductUtils;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A regular 1&deg; grid index over the geographical positions of the coordinates used for pixel extraction.
+ * It allows to find the candidate coordinates which may lie within a product without transforming every
+ * coordinate into the pixel grid of the product.
+ * <p>
+ * The candidates of a product are the coordinates inside the geographical bounding box of the product's
+ * boundary, enlarged by the largest distance between two of the sampled boundary positions. If the boundary
+ * cannot be determined, all coordinates are candidates.
+ *
+ * @since SNAP 2.0
+ */
+final class CoordinateIndex {
+
+    private static final int ROW_COUNT = 180;
+    private static final int COL_COUNT = 360;
+    private static final int BOUNDARY_POINT_COUNT = 64;
+
+    private final List<Coordinate> coordinates;
+    // for each cell the position of its first entry in cellEntries, the entries are coordinate indexes
+    private final int[] cellStarts;
+    private final int[] cellEntries;
+    // coordinates without valid position, always candidates
+    private final int[] unindexedEntries;
+
+    CoordinateIndex(List<Coordinate> coordinates) {
+        this.coordinates = coordinates;
+        final int[] cellIndexes = new int[coordinates.size()];
+        final int[] cellCounts = new int[ROW_COUNT * COL_COUNT];
+        int unindexedCount = 0;
+        for (int i = 0; i < cellIndexes.length; i++) {
+            final Coordinate coordinate = coordinates.get(i);
+            cellIndexes[i] = getCellIndex(coordinate.getLat(), coordinate.getLon());
+            if (cellIndexes[i] >= 0) {
+                cellCounts[cellIndexes[i]]++;
+            } else {
+                unindexedCount++;
+            }
+        }
+        cellStarts = new int[cellCounts.length + 1];
+        for (int cellIndex = 0; cellIndex < cellCounts.length; cellIndex++) {
+            cellStarts[cellIndex + 1] = cellStarts[cellIndex] + cellCounts[cellIndex];
+        }
+        cellEntries = new int[cellStarts[cellCounts.length]];
+        unindexedEntries = new int[unindexedCount];
+        final int[] cellFill = new int[cellCounts.length];
+        unindexedCount = 0;
+        for (int i = 0; i < cellIndexes.length; i++) {
+            final int cellIndex = cellIndexes[i];
+            if (cellIndex >= 0) {
+                cellEntries[cellStarts[cellIndex] + cellFill[cellIndex]++] = i;
+            } else {
+                unindexedEntries[unindexedCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * Gets the coordinates which may lie within the given product.
+     *
+     * @param product The product, must be geo-coded.
+     *
+     * @return The candidate coordinates, in the order of the indexed coordinate list.
+     */
+    List<Coordinate> getCandidates(Product product) {
+        final double[] bounds = getGeoBounds(product);
+        if (bounds == null) {
+            return coordinates;
+        }
+        return getCandidates(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    /**
+     * Gets the coordinates within the given geographical bounding box.
+     *
+     * @param minLat The minimum latitude.
+     * @param maxLat The maximum latitude.
+     * @param minLon The minimum longitude, normalised to [-180, 180].
+     * @param maxLon The maximum longitude, normalised to [-180, 180]. If less than {@code minLon},
+     *               the box crosses the anti-meridian.
+     *
+     * @return The candidate coordinates, in the order of the indexed coordinate list.
+     */
+    List<Coordinate> getCandidates(double minLat, double maxLat, double minLon, double maxLon) {
+        final Candidates candidates = new Candidates(minLat, maxLat, minLon, maxLon);
+        final int minCol = getCol(minLon);
+        final int maxCol = getCol(maxLon);
+        for (int row = getRow(minLat); row <= getRow(maxLat); row++) {
+            if (maxLon < minLon) {
+                candidates.addCells(row, minCol, COL_COUNT - 1);
+                candidates.addCells(row, 0, maxCol);
+            } else {
+                candidates.addCells(row, minCol, maxCol);
+            }
+        }
+        return candidates.toList();
+    }
+
+    /**
+     * @return {minLat, maxLat, minLon, maxLon} with normalised longitudes, or {@code null}
+     * if the boundary of the product cannot be determined.
+     */
+    static double[] getGeoBounds(Product product) {
+        final int width = product.getSceneRasterWidth();
+        final int height = product.getSceneRasterHeight();
+        final int step = Math.max(1, Math.max(width, height) / BOUNDARY_POINT_COUNT);
+        final GeoPos[] boundary = ProductUtils.createGeoBoundary(product, new Rectangle(0, 0, width, height), step, false);
+        if (boundary.length == 0) {
+            return null;
+        }
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        double maxDeltaLat = 0.0;
+        double maxDeltaLon = 0.0;
+        double lon = 0.0;
+        double lastLon = 0.0;
+        double lastLat = 0.0;
+        for (int i = 0; i <= boundary.length; i++) {
+            final GeoPos geoPos = boundary[i % boundary.length];
+            if (!geoPos.isValid()) {
+                return null;
+            }
+            if (i == 0) {
+                lon = geoPos.lon;
+            } else {
+                // unwrap the longitudes along the boundary
+                double deltaLon = geoPos.lon - lastLon;
+                if (deltaLon > 180.0) {
+                    deltaLon -= 360.0;
+                } else if (deltaLon < -180.0) {
+                    deltaLon += 360.0;
+                }
+                lon += deltaLon;
+                maxDeltaLat = Math.max(maxDeltaLat, Math.abs(geoPos.lat - lastLat));
+                maxDeltaLon = Math.max(maxDeltaLon, Math.abs(deltaLon));
+            }
+            lastLat = geoPos.lat;
+            lastLon = geoPos.lon;
+            minLat = Math.min(minLat, geoPos.lat);
+            maxLat = Math.max(maxLat, geoPos.lat);
+            if (i < boundary.length) {
+                minLon = Math.min(minLon, lon);
+                maxLon = Math.max(maxLon, lon);
+            }
+        }
+        final double margin = Math.max(maxDeltaLat, maxDeltaLon) + 1.0e-6;
+        minLat -= margin;
+        maxLat += margin;
+        // the unwrapped boundary does not return to its start longitude if it encloses a pole
+        final boolean enclosesPole = Math.abs(lon - boundary[0].lon) > 180.0;
+        if (enclosesPole) {
+            if (minLat + maxLat > 0.0) {
+                maxLat = 90.0;
+            } else {
+                minLat = -90.0;
+            }
+        }
+        if (enclosesPole || maxLon - minLon + 2 * margin >= 360.0) {
+            return new double[]{minLat, maxLat, -180.0, 180.0};
+        }
+        return new double[]{minLat, maxLat, normalizeLon(minLon - margin), normalizeLon(maxLon + margin)};
+    }
+
+    private final class Candidates {
+
+        private final double minLat;
+        private final double maxLat;
+        private final double minLon;
+        private final double maxLon;
+        private int[] entries;
+        private int count;
+
+        private Candidates(double minLat, double maxLat, double minLon, double maxLon) {
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLon = minLon;
+            this.maxLon = maxLon;
+            entries = Arrays.copyOf(unindexedEntries, unindexedEntries.length + 16);
+            count = unindexedEntries.length;
+        }
+
+        private void addCells(int row, int minCol, int maxCol) {
+            for (int cellIndex = row * COL_COUNT + minCol; cellIndex <= row * COL_COUNT + maxCol; cellIndex++) {
+                for (int k = cellStarts[cellIndex]; k < cellStarts[cellIndex + 1]; k++) {
+                    final int i = cellEntries[k];
+                    final Coordinate coordinate = coordinates.get(i);
+                    if (contains(coordinate.getLat(), normalizeLon(coordinate.getLon()))) {
+                        if (count == entries.length) {
+                            entries = Arrays.copyOf(entries, 2 * count);
+                        }
+                        entries[count++] = i;
+                    }
+                }
+            }
+        }
+
+        private boolean contains(double lat, double lon) {
+            if (lat < minLat || lat > maxLat) {
+                return false;
+            }
+            if (maxLon < minLon) {
+                return lon >= minLon || lon <= maxLon;
+            }
+            return lon >= minLon && lon <= maxLon;
+        }
+
+        private List<Coordinate> toList() {
+            final int[] sortedEntries = Arrays.copyOf(entries, count);
+            Arrays.sort(sortedEntries);
+            final List<Coordinate> list = new ArrayList<>(count);
+            for (int i : sortedEntries) {
+                list.add(coordinates.get(i));
+            }
+            return list;
+        }
+    }
+
+    private static int getCellIndex(Double lat, Double lon) {
+        if (lat == null || lon == null || !(lat >= -90.0 && lat <= 90.0) || Double.isNaN(lon) || Double.isInfinite(lon)) {
+            return -1;
+        }
+        return getRow(lat) * COL_COUNT + getCol(normalizeLon(lon));
+    }
+
+    private static int getRow(double lat) {
+        return Math.max(0, Math.min(ROW_COUNT - 1, (int) Math.floor(lat + 90.0)));
+    }
+
+    private static int getCol(double lon) {
+        return Math.max(0, Math.min(COL_COUNT - 1, (int) Math.floor(lon + 180.0)));
+    }
+
+    private static double normalizeLon(double lon) {
+        if (lon >= -180.0 && lon <= 180.0) {
+            return lon;
+        }
+        final double normalized = (lon + 180.0) % 360.0;
+        return normalized < 0.0 ? normalized + 180.0 : normalized - 180.0;
+    }
+}
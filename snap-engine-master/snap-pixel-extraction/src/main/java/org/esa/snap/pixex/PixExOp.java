@@ -79,15 +79,21 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipOutputStream;
@@ -220,12 +226,19 @@ public class PixExOp extends Operator {
             "included in the output.")
     private boolean includeOriginalInput;
 
+    @Parameter(description = "The number of source product files which are read and searched for the coordinates\n" +
+            "in parallel. The output does not depend on this value, because the measurements are\n" +
+            "written in the order of the source products.",
+               defaultValue = "1")
+    private int numParallelProducts;
+
     @Parameter(description = "Array of 2-tuples of variable names; " +
             "for each of these tuples a scatter plot will be exported.", notNull = false,
                itemAlias = "variableCombination")
     private VariableCombination[] scatterPlotVariableCombinations;
 
     private List<Coordinate> coordinateList;
+    private CoordinateIndex coordinateIndex;
     private boolean isTargetProductInitialized;
     private int timeDelta;
     private int calendarField = -1;
@@ -286,6 +299,7 @@ public class PixExOp extends Operator {
 
         Set<File> sourceProductFileSet = getSourceProductFileSet(this.sourceProductPaths, getLogger());
         coordinateList = initCoordinateList();
+        coordinateIndex = new CoordinateIndex(coordinateList);
         Measurement[] originalMeasurements = createOriginalMeasurements(coordinateList);
         parseTimeDelta(timeDifference);
         final PixExRasterNamesFactory rasterNamesFactory = new PixExRasterNamesFactory(exportBands, exportTiePoints,
@@ -472,16 +486,16 @@ public class PixExOp extends Operator {
         return measurements;
     }
 
-    private boolean extractMeasurement(Product product, Coordinate coordinate,
-                                       int coordinateID, RenderedImage validMaskImage) throws IOException {
+    private void findMatch(ProductMatches productMatches, Coordinate coordinate, RenderedImage validMaskImage) {
+        final Product product = productMatches.product;
         PixelPos centerPos = getPixelPosition(product, coordinate);
         if (!product.containsPixel(centerPos)) {
-            return false;
+            return;
         }
         if (considerTimeDifference(timeDifference) && coordinate.getDateTime() != null) {
             final ProductData.UTC scanLineTime = ProductUtils.getScanLineTime(product, centerPos.y);
             if (scanLineTime == null || !isPixelInTimeSpan(coordinate, timeDelta, calendarField, scanLineTime)) {
-                return false;
+                return;
             }
         }
         int offset = MathUtils.floorInt(windowSize / 2);
@@ -492,11 +506,8 @@ public class PixExOp extends Operator {
         final Raster validData = validMaskImage.getData(new Rectangle(upperLeftX, upperLeftY, windowSize, windowSize));
         boolean isAnyPixelValid = isAnyPixelInWindowValid(upperLeftX, upperLeftY, validData);
         if (isAnyPixelValid) {
-            measurementWriter.writeMeasurements(centerX, centerY, coordinateID, coordinate.getName(), product,
-                                                validData);
-            return true;
+            productMatches.matches.add(new Match(coordinate, centerX, centerY, validData));
         }
-        return false;
     }
 
     private PixelPos getPixelPosition(Product product, Coordinate coordinate) {
@@ -647,38 +658,131 @@ public class PixExOp extends Operator {
     }
 
     private boolean extractMeasurements(Set<File> fileSet) {
+        if (numParallelProducts > 1) {
+            return extractMeasurementsInParallel(fileSet);
+        }
         boolean measurementsFound = false;
         for (File file : fileSet) {
-            measurementsFound |= extractMeasurements(file);
+            final ProductMatches productMatches = findMatches(file);
+            if (productMatches != null) {
+                measurementsFound |= writeMeasurements(productMatches, file);
+            }
+        }
+        return measurementsFound;
+    }
+
+    /*
+     * Up to numParallelProducts product files are read and searched for the coordinates concurrently,
+     * while the measurements are written by the calling thread only, in the order of the files.
+     * So the format strategy and the product registry are accessed by one thread at a time and
+     * the output is the same as for sequential extraction.
+     */
+    private boolean extractMeasurementsInParallel(Set<File> fileSet) {
+        boolean measurementsFound = false;
+        final ExecutorService executorService = Executors.newFixedThreadPool(numParallelProducts);
+        final Deque<Future<ProductMatches>> pendingMatches = new ArrayDeque<>();
+        final Deque<File> pendingFiles = new ArrayDeque<>();
+        final Iterator<File> fileIterator = fileSet.iterator();
+        try {
+            while (fileIterator.hasNext() || !pendingMatches.isEmpty()) {
+                while (fileIterator.hasNext() && pendingMatches.size() < numParallelProducts) {
+                    final File file = fileIterator.next();
+                    pendingMatches.add(executorService.submit(() -> findMatches(file)));
+                    pendingFiles.add(file);
+                }
+                final ProductMatches productMatches = pendingMatches.removeFirst().get();
+                final File file = pendingFiles.removeFirst();
+                if (productMatches != null) {
+                    measurementsFound |= writeMeasurements(productMatches, file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Pixel extraction has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw new OperatorException(e.getCause());
+        } finally {
+            executorService.shutdown();
+            for (Future<ProductMatches> future : pendingMatches) {
+                disposeMatches(future);
+            }
         }
         return measurementsFound;
     }
 
-    private boolean extractMeasurements(File file) {
+    private static void disposeMatches(Future<ProductMatches> future) {
+        if (future.cancel(false)) {
+            return;
+        }
+        try {
+            final ProductMatches productMatches = future.get();
+            if (productMatches != null) {
+                productMatches.product.dispose();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+        }
+    }
+
+    /*
+     * Reads the product file and finds the coordinates within it. Returns null if the product cannot be read
+     * or does not qualify for pixel extraction, otherwise the caller is responsible for disposing the product.
+     */
+    private ProductMatches findMatches(File file) {
+        Product product = null;
         try {
-            final Product product = ProductIO.readProduct(file);
+            product = ProductIO.readProduct(file);
             if (product == null) {
                 getLogger().warning("Unable to read product from file '" + file.getAbsolutePath() + "'.");
-                return false;
+                return null;
             }
-            try {
-                return extractMeasurements(product);
-            } finally {
+            final ProductMatches productMatches = findMatches(product);
+            if (productMatches == null) {
                 product.dispose();
             }
+            return productMatches;
         } catch (Exception e) {
-            final Logger logger = getLogger();
-            logger.warning("Unable to extract measurements from product file '" + file.getAbsolutePath() + "'.");
-            logger.log(Level.WARNING, e.getMessage());
-            logger.log(Level.FINER, e.getMessage(), e);
+            if (product != null) {
+                product.dispose();
+            }
+            logExtractionFailure(file, e);
+        }
+        return null;
+    }
+
+    private boolean writeMeasurements(ProductMatches productMatches, File file) {
+        final Product product = productMatches.product;
+        try {
+            return writeMatches(productMatches);
+        } catch (Exception e) {
+            logExtractionFailure(file, e);
+        } finally {
+            product.dispose();
         }
         return false;
     }
 
+    private void logExtractionFailure(File file, Exception e) {
+        final Logger logger = getLogger();
+        logger.warning("Unable to extract measurements from product file '" + file.getAbsolutePath() + "'.");
+        logger.log(Level.WARNING, e.getMessage());
+        logger.log(Level.FINER, e.getMessage(), e);
+    }
+
     private boolean extractMeasurements(Product product) {
+        final ProductMatches productMatches = findMatches(product);
+        return productMatches != null && writeMatches(productMatches);
+    }
+
+    /*
+     * Finds the coordinates within the product, may be called concurrently for different products.
+     * The candidate coordinates are looked up in the coordinate index, and their order is retained.
+     */
+    private ProductMatches findMatches(Product product) {
 
         if (!isAbleToExtractPixels(product)) {
-            return false;
+            return null;
         }
 
         ProductData.UTC[] oldTimeStamps = new ProductData.UTC[2];
@@ -688,7 +792,10 @@ public class PixExOp extends Operator {
             File file = product.getFileLocation();
             if (extractTimeFromFilename && file != null) {
                 String fileName = file.getName();
-                final ProductData.UTC[] timeStamps = timeStampExtractor.extractTimeStamps(fileName);
+                final ProductData.UTC[] timeStamps;
+                synchronized (timeStampExtractor) {
+                    timeStamps = timeStampExtractor.extractTimeStamps(fileName);
+                }
                 product.setStartTime(timeStamps[0]);
                 product.setEndTime(timeStamps[1]);
             }
@@ -696,17 +803,36 @@ public class PixExOp extends Operator {
             throw new OperatorException(e);
         }
 
+        final ProductMatches productMatches = new ProductMatches(product, oldTimeStamps);
         final PlanarImage validMaskImage = createValidMaskImage(product);
+        boolean succeeded = false;
+        try {
+            for (Coordinate coordinate : coordinateIndex.getCandidates(product)) {
+                findMatch(productMatches, coordinate, validMaskImage);
+            }
+            succeeded = true;
+        } finally {
+            validMaskImage.dispose();
+            if (!succeeded) {
+                productMatches.restoreTimeStamps();
+            }
+        }
+        return productMatches;
+    }
+
+    private boolean writeMatches(ProductMatches productMatches) {
+        final Product product = productMatches.product;
         try {
             List<Coordinate> matchedCoordinates = new ArrayList<>();
 
             boolean coordinatesFound = false;
-            for (Coordinate coordinate : coordinateList) {
+            for (Match match : productMatches.matches) {
+                final Coordinate coordinate = match.coordinate;
                 try {
-                    final boolean measurementExtracted = extractMeasurement(product, coordinate, coordinate.getID(),
-                                                                            validMaskImage);
-                    coordinatesFound |= measurementExtracted;
-                    if (measurementExtracted && (exportSubScenes || exportKmz)) {
+                    measurementWriter.writeMeasurements(match.centerX, match.centerY, coordinate.getID(),
+                                                        coordinate.getName(), product, match.validData);
+                    coordinatesFound = true;
+                    if (exportSubScenes || exportKmz) {
                         matchedCoordinates.add(coordinate);
                     }
                 } catch (IOException e) {
@@ -738,9 +864,7 @@ public class PixExOp extends Operator {
             }
             return coordinatesFound;
         } finally {
-            validMaskImage.dispose();
-            product.setStartTime(oldTimeStamps[0]);
-            product.setEndTime(oldTimeStamps[1]);
+            productMatches.restoreTimeStamps();
         }
     }
 
@@ -777,6 +901,42 @@ public class PixExOp extends Operator {
         setTargetProduct(product);
     }
 
+    /**
+     * The coordinates found within a product, to be written in the order of the source products.
+     */
+    private static class ProductMatches {
+
+        private final Product product;
+        private final ProductData.UTC[] oldTimeStamps;
+        private final List<Match> matches;
+
+        private ProductMatches(Product product, ProductData.UTC[] oldTimeStamps) {
+            this.product = product;
+            this.oldTimeStamps = oldTimeStamps;
+            this.matches = new ArrayList<>();
+        }
+
+        private void restoreTimeStamps() {
+            product.setStartTime(oldTimeStamps[0]);
+            product.setEndTime(oldTimeStamps[1]);
+        }
+    }
+
+    private static class Match {
+
+        private final Coordinate coordinate;
+        private final int centerX;
+        private final int centerY;
+        private final Raster validData;
+
+        private Match(Coordinate coordinate, int centerX, int centerY, Raster validData) {
+            this.coordinate = coordinate;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.validData = validData;
+        }
+    }
+
     private static class ProductComparator implements Comparator<Product> {
 
         @Override
@@ -0,0 +1,76 @@
+package org.esa.snap.pixex;
+
+import org.esa.snap.core.datamodel.CrsGeoCoding;
+import org.esa.snap.core.datamodel.Product;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoordinateIndexTest {
+
+    private static final Coordinate C1 = new Coordinate("c1", 45.0, 20.0, null);
+    private static final Coordinate C2 = new Coordinate("c2", -45.0, 20.0, null);
+    private static final Coordinate C3 = new Coordinate("c3", 41.5, 10.2, null);
+    private static final Coordinate C4 = new Coordinate("c4", 10.0, 175.0, null);
+    private static final Coordinate C5 = new Coordinate("c5", 12.0, -178.0, null);
+    private static final Coordinate C6 = new Coordinate("c6", 12.0, 182.0, null);
+    private static final Coordinate C7 = new Coordinate("c7", Double.NaN, 20.0, null);
+    private static final Coordinate C8 = new Coordinate("c8", 49.9, 29.9, null);
+    private static final Coordinate C9 = new Coordinate("c9", 11.0, 160.0, null);
+
+    private final CoordinateIndex index = new CoordinateIndex(Arrays.asList(C1, C2, C3, C4, C5, C6, C7, C8, C9));
+
+    @Test
+    public void testCandidatesOfProduct() throws Exception {
+        // lon 10..30, lat 40..50
+        final List<Coordinate> candidates = index.getCandidates(createProduct(10.0, 50.0, 20, 10));
+        assertEquals(Arrays.asList(C1, C3, C7, C8), candidates);
+    }
+
+    @Test
+    public void testCandidatesOfProductCrossingAntiMeridian() throws Exception {
+        // lon 170..190, lat 5..15
+        final List<Coordinate> candidates = index.getCandidates(createProduct(170.0, 15.0, 20, 10));
+        assertEquals(Arrays.asList(C4, C5, C6, C7), candidates);
+    }
+
+    @Test
+    public void testCandidatesOfGlobalProduct() throws Exception {
+        final List<Coordinate> candidates = index.getCandidates(createProduct(-180.0, 90.0, 360, 180));
+        assertEquals(Arrays.asList(C1, C2, C3, C4, C5, C6, C7, C8, C9), candidates);
+    }
+
+    @Test
+    public void testCandidatesOfBox() throws Exception {
+        assertEquals(Arrays.asList(C1, C7, C8), index.getCandidates(42.0, 50.0, 15.0, 30.0));
+        assertEquals(Arrays.asList(C4, C5, C6, C7), index.getCandidates(0.0, 20.0, 170.0, -170.0));
+        assertEquals(Arrays.asList(C7), index.getCandidates(-10.0, 0.0, -10.0, 0.0));
+    }
+
+    @Test
+    public void testGeoBounds() throws Exception {
+        final double[] bounds = CoordinateIndex.getGeoBounds(createProduct(170.0, 15.0, 20, 10));
+        assertNotNull(bounds);
+        assertEquals(5.0, bounds[0], 1.0);
+        assertEquals(15.0, bounds[1], 1.0);
+        assertEquals(170.0, bounds[2], 1.0);
+        assertEquals(-170.0, bounds[3], 1.0);
+        assertTrue(bounds[0] <= 5.0 && bounds[1] >= 15.0);
+        assertTrue(bounds[2] <= 170.0 && bounds[3] >= -170.0);
+    }
+
+    private static Product createProduct(double easting, double northing, int width, int height) throws Exception {
+        final Product product = new Product("test", "test", width, height);
+        final AffineTransform i2mTransform = new AffineTransform();
+        i2mTransform.translate(easting, northing);
+        i2mTransform.scale(1.0, -1.0);
+        product.setSceneGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, new Rectangle(width, height), i2mTransform));
+        return product;
+    }
+}
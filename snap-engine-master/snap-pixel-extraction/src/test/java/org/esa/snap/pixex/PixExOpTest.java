@@ -104,6 +104,52 @@ public class PixExOpTest {
         assertEquals(windowSize * windowSize * 2 * 2, measurementList.size());
     }
 
+    @Test
+    public void testParallelProductsYieldSameMeasurements() throws Exception {
+        String parentDir = new File(getClass().getResource("dummyProduct1.dim").getFile()).getParent();
+        Coordinate[] coordinates = {
+                new Coordinate("carlCoordinate", 60.1, 3.0, null),
+                new Coordinate("outsideCoordinate", -20.0, 100.0, null),
+                new Coordinate("cassandraCoordinate", 59.1, 0.5, null)
+        };
+        final List<Measurement> sequentialMeasurements = extractFromFiles(parentDir, coordinates, 1,
+                                                                           "testSequentialProducts");
+        final List<Measurement> parallelMeasurements = extractFromFiles(parentDir, coordinates, 2,
+                                                                         "testParallelProducts");
+
+        assertEquals(3 * 3 * 2 * 2, sequentialMeasurements.size());
+        assertEquals(sequentialMeasurements.size(), parallelMeasurements.size());
+        for (int i = 0; i < sequentialMeasurements.size(); i++) {
+            final Measurement expected = sequentialMeasurements.get(i);
+            final Measurement actual = parallelMeasurements.get(i);
+            assertEquals(expected.getCoordinateName(), actual.getCoordinateName());
+            assertEquals(expected.getProductId(), actual.getProductId());
+            assertEquals(expected.getPixelX(), actual.getPixelX(), 0.0);
+            assertEquals(expected.getPixelY(), actual.getPixelY(), 0.0);
+            assertArrayEquals(expected.getValues(), actual.getValues());
+        }
+    }
+
+    private List<Measurement> extractFromFiles(String parentDir, Coordinate[] coordinates, int numParallelProducts,
+                                               String methodName) throws IOException {
+        HashMap<String, Object> parameterMap = new HashMap<>();
+        final File outputDir = getOutputDir(methodName, getClass());
+        parameterMap.put("sourceProductPaths", new String[]{parentDir + File.separator + "*.dim"});
+        parameterMap.put("outputDir", outputDir);
+        parameterMap.put("outputFilePrefix", "pixels");
+        parameterMap.put("exportTiePoints", false);
+        parameterMap.put("exportMasks", false);
+        parameterMap.put("coordinates", coordinates);
+        parameterMap.put("windowSize", 3);
+        parameterMap.put("numParallelProducts", numParallelProducts);
+
+        computeData(parameterMap, new Product[0]);
+
+        try (PixExMeasurementReader reader = new PixExMeasurementReader(outputDir)) {
+            return convertToList(reader);
+        }
+    }
+
     @Test
     public void testGetParsedInputPaths() throws Exception {
         final File testDir = getOutputDir("testGetParsedInputPaths", getClass());
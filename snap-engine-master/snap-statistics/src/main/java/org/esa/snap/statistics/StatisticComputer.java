@@ -5,13 +5,15 @@ import com.bc.ceres.core.SubProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.HistogramStxOp;
-import org.esa.snap.core.datamodel.Mask;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.SinglePassStxOp;
 import org.esa.snap.core.datamodel.StxFactory;
 import org.esa.snap.core.datamodel.SummaryStxOp;
 import org.esa.snap.core.datamodel.VectorDataNode;
 import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.image.ResolutionLevel;
+import org.esa.snap.core.image.VectorDataLabelOpImage;
 import org.esa.snap.core.util.FeatureUtils;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.statistics.output.Util;
@@ -43,10 +45,20 @@ public class StatisticComputer {
     private final BandConfiguration[] bandConfigurations;
     private final Map<BandConfiguration, StxOpMapping> stxOpMappings;
     private final int initialBinCount;
+    private final boolean singlePass;
     private final Logger logger;
 
     public StatisticComputer(File shapefile, BandConfiguration[] bandConfigurations, int initialBinCount, Logger logger) {
+        this(shapefile, bandConfigurations, initialBinCount, false, logger);
+    }
+
+    /**
+     * @param singlePass If {@code true}, the statistics are computed in a single pass over each band using
+     *                   {@link SinglePassStxOp}s, otherwise in two passes.
+     */
+    public StatisticComputer(File shapefile, BandConfiguration[] bandConfigurations, int initialBinCount, boolean singlePass, Logger logger) {
         this.initialBinCount = initialBinCount;
+        this.singlePass = singlePass;
         this.logger = logger != null ? logger : SystemUtils.LOG;
         if (shapefile != null) {
             try {
@@ -77,14 +89,16 @@ public class StatisticComputer {
     }
 
     public void computeStatistic(final Product product) {
-        VectorDataNode[] vectorDataNodes = null;
+        VectorDataLabelOpImage[] labelImages = null;
         if (features != null) {
             final FeatureCollection<SimpleFeatureType, SimpleFeature> productFeatures
                     = FeatureUtils.clipFeatureCollectionToProductBounds(features, product, crsProvider, pm);
-            vectorDataNodes = createVectorDataNodes(productFeatures);
+            final VectorDataNode[] vectorDataNodes = createVectorDataNodes(productFeatures);
             for (VectorDataNode vectorDataNode : vectorDataNodes) {
                 product.getVectorDataGroup().add(vectorDataNode);
             }
+            // all regions are rasterised into (usually) a single label image, so that each band is read only once or twice
+            labelImages = VectorDataLabelOpImage.createDisjointImages(vectorDataNodes, ResolutionLevel.MAXRES);
         }
         for (BandConfiguration bandConfiguration : bandConfigurations) {
             final Band band = getBand(bandConfiguration, product);
@@ -98,22 +112,77 @@ public class StatisticComputer {
                 band.setValidPixelExpression(newExpression);
             }
             final StxOpMapping stxOpsMapping = getStxOpsMapping(bandConfiguration);
-            if (features != null) {
-                for (VectorDataNode vectorDataNode : vectorDataNodes) {
-                    final String vdnName = vectorDataNode.getName();
-                    Mask currentMask = product.getMaskGroup().get(vdnName);
-                    final Shape roiShape = currentMask.getValidShape();
-                    final MultiLevelImage roiImage = currentMask.getSourceImage();
-                    computeStatistic(vdnName, stxOpsMapping, band, roiShape, roiImage);
-                }
+            if (labelImages != null) {
+                computeZonalStatistic(labelImages, stxOpsMapping, band);
             } else {
                 computeStatistic("world", stxOpsMapping, band, null, null);
             }
         }
     }
 
+    /**
+     * Computes the statistics of all regions in a single scan of the band (or two scans, if not in single-pass mode).
+     */
+    private void computeZonalStatistic(VectorDataLabelOpImage[] labelImages, StxOpMapping stxOpsMapping, Band band) {
+        if (labelImages.length == 0) {
+            return;
+        }
+        final VectorDataNode[][] regions = new VectorDataNode[labelImages.length][];
+        for (int k = 0; k < labelImages.length; k++) {
+            regions[k] = labelImages[k].getVectorDataNodes();
+        }
+        if (singlePass) {
+            final boolean intHistogram = band.getGeophysicalImage().getSampleModel().getDataType() < DataBuffer.TYPE_FLOAT;
+            // the ops keep the samples of small regions, only regions with many samples allocate fine bins
+            final SinglePassStxOp[][] singlePassStxOps = new SinglePassStxOp[regions.length][];
+            for (int k = 0; k < regions.length; k++) {
+                singlePassStxOps[k] = new SinglePassStxOp[regions[k].length];
+                for (int i = 0; i < regions[k].length; i++) {
+                    singlePassStxOps[k][i] = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(initialBinCount), intHistogram, false);
+                }
+            }
+            StxFactory.accumulate(band, 0, labelImages, singlePassStxOps, SubProgressMonitor.create(pm, 100));
+            for (int k = 0; k < regions.length; k++) {
+                for (int i = 0; i < regions[k].length; i++) {
+                    final String regionName = regions[k][i].getName();
+                    final SummaryStxOp summaryStxOp = stxOpsMapping.getSummaryOp(regionName);
+                    summaryStxOp.merge(singlePassStxOps[k][i].getSummaryOp());
+                    final HistogramStxOp histogramStxOp = stxOpsMapping.getHistogramOp(regionName, summaryStxOp.getMinimum(), summaryStxOp.getMaximum(), band);
+                    singlePassStxOps[k][i].accumulateHistogram(histogramStxOp.getHistogram());
+                }
+            }
+        } else {
+            final SummaryStxOp[][] summaryStxOps = new SummaryStxOp[regions.length][];
+            for (int k = 0; k < regions.length; k++) {
+                summaryStxOps[k] = new SummaryStxOp[regions[k].length];
+                for (int i = 0; i < regions[k].length; i++) {
+                    summaryStxOps[k][i] = stxOpsMapping.getSummaryOp(regions[k][i].getName());
+                }
+            }
+            StxFactory.accumulate(band, 0, labelImages, summaryStxOps, SubProgressMonitor.create(pm, 50));
+            final HistogramStxOp[][] histogramStxOps = new HistogramStxOp[regions.length][];
+            for (int k = 0; k < regions.length; k++) {
+                histogramStxOps[k] = new HistogramStxOp[regions[k].length];
+                for (int i = 0; i < regions[k].length; i++) {
+                    final SummaryStxOp summaryStxOp = summaryStxOps[k][i];
+                    histogramStxOps[k][i] = stxOpsMapping.getHistogramOp(regions[k][i].getName(), summaryStxOp.getMinimum(), summaryStxOp.getMaximum(), band);
+                }
+            }
+            StxFactory.accumulate(band, 0, labelImages, histogramStxOps, SubProgressMonitor.create(pm, 50));
+        }
+    }
+
     private void computeStatistic(String regionName, StxOpMapping stxOpsMapping, Band band, Shape roiShape, MultiLevelImage roiImage) {
         final SummaryStxOp summaryStxOp = stxOpsMapping.getSummaryOp(regionName);
+        if (singlePass) {
+            final boolean intHistogram = band.getGeophysicalImage().getSampleModel().getDataType() < DataBuffer.TYPE_FLOAT;
+            final SinglePassStxOp singlePassStxOp = new SinglePassStxOp(SinglePassStxOp.getFineBinCount(initialBinCount), intHistogram, false);
+            StxFactory.accumulate(band, 0, roiImage, roiShape, singlePassStxOp, Runtime.getRuntime().availableProcessors(), SubProgressMonitor.create(pm, 100));
+            summaryStxOp.merge(singlePassStxOp.getSummaryOp());
+            final HistogramStxOp histogramStxOp = stxOpsMapping.getHistogramOp(regionName, summaryStxOp.getMinimum(), summaryStxOp.getMaximum(), band);
+            singlePassStxOp.accumulateHistogram(histogramStxOp.getHistogram());
+            return;
+        }
         StxFactory.accumulate(band, 0, roiImage, roiShape, summaryStxOp, SubProgressMonitor.create(pm, 50));
         final double minimum = summaryStxOp.getMinimum();
         final double maximum = summaryStxOp.getMaximum();
@@ -149,6 +149,11 @@ public class StatisticsOp extends Operator {
                defaultValue = "3")
     int accuracy;
 
+    @Parameter(description = "If true, the statistics are computed in a single pass over each band instead of " +
+            "two passes. Percentiles may then deviate by a small fraction of a histogram bin width.",
+               defaultValue = "false")
+    boolean singlePass;
+
     final Set<StatisticsOutputter> statisticsOutputters = new HashSet<StatisticsOutputter>();
 
     final SortedSet<String> regionNames = new TreeSet<String>();
@@ -162,7 +167,7 @@ public class StatisticsOp extends Operator {
         setDummyTargetProduct();
         validateInput();
 
-        final StatisticComputer statisticComputer = new StatisticComputer(shapefile, bandConfigurations, Util.computeBinCount(accuracy), getLogger());
+        final StatisticComputer statisticComputer = new StatisticComputer(shapefile, bandConfigurations, Util.computeBinCount(accuracy), singlePass, getLogger());
 
         final ProductValidator productValidator = new ProductValidator(Arrays.asList(bandConfigurations), startDate, endDate, getLogger());
         final ProductLoop productLoop = new ProductLoop(new ProductLoader(), productValidator, statisticComputer, getLogger());
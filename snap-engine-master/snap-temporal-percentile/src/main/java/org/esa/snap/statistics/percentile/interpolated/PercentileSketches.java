@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.statistics.percentile.interpolated;
+
+import java.util.Arrays;
+
+/**
+ * Memory-bounded sketches for the computation of percentile thresholds of many pixels, stored in flat arrays.
+ * <p>
+ * The values of a pixel are added one after the other, so the full time series of a pixel never needs to be held
+ * in memory. Each pixel has a buffer of a fixed capacity. As long as not more values than the capacity have been
+ * added, the buffer holds all values and the thresholds are exactly the same as computed from the full time series.
+ * If the buffer is full, it is compressed by merging neighbouring values into weighted centroids, like a
+ * merging t-digest does. The size of the centroids is limited by a scale function which keeps them small at both
+ * ends of the value distribution, so that especially high and low percentiles are accurate. The minimum and the
+ * maximum value of each pixel are kept exactly.
+ * <p>
+ * The centroids are stored in chunks of whole pixels, so that the number of pixels times the capacity may exceed
+ * the maximum size of a Java array.
+ *
+ * @since SNAP 2.0
+ */
+final class PercentileSketches {
+
+    // the maximum number of centroids stored in one chunk
+    private static final int MAX_CHUNK_SIZE = 1 << 24;
+
+    private final int capacity;
+    private final int pixelsPerChunk;
+    private final float[][] meanChunks;
+    private final float[][] weightChunks;
+    private final short[] sizes;
+    private final int[] counts;
+    private final float[] minimums;
+    private final float[] maximums;
+
+    /**
+     * @param numPixels The number of pixels.
+     * @param capacity  The number of centroids per pixel. Must be in the range [8, 32767].
+     */
+    PercentileSketches(int numPixels, int capacity) {
+        this(numPixels, capacity, MAX_CHUNK_SIZE);
+    }
+
+    PercentileSketches(int numPixels, int capacity, int maxChunkSize) {
+        if (capacity < 8 || capacity > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity must be in the range [8, " + Short.MAX_VALUE + "]");
+        }
+        this.capacity = capacity;
+        this.pixelsPerChunk = Math.max(1, maxChunkSize / capacity);
+        final int numChunks = (int) (((long) numPixels + pixelsPerChunk - 1) / pixelsPerChunk);
+        this.meanChunks = new float[numChunks][];
+        this.weightChunks = new float[numChunks][];
+        for (int i = 0; i < numChunks; i++) {
+            final int chunkSize = Math.min(pixelsPerChunk, numPixels - i * pixelsPerChunk) * capacity;
+            meanChunks[i] = new float[chunkSize];
+            weightChunks[i] = new float[chunkSize];
+        }
+        this.sizes = new short[numPixels];
+        this.counts = new int[numPixels];
+        this.minimums = new float[numPixels];
+        this.maximums = new float[numPixels];
+    }
+
+    /**
+     * @param numPixels The number of pixels.
+     * @param capacity  The number of centroids per pixel.
+     *
+     * @return The number of bytes needed by the sketches.
+     */
+    static long getSizeInBytes(long numPixels, int capacity) {
+        return numPixels * (capacity * 8L + 14L);
+    }
+
+    /**
+     * @param pixelIndex The pixel index.
+     *
+     * @return The number of values added for the given pixel.
+     */
+    int getCount(int pixelIndex) {
+        return counts[pixelIndex];
+    }
+
+    /**
+     * @param pixelIndex The pixel index.
+     *
+     * @return {@code true}, if the thresholds of the given pixel are exact, because its buffer
+     * never had to be compressed.
+     */
+    boolean isExact(int pixelIndex) {
+        return counts[pixelIndex] <= capacity;
+    }
+
+    /**
+     * Adds a value to the sketch of a pixel.
+     *
+     * @param pixelIndex The pixel index.
+     * @param value      The value, must not be NaN.
+     */
+    void add(int pixelIndex, float value) {
+        int size = sizes[pixelIndex];
+        if (size == capacity) {
+            size = compress(pixelIndex, capacity);
+            if (size == capacity) {
+                size = compress(pixelIndex, capacity / 2);
+            }
+        }
+        final int chunk = pixelIndex / pixelsPerChunk;
+        final int index = getStart(pixelIndex) + size;
+        meanChunks[chunk][index] = value;
+        weightChunks[chunk][index] = 1.0f;
+        sizes[pixelIndex] = (short) (size + 1);
+        if (counts[pixelIndex] == 0 || value < minimums[pixelIndex]) {
+            minimums[pixelIndex] = value;
+        }
+        if (counts[pixelIndex] == 0 || value > maximums[pixelIndex]) {
+            maximums[pixelIndex] = value;
+        }
+        counts[pixelIndex]++;
+    }
+
+    /**
+     * Computes the percentile thresholds of a pixel in the same way as the exact computation does, i.e. the
+     * threshold of percentile {@code p} is the value at index {@code floor(p / 100 * count)} of the sorted values.
+     * If the sketch of the pixel is not exact, the threshold is interpolated between the neighbouring centroids.
+     *
+     * @param pixelIndex  The pixel index.
+     * @param percentiles The percentiles.
+     * @param thresholds  The array which receives the thresholds of the percentiles.
+     */
+    void getPercentileThresholds(int pixelIndex, int[] percentiles, float[] thresholds) {
+        final int start = getStart(pixelIndex);
+        final int size = sizes[pixelIndex];
+        final int count = counts[pixelIndex];
+        if (count == 0) {
+            Arrays.fill(thresholds, 0, percentiles.length, Float.NaN);
+            return;
+        }
+        final float[] means = meanChunks[pixelIndex / pixelsPerChunk];
+        final float[] weights = weightChunks[pixelIndex / pixelsPerChunk];
+        sort(means, weights, start, size);
+        for (int i = 0; i < percentiles.length; i++) {
+            final int rankIndex = Math.min((int) Math.floor(percentiles[i] / 100f * count), count - 1);
+            if (rankIndex == 0) {
+                thresholds[i] = minimums[pixelIndex];
+            } else if (rankIndex == count - 1) {
+                thresholds[i] = maximums[pixelIndex];
+            } else {
+                thresholds[i] = getValueAtRank(pixelIndex, means, weights, start, size, rankIndex + 0.5);
+            }
+        }
+    }
+
+    private float getValueAtRank(int pixelIndex, float[] means, float[] weights, int start, int size, double rank) {
+        double weightSum = 0.0;
+        for (int i = start; i < start + size; i++) {
+            final double center = weightSum + weights[i] / 2.0;
+            if (rank < center) {
+                if (i == start) {
+                    // between the minimum, which has the rank 0.5, and the first centroid
+                    return interpolate(minimums[pixelIndex], means[i], (rank - 0.5) / (center - 0.5));
+                }
+                if (weights[i - 1] == 1.0f && weights[i] == 1.0f) {
+                    return rank < weightSum ? means[i - 1] : means[i];
+                }
+                final double previousCenter = weightSum - weights[i - 1] / 2.0;
+                return interpolate(means[i - 1], means[i], (rank - previousCenter) / (center - previousCenter));
+            }
+            weightSum += weights[i];
+        }
+        // between the last centroid and the maximum, which has the rank count - 0.5
+        final int last = start + size - 1;
+        final double lastCenter = weightSum - weights[last] / 2.0;
+        return interpolate(means[last], maximums[pixelIndex], (rank - lastCenter) / (weightSum - 0.5 - lastCenter));
+    }
+
+    private static float interpolate(float value1, float value2, double t) {
+        return (float) (value1 + (value2 - value1) * t);
+    }
+
+    private int compress(int pixelIndex, double compression) {
+        final int start = getStart(pixelIndex);
+        final int size = sizes[pixelIndex];
+        final double totalWeight = counts[pixelIndex];
+        final float[] means = meanChunks[pixelIndex / pixelsPerChunk];
+        final float[] weights = weightChunks[pixelIndex / pixelsPerChunk];
+        sort(means, weights, start, size);
+
+        int numCentroids = 0;
+        double weightSoFar = 0.0;
+        double maxQuantile = getMaxQuantile(0.0, compression);
+        double mean = means[start];
+        double weight = weights[start];
+        for (int i = start + 1; i < start + size; i++) {
+            final double w = weights[i];
+            if ((weightSoFar + weight + w) / totalWeight <= maxQuantile) {
+                weight += w;
+                mean += (means[i] - mean) * w / weight;
+            } else {
+                means[start + numCentroids] = (float) mean;
+                weights[start + numCentroids] = (float) weight;
+                numCentroids++;
+                weightSoFar += weight;
+                maxQuantile = getMaxQuantile(weightSoFar / totalWeight, compression);
+                mean = means[i];
+                weight = w;
+            }
+        }
+        means[start + numCentroids] = (float) mean;
+        weights[start + numCentroids] = (float) weight;
+        numCentroids++;
+        sizes[pixelIndex] = (short) numCentroids;
+        return numCentroids;
+    }
+
+    /**
+     * Uses the scale function {@code k(q) = compression / (2 PI) * asin(2q - 1)}. A centroid starting at
+     * quantile {@code q} may grow until {@code k} has increased by one.
+     */
+    private static double getMaxQuantile(double quantile, double compression) {
+        final double k = compression / (2.0 * Math.PI) * Math.asin(2.0 * quantile - 1.0) + 1.0;
+        if (k >= compression / 4.0) {
+            return 1.0;
+        }
+        return (Math.sin(k * 2.0 * Math.PI / compression) + 1.0) / 2.0;
+    }
+
+    /**
+     * @return The index of the first centroid of the given pixel within its chunk.
+     */
+    private int getStart(int pixelIndex) {
+        return (pixelIndex % pixelsPerChunk) * capacity;
+    }
+
+    private static void sort(float[] means, float[] weights, int start, int size) {
+        for (int i = start + 1; i < start + size; i++) {
+            final float mean = means[i];
+            final float weight = weights[i];
+            int j = i;
+            while (j > start && means[j - 1] > mean) {
+                means[j] = means[j - 1];
+                weights[j] = weights[j - 1];
+                j--;
+            }
+            means[j] = mean;
+            weights[j] = weight;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.snap.statistics.percentile.interpolated;
+
+import java.util.Arrays;
+
+/**
+ * Computes the percentile thresholds of the pixel time series' from daily values which are added day by day,
+ * without holding the time series' in memory. The values are added to {@link PercentileSketches}.
+ * <p>
+ * Gaps can be filled by linear interpolation: when a valid value of a pixel arrives, the days since the last
+ * valid value of the pixel are interpolated and added first. This yields the same values as
+ * {@link GapFiller#fillGaps} with a linear interpolator, including the fallback values at the start and the end
+ * of the time series.
+ *
+ * @since SNAP 2.0
+ */
+final class StreamingPercentileComputer {
+
+    private final int timeSeriesLength;
+    private final boolean linearGapFilling;
+    private final float startValueFallback;
+    private final float endValueFallback;
+    private final PercentileSketches sketches;
+    private final int[] valueCounts;
+    private final int[] lastDayIndices;
+    private final float[] lastValues;
+
+    /**
+     * @param numPixels          The number of pixels.
+     * @param timeSeriesLength   The number of days of the time series.
+     * @param sketchSize         The number of values held per pixel.
+     * @param linearGapFilling   Whether gaps shall be filled by linear interpolation.
+     * @param startValueFallback The value used for the first day, if it has no valid value.
+     * @param endValueFallback   The value used for the last day, if it has no valid value.
+     */
+    StreamingPercentileComputer(int numPixels, int timeSeriesLength, int sketchSize, boolean linearGapFilling,
+                                float startValueFallback, float endValueFallback) {
+        this.timeSeriesLength = timeSeriesLength;
+        this.linearGapFilling = linearGapFilling;
+        this.startValueFallback = startValueFallback;
+        this.endValueFallback = endValueFallback;
+        this.sketches = new PercentileSketches(numPixels, sketchSize);
+        this.valueCounts = new int[numPixels];
+        this.lastDayIndices = new int[numPixels];
+        this.lastValues = new float[numPixels];
+        Arrays.fill(lastDayIndices, -1);
+    }
+
+    /**
+     * @param numPixels  The number of pixels.
+     * @param sketchSize The number of values held per pixel.
+     *
+     * @return The number of bytes needed to compute the percentiles of the given number of pixels.
+     */
+    static long getSizeInBytes(long numPixels, int sketchSize) {
+        return PercentileSketches.getSizeInBytes(numPixels, sketchSize) + numPixels * 12L;
+    }
+
+    /**
+     * Adds the values of a day for consecutive pixels. The days must be added in chronological order.
+     *
+     * @param dayIndex   The index of the day in the time series.
+     * @param pixelIndex The index of the first pixel.
+     * @param values     The values, NaN for missing values.
+     * @param numValues  The number of values.
+     */
+    void addDailyValues(int dayIndex, int pixelIndex, float[] values, int numValues) {
+        for (int i = 0; i < numValues; i++) {
+            final float value = values[i];
+            if (!Float.isNaN(value)) {
+                addValue(pixelIndex + i, dayIndex, value);
+                valueCounts[pixelIndex + i]++;
+            }
+        }
+    }
+
+    /**
+     * Fills the gaps at the end of the time series'. Must be called after the values of all days have been added.
+     */
+    void finish() {
+        if (!linearGapFilling) {
+            return;
+        }
+        final int lastDayIndex = timeSeriesLength - 1;
+        for (int pixelIndex = 0; pixelIndex < lastDayIndices.length; pixelIndex++) {
+            if (lastDayIndices[pixelIndex] >= 0 && lastDayIndices[pixelIndex] < lastDayIndex) {
+                addValue(pixelIndex, lastDayIndex, endValueFallback);
+            }
+        }
+    }
+
+    /**
+     * @param pixelIndex The pixel index.
+     *
+     * @return The number of valid values of the given pixel, without the interpolated ones.
+     */
+    int getValueCount(int pixelIndex) {
+        return valueCounts[pixelIndex];
+    }
+
+    /**
+     * @param pixelIndex The pixel index.
+     *
+     * @return {@code true}, if the thresholds of the given pixel are the same as computed from the full time series.
+     */
+    boolean isExact(int pixelIndex) {
+        return sketches.isExact(pixelIndex);
+    }
+
+    /**
+     * @param pixelIndex  The pixel index.
+     * @param percentiles The percentiles.
+     * @param thresholds  The array which receives the thresholds of the percentiles.
+     */
+    void getPercentileThresholds(int pixelIndex, int[] percentiles, float[] thresholds) {
+        sketches.getPercentileThresholds(pixelIndex, percentiles, thresholds);
+    }
+
+    private void addValue(int pixelIndex, int dayIndex, float value) {
+        if (linearGapFilling) {
+            int lastDayIndex = lastDayIndices[pixelIndex];
+            float lastValue = lastValues[pixelIndex];
+            if (lastDayIndex < 0 && dayIndex > 0) {
+                lastDayIndex = 0;
+                lastValue = startValueFallback;
+                sketches.add(pixelIndex, lastValue);
+            }
+            if (lastDayIndex >= 0) {
+                final double slope = ((double) value - lastValue) / (dayIndex - lastDayIndex);
+                for (int day = lastDayIndex + 1; day < dayIndex; day++) {
+                    sketches.add(pixelIndex, (float) ((day - lastDayIndex) * slope + lastValue));
+                }
+            }
+            lastDayIndices[pixelIndex] = dayIndex;
+            lastValues[pixelIndex] = value;
+        }
+        sketches.add(pixelIndex, value);
+    }
+}
@@ -59,6 +59,9 @@ import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -92,6 +95,12 @@ import java.util.logging.Level;
  * Based on these time series', for each percentile a band is written to the target product.
  * In these bands, each pixel holds the threshold of the respective percentile.
  * <p>
+ * For long time periods, the time series' may not fit into memory. In this case the percentiles can be computed
+ * in a streaming manner: no intermediate time series product is written, instead the daily mean values are added to
+ * memory-bounded per-pixel sketches (see {@link PercentileSketches}). The thresholds are exact as long as a time
+ * series is not longer than the sketch size, otherwise they are approximated. Gap filling by linear interpolation
+ * is supported in this mode, too.
+ * <p>
  *
  * @author Sabine Embacher
  * @author Tonio Fincke
@@ -125,6 +134,8 @@ public class TemporalPercentileOp extends Operator {
     private static final String SUFFIX_PERCENTILE_OP_DATA_PRODUCT = "_PercentileOpDataProduct";
     private static final String UNABLE_TO_WRITE_TIMESERIES_DATA_PRODUCT = "Unable to write timeseries data product.";
     private static final String UNABLE_TO_READ_TIMESERIES_DATA_PRODUCT = "Unable to read timeseries data product.";
+    // the number of pixels whose time series' are kept in order to estimate the error of the streaming computation
+    private static final int NUM_ERROR_SAMPLES = 1000;
     private final static String BAND_MATH_EXPRESSION_BAND_NAME = "bandMathExpressionBandName";
     private final static String COUNT_BAND_NAME = "values_count";
 
@@ -230,6 +241,20 @@ public class TemporalPercentileOp extends Operator {
                defaultValue = "0.0")
     Double endValueFallback;
 
+    @Parameter(description = "If true, the percentiles are computed in a streaming manner. No intermediate time series\n" +
+                             "product is written and the pixel time series' are not held in memory. Instead, the daily\n" +
+                             "mean values are added to per-pixel sketches holding 'percentileSketchSize' values. The\n" +
+                             "thresholds are exact for time series' not longer than the sketch size, otherwise they are\n" +
+                             "approximated. Only '" + GAP_FILLING_METHOD_NO_GAP_FILLING + "' and '" +
+                             GAP_FILLING_METHOD_LINEAR_INTERPOLATION + "' are\n" +
+                             "supported, for other gap filling methods the percentiles are computed exactly.",
+               defaultValue = "false")
+    boolean streamingPercentiles;
+
+    @Parameter(description = "The number of values held per pixel, if 'streamingPercentiles' is set.",
+               interval = "[8,32767]", defaultValue = "64")
+    int percentileSketchSize;
+
 
     private TreeMap<Long, List<Product>> dailyGroupedSourceProducts;
     private long timeSeriesStartMJD;
@@ -239,11 +264,14 @@ public class TemporalPercentileOp extends Operator {
     private HashMap<String, Integer> timeSeriesBandNameToDayIndexMap;
     private PercentileComputer percentileComputer;
     private Interpolator interpolator;
+    private boolean streaming;
+    private StreamingPercentileComputer streamingPercentileComputer;
 
     @Override
     public void initialize() throws OperatorException {
         validateInput();
         interpolator = InterpolatorFactory.createInterpolator(gapFillingMethod);
+        streaming = streamingPercentiles && isStreamingSupported();
 
         final Product targetProduct = createTargetProduct();
 
@@ -276,9 +304,12 @@ public class TemporalPercentileOp extends Operator {
 
         getLogger().log(Level.INFO, "Successfully initialized target product.");
 
-        computeMeanDataForEachDayAndWriteDataToTimeSeriesProduct();
-
-        reloadIntermediateTimeSeriesProduct();
+        if (streaming) {
+            computeMeanDataForEachDayAndAddDataToPercentileSketches();
+        } else {
+            computeMeanDataForEachDayAndWriteDataToTimeSeriesProduct();
+            reloadIntermediateTimeSeriesProduct();
+        }
 
         dailyGroupedSourceProducts.clear();
 
@@ -294,7 +325,18 @@ public class TemporalPercentileOp extends Operator {
         final long baseMemoryRequirement = _1Gb;
         final Runtime runtime = Runtime.getRuntime();
         final long _Xmx = runtime.maxMemory();
-        final long meanBandRawStorageSize = targetProduct.getBandAt(0).getRawStorageSize();
+        long meanBandRawStorageSize = targetProduct.getBandAt(0).getRawStorageSize();
+        if (streaming) {
+            final long numPixels = (long) targetProduct.getSceneRasterWidth() * targetProduct.getSceneRasterHeight();
+            if (numPixels >= Integer.MAX_VALUE) {
+                throw new OperatorException("The CRS settings result in a too large product (" + numPixels + " pixels) " +
+                                            "for the streaming percentile computation. Please choose a smaller scene.");
+            }
+            final long sketchesSize = StreamingPercentileComputer.getSizeInBytes(numPixels, percentileSketchSize);
+            getLogger().info(String.format("Streaming percentile computation with sketch size %d needs %d MB for the " +
+                                           "percentile sketches.", percentileSketchSize, sketchesSize / _1Mb));
+            meanBandRawStorageSize += sketchesSize;
+        }
         if (meanBandRawStorageSize + baseMemoryRequirement > _Xmx) {
             final long width = targetProduct.getSceneRasterWidth();
             final long height = targetProduct.getSceneRasterHeight();
@@ -310,6 +352,16 @@ public class TemporalPercentileOp extends Operator {
         }
     }
 
+    private boolean isStreamingSupported() {
+        if (GAP_FILLING_METHOD_NO_GAP_FILLING.equalsIgnoreCase(gapFillingMethod)
+            || GAP_FILLING_METHOD_LINEAR_INTERPOLATION.equalsIgnoreCase(gapFillingMethod)) {
+            return true;
+        }
+        getLogger().warning("Streaming percentile computation does not support gapFillingMethod='" + gapFillingMethod + "', " +
+                            "the percentiles are computed from the intermediate time series product.");
+        return false;
+    }
+
     private boolean splineOrQuadraticInterpolationIsSelected() {
         return GAP_FILLING_METHOD_SPLINE_INTERPOLATION.equals(gapFillingMethod)
                || GAP_FILLING_METHOD_QUADRATIC_INTERPOLATION.equals(gapFillingMethod);
@@ -352,6 +404,100 @@ public class TemporalPercentileOp extends Operator {
     }
 
     private void computeMeanDataForEachDayAndWriteDataToTimeSeriesProduct() {
+        final ProductWriter productWriter = timeSeriesDataProduct.getProductWriter();
+        computeMeanDataForEachDay((band, dayIndex, y, width, height, rasterData) ->
+                                          productWriter.writeBandRasterData(band, 0, y, width, height, rasterData, ProgressMonitor.NULL));
+    }
+
+    private void computeMeanDataForEachDayAndAddDataToPercentileSketches() {
+        final long width = timeSeriesDataProduct.getSceneRasterWidth();
+        final long height = timeSeriesDataProduct.getSceneRasterHeight();
+        final int numPixels = Math.toIntExact(width * height);
+        streamingPercentileComputer = new StreamingPercentileComputer(numPixels, timeSeriesLength, percentileSketchSize,
+                                                                      !GAP_FILLING_METHOD_NO_GAP_FILLING.equalsIgnoreCase(gapFillingMethod),
+                                                                      startValueFallback.floatValue(), endValueFallback.floatValue());
+        // the time series' of evenly spread pixels are kept, in order to compare their exact thresholds with the
+        // thresholds of the sketches
+        final int sampleStride = (int) (((long) numPixels + NUM_ERROR_SAMPLES - 1) / NUM_ERROR_SAMPLES);
+        final float[][] sampleTimeSeries = new float[(numPixels + sampleStride - 1) / sampleStride][timeSeriesLength];
+        for (float[] timeSeries : sampleTimeSeries) {
+            Arrays.fill(timeSeries, Float.NaN);
+        }
+        computeMeanDataForEachDay((band, dayIndex, y, w, h, rasterData) -> {
+            final float[] values = (float[]) rasterData.getElems();
+            final int pixelIndex = y * w;
+            streamingPercentileComputer.addDailyValues(dayIndex, pixelIndex, values, w * h);
+            final int firstSample = (pixelIndex + sampleStride - 1) / sampleStride;
+            for (int i = firstSample; i < sampleTimeSeries.length && i * sampleStride < pixelIndex + w * h; i++) {
+                sampleTimeSeries[i][dayIndex] = values[i * sampleStride - pixelIndex];
+            }
+        });
+        streamingPercentileComputer.finish();
+        logStreamingStatistics(numPixels);
+        logStreamingError(sampleStride, sampleTimeSeries);
+    }
+
+    private void logStreamingStatistics(int numPixels) {
+        final int minNumValues = interpolator.getMinNumPoints();
+        int numComputedPixels = 0;
+        int numExactPixels = 0;
+        for (int i = 0; i < numPixels; i++) {
+            if (streamingPercentileComputer.getValueCount(i) >= minNumValues) {
+                numComputedPixels++;
+                if (streamingPercentileComputer.isExact(i)) {
+                    numExactPixels++;
+                }
+            }
+        }
+        long peakHeapUsage = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP && memoryPool.getPeakUsage() != null) {
+                peakHeapUsage += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        final long timeSeriesSize = (long) numPixels * timeSeriesLength * ProductData.getElemSize(ProductData.TYPE_FLOAT32);
+        getLogger().info(String.format("Streamed %d days into percentile sketches of size %d. The thresholds of %d of %d pixels " +
+                                       "are exact, the others are approximated. Peak heap usage: %d MB (the time series' " +
+                                       "of the exact computation would take %d MB).",
+                                       timeSeriesLength, percentileSketchSize, numExactPixels, numComputedPixels,
+                                       peakHeapUsage / (1024 * 1024), timeSeriesSize / (1024 * 1024)));
+    }
+
+    private void logStreamingError(int sampleStride, float[][] sampleTimeSeries) {
+        final int minNumValues = interpolator.getMinNumPoints();
+        final double[] errorSums = new double[percentiles.length];
+        final double[] maxErrors = new double[percentiles.length];
+        final float[] thresholds = new float[percentiles.length];
+        int numApproximatedSamples = 0;
+        for (int i = 0; i < sampleTimeSeries.length; i++) {
+            final int pixelIndex = i * sampleStride;
+            final int valueCount = streamingPercentileComputer.getValueCount(pixelIndex);
+            if (valueCount < minNumValues || streamingPercentileComputer.isExact(pixelIndex)) {
+                continue;
+            }
+            streamingPercentileComputer.getPercentileThresholds(pixelIndex, percentiles, thresholds);
+            final float[] exactThresholds = percentileComputer.computeThresholds(percentiles, sampleTimeSeries[i], valueCount);
+            for (int j = 0; j < percentiles.length; j++) {
+                final double error = Math.abs(thresholds[j] - exactThresholds[j]);
+                errorSums[j] += error;
+                maxErrors[j] = Math.max(maxErrors[j], error);
+            }
+            numApproximatedSamples++;
+        }
+        if (numApproximatedSamples == 0) {
+            return;
+        }
+        final StringBuilder message = new StringBuilder();
+        message.append(String.format("Compared the approximated thresholds of %d sampled pixels with their exact thresholds:",
+                                     numApproximatedSamples));
+        for (int j = 0; j < percentiles.length; j++) {
+            message.append(String.format(" P%d mean absolute error %g, maximum absolute error %g;",
+                                         percentiles[j], errorSums[j] / numApproximatedSamples, maxErrors[j]));
+        }
+        getLogger().info(message.substring(0, message.length() - 1) + ".");
+    }
+
+    private void computeMeanDataForEachDay(DailyMeanDataHandler dailyMeanDataHandler) {
         for (long mjd : dailyGroupedSourceProducts.keySet()) {
 
             final List<Product> dailyGroupedProducts = dailyGroupedSourceProducts.get(mjd);
@@ -359,7 +505,9 @@ public class TemporalPercentileOp extends Operator {
 
             final List<Product> collocatedProducts = createCollocatedProducts(dailyGroupedProducts);
 
-            final Band band = timeSeriesDataProduct.getBand(createNameForMeanBand(mjd));
+            final String bandName = createNameForMeanBand(mjd);
+            final int dayIndex = timeSeriesBandNameToDayIndexMap.get(bandName);
+            final Band band = timeSeriesDataProduct.getBand(bandName);
             band.setSourceImage(createDailyMeanSourceImage(collocatedProducts));
             final int height = timeSeriesDataProduct.getSceneRasterHeight();
             final int width = timeSeriesDataProduct.getSceneRasterWidth();
@@ -372,7 +520,7 @@ public class TemporalPercentileOp extends Operator {
                         rasterData = band.createCompatibleRasterData(width, bufferHeight);
                     }
                     band.readRasterData(0, y, width, bufferHeight, rasterData, ProgressMonitor.NULL);
-                    timeSeriesDataProduct.getProductWriter().writeBandRasterData(band, 0, y, width, bufferHeight, rasterData, ProgressMonitor.NULL);
+                    dailyMeanDataHandler.handle(band, dayIndex, y, width, bufferHeight, rasterData);
                 }
             } catch (IOException e) {
                 throw new OperatorException(UNABLE_TO_WRITE_TIMESERIES_DATA_PRODUCT, e);
@@ -437,6 +585,11 @@ public class TemporalPercentileOp extends Operator {
             }
         }
 
+        if (streaming) {
+            computeTilesFromPercentileSketches(r, targetPercentileBands, targetPercentileTiles, targetCountTile);
+            return;
+        }
+
         final float[][] sourceTiles = new float[timeSeriesLength][0];
         for (String bandName : timeSeriesBandNameToDayIndexMap.keySet()) {
             final float[] sourceTile;
@@ -479,6 +632,32 @@ public class TemporalPercentileOp extends Operator {
         gc();
     }
 
+    private void computeTilesFromPercentileSketches(Rectangle r, Band[] targetPercentileBands, Tile[] targetPercentileTiles,
+                                                    Tile targetCountTile) {
+        final int[] targetPercentiles = new int[targetPercentileBands.length];
+        for (int i = 0; i < targetPercentileBands.length; i++) {
+            targetPercentiles[i] = extractPercentileFromBandName(targetPercentileBands[i].getName());
+        }
+        final float[] percentileThresholds = new float[targetPercentiles.length];
+        final int minNumValues = interpolator.getMinNumPoints();
+        final int width = getTargetProduct().getSceneRasterWidth();
+        for (int targetY = r.y; targetY < (r.y + r.height); targetY++) {
+            for (int targetX = r.x; targetX < (r.x + r.width); targetX++) {
+                final int pixelIndex = targetY * width + targetX;
+                final int valueCount = streamingPercentileComputer.getValueCount(pixelIndex);
+                if (valueCount < minNumValues) {
+                    Arrays.fill(percentileThresholds, Float.NaN);
+                } else {
+                    streamingPercentileComputer.getPercentileThresholds(pixelIndex, targetPercentiles, percentileThresholds);
+                }
+                for (int i = 0; i < targetPercentileTiles.length; i++) {
+                    targetPercentileTiles[i].setSample(targetX, targetY, percentileThresholds[i]);
+                }
+                targetCountTile.setSample(targetX, targetY, valueCount);
+            }
+        }
+    }
+
     private void dispose(List<Product> products) {
         for (Product colocatedProduct : products) {
             colocatedProduct.dispose();
@@ -512,6 +691,9 @@ public class TemporalPercentileOp extends Operator {
             band.setNoDataValue(Double.NaN);
             band.setNoDataValueUsed(true);
         }
+        if (streaming) {
+            return;
+        }
         final ProductWriter productWriter = ProductIO.getProductWriter(DimapProductConstants.DIMAP_FORMAT_NAME);
         final File timeSeriesDataProductLocation = getTimeSeriesDataProductLocation();
         try {
@@ -579,7 +761,8 @@ public class TemporalPercentileOp extends Operator {
 
         final File timeSeriesDataProductLocation = getTimeSeriesDataProductLocation();
         timeSeriesDataProduct.dispose();
-        if (!keepIntermediateTimeSeriesProduct) {
+        streamingPercentileComputer = null;
+        if (!keepIntermediateTimeSeriesProduct && !streaming) {
             final String filenameWithoutExtension = FileUtils.getFilenameWithoutExtension(timeSeriesDataProductLocation);
             final File parentFile = timeSeriesDataProductLocation.getParentFile();
             final File dataDir = new File(parentFile, filenameWithoutExtension + ".data");
@@ -853,6 +1036,11 @@ public class TemporalPercentileOp extends Operator {
         }
     }
 
+    private interface DailyMeanDataHandler {
+
+        void handle(Band band, int dayIndex, int y, int width, int height, ProductData rasterData) throws IOException;
+    }
+
     private static abstract class PercentileComputer {
 
         abstract float[] computeThresholds(int[] targetPercentiles, float[] availableValues, int numAvailableValues);
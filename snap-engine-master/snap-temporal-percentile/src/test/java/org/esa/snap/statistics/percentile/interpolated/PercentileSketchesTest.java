@@ -0,0 +1,135 @@
+package org.esa.snap.statistics.percentile.interpolated;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PercentileSketchesTest {
+
+    private static final int[] PERCENTILES = {0, 5, 10, 25, 50, 75, 90, 95, 100};
+
+    @Test
+    public void testThatThresholdsAreExactUpToCapacity() {
+        final PercentileSketches sketches = new PercentileSketches(3, 64);
+        final Random random = new Random(5);
+        final float[][] series = new float[3][];
+        series[0] = new float[]{3.5f};
+        series[1] = new float[40];
+        series[2] = new float[64];
+        for (int pixel = 0; pixel < series.length; pixel++) {
+            for (int i = 0; i < series[pixel].length; i++) {
+                if (pixel > 0) {
+                    series[pixel][i] = (float) random.nextGaussian();
+                }
+                sketches.add(pixel, series[pixel][i]);
+            }
+        }
+
+        final float[] thresholds = new float[PERCENTILES.length];
+        for (int pixel = 0; pixel < series.length; pixel++) {
+            assertEquals(series[pixel].length, sketches.getCount(pixel));
+            assertTrue(sketches.isExact(pixel));
+            sketches.getPercentileThresholds(pixel, PERCENTILES, thresholds);
+            assertArrayEquals(computeExactThresholds(series[pixel]), thresholds, 0.0f);
+        }
+    }
+
+    @Test
+    public void testThatNoValuesYieldNaN() {
+        final PercentileSketches sketches = new PercentileSketches(1, 16);
+        final float[] thresholds = new float[PERCENTILES.length];
+        sketches.getPercentileThresholds(0, PERCENTILES, thresholds);
+        for (float threshold : thresholds) {
+            assertTrue(Float.isNaN(threshold));
+        }
+    }
+
+    @Test
+    public void testAccuracyOfApproximatedThresholds() {
+        final int numPixels = 20;
+        final int length = 3650;
+        final PercentileSketches sketches = new PercentileSketches(numPixels, 64);
+        final Random random = new Random(42);
+        final float[][] series = new float[numPixels][length];
+        for (int pixel = 0; pixel < numPixels; pixel++) {
+            for (int day = 0; day < length; day++) {
+                // seasonal cycle with noise and a trend
+                series[pixel][day] = (float) (Math.sin(2 * Math.PI * day / 365.0) + 0.3 * random.nextGaussian() + day * 1e-4);
+                sketches.add(pixel, series[pixel][day]);
+            }
+        }
+
+        final float[] thresholds = new float[PERCENTILES.length];
+        double sumRankError = 0.0;
+        for (int pixel = 0; pixel < numPixels; pixel++) {
+            assertFalse(sketches.isExact(pixel));
+            assertEquals(length, sketches.getCount(pixel));
+            sketches.getPercentileThresholds(pixel, PERCENTILES, thresholds);
+            final float[] sorted = series[pixel].clone();
+            Arrays.sort(sorted);
+            assertEquals(sorted[0], thresholds[0], 0.0f);
+            assertEquals(sorted[length - 1], thresholds[PERCENTILES.length - 1], 0.0f);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                final int exactRank = Math.min((int) Math.floor(PERCENTILES[i] / 100f * length), length - 1);
+                final double rankError = Math.abs(getRank(sorted, thresholds[i]) - exactRank) / (double) length;
+                assertTrue("rank error of p" + PERCENTILES[i] + ": " + rankError, rankError < 0.03);
+                sumRankError += rankError;
+            }
+        }
+        assertTrue(sumRankError / (numPixels * PERCENTILES.length) < 0.005);
+    }
+
+    @Test
+    public void testThatChunkedSketchesYieldSameThresholds() {
+        final int numPixels = 10;
+        final PercentileSketches sketches = new PercentileSketches(numPixels, 16);
+        // three pixels per chunk, the last chunk holds a single pixel
+        final PercentileSketches chunkedSketches = new PercentileSketches(numPixels, 16, 3 * 16 + 5);
+        final Random random = new Random(7);
+        for (int day = 0; day < 200; day++) {
+            for (int pixel = 0; pixel < numPixels; pixel++) {
+                final float value = (float) (pixel + random.nextGaussian());
+                sketches.add(pixel, value);
+                chunkedSketches.add(pixel, value);
+            }
+        }
+
+        final float[] thresholds = new float[PERCENTILES.length];
+        final float[] chunkedThresholds = new float[PERCENTILES.length];
+        for (int pixel = 0; pixel < numPixels; pixel++) {
+            sketches.getPercentileThresholds(pixel, PERCENTILES, thresholds);
+            chunkedSketches.getPercentileThresholds(pixel, PERCENTILES, chunkedThresholds);
+            assertArrayEquals(thresholds, chunkedThresholds, 0.0f);
+            assertEquals(pixel, chunkedThresholds[4], 0.5f);
+        }
+    }
+
+    @Test
+    public void testSizeInBytes() {
+        assertEquals(1000 * (64 * 8 + 14), PercentileSketches.getSizeInBytes(1000, 64));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatTooSmallCapacityIsRejected() {
+        new PercentileSketches(1, 4);
+    }
+
+    private static int getRank(float[] sorted, float value) {
+        int rank = Arrays.binarySearch(sorted, value);
+        return rank >= 0 ? rank : -rank - 1;
+    }
+
+    private static float[] computeExactThresholds(float[] values) {
+        final float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final float[] thresholds = new float[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            final int index = Math.min((int) Math.floor(PERCENTILES[i] / 100f * sorted.length), sorted.length - 1);
+            thresholds[i] = sorted[index];
+        }
+        return thresholds;
+    }
+}
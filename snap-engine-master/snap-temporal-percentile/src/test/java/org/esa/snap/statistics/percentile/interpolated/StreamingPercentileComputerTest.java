@@ -0,0 +1,98 @@
+package org.esa.snap.statistics.percentile.interpolated;
+
+import org.esa.snap.interpolators.Interpolator;
+import org.esa.snap.interpolators.LinearInterpolator;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StreamingPercentileComputerTest {
+
+    private final static Interpolator LINEAR = new LinearInterpolator();
+    private final static int[] PERCENTILES = {10, 50, 90};
+
+    private final float xx = Float.NaN;
+
+    @Test
+    public void testThatLinearGapFillingYieldsSameThresholdsAsGapFiller() {
+        final float[][] series = {
+                    {1, xx, xx, xx, 5},
+                    {xx, xx, xx, xx, 5, xx, xx, xx, xx},
+                    {1, xx, xx, xx, xx, -7, xx, xx, xx, xx, -5},
+                    {xx, 2, xx, 7, 3, xx, 4, 1, xx, xx, xx, 6},
+                    {4, 2, 8, 7, 3, 5, 4, 1, 9, 0, 2, 6},
+        };
+        for (float[] values : series) {
+            final float[] expected = values.clone();
+            GapFiller.fillGaps(expected, LINEAR, 1.0f, 3.0f);
+
+            final StreamingPercentileComputer computer = computeStreaming(values, true);
+            assertEquals(countValid(values), computer.getValueCount(0));
+            assertTrue(computer.isExact(0));
+            final float[] thresholds = new float[PERCENTILES.length];
+            computer.getPercentileThresholds(0, PERCENTILES, thresholds);
+            assertArrayEquals(Arrays.toString(values), computeExactThresholds(expected), thresholds, 1e-6f);
+        }
+    }
+
+    @Test
+    public void testThatWithoutGapFillingOnlyValidValuesAreConsidered() {
+        final float[] values = {xx, 2, xx, 7, 3, xx, 4, 1, xx, xx, xx, 6};
+        final StreamingPercentileComputer computer = computeStreaming(values, false);
+
+        assertEquals(6, computer.getValueCount(0));
+        final float[] thresholds = new float[PERCENTILES.length];
+        computer.getPercentileThresholds(0, PERCENTILES, thresholds);
+        assertArrayEquals(computeExactThresholds(new float[]{2, 7, 3, 4, 1, 6}), thresholds, 0.0f);
+    }
+
+    @Test
+    public void testThatDailyValuesAreAddedPerPixel() {
+        final StreamingPercentileComputer computer = new StreamingPercentileComputer(4, 3, 16, true, 0.0f, 0.0f);
+        computer.addDailyValues(0, 0, new float[]{1, xx, 3, xx}, 4);
+        computer.addDailyValues(1, 2, new float[]{5, 7}, 2);
+        computer.addDailyValues(2, 0, new float[]{xx, 2, 9, xx}, 4);
+        computer.finish();
+
+        assertEquals(1, computer.getValueCount(0));
+        assertEquals(1, computer.getValueCount(1));
+        assertEquals(3, computer.getValueCount(2));
+        assertEquals(1, computer.getValueCount(3));
+        final float[] thresholds = new float[1];
+        computer.getPercentileThresholds(2, new int[]{50}, thresholds);
+        assertEquals(5, thresholds[0], 0.0f);
+        computer.getPercentileThresholds(1, new int[]{50}, thresholds);
+        assertEquals(1, thresholds[0], 0.0f);
+    }
+
+    private StreamingPercentileComputer computeStreaming(float[] values, boolean linearGapFilling) {
+        final StreamingPercentileComputer computer = new StreamingPercentileComputer(1, values.length, 64, linearGapFilling, 1.0f, 3.0f);
+        for (int day = 0; day < values.length; day++) {
+            computer.addDailyValues(day, 0, new float[]{values[day]}, 1);
+        }
+        computer.finish();
+        return computer;
+    }
+
+    private static int countValid(float[] values) {
+        int count = 0;
+        for (float value : values) {
+            if (!Float.isNaN(value)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static float[] computeExactThresholds(float[] values) {
+        final float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final float[] thresholds = new float[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            thresholds[i] = sorted[(int) Math.floor(PERCENTILES[i] / 100f * sorted.length)];
+        }
+        return thresholds;
+    }
+}